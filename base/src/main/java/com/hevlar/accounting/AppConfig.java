@@ -1,9 +1,194 @@
 package com.hevlar.accounting;
 
 
+import com.hevlar.accounting.repository.BatchRepository;
+import com.hevlar.accounting.repository.IdempotencyKeyDataRepository;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.repository.JournalLog;
+import com.hevlar.accounting.repository.RecurrenceWatermarkDataRepository;
+import com.hevlar.accounting.service.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.concurrent.ForkJoinPool;
 
 @Configuration
 public class AppConfig {
 
+    @Bean
+    public AccountCache accountCache(@Value("${accounting.account-cache.maximum-size:" + AccountCache.DEFAULT_MAXIMUM_SIZE + "}") int maximumSize){
+        return new AccountCache(maximumSize);
+    }
+
+    /**
+     * Metrics of the chart of accounts, in the application's meter registry if there is one, such as the registry of
+     * Spring Boot Actuator, or in an in-memory registry otherwise
+     */
+    @Bean
+    public AccountingMetrics accountingMetrics(ObjectProvider<MeterRegistry> meterRegistry){
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        return registry == null ? AccountingMetrics.simple() : new AccountingMetrics(registry);
+    }
+
+    /**
+     * Counts the calls to the repositories. Static, as bean post processors are created before the other beans.
+     */
+    @Bean
+    public static RepositoryMetrics repositoryMetrics(ObjectProvider<AccountingMetrics> accountingMetrics){
+        return new RepositoryMetrics(accountingMetrics);
+    }
+
+    /**
+     * Enables JDBC batching for the batch repositories, unless the application configures it otherwise
+     * @return hibernate properties customizer
+     */
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer(){
+        return hibernateProperties -> {
+            hibernateProperties.putIfAbsent("hibernate.jdbc.batch_size", BatchRepository.BATCH_SIZE);
+            hibernateProperties.putIfAbsent("hibernate.order_inserts", true);
+            hibernateProperties.putIfAbsent("hibernate.order_updates", true);
+        };
+    }
+
+    /**
+     * Journal log, only when accounting.journal-log.directory is configured
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty("accounting.journal-log.directory")
+    public JournalLog journalLog(@Value("${accounting.journal-log.directory}") String directory) throws IOException {
+        return new JournalLog(Path.of(directory));
+    }
+
+    /**
+     * Fills the journal tables from the journal log, only when accounting.journal-log.directory is configured. It is
+     * then the only writer of the journal entries.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty("accounting.journal-log.directory")
+    public JournalLogProjector journalLogProjector(JournalLog journalLog,
+                                                   JournalEntryDataRepository journalEntryDataRepository,
+                                                   PlatformTransactionManager transactionManager,
+                                                   IdempotencyGuard idempotencyGuard,
+                                                   @Value("${accounting.journal-log.directory}") String directory){
+        return new JournalLogProjector(journalLog, journalEntryDataRepository, new TransactionTemplate(transactionManager),
+                idempotencyGuard, Path.of(directory, "projected.checkpoint"));
+    }
+
+    /**
+     * Exchange rates loaded from a local CSV or JSON file, only when accounting.fx-rates.file is configured
+     */
+    @Bean
+    @ConditionalOnProperty("accounting.fx-rates.file")
+    public FxRateTable fxRateTable(@Value("${accounting.fx-rates.file}") String file) throws IOException {
+        return FxRateTable.load(Path.of(file));
+    }
+
+    /**
+     * Running balances of the accounts, converting entries in another currency with the exchange rates if configured
+     */
+    @Bean
+    public BalanceEngine balanceEngine(ObjectProvider<FxRateTable> fxRateTable){
+        return new BalanceEngine(fxRateTable.getIfAvailable());
+    }
+
+    /**
+     * Balances of the accounts as of any date, converting entries in another currency with the exchange rates if configured
+     */
+    @Bean
+    public BalanceIndex balanceIndex(ObjectProvider<FxRateTable> fxRateTable){
+        return new BalanceIndex(BalanceIndex.BalanceDate.TRANSACTION, fxRateTable.getIfAvailable());
+    }
+
+    /**
+     * Financial statements in accounting.statements.currency, from the balance index of the application, converting
+     * the balances in other currencies with the exchange rates if configured
+     */
+    @Bean
+    public FinancialStatementGenerator financialStatementGenerator(ChartOfAccounts chartOfAccounts, BalanceIndex balanceIndex,
+                                                                   ObjectProvider<FxRateTable> fxRateTable,
+                                                                   @Value("${accounting.statements.currency:SGD}") String currency){
+        return new FinancialStatementGenerator(chartOfAccounts, balanceIndex, Currency.getInstance(currency), fxRateTable.getIfAvailable());
+    }
+
+    /**
+     * Journal ids, continuing from the largest id in the journal, or in the journal log if there is one
+     */
+    @Bean
+    public JournalIdGenerator journalIdGenerator(JournalEntryDataRepository journalEntryDataRepository,
+                                                 ObjectProvider<JournalLogProjector> journalLogProjector){
+        JournalLogProjector projector = journalLogProjector.getIfAvailable();
+        // the log is read before the table, so the records projected in the meantime are found in the table
+        long lastLoggedId = projector == null ? 0 : projector.findMaxJournalId();
+        return JournalIdGenerator.from(journalEntryDataRepository, lastLoggedId);
+    }
+
+    /**
+     * Statement importer, parsing the chunks in the common fork join pool and posting each chunk once with its
+     * idempotency key, to the journal log if there is one, and then to the balances
+     */
+    @Bean
+    public StatementImporter statementImporter(ChartOfAccounts chartOfAccounts,
+                                               JournalEntryDataRepository journalEntryDataRepository,
+                                               PlatformTransactionManager transactionManager,
+                                               JournalIdGenerator journalIdGenerator,
+                                               IdempotencyGuard idempotencyGuard,
+                                               ObjectProvider<JournalLog> journalLog,
+                                               BalanceService balanceService){
+        return new StatementImporter(chartOfAccounts, journalEntryDataRepository, new TransactionTemplate(transactionManager),
+                journalIdGenerator, idempotencyGuard, journalLog.getIfAvailable(), journalEntries -> journalEntries.forEach(balanceService::post),
+                ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Bloom filter of the idempotency keys, rebuilt from the key table when the application is ready
+     */
+    @Bean
+    public IdempotencyGuard idempotencyGuard(IdempotencyKeyDataRepository idempotencyKeyDataRepository,
+                                             @Value("${accounting.idempotency.expected-keys:1000000}") long expectedKeys,
+                                             @Value("${accounting.idempotency.false-positive-probability:0.01}") double falsePositiveProbability){
+        return new IdempotencyGuard(idempotencyKeyDataRepository, expectedKeys, falsePositiveProbability);
+    }
+
+    /**
+     * Scheduler of the occurrences of the recurring entries, with its watermarks loaded when the application is ready
+     */
+    @Bean
+    public RecurrenceScheduler recurrenceScheduler(RecurrenceWatermarkDataRepository recurrenceWatermarkDataRepository,
+                                                   PlatformTransactionManager transactionManager){
+        return new RecurrenceScheduler(new RecurrenceEngine(), recurrenceWatermarkDataRepository, new TransactionTemplate(transactionManager));
+    }
+
+    /**
+     * Asynchronous posting of journal entries in micro-batches, which also keeps the balances up to date. The search
+     * indexes follow the writes of the journal entry rows themselves. With a journal log, the entries are appended to
+     * the log, and the pipeline starts after the projector has projected the records already in the log.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public PostingPipeline postingPipeline(JournalEntryDataRepository journalEntryDataRepository,
+                                           PlatformTransactionManager transactionManager,
+                                           BalanceService balanceService,
+                                           ChartOfAccounts chartOfAccounts,
+                                           IdempotencyGuard idempotencyGuard,
+                                           ObjectProvider<JournalLog> journalLog,
+                                           ObjectProvider<JournalLogProjector> journalLogProjector,
+                                           @Value("${accounting.posting.capacity:10000}") int capacity,
+                                           @Value("${accounting.posting.batch-size:" + BatchRepository.BATCH_SIZE * 10 + "}") int batchSize){
+        // creating the projector projects the records already in the log
+        journalLogProjector.getIfAvailable();
+        return new PostingPipeline(journalEntryDataRepository, new TransactionTemplate(transactionManager), capacity, batchSize,
+                journalEntries -> journalEntries.forEach(balanceService::post), idempotencyGuard, journalLog.getIfAvailable(),
+                new JournalEntryValidator(chartOfAccounts));
+    }
+
 }
@@ -13,6 +13,7 @@ public abstract class Account {
     private String name;
     private final AccountGroup accountGroup;
     private final AtomicBoolean lock;
+    private volatile Long version;
 
     /**
      * Default constructor to create an Account, with lock = false
@@ -68,6 +69,23 @@ public abstract class Account {
         return this.lock.get();
     }
 
+    /**
+     * Gets the version of the persisted account that this account was read from, so that an update is only applied if
+     * the account was not changed since
+     * @return version, or null if this account was not read from the repository
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the persisted account that this account was read from
+     * @param version version, or null to update the account regardless of its version
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public AccountType getAccountType(){
         return this.accountGroup.accountType;
     }
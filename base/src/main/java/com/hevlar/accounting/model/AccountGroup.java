@@ -1,6 +1,8 @@
 package com.hevlar.accounting.model;
 
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * Represents the fixed account groups - assets, liabilities, revenue, expenses, etc in accounting
@@ -9,47 +11,52 @@ public enum AccountGroup {
     /**
      * Fixed Asset (Long term investment, Car, House, Insurance)
      */
-    FIXED_ASSETS("Fixed Assets", EntryType.DEBIT, AccountType.BalanceSheet),
+    FIXED_ASSETS(1, "Fixed Assets", EntryType.DEBIT, AccountType.BalanceSheet),
 
     /**
      * Current Asset (Bank Account, Cash)
      */
-    CURRENT_ASSETS("Current Assets", EntryType.DEBIT, AccountType.BalanceSheet),
+    CURRENT_ASSETS(2, "Current Assets", EntryType.DEBIT, AccountType.BalanceSheet),
 
     /**
      * Current liabilities (Credit Cards, Short Term Loans, Utility Accounts)
      */
-    CURRENT_LIABILITIES("Current Liabilities", EntryType.CREDIT, AccountType.BalanceSheet),
+    CURRENT_LIABILITIES(3, "Current Liabilities", EntryType.CREDIT, AccountType.BalanceSheet),
 
     /**
      * Long Term Liabilities (Long Term Loans)
      */
-    LONG_TERM_LIABILITIES("Long Term Liabilities", EntryType.CREDIT, AccountType.BalanceSheet),
+    LONG_TERM_LIABILITIES(4, "Long Term Liabilities", EntryType.CREDIT, AccountType.BalanceSheet),
 
     /**
      * Revenue (Salary, Sale of Goods)
      */
-    REVENUE("Revenue", EntryType.CREDIT, AccountType.IncomeStatement),
+    REVENUE(5, "Revenue", EntryType.CREDIT, AccountType.IncomeStatement),
 
     /**
      * Expenses (Food, Grocery, Cost of Goods Sold, Utility usage)
      */
-    EXPENSES("Expenses", EntryType.DEBIT, AccountType.IncomeStatement),
+    EXPENSES(6, "Expenses", EntryType.DEBIT, AccountType.IncomeStatement),
 
     /**
      * Gains (Profits from sales of assets)
      */
-    GAINS("Gains", EntryType.CREDIT, AccountType.IncomeStatement),
+    GAINS(7, "Gains", EntryType.CREDIT, AccountType.IncomeStatement),
 
     /**
      * Losses (Loss from sales of assets)
      */
-    LOSSES("Losses", EntryType.DEBIT, AccountType.IncomeStatement),
+    LOSSES(8, "Losses", EntryType.DEBIT, AccountType.IncomeStatement),
 
     /**
      * Equities (ShareHolders' investment)
      */
-    EQUITIES("Equities", EntryType.CREDIT, AccountType.BalanceSheet);
+    EQUITIES(9, "Equities", EntryType.CREDIT, AccountType.BalanceSheet);
+
+    /**
+     * Compact code of this Account Group, used for persistence. Codes must never be changed or reused.
+     */
+    public final int code;
 
     /**
      * Display label of this Account Group
@@ -66,24 +73,67 @@ public enum AccountGroup {
      */
     public final AccountType accountType;
 
+    private static final Map<String, AccountGroup> BY_LABEL = new HashMap<>();
+    private static final AccountGroup[] BY_CODE;
+
+    static {
+        int maxCode = 0;
+        for(AccountGroup accountGroup : values()){
+            BY_LABEL.put(accountGroup.label, accountGroup);
+            maxCode = Math.max(maxCode, accountGroup.code);
+        }
+        BY_CODE = new AccountGroup[maxCode + 1];
+        for(AccountGroup accountGroup : values()){
+            BY_CODE[accountGroup.code] = accountGroup;
+        }
+    }
+
+    /**
+     * Gets the Account Group by its display label
+     * @param label display label, eg. Current Assets
+     * @return Account Group
+     * @throws NoSuchElementException if there is no Account Group with this label
+     */
     public static AccountGroup fromLabel(String label){
-        return Arrays.stream(AccountGroup.values())
-                .filter(accountGroup -> accountGroup.label.equals(label))
-                .findFirst()
-                .orElseThrow();
+        AccountGroup accountGroup = label == null ? null : BY_LABEL.get(label);
+        if(accountGroup == null) throw new NoSuchElementException("No account group with label " + label);
+        return accountGroup;
+    }
+
+    /**
+     * Gets the Account Group by its persisted code
+     * @param code code of the Account Group
+     * @return Account Group
+     * @throws NoSuchElementException if there is no Account Group with this code
+     */
+    public static AccountGroup fromCode(int code){
+        AccountGroup accountGroup = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if(accountGroup == null) throw new NoSuchElementException("No account group with code " + code);
+        return accountGroup;
     }
 
     public static AccountType getAccountTypeFromLabel(String label){
         return AccountGroup.fromLabel(label).accountType;
     }
 
+    /**
+     * Gets the sign of an entry to an account of this group on its balance
+     * @param entryType Debit or Credit entry
+     * @return 1 if the entry increases the balance, -1 if it decreases the balance
+     */
+    public int sign(EntryType entryType){
+        return this.entryType == entryType ? 1 : -1;
+    }
+
     /**
      * Creates a new Account Group
+     * @param code compact code used for persistence
      * @param label display label of this Account Group
      * @param entryType Credit or Debit
      * @param accountType Balance Sheet or Income Statement
      */
-    AccountGroup(String label, EntryType entryType, AccountType accountType) {
+    AccountGroup(int code, String label, EntryType entryType, AccountType accountType) {
+        this.code = code;
         this.label = label;
         this.entryType = entryType;
         this.accountType = accountType;
@@ -21,6 +21,7 @@ public class BalanceSheetAccount extends Account{
      * @param openDate date when this account is opened
      * @param currency ISO 4217 code of the currency to be associated with this account
      * @param openBal opening balance
+     * @throws IllegalArgumentException if the opening balance has more decimal places than the currency allows
      */
     public BalanceSheetAccount(String name, AccountGroup accountGroup, LocalDate openDate, String currency, String openBal, Boolean lock) {
         super(name, accountGroup, lock);
@@ -28,7 +29,7 @@ public class BalanceSheetAccount extends Account{
         if(currency == null || currency.isBlank() || currency.isEmpty()) throw new InvalidParameterException("Currency cannot be empty");
         this.openDate = openDate;
         this.currency = Currency.getInstance(currency);
-        this.openBal = new BigDecimal(openBal);
+        this.openBal = checkOpenBal(new BigDecimal(openBal), this.currency);
     }
 
     /**
@@ -38,6 +39,7 @@ public class BalanceSheetAccount extends Account{
      * @param openDate date when this account is opened
      * @param currency ISO 4217 code of the currency to be associated with this account
      * @param openBal opening balance
+     * @throws IllegalArgumentException if the opening balance has more decimal places than the currency allows
      */
     public BalanceSheetAccount(String name, AccountGroup accountGroup, LocalDate openDate, String currency, BigDecimal openBal, Boolean lock) {
         super(name, accountGroup, lock);
@@ -45,7 +47,7 @@ public class BalanceSheetAccount extends Account{
         if(currency == null || currency.isBlank() || currency.isEmpty()) throw new InvalidParameterException("Currency cannot be empty");
         this.openDate = openDate;
         this.currency = Currency.getInstance(currency);
-        this.openBal = openBal;
+        this.openBal = checkOpenBal(openBal, this.currency);
     }
 
     /**
@@ -79,10 +81,13 @@ public class BalanceSheetAccount extends Account{
      * Sets the currency of this account
      * @param currency the ISO 4217 code of the currency, eg. SGD, USD
      * @return true, if successful, false if the account is already locked
+     * @throws IllegalArgumentException if the opening balance has more decimal places than the currency allows
      */
     public Boolean setCurrency(String currency) {
         if(this.isLocked()) return false;
-        this.currency = Currency.getInstance(currency);
+        Currency newCurrency = Currency.getInstance(currency);
+        checkOpenBal(openBal, newCurrency);
+        this.currency = newCurrency;
         return true;
     }
 
@@ -98,11 +103,18 @@ public class BalanceSheetAccount extends Account{
      * Sets the opening balance of the account, only permissible if the account is not locked
      * @param openBal new opening balance
      * @return true if successful, false if account is already locked
+     * @throws IllegalArgumentException if the opening balance has more decimal places than the currency allows
      */
     public Boolean setOpenBal(double openBal) {
         if(this.isLocked()) return false;
-        this.openBal = new BigDecimal(openBal);
+        // the decimal value as written, eg. 100.1, not the exact binary fraction of the double
+        this.openBal = checkOpenBal(BigDecimal.valueOf(openBal), currency);
         return true;
     }
 
+    private static BigDecimal checkOpenBal(BigDecimal openBal, Currency currency) {
+        if(openBal != null) Money.toMinorUnits(openBal, currency);
+        return openBal;
+    }
+
 }
@@ -2,6 +2,7 @@ package com.hevlar.accounting.model;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
 
 /**
  * Represents a credit card account, which is defaulted as a current liability, with information of bank, statement day
@@ -120,4 +121,40 @@ public class CreditCardAccount extends BalanceSheetAccount{
         return true;
     }
 
+    /**
+     * Gets the date of the statement which a transaction on the date appears in, ie the first statement day on or
+     * after the date. In months shorter than the statement day, the statement is on the last day of the month.
+     * @param date date of the transaction
+     * @return statement date
+     */
+    public LocalDate getStatementDate(LocalDate date) {
+        LocalDate statementDate = dayInMonth(date, statementDay);
+        return date.isAfter(statementDate) ? dayInMonth(date.plusMonths(1), statementDay) : statementDate;
+    }
+
+    /**
+     * Gets the date of the statement before the statement
+     * @param statementDate date of the statement
+     * @return previous statement date
+     */
+    public LocalDate getPreviousStatementDate(LocalDate statementDate) {
+        return dayInMonth(statementDate.minusMonths(1), statementDay);
+    }
+
+    /**
+     * Gets the date when the statement is due for payment, ie the first due day after the statement date.
+     * In months shorter than the due day, the statement is due on the last day of the month.
+     * @param statementDate date of the statement
+     * @return due date
+     */
+    public LocalDate getDueDate(LocalDate statementDate) {
+        LocalDate dueDate = dayInMonth(statementDate, dueDay);
+        return dueDate.isAfter(statementDate) ? dueDate : dayInMonth(statementDate.plusMonths(1), dueDay);
+    }
+
+    private static LocalDate dayInMonth(LocalDate date, int day) {
+        YearMonth month = YearMonth.from(date);
+        return month.atDay(Math.min(day, month.lengthOfMonth()));
+    }
+
 }
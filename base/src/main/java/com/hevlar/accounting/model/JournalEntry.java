@@ -17,6 +17,7 @@ public class JournalEntry {
     private String[] tags;
     private Currency currency;
     private BigDecimal amount;
+    private long amountUnits;
     private Account debit;
     private Account credit;
     private LocalDate postDate;
@@ -38,6 +39,7 @@ public class JournalEntry {
      * @param postDate date when transaction is posted, usually for banks and credit cards, when transaction is not posted on non-working days
      * @param debitStatementDate for credit cards, to identify which statement should this entry appear for the debit account
      * @param creditStatementDate for credit cards, to identify which statement should this entry appear for the credit account
+     * @throws IllegalArgumentException if the amount has more decimal places than the currency allows
      */
     public JournalEntry(Long journalId, LocalDate txDate, String item, Recurrence recurrence, String[] tags, String currency, String amount, Account debit, Account credit, LocalDate postDate, LocalDate debitStatementDate, LocalDate creditStatementDate) {
         if(journalId == null) throw new NullPointerException("Journal ID cannot be null");
@@ -54,6 +56,7 @@ public class JournalEntry {
         this.tags = tags;
         this.currency = Currency.getInstance(currency);
         this.amount = new BigDecimal(amount);
+        this.amountUnits = Money.toMinorUnits(this.amount, this.currency);
         this.debit = debit;
         this.credit = credit;
         this.postDate = postDate;
@@ -118,6 +121,24 @@ public class JournalEntry {
         return amount;
     }
 
+    /**
+     * Gets the amount in minor units of the currency, eg. cents
+     * @return amount in minor units
+     */
+    public long getAmountUnits() {
+        return amountUnits;
+    }
+
+    /**
+     * Gets the amount in minor units of another currency, without any exchange, eg. for the balance of an account
+     * kept in a currency with a different number of decimal places
+     * @param currency currency of the minor units
+     * @return amount in minor units of the currency
+     */
+    public long getAmountUnits(Currency currency) {
+        return Money.rescale(amountUnits, this.currency, currency);
+    }
+
     /**
      * Gets the debit account of this entry
      * @return debit account
@@ -221,9 +242,11 @@ public class JournalEntry {
      * Updates the currency of this entry
      * @param currency currency
      * @return true if successful, false otherwise
+     * @throws IllegalArgumentException if the amount has more decimal places than the currency allows
      */
     public Boolean setCurrency(Currency currency) {
         if(isLocked()) return false;
+        this.amountUnits = Money.toMinorUnits(amount, currency);
         this.currency = currency;
         return true;
     }
@@ -232,20 +255,21 @@ public class JournalEntry {
      * Updates the currency of this entry by currency code
      * @param currency currency code
      * @return true if successful, false otherwise
+     * @throws IllegalArgumentException if the amount has more decimal places than the currency allows
      */
     public Boolean setCurrency(String currency) {
-        if(isLocked()) return false;
-        this.currency = Currency.getInstance(currency);
-        return true;
+        return setCurrency(Currency.getInstance(currency));
     }
 
     /**
      * Updates the amount of this entry
      * @param amount bigdecimal amount
      * @return true if successful, false otherwise
+     * @throws IllegalArgumentException if the amount has more decimal places than the currency allows
      */
     public Boolean setAmount(BigDecimal amount) {
         if(isLocked()) return false;
+        this.amountUnits = Money.toMinorUnits(amount, currency);
         this.amount = amount;
         return true;
     }
@@ -254,11 +278,10 @@ public class JournalEntry {
      * Updates the amount of this entry by string value
      * @param amount amount
      * @return true if successful, false otherwise
+     * @throws IllegalArgumentException if the amount has more decimal places than the currency allows
      */
     public Boolean setAmount(String amount) {
-        if(isLocked()) return false;
-        this.amount = new BigDecimal(amount);
-        return true;
+        return setAmount(new BigDecimal(amount));
     }
 
     /**
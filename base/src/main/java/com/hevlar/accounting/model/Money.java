@@ -0,0 +1,111 @@
+package com.hevlar.accounting.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Fixed-point money arithmetic on longs, used by the balance and reporting engines to sum amounts without allocating.
+ * An amount is held as a count of the minor units of its currency, eg. cents for SGD and yen for JPY, according to
+ * {@link Currency#getDefaultFractionDigits()}. Amounts with more decimal places than the currency allows are rejected,
+ * and only the results of conversions between currencies are rounded, half even. All the arithmetic throws
+ * ArithmeticException on overflow instead of wrapping around.
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * Gets the number of decimal places of the minor units of the currency
+     * @param currency currency
+     * @return number of decimal places, 0 for currencies without minor units
+     */
+    public static int fractionDigits(Currency currency) {
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+
+    /**
+     * Converts the amount to minor units of the currency
+     * @param amount amount
+     * @param currency currency
+     * @return amount in minor units
+     * @throws IllegalArgumentException if the amount has more decimal places than the currency allows
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long toMinorUnits(BigDecimal amount, Currency currency) {
+        int digits = fractionDigits(currency);
+        if(amount.stripTrailingZeros().scale() > digits){
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " has more than " + digits + " decimal places for " + currency.getCurrencyCode());
+        }
+        return amount.setScale(digits, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts the result of a conversion to minor units of the currency, rounding it half even
+     * @param amount converted amount
+     * @param currency currency
+     * @return amount in minor units
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long roundToMinorUnits(BigDecimal amount, Currency currency) {
+        return amount.setScale(fractionDigits(currency), RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts the minor units of the currency to an amount
+     * @param units amount in minor units
+     * @param currency currency
+     * @return amount, with the number of decimal places of the currency
+     */
+    public static BigDecimal toBigDecimal(long units, Currency currency) {
+        return BigDecimal.valueOf(units, fractionDigits(currency));
+    }
+
+    /**
+     * Converts minor units of one currency to the minor units of another currency with the same value, eg. when
+     * both currencies are pegged, or for the amount of an entry in the currency of its account
+     * @param units amount in minor units of the source currency
+     * @param from source currency
+     * @param to target currency
+     * @return amount in minor units of the target currency
+     */
+    public static long rescale(long units, Currency from, Currency to) {
+        int fromDigits = fractionDigits(from);
+        int toDigits = fractionDigits(to);
+        if(fromDigits == toDigits) return units;
+        return roundToMinorUnits(BigDecimal.valueOf(units, fromDigits), to);
+    }
+
+    /**
+     * Adds two amounts in minor units
+     * @param a amount
+     * @param b amount
+     * @return sum
+     * @throws ArithmeticException on overflow
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Subtracts an amount from another, in minor units
+     * @param a amount
+     * @param b amount to subtract
+     * @return difference
+     * @throws ArithmeticException on overflow
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Negates an amount in minor units
+     * @param a amount
+     * @return negated amount
+     * @throws ArithmeticException on overflow
+     */
+    public static long negate(long a) {
+        return Math.negateExact(a);
+    }
+}
@@ -1,5 +1,8 @@
 package com.hevlar.accounting.model;
 
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
 /**
  * Recurrence - used for specifying recurring journal entries
  */
@@ -46,4 +49,46 @@ public enum Recurrence {
     Recurrence(String label) {
         this.label = label;
     }
+
+    /**
+     * Gets the date of an occurrence. Each occurrence is computed from the start date, so a monthly recurrence from
+     * the 31st falls on the last day of shorter months and returns to the 31st after them.
+     * @param start date of the first occurrence
+     * @param index index of the occurrence, 0 for the first occurrence
+     * @return date of the occurrence, or null if there is no such occurrence
+     */
+    public LocalDate occurrence(LocalDate start, long index) {
+        if(index < 0) return null;
+        switch (this){
+            case Y: return start.plusYears(index);
+            case M: return start.plusMonths(index);
+            case F: return start.plusWeeks(index * 2);
+            case W: return start.plusWeeks(index);
+            case D: return start.plusDays(index);
+            default: return index == 0 ? start : null;
+        }
+    }
+
+    /**
+     * Gets the index of the first occurrence on or after the date, without going through the earlier occurrences
+     * @param start date of the first occurrence
+     * @param date date to search from
+     * @return index of the occurrence, or -1 if there is no occurrence on or after the date
+     */
+    public long indexOnOrAfter(LocalDate start, LocalDate date) {
+        if(!date.isAfter(start)) return 0;
+        if(this == N) return -1;
+        long index;
+        switch (this){
+            case Y: index = ChronoUnit.YEARS.between(start, date); break;
+            case M: index = ChronoUnit.MONTHS.between(start, date); break;
+            case F: index = ChronoUnit.DAYS.between(start, date) / 14; break;
+            case W: index = ChronoUnit.DAYS.between(start, date) / 7; break;
+            default: index = ChronoUnit.DAYS.between(start, date);
+        }
+        // the estimate is off by at most one for the months of different lengths
+        while(occurrence(start, index).isBefore(date)) index++;
+        while(index > 0 && !occurrence(start, index - 1).isBefore(date)) index--;
+        return index;
+    }
 }
@@ -1,5 +1,7 @@
 package com.hevlar.accounting.repository;
 
+import com.hevlar.accounting.model.AccountGroup;
+
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -8,11 +10,14 @@ import java.time.LocalDate;
  * Entity object for persistence of Accounts, including IncomeStatementAccount, BalanceSheetAccount and CreditCardAccount
  */
 @Entity
+@Table(indexes = @Index(name = "idx_account_data_account_group", columnList = "account_group"))
 public class AccountData {
 
     @Id
     private String name;
-    private String accountGroup;
+    @Column(name = "account_group")
+    @Convert(converter = AccountGroupConverter.class)
+    private AccountGroup accountGroup;
     private LocalDate openDate;
     private String currency;
     private BigDecimal openBal;
@@ -20,14 +25,16 @@ public class AccountData {
     private Integer statementDay;
     private Integer dueDay;
     private Boolean lock;
+    @Version
+    private Long version;
 
-    public AccountData(String name, String accountGroup, Boolean lock) {
+    public AccountData(String name, AccountGroup accountGroup, Boolean lock) {
         this.name = name;
         this.accountGroup = accountGroup;
         this.lock = lock;
     }
 
-    public AccountData(String name, String accountGroup, LocalDate openDate, String currency, BigDecimal openBal, Boolean lock) {
+    public AccountData(String name, AccountGroup accountGroup, LocalDate openDate, String currency, BigDecimal openBal, Boolean lock) {
         this.name = name;
         this.accountGroup = accountGroup;
         this.openDate = openDate;
@@ -36,7 +43,7 @@ public class AccountData {
         this.lock = lock;
     }
 
-    public AccountData(String name, String accountGroup, LocalDate openDate, String currency, BigDecimal openBal, String bank, Integer statementDay, Integer dueDay, Boolean lock) {
+    public AccountData(String name, AccountGroup accountGroup, LocalDate openDate, String currency, BigDecimal openBal, String bank, Integer statementDay, Integer dueDay, Boolean lock) {
         this.name = name;
         this.accountGroup = accountGroup;
         this.openDate = openDate;
@@ -51,10 +58,28 @@ public class AccountData {
     public AccountData(){
     }
 
+    /**
+     * Creates a detached copy of this account data, which is not affected by later changes to this entity
+     * @return copy of this account data
+     */
+    public AccountData copy() {
+        AccountData copy = new AccountData(name, accountGroup, openDate, currency, openBal, bank, statementDay, dueDay, lock);
+        copy.version = version;
+        return copy;
+    }
+
     public Boolean isLocked() {
         return lock;
     }
 
+    /**
+     * Gets the version of this account data, which increases with every update
+     * @return version, or null if not known
+     */
+    public Long getVersion() {
+        return version;
+    }
+
     public String getBank() {
         return bank;
     }
@@ -71,7 +96,7 @@ public class AccountData {
         return name;
     }
 
-    public String getAccountGroup() {
+    public AccountGroup getAccountGroup() {
         return accountGroup;
     }
 
@@ -91,7 +116,7 @@ public class AccountData {
         this.name = name;
     }
 
-    public void setAccountGroup(String accountGroup) {
+    public void setAccountGroup(AccountGroup accountGroup) {
         this.accountGroup = accountGroup;
     }
 
@@ -122,4 +147,8 @@ public class AccountData {
     public void setLock(Boolean lock) {
         this.lock = lock;
     }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
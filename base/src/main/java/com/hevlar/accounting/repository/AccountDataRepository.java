@@ -1,13 +1,123 @@
 package com.hevlar.accounting.repository;
 
+import com.hevlar.accounting.model.AccountGroup;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.data.util.Streamable;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Repository for Account
  */
-public interface AccountDataRepository extends JpaRepository<AccountData, String> {
+public interface AccountDataRepository extends JpaRepository<AccountData, String>, BatchRepository<AccountData> {
     AccountData findByName(String name);
     Streamable<AccountData> findAllByBankNotNull();
-    Streamable<AccountData> findByAccountGroup(String accountGroup);
+    Streamable<AccountData> findByAccountGroup(AccountGroup accountGroup);
+
+    /**
+     * Gets which of the names are already used by an account, in one query
+     * @param names names to check
+     * @return the names that are already used
+     */
+    @Query("select a.name from AccountData a where a.name in :names")
+    List<String> findExistingNames(@Param("names") Collection<String> names);
+
+    /**
+     * Inserts the account if there is no account with its name, with one statement and without a select before it.
+     * If another transaction inserts the same name at the same time, the primary key still rejects the second insert.
+     * The insert joins the transaction of the caller, and the rejection does not mark that transaction for rollback.
+     * @param account new account, inserted with version 0
+     * @return 1 if inserted, 0 if the name is already used
+     * @throws DataIntegrityViolationException if the name was inserted at the same time
+     */
+    @RestResource(exported = false)
+    @Modifying
+    @Transactional(noRollbackFor = DataIntegrityViolationException.class)
+    @Query(value = "insert into account_data (name, account_group, open_date, currency, open_bal, bank, statement_day, due_day, lock, version) " +
+            "select :#{#account.name}, :#{#account.accountGroup.code}, :#{#account.openDate}, :#{#account.currency}, :#{#account.openBal}, " +
+            ":#{#account.bank}, :#{#account.statementDay}, :#{#account.dueDay}, :#{#account.isLocked()}, 0 " +
+            "from account_data where name = :#{#account.name} having count(*) = 0", nativeQuery = true)
+    int insertIfAbsent(@Param("account") AccountData account);
+
+    /**
+     * Updates the account with one statement if it is not locked, regardless of its version
+     * @param account account with the new values
+     * @return 1 if updated, 0 if the account is not found or locked
+     */
+    @RestResource(exported = false)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountData a set a.accountGroup = :#{#account.accountGroup}, a.openDate = :#{#account.openDate}, " +
+            "a.currency = :#{#account.currency}, a.openBal = :#{#account.openBal}, a.bank = :#{#account.bank}, " +
+            "a.statementDay = :#{#account.statementDay}, a.dueDay = :#{#account.dueDay}, a.lock = :#{#account.isLocked()}, " +
+            "a.version = a.version + 1 " +
+            "where a.name = :#{#account.name} and (a.lock = false or a.lock is null)")
+    int updateIfUnlocked(@Param("account") AccountData account);
+
+    /**
+     * Updates the account with one statement if it is not locked and still has the version of the account
+     * @param account account with the new values and the version it was read with
+     * @return 1 if updated, 0 if the account is not found, locked or changed since it was read
+     */
+    @RestResource(exported = false)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountData a set a.accountGroup = :#{#account.accountGroup}, a.openDate = :#{#account.openDate}, " +
+            "a.currency = :#{#account.currency}, a.openBal = :#{#account.openBal}, a.bank = :#{#account.bank}, " +
+            "a.statementDay = :#{#account.statementDay}, a.dueDay = :#{#account.dueDay}, a.lock = :#{#account.isLocked()}, " +
+            "a.version = a.version + 1 " +
+            "where a.name = :#{#account.name} and (a.lock = false or a.lock is null) and a.version = :#{#account.version}")
+    int updateIfUnlockedAndVersion(@Param("account") AccountData account);
+
+    /**
+     * Locks all the accounts with one update statement
+     * @return number of accounts locked
+     */
+    @RestResource(exported = false)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountData a set a.lock = true, a.version = a.version + 1 where a.lock = false or a.lock is null")
+    int lockAll();
+
+    /**
+     * Locks all the accounts of the account group with one update statement
+     * @param accountGroup account group
+     * @return number of accounts locked
+     */
+    @RestResource(exported = false)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountData a set a.lock = true, a.version = a.version + 1 where a.accountGroup = :accountGroup and (a.lock = false or a.lock is null)")
+    int lockByAccountGroup(@Param("accountGroup") AccountGroup accountGroup);
+
+    /**
+     * Locks the accounts with the names with one update statement
+     * @param names names of the accounts
+     * @return number of accounts locked
+     */
+    @RestResource(exported = false)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountData a set a.lock = true, a.version = a.version + 1 where a.name in :names and (a.lock = false or a.lock is null)")
+    int lockByNameIn(@Param("names") Collection<String> names);
+
+    /**
+     * Gets the first accounts in order of name, for keyset pagination
+     * @param pageable number of accounts, from the first page
+     * @return accounts
+     */
+    @RestResource(exported = false)
+    List<AccountData> findAllByOrderByNameAsc(Pageable pageable);
+
+    /**
+     * Gets the accounts after the name in order of name, for keyset pagination
+     * @param name name of the last account of the previous page
+     * @param pageable number of accounts, from the first page
+     * @return accounts
+     */
+    @RestResource(exported = false)
+    List<AccountData> findByNameGreaterThanOrderByNameAsc(String name, Pageable pageable);
 }
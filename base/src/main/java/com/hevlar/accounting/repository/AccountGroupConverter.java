@@ -0,0 +1,23 @@
+package com.hevlar.accounting.repository;
+
+import com.hevlar.accounting.model.AccountGroup;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Persists an AccountGroup as its compact code instead of its display label
+ */
+@Converter
+public class AccountGroupConverter implements AttributeConverter<AccountGroup, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(AccountGroup accountGroup) {
+        return accountGroup == null ? null : accountGroup.code;
+    }
+
+    @Override
+    public AccountGroup convertToEntityAttribute(Integer code) {
+        return code == null ? null : AccountGroup.fromCode(code);
+    }
+}
@@ -0,0 +1,21 @@
+package com.hevlar.accounting.repository;
+
+/**
+ * Repository fragment for inserting many new entities with JDBC batching
+ * @param <T> entity type
+ */
+public interface BatchRepository<T> {
+
+    /**
+     * Number of statements sent to the database in one JDBC batch
+     */
+    int BATCH_SIZE = 50;
+
+    /**
+     * Inserts the new entities, flushing them in batches of BATCH_SIZE. Unlike saveAll, there is no select to check if
+     * each entity already exists, so the caller must make sure that none of them does.
+     * The persistence context is cleared after every batch, so the entities are detached once this returns.
+     * @param entities new entities to insert
+     */
+    void persistAll(Iterable<T> entities);
+}
@@ -0,0 +1,39 @@
+package com.hevlar.accounting.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Implementation of the batch repository fragment, persisting through the entity manager
+ * @param <T> entity type
+ */
+public class BatchRepositoryImpl<T> implements BatchRepository<T> {
+
+    private final EntityManager entityManager;
+
+    /**
+     * Default constructor
+     * @param entityManager shared entity manager
+     */
+    public BatchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @Transactional
+    public void persistAll(Iterable<T> entities) {
+        int count = 0;
+        for(T entity : entities){
+            entityManager.persist(entity);
+            if(++count % BATCH_SIZE == 0){
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        if(count % BATCH_SIZE != 0){
+            entityManager.flush();
+            entityManager.clear();
+        }
+    }
+}
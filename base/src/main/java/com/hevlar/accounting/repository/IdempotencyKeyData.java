@@ -0,0 +1,36 @@
+package com.hevlar.accounting.repository;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Entity object for persistence of the idempotency keys of the journal entries posted with one, keyed by the unique key
+ */
+@Entity
+@Table(name = "idempotency_key")
+public class IdempotencyKeyData {
+
+    @Id
+    @Column(name = "idempotency_key", length = 255)
+    private String idempotencyKey;
+    @Column(name = "journal_id", nullable = false)
+    private Long journalId;
+
+    public IdempotencyKeyData(String idempotencyKey, Long journalId) {
+        this.idempotencyKey = idempotencyKey;
+        this.journalId = journalId;
+    }
+
+    public IdempotencyKeyData(){
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public Long getJournalId() {
+        return journalId;
+    }
+}
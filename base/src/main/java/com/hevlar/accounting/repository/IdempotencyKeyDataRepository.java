@@ -0,0 +1,27 @@
+package com.hevlar.accounting.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import javax.persistence.QueryHint;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * Repository for the idempotency keys of the journal entries, not exported through REST
+ */
+@RepositoryRestResource(exported = false)
+public interface IdempotencyKeyDataRepository extends JpaRepository<IdempotencyKeyData, String>, BatchRepository<IdempotencyKeyData> {
+
+    /**
+     * Streams all the keys, without loading the entities.
+     * The stream must be consumed and closed within a transaction.
+     * @return idempotency keys
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select k.idempotencyKey from IdempotencyKeyData k")
+    Stream<String> streamKeys();
+}
@@ -0,0 +1,166 @@
+package com.hevlar.accounting.repository;
+
+import com.hevlar.accounting.model.Recurrence;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Entity object for persistence of JournalEntry. The debit and credit accounts are referenced by their names, so that
+ * loading entries does not load their accounts. Writes are published by {@link JournalEntryDataListener}.
+ */
+@Entity
+@EntityListeners(JournalEntryDataListener.class)
+@Table(indexes = {
+        @Index(name = "idx_journal_entry_data_tx_date_journal_id", columnList = "tx_date, journal_id"),
+        @Index(name = "idx_journal_entry_data_post_date", columnList = "post_date"),
+        @Index(name = "idx_journal_entry_data_debit_account", columnList = "debit_account"),
+        @Index(name = "idx_journal_entry_data_credit_account", columnList = "credit_account")
+})
+public class JournalEntryData {
+
+    @Id
+    private Long journalId;
+    @Column(name = "tx_date")
+    private LocalDate txDate;
+    private String item;
+    @Enumerated(EnumType.STRING)
+    private Recurrence recurrence;
+    @Convert(converter = TagsConverter.class)
+    private String[] tags;
+    private String currency;
+    private BigDecimal amount;
+    @Column(name = "debit_account")
+    private String debitAccount;
+    @Column(name = "credit_account")
+    private String creditAccount;
+    @Column(name = "post_date")
+    private LocalDate postDate;
+    private LocalDate debitStatementDate;
+    private LocalDate creditStatementDate;
+    private Boolean locked;
+
+    public JournalEntryData(Long journalId, LocalDate txDate, String item, Recurrence recurrence, String[] tags, String currency, BigDecimal amount, String debitAccount, String creditAccount, LocalDate postDate, LocalDate debitStatementDate, LocalDate creditStatementDate, Boolean locked) {
+        this.journalId = journalId;
+        this.txDate = txDate;
+        this.item = item;
+        this.recurrence = recurrence;
+        this.tags = tags;
+        this.currency = currency;
+        this.amount = amount;
+        this.debitAccount = debitAccount;
+        this.creditAccount = creditAccount;
+        this.postDate = postDate;
+        this.debitStatementDate = debitStatementDate;
+        this.creditStatementDate = creditStatementDate;
+        this.locked = locked;
+    }
+
+    public JournalEntryData(){
+    }
+
+    public Long getJournalId() {
+        return journalId;
+    }
+
+    public LocalDate getTxDate() {
+        return txDate;
+    }
+
+    public String getItem() {
+        return item;
+    }
+
+    public Recurrence getRecurrence() {
+        return recurrence;
+    }
+
+    public String[] getTags() {
+        return tags;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getDebitAccount() {
+        return debitAccount;
+    }
+
+    public String getCreditAccount() {
+        return creditAccount;
+    }
+
+    public LocalDate getPostDate() {
+        return postDate;
+    }
+
+    public LocalDate getDebitStatementDate() {
+        return debitStatementDate;
+    }
+
+    public LocalDate getCreditStatementDate() {
+        return creditStatementDate;
+    }
+
+    public Boolean isLocked() {
+        return locked;
+    }
+
+    public void setJournalId(Long journalId) {
+        this.journalId = journalId;
+    }
+
+    public void setTxDate(LocalDate txDate) {
+        this.txDate = txDate;
+    }
+
+    public void setItem(String item) {
+        this.item = item;
+    }
+
+    public void setRecurrence(Recurrence recurrence) {
+        this.recurrence = recurrence;
+    }
+
+    public void setTags(String[] tags) {
+        this.tags = tags;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public void setDebitAccount(String debitAccount) {
+        this.debitAccount = debitAccount;
+    }
+
+    public void setCreditAccount(String creditAccount) {
+        this.creditAccount = creditAccount;
+    }
+
+    public void setPostDate(LocalDate postDate) {
+        this.postDate = postDate;
+    }
+
+    public void setDebitStatementDate(LocalDate debitStatementDate) {
+        this.debitStatementDate = debitStatementDate;
+    }
+
+    public void setCreditStatementDate(LocalDate creditStatementDate) {
+        this.creditStatementDate = creditStatementDate;
+    }
+
+    public void setLocked(Boolean locked) {
+        this.locked = locked;
+    }
+}
@@ -0,0 +1,65 @@
+package com.hevlar.accounting.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Published by {@link JournalEntryDataListener} when a journal entry row is written or removed, with the indexed values
+ * of the row as they were written. Listeners should handle it after the transaction commits, with a
+ * {@link org.springframework.transaction.event.TransactionalEventListener}.
+ */
+public class JournalEntryDataEvent {
+
+    private final Long journalId;
+    private final LocalDate txDate;
+    private final String item;
+    private final String[] tags;
+    private final boolean removed;
+
+    private JournalEntryDataEvent(Long journalId, LocalDate txDate, String item, String[] tags, boolean removed) {
+        this.journalId = journalId;
+        this.txDate = txDate;
+        this.item = item;
+        this.tags = tags;
+        this.removed = removed;
+    }
+
+    /**
+     * Creates the event of a row which is inserted or updated
+     * @param journalEntryData row
+     * @return event
+     */
+    public static JournalEntryDataEvent written(JournalEntryData journalEntryData) {
+        String[] tags = journalEntryData.getTags();
+        return new JournalEntryDataEvent(journalEntryData.getJournalId(), journalEntryData.getTxDate(), journalEntryData.getItem(),
+                tags == null ? null : tags.clone(), false);
+    }
+
+    /**
+     * Creates the event of a row which is deleted
+     * @param journalEntryData row
+     * @return event
+     */
+    public static JournalEntryDataEvent removed(JournalEntryData journalEntryData) {
+        return new JournalEntryDataEvent(journalEntryData.getJournalId(), null, null, null, true);
+    }
+
+    public Long getJournalId() {
+        return journalId;
+    }
+
+    public LocalDate getTxDate() {
+        return txDate;
+    }
+
+    public String getItem() {
+        return item;
+    }
+
+    public String[] getTags() {
+        return tags;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+}
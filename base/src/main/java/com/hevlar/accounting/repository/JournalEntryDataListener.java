@@ -0,0 +1,36 @@
+package com.hevlar.accounting.repository;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Entity listener of the journal entry rows, publishing a {@link JournalEntryDataEvent} for each row written or removed
+ * through the persistence context, whichever service wrote it, so that the in-memory indexes of the entries stay up to
+ * date. Bulk JPQL and native statements bypass it. Created by Hibernate through the Spring bean container.
+ */
+public class JournalEntryDataListener {
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * Default constructor
+     * @param applicationEventPublisher publisher of the events
+     */
+    public JournalEntryDataListener(ApplicationEventPublisher applicationEventPublisher) {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    void written(JournalEntryData journalEntryData) {
+        applicationEventPublisher.publishEvent(JournalEntryDataEvent.written(journalEntryData));
+    }
+
+    @PostRemove
+    void removed(JournalEntryData journalEntryData) {
+        applicationEventPublisher.publishEvent(JournalEntryDataEvent.removed(journalEntryData));
+    }
+}
@@ -0,0 +1,141 @@
+package com.hevlar.accounting.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.data.util.Streamable;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+/**
+ * Repository for JournalEntry, not exported through REST, so that entries are only written by posting them
+ */
+@RepositoryRestResource(exported = false)
+public interface JournalEntryDataRepository extends JpaRepository<JournalEntryData, Long>, BatchRepository<JournalEntryData> {
+    Streamable<JournalEntryData> findByTxDateBetween(LocalDate from, LocalDate to);
+    Streamable<JournalEntryData> findByPostDateBetween(LocalDate from, LocalDate to);
+    Streamable<JournalEntryData> findByDebitAccount(String debitAccount);
+    Streamable<JournalEntryData> findByCreditAccount(String creditAccount);
+
+    /**
+     * Gets the entries where the account is either debited or credited
+     * @param account name of the account
+     * @return journal entries
+     */
+    @Query("select j from JournalEntryData j where j.debitAccount = :account or j.creditAccount = :account")
+    Streamable<JournalEntryData> findByAccount(@Param("account") String account);
+
+    /**
+     * Gets which of the journal ids are already used, in one query
+     * @param journalIds journal ids to check
+     * @return the journal ids that are already used
+     */
+    @Query("select j.journalId from JournalEntryData j where j.journalId in :journalIds")
+    List<Long> findExistingJournalIds(@Param("journalIds") Collection<Long> journalIds);
+
+    /**
+     * Streams the entries where any of the accounts is either debited or credited, in a single query.
+     * The stream must be consumed and closed within a transaction.
+     * @param accounts names of the accounts
+     * @return journal entries
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select j from JournalEntryData j where j.debitAccount in :accounts or j.creditAccount in :accounts")
+    Stream<JournalEntryData> streamByAccountIn(@Param("accounts") Collection<String> accounts);
+
+    /**
+     * Streams the entries with transaction dates within the period, in order of transaction date and journal id, from
+     * a database cursor. The entries are read-only, so they are not checked for changes at flush.
+     * The stream must be consumed and closed within a transaction.
+     * @param from first date, inclusive
+     * @param to last date, inclusive
+     * @return journal entries
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select j from JournalEntryData j where j.txDate between :from and :to order by j.txDate, j.journalId")
+    Stream<JournalEntryData> streamByTxDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Streams all the entries from a database cursor, eg. to load the balances. The entries are read-only, so they are
+     * not checked for changes at flush.
+     * The stream must be consumed and closed within a transaction.
+     * @return journal entries
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select j from JournalEntryData j")
+    Stream<JournalEntryData> streamAll();
+
+    /**
+     * Gets the largest journal id used
+     * @return largest journal id, or null if there are no entries
+     */
+    @Query("select max(j.journalId) from JournalEntryData j")
+    Long findMaxJournalId();
+
+    /**
+     * Streams the journal id and item of all the entries, without loading the entries.
+     * The stream must be consumed and closed within a transaction.
+     * @return journal ids and items
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select j.journalId as journalId, j.item as item from JournalEntryData j")
+    Stream<JournalItem> streamItems();
+
+    /**
+     * Streams the journal id, tags and transaction date of all the entries, without loading the entries.
+     * The stream must be consumed and closed within a transaction.
+     * @return journal ids, tags and transaction dates
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select j.journalId as journalId, j.tags as tags, j.txDate as txDate from JournalEntryData j")
+    Stream<JournalTags> streamTags();
+
+    /**
+     * Gets the first entries in order of transaction date and journal id, for keyset pagination
+     * @param pageable number of entries, from the first page
+     * @return journal entries
+     */
+    @RestResource(exported = false)
+    @Query("select j from JournalEntryData j order by j.txDate, j.journalId")
+    List<JournalEntryData> findFirstPage(Pageable pageable);
+
+    /**
+     * Gets the entries after the key in order of transaction date and journal id, for keyset pagination.
+     * The predicate bounds the transaction date on its own, so the scan of the date index starts at the key.
+     * @param txDate transaction date of the last entry of the previous page
+     * @param journalId journal id of the last entry of the previous page
+     * @param pageable number of entries, from the first page
+     * @return journal entries
+     */
+    @RestResource(exported = false)
+    @Query("select j from JournalEntryData j where j.txDate >= :txDate and (j.txDate > :txDate or j.journalId > :journalId) order by j.txDate, j.journalId")
+    List<JournalEntryData> findPageAfter(@Param("txDate") LocalDate txDate, @Param("journalId") Long journalId, Pageable pageable);
+
+    /**
+     * Projection of the journal id and item of an entry
+     */
+    interface JournalItem {
+        Long getJournalId();
+        String getItem();
+    }
+
+    /**
+     * Projection of the journal id, tags and transaction date of an entry
+     */
+    interface JournalTags {
+        Long getJournalId();
+        String[] getTags();
+        LocalDate getTxDate();
+    }
+}
@@ -0,0 +1,486 @@
+package com.hevlar.accounting.repository;
+
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.util.ModelMapping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of journal entries in memory-mapped segment files, which is the durable record of the posted entries.
+ * Appending is a sequential write into the mapped segment, and a single flusher thread forces the segment to disk for
+ * all the appends made since its last flush, so concurrent posters share one fsync (group commit).
+ * Each record is its payload length, the CRC32 of the payload and the encoded entry, with the idempotency key it was
+ * posted with. A record with a bad checksum is a
+ * torn write from a crash, and it ends the log on recovery. Records are numbered by their sequence, starting from 0,
+ * and each segment file is named by the sequence of its first record.
+ * If a segment cannot be forced to disk, the log fails: the appends waiting for the flush and all later appends are
+ * rejected, the records which were not forced are cleared from the segment, and the log must be reopened, which
+ * recovers it from what is on disk.
+ */
+public class JournalLog implements Closeable {
+
+    /**
+     * Default size of each segment file
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final int HEADER_SIZE = 8;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{20})\\.log");
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Object lock = new Object();
+    private final Thread flusher;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long nextSequence;
+    private List<PendingAppend> pending = new ArrayList<>();
+    private volatile long durableSequence;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    /**
+     * Opens the log in the directory with the default segment size, recovering the existing segments
+     * @param directory directory of the segment files
+     * @throws IOException if the log cannot be opened
+     */
+    public JournalLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the log in the directory, recovering the existing segments
+     * @param directory directory of the segment files
+     * @param segmentSize size of each segment file
+     * @throws IOException if the log cannot be opened
+     */
+    public JournalLog(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        recover();
+        this.durableSequence = nextSequence;
+        this.flusher = new Thread(this::flushLoop, "journal-log-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Appends the journal entry to the log
+     * @param journalEntry journal entry
+     * @return future completed with the sequence of the record once it is forced to disk
+     */
+    public CompletableFuture<Long> append(JournalEntry journalEntry) {
+        return append(ModelMapping.toJournalEntryData(journalEntry));
+    }
+
+    /**
+     * Appends the journal entry to the log
+     * @param journalEntryData journal entry
+     * @return future completed with the sequence of the record once it is forced to disk
+     * @throws IllegalStateException if the log is closed, or failed to force a segment to disk
+     */
+    public CompletableFuture<Long> append(JournalEntryData journalEntryData) {
+        return appendAll(List.of(new JournalLogRecord(journalEntryData, null)));
+    }
+
+    /**
+     * Appends the records to the log together, so that they are forced to disk by the same flush unless a segment is
+     * rolled between them
+     * @param records records to append
+     * @return future completed with the sequence of the last record once all the records are forced to disk
+     * @throws IllegalStateException if the log is closed, or failed to force a segment to disk
+     */
+    public CompletableFuture<Long> appendAll(List<JournalLogRecord> records) {
+        if(records.isEmpty()) throw new IllegalArgumentException("No records to append");
+        List<byte[]> payloads = new ArrayList<>(records.size());
+        int[] checksums = new int[records.size()];
+        for(JournalLogRecord record : records){
+            byte[] payload = JournalLogCodec.encode(record.getJournalEntryData(), record.getIdempotencyKey());
+            // room for the record and for the zero length that marks the end of the segment
+            if(HEADER_SIZE + payload.length + Integer.BYTES > segmentSize) throw new IllegalArgumentException("Journal entry is larger than the segment size");
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            checksums[payloads.size()] = (int) crc.getValue();
+            payloads.add(payload);
+        }
+
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        List<PendingAppend> failed;
+        RuntimeException rollFailure;
+        synchronized (lock) {
+            if(closed) throw new IllegalStateException("Journal log is closed");
+            checkNotFailed();
+            try {
+                for(int i = 0; i < payloads.size(); i++){
+                    byte[] payload = payloads.get(i);
+                    if(segment.remaining() < HEADER_SIZE + payload.length + Integer.BYTES) roll();
+                    int position = segment.position();
+                    segment.putInt(payload.length);
+                    segment.putInt(checksums[i]);
+                    segment.put(payload);
+                    // only the last record completes the future, which is after all the others are durable
+                    pending.add(new PendingAppend(nextSequence++, i == payloads.size() - 1 ? future : null, segment, position));
+                }
+                lock.notifyAll();
+                return future;
+            } catch (RuntimeException e) {
+                rollFailure = e;
+                failed = fail(e, List.of());
+            }
+        }
+        failed.forEach(append -> append.completeExceptionally(rollFailure));
+        throw rollFailure;
+    }
+
+    /**
+     * Appends the records to the log together, and waits until they are forced to disk
+     * @param records records to append
+     * @return sequence of the last record
+     * @throws IllegalStateException if the log is closed, or failed to force a segment to disk, or if interrupted
+     */
+    public long appendAllDurably(List<JournalLogRecord> records) {
+        try {
+            return appendAll(records).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while appending to the journal log", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Checks that the log has not failed to force a segment to disk
+     * @throws IllegalStateException if it failed, until the log is reopened
+     */
+    public void checkNotFailed() {
+        Throwable cause = failure;
+        if(cause != null) throw new IllegalStateException("Journal log failed to force a segment to disk and must be reopened", cause);
+    }
+
+    /**
+     * Gets the sequence of the next record, ie the number of records that are appended
+     * @return next sequence
+     */
+    public long getNextSequence() {
+        synchronized (lock) {
+            return nextSequence;
+        }
+    }
+
+    /**
+     * Gets the sequence after the last record that is forced to disk. All records before it survive a crash.
+     * @return durable sequence
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Waits until the record of the sequence is forced to disk
+     * @param sequence sequence of the record
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true if the record is durable, false if the wait timed out or the log is closed or failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitDurable(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while(durableSequence <= sequence){
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0 || closed || failure != null) return durableSequence > sequence;
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Creates a reader of the durable records, starting from the sequence
+     * @param fromSequence sequence of the first record to read
+     * @return reader
+     */
+    public Reader reader(long fromSequence) {
+        return new Reader(fromSequence);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if(closed) return;
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            try {
+                segment.force();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while(true){
+            List<PendingAppend> batch;
+            MappedByteBuffer toForce;
+            synchronized (lock) {
+                while(pending.isEmpty() && !closed){
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if(pending.isEmpty()) return;
+                batch = pending;
+                pending = new ArrayList<>();
+                toForce = segment;
+            }
+            // records of the batch in earlier segments were forced when the segment was rolled
+            try {
+                force(toForce);
+            } catch (RuntimeException e) {
+                List<PendingAppend> failed;
+                synchronized (lock) {
+                    failed = fail(e, batch);
+                }
+                failed.forEach(append -> append.completeExceptionally(e));
+                // the log stays failed until it is reopened, so nothing more is flushed
+                return;
+            }
+            long durable = batch.get(batch.size() - 1).sequence + 1;
+            synchronized (lock) {
+                durableSequence = durable;
+                lock.notifyAll();
+            }
+            batch.forEach(PendingAppend::complete);
+        }
+    }
+
+    /**
+     * Forces the segment to disk, for the flusher
+     * @param toForce segment
+     */
+    void force(MappedByteBuffer toForce) {
+        toForce.force();
+    }
+
+    /**
+     * Fails the log, with the lock held. The durable sequence is not advanced any more, and the records which were not
+     * forced are cleared from the current segment, so that the ones still in memory are not written out by a later
+     * force and replayed on recovery.
+     * @param cause failure to force a segment to disk
+     * @param batch appends taken by the flusher, which were not forced
+     * @return appends to complete exceptionally, outside the lock
+     */
+    private List<PendingAppend> fail(Throwable cause, List<PendingAppend> batch) {
+        failure = cause;
+        List<PendingAppend> failed = new ArrayList<>(batch);
+        failed.addAll(pending);
+        pending = new ArrayList<>();
+        for(PendingAppend append : failed){
+            if(append.segment != segment) continue;
+            for(int i = append.position; i < segment.position(); i++) segment.put(i, (byte) 0);
+            segment.position(append.position);
+            break;
+        }
+        lock.notifyAll();
+        return failed;
+    }
+
+    private void roll() {
+        try {
+            segment.force();
+            channel.close();
+            openSegment(nextSequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        channel = FileChannel.open(segmentPath(firstSequence), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentSize));
+    }
+
+    private void recover() throws IOException {
+        List<Long> segments = listSegments();
+        long firstSequence = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        openSegment(firstSequence);
+
+        long count = 0;
+        while(validRecordAt(segment)){
+            segment.position(segment.position() + HEADER_SIZE + segment.getInt(segment.position()));
+            count++;
+        }
+        // clear whatever a torn write left behind, so that it is never read as a record
+        int end = segment.position();
+        for(int i = end; i < segment.limit(); i++) segment.put(i, (byte) 0);
+        segment.force();
+        nextSequence = firstSequence + count;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("journal-%020d.log", firstSequence));
+    }
+
+    private static boolean validRecordAt(ByteBuffer buffer) {
+        int position = buffer.position();
+        if(buffer.limit() - position < HEADER_SIZE) return false;
+        int length = buffer.getInt(position);
+        if(length <= 0 || length > buffer.limit() - position - HEADER_SIZE) return false;
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(position + HEADER_SIZE).limit(position + HEADER_SIZE + length);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == buffer.getInt(position + Integer.BYTES);
+    }
+
+    /**
+     * Sequential reader of the durable records of the log, used to fill the journal tables and for recovery.
+     * A reader is not thread safe.
+     */
+    public class Reader {
+
+        private long sequence;
+        private ByteBuffer buffer;
+
+        private Reader(long fromSequence) {
+            this.sequence = fromSequence;
+        }
+
+        /**
+         * Gets the sequence of the next record to be read
+         * @return sequence
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Moves the reader back or forward to the sequence
+         * @param sequence sequence of the next record to read
+         */
+        public void rewind(long sequence) {
+            this.sequence = sequence;
+            this.buffer = null;
+        }
+
+        /**
+         * Reads the next durable journal entries
+         * @param maxRecords maximum number of records to read
+         * @return journal entries read, empty if there are no more durable records
+         */
+        public List<JournalEntryData> next(int maxRecords) {
+            return nextRecords(maxRecords).stream().map(JournalLogRecord::getJournalEntryData).collect(Collectors.toList());
+        }
+
+        /**
+         * Reads the next durable records, with their idempotency keys
+         * @param maxRecords maximum number of records to read
+         * @return records read, empty if there are no more durable records
+         */
+        public List<JournalLogRecord> nextRecords(int maxRecords) {
+            List<JournalLogRecord> records = new ArrayList<>();
+            long limit = durableSequence;
+            try {
+                while(records.size() < maxRecords && sequence < limit){
+                    if(buffer == null) seek();
+                    if(!validRecordAt(buffer)){
+                        // the rest of the records are in the next segment, which starts with this sequence
+                        buffer = map(segmentPath(sequence));
+                        if(!validRecordAt(buffer)) throw new IllegalStateException("Journal log has no record " + sequence);
+                    }
+                    int length = buffer.getInt(buffer.position());
+                    ByteBuffer payload = buffer.duplicate();
+                    payload.position(buffer.position() + HEADER_SIZE).limit(buffer.position() + HEADER_SIZE + length);
+                    records.add(JournalLogCodec.decodeRecord(payload));
+                    buffer.position(buffer.position() + HEADER_SIZE + length);
+                    sequence++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return records;
+        }
+
+        private void seek() throws IOException {
+            long firstSequence = 0;
+            for(long segmentSequence : listSegments()){
+                if(segmentSequence <= sequence) firstSequence = segmentSequence;
+            }
+            buffer = map(segmentPath(firstSequence));
+            for(long skip = firstSequence; skip < sequence; skip++){
+                if(!validRecordAt(buffer)) throw new IllegalStateException("Journal log has no record " + sequence);
+                buffer.position(buffer.position() + HEADER_SIZE + buffer.getInt(buffer.position()));
+            }
+        }
+
+        private ByteBuffer map(Path segmentPath) throws IOException {
+            try (FileChannel segmentChannel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+                return segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+            }
+        }
+    }
+
+    private static class PendingAppend {
+        private final long sequence;
+        private final CompletableFuture<Long> future;
+        private final MappedByteBuffer segment;
+        private final int position;
+
+        private PendingAppend(long sequence, CompletableFuture<Long> future, MappedByteBuffer segment, int position) {
+            this.sequence = sequence;
+            this.future = future;
+            this.segment = segment;
+            this.position = position;
+        }
+
+        private void complete() {
+            if(future != null) future.complete(sequence);
+        }
+
+        private void completeExceptionally(Throwable cause) {
+            if(future != null) future.completeExceptionally(cause);
+        }
+    }
+}
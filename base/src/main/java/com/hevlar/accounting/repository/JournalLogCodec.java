@@ -0,0 +1,119 @@
+package com.hevlar.accounting.repository;
+
+import com.hevlar.accounting.model.Recurrence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Binary encoding of a journal entry in the journal log. Strings are length prefixed UTF-8, with length -1 for null,
+ * and dates are epoch days, with Long.MIN_VALUE for null. The idempotency key of the entry, if any, is the last field,
+ * so a record without one is the encoding of the entry alone.
+ */
+final class JournalLogCodec {
+
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    private JournalLogCodec() {
+    }
+
+    static byte[] encode(JournalEntryData journalEntryData) {
+        return encode(journalEntryData, null);
+    }
+
+    static byte[] encode(JournalEntryData journalEntryData, String idempotencyKey) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(journalEntryData.getJournalId());
+            writeDate(out, journalEntryData.getTxDate());
+            writeString(out, journalEntryData.getItem());
+            writeString(out, journalEntryData.getRecurrence() == null ? null : journalEntryData.getRecurrence().name());
+            String[] tags = journalEntryData.getTags();
+            out.writeInt(tags == null ? -1 : tags.length);
+            if(tags != null){
+                for(String tag : tags) writeString(out, tag);
+            }
+            writeString(out, journalEntryData.getCurrency());
+            BigDecimal amount = journalEntryData.getAmount();
+            byte[] unscaled = amount.unscaledValue().toByteArray();
+            out.writeInt(amount.scale());
+            out.writeInt(unscaled.length);
+            out.write(unscaled);
+            writeString(out, journalEntryData.getDebitAccount());
+            writeString(out, journalEntryData.getCreditAccount());
+            writeDate(out, journalEntryData.getPostDate());
+            writeDate(out, journalEntryData.getDebitStatementDate());
+            writeDate(out, journalEntryData.getCreditStatementDate());
+            out.writeBoolean(Boolean.TRUE.equals(journalEntryData.isLocked()));
+            if(idempotencyKey != null) writeString(out, idempotencyKey);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JournalLogRecord decodeRecord(ByteBuffer in) {
+        JournalEntryData journalEntryData = decode(in);
+        return new JournalLogRecord(journalEntryData, in.hasRemaining() ? readString(in) : null);
+    }
+
+    static JournalEntryData decode(ByteBuffer in) {
+        long journalId = in.getLong();
+        LocalDate txDate = readDate(in);
+        String item = readString(in);
+        String recurrence = readString(in);
+        int tagCount = in.getInt();
+        String[] tags = null;
+        if(tagCount >= 0){
+            tags = new String[tagCount];
+            for(int i = 0; i < tagCount; i++) tags[i] = readString(in);
+        }
+        String currency = readString(in);
+        int scale = in.getInt();
+        byte[] unscaled = new byte[in.getInt()];
+        in.get(unscaled);
+        BigDecimal amount = new BigDecimal(new BigInteger(unscaled), scale);
+        String debitAccount = readString(in);
+        String creditAccount = readString(in);
+        LocalDate postDate = readDate(in);
+        LocalDate debitStatementDate = readDate(in);
+        LocalDate creditStatementDate = readDate(in);
+        boolean locked = in.get() != 0;
+        return new JournalEntryData(journalId, txDate, item, recurrence == null ? null : Recurrence.valueOf(recurrence),
+                tags, currency, amount, debitAccount, creditAccount, postDate, debitStatementDate, creditStatementDate, locked);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if(value == null){
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if(length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeLong(date == null ? NULL_DATE : date.toEpochDay());
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
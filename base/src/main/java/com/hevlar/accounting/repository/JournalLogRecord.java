@@ -0,0 +1,28 @@
+package com.hevlar.accounting.repository;
+
+/**
+ * Record of the journal log, a journal entry with the idempotency key it was posted with, if any
+ */
+public class JournalLogRecord {
+
+    private final JournalEntryData journalEntryData;
+    private final String idempotencyKey;
+
+    /**
+     * Default constructor
+     * @param journalEntryData journal entry
+     * @param idempotencyKey key the entry was posted with, or null
+     */
+    public JournalLogRecord(JournalEntryData journalEntryData, String idempotencyKey) {
+        this.journalEntryData = journalEntryData;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public JournalEntryData getJournalEntryData() {
+        return journalEntryData;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+}
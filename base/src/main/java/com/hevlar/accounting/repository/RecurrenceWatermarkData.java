@@ -0,0 +1,37 @@
+package com.hevlar.accounting.repository;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Entity object for persistence of the watermarks of the recurring journal entries, keyed by the journal id of the
+ * recurring entry, with the index of its last occurrence posted
+ */
+@Entity
+@Table(name = "recurrence_watermark")
+public class RecurrenceWatermarkData {
+
+    @Id
+    @Column(name = "journal_id")
+    private Long journalId;
+    @Column(name = "last_index", nullable = false)
+    private long lastIndex;
+
+    public RecurrenceWatermarkData(Long journalId, long lastIndex) {
+        this.journalId = journalId;
+        this.lastIndex = lastIndex;
+    }
+
+    public RecurrenceWatermarkData(){
+    }
+
+    public Long getJournalId() {
+        return journalId;
+    }
+
+    public long getLastIndex() {
+        return lastIndex;
+    }
+}
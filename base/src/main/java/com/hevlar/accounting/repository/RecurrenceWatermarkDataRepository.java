@@ -0,0 +1,11 @@
+package com.hevlar.accounting.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+/**
+ * Repository for the watermarks of the recurring journal entries, not exported through REST
+ */
+@RepositoryRestResource(exported = false)
+public interface RecurrenceWatermarkDataRepository extends JpaRepository<RecurrenceWatermarkData, Long> {
+}
@@ -0,0 +1,39 @@
+package com.hevlar.accounting.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Persists the tags of a journal entry as one column, holding a JSON array of the tags so that tags with commas and
+ * empty arrays are read back as they were written. Columns written as comma separated tags before are still read.
+ */
+@Converter
+public class TagsConverter implements AttributeConverter<String[], String> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String LEGACY_SEPARATOR = ",";
+
+    @Override
+    public String convertToDatabaseColumn(String[] tags) {
+        if(tags == null) return null;
+        try {
+            return OBJECT_MAPPER.writeValueAsString(tags);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Tags cannot be written", e);
+        }
+    }
+
+    @Override
+    public String[] convertToEntityAttribute(String tags) {
+        if(tags == null) return null;
+        if(!tags.startsWith("[")) return tags.isEmpty() ? new String[0] : tags.split(LEGACY_SEPARATOR);
+        try {
+            return OBJECT_MAPPER.readValue(tags, String[].class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Tags cannot be read: " + tags, e);
+        }
+    }
+}
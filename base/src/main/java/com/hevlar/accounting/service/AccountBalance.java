@@ -0,0 +1,94 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.model.EntryType;
+import com.hevlar.accounting.model.Money;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Balance of one account in the financial statements, in minor units of the currency of the statements
+ */
+public class AccountBalance {
+
+    private final String name;
+    private final AccountGroup accountGroup;
+    private final Currency currency;
+    private final long balance;
+    private final long change;
+
+    /**
+     * Default constructor
+     * @param name name of the account
+     * @param accountGroup account group of the account
+     * @param currency currency of the statements
+     * @param balance balance at the end of the period, in minor units
+     * @param change change of the balance within the period, in minor units
+     */
+    public AccountBalance(String name, AccountGroup accountGroup, Currency currency, long balance, long change) {
+        this.name = name;
+        this.accountGroup = accountGroup;
+        this.currency = currency;
+        this.balance = balance;
+        this.change = change;
+    }
+
+    /**
+     * Gets the name of the account
+     * @return name of the account
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the account group of the account
+     * @return account group
+     */
+    public AccountGroup getAccountGroup() {
+        return accountGroup;
+    }
+
+    /**
+     * Gets the balance at the end of the period, in the direction of the account group
+     * @return balance
+     */
+    public BigDecimal getBalance() {
+        return Money.toBigDecimal(balance, currency);
+    }
+
+    /**
+     * Gets the balance at the end of the period in minor units
+     * @return balance in minor units
+     */
+    public long getBalanceUnits() {
+        return balance;
+    }
+
+    /**
+     * Gets the change of the balance within the period, in the direction of the account group
+     * @return change of the balance
+     */
+    public BigDecimal getChange() {
+        return Money.toBigDecimal(change, currency);
+    }
+
+    /**
+     * Gets the change of the balance within the period in minor units
+     * @return change of the balance in minor units
+     */
+    public long getChangeUnits() {
+        return change;
+    }
+
+    /**
+     * Gets the side of the trial balance which the balance is on. A negative balance is on the opposite side of the
+     * entry type of its account group.
+     * @return Debit or Credit
+     */
+    public EntryType getEntryType() {
+        if(balance >= 0) return accountGroup.entryType;
+        return accountGroup.entryType == EntryType.DEBIT ? EntryType.CREDIT : EntryType.DEBIT;
+    }
+}
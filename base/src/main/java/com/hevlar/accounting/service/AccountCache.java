@@ -0,0 +1,228 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.repository.AccountData;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache of the persisted accounts, keyed by name and by account group, with the credit card
+ * accounts cached as a separate list.
+ * The cache holds private copies of the AccountData and not the mapped Account, because Account models are mutable
+ * and would otherwise be shared between callers. The least recently used names are evicted once the maximum size is
+ * reached, and group lists larger than the maximum size are not cached at all. A load that races with an invalidation
+ * is returned to its caller but not cached. A load read in a transaction can be cached only once the transaction
+ * commits, by passing a store executor which defers the caching, so that uncommitted rows are never cached.
+ */
+public class AccountCache {
+
+    /**
+     * Default maximum number of accounts cached by name
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final int maximumSize;
+    private final LinkedHashMap<String, AccountData> byName;
+    private final Map<AccountGroup, List<AccountData>> byGroup = new EnumMap<>(AccountGroup.class);
+    private List<AccountData> creditCards;
+    private long generation;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Default constructor
+     * @param maximumSize maximum number of accounts cached by name
+     */
+    public AccountCache(int maximumSize) {
+        if(maximumSize < 1) throw new IllegalArgumentException("Maximum size must be at least 1");
+        this.maximumSize = maximumSize;
+        this.byName = new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AccountData> eldest) {
+                if(size() <= AccountCache.this.maximumSize) return false;
+                evictionCount.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets the account by name, loading it on a miss. Accounts that are not found are not cached.
+     * @param name name of the account
+     * @param loader loads the account from the repository
+     * @return account data, or null if not found
+     */
+    public AccountData getAccount(String name, Function<String, AccountData> loader) {
+        return getAccount(name, loader, Runnable::run);
+    }
+
+    /**
+     * Gets the account by name, loading it on a miss, and caching it with the store executor. Accounts that are not
+     * found are not cached.
+     * @param name name of the account
+     * @param loader loads the account from the repository
+     * @param store runs the caching of the loaded account, eg. once the transaction it was read in commits
+     * @return account data, or null if not found
+     */
+    public AccountData getAccount(String name, Function<String, AccountData> loader, Executor store) {
+        long loadedAt;
+        synchronized (this) {
+            AccountData cached = byName.get(name);
+            if(cached != null){
+                hitCount.incrementAndGet();
+                return cached;
+            }
+            loadedAt = generation;
+        }
+        missCount.incrementAndGet();
+        AccountData loaded = loader.apply(name);
+        if(loaded == null) return null;
+        AccountData copy = loaded.copy();
+        store.execute(() -> {
+            synchronized (this) {
+                if(loadedAt == generation) byName.put(name, copy);
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * Gets the accounts of an account group, loading them on a miss
+     * @param accountGroup account group
+     * @param loader loads the accounts of the group from the repository
+     * @return list of account data
+     */
+    public List<AccountData> getAccounts(AccountGroup accountGroup, Function<AccountGroup, ? extends Iterable<AccountData>> loader) {
+        return getAccounts(accountGroup, loader, Runnable::run);
+    }
+
+    /**
+     * Gets the accounts of an account group, loading them on a miss, and caching them with the store executor
+     * @param accountGroup account group
+     * @param loader loads the accounts of the group from the repository
+     * @param store runs the caching of the loaded accounts, eg. once the transaction they were read in commits
+     * @return list of account data
+     */
+    public List<AccountData> getAccounts(AccountGroup accountGroup, Function<AccountGroup, ? extends Iterable<AccountData>> loader,
+                                         Executor store) {
+        long loadedAt;
+        synchronized (this) {
+            List<AccountData> cached = byGroup.get(accountGroup);
+            if(cached != null){
+                hitCount.incrementAndGet();
+                return cached;
+            }
+            loadedAt = generation;
+        }
+        missCount.incrementAndGet();
+        List<AccountData> loaded = copyOf(loader.apply(accountGroup));
+        store.execute(() -> {
+            synchronized (this) {
+                if(loadedAt == generation && loaded.size() <= maximumSize) byGroup.put(accountGroup, loaded);
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Gets the credit card accounts, loading them on a miss
+     * @param loader loads the credit card accounts from the repository
+     * @return list of account data
+     */
+    public List<AccountData> getCreditCardAccounts(Supplier<? extends Iterable<AccountData>> loader) {
+        return getCreditCardAccounts(loader, Runnable::run);
+    }
+
+    /**
+     * Gets the credit card accounts, loading them on a miss, and caching them with the store executor
+     * @param loader loads the credit card accounts from the repository
+     * @param store runs the caching of the loaded accounts, eg. once the transaction they were read in commits
+     * @return list of account data
+     */
+    public List<AccountData> getCreditCardAccounts(Supplier<? extends Iterable<AccountData>> loader, Executor store) {
+        long loadedAt;
+        synchronized (this) {
+            if(creditCards != null){
+                hitCount.incrementAndGet();
+                return creditCards;
+            }
+            loadedAt = generation;
+        }
+        missCount.incrementAndGet();
+        List<AccountData> loaded = copyOf(loader.get());
+        store.execute(() -> {
+            synchronized (this) {
+                if(loadedAt == generation && loaded.size() <= maximumSize) creditCards = loaded;
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Removes the account, its account group and the credit card accounts from the cache. Any other cached account
+     * group holding the account is removed as well, as the account may have been moved out of it.
+     * @param name name of the account
+     * @param accountGroup account group of the account
+     */
+    public synchronized void invalidate(String name, AccountGroup accountGroup) {
+        generation++;
+        byName.remove(name);
+        byGroup.remove(accountGroup);
+        byGroup.values().removeIf(accounts -> accounts.stream().anyMatch(accountData -> accountData.getName().equals(name)));
+        creditCards = null;
+    }
+
+    /**
+     * Removes everything from the cache
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        byName.clear();
+        byGroup.clear();
+        creditCards = null;
+    }
+
+    /**
+     * Gets the number of reads served from the cache
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the number of reads that had to go to the repository
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Gets the number of accounts evicted because the maximum size was reached
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Gets the number of accounts currently cached by name
+     * @return size
+     */
+    public synchronized int size() {
+        return byName.size();
+    }
+
+    private static List<AccountData> copyOf(Iterable<AccountData> accounts) {
+        List<AccountData> copies = new ArrayList<>();
+        accounts.forEach(accountData -> copies.add(accountData.copy()));
+        return Collections.unmodifiableList(copies);
+    }
+}
@@ -0,0 +1,66 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Account;
+
+/**
+ * Outcome of creating one account in a bulk creation
+ */
+public class AccountCreationResult {
+
+    /**
+     * Status of the account creation
+     */
+    public enum Status {
+        /**
+         * Account is created
+         */
+        CREATED,
+
+        /**
+         * Not created, as there is already an account with the same name
+         */
+        ALREADY_EXISTS,
+
+        /**
+         * Not created, as an earlier account in the same request has the same name
+         */
+        DUPLICATE_IN_REQUEST
+    }
+
+    private final Account account;
+    private final Status status;
+
+    /**
+     * Default constructor
+     * @param account account requested to be created
+     * @param status outcome of the creation
+     */
+    public AccountCreationResult(Account account, Status status) {
+        this.account = account;
+        this.status = status;
+    }
+
+    /**
+     * Gets the account that is requested to be created
+     * @return account
+     */
+    public Account getAccount() {
+        return account;
+    }
+
+    /**
+     * Gets the outcome of the creation
+     * @return status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Check if the account is created
+     * @return true if created, false otherwise
+     */
+    public Boolean isCreated() {
+        return status == Status.CREATED;
+    }
+}
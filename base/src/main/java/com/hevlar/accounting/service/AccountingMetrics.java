@@ -0,0 +1,228 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.util.ModelMapping;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters of the chart of accounts: a timer for every operation, a timer of the mapping between the
+ * persisted accounts and the models, and a counter of the repository calls. All of them are tagged by account group,
+ * which is "none" when an operation is not about one account group. The meters are built once for each tag
+ * combination and reused, so timing a call does not look them up in the registry. Only the operation timers publish
+ * percentile histograms; the mapping timers are too frequent and too short for their histograms to be worth the memory.
+ */
+public class AccountingMetrics {
+
+    /**
+     * Timer of the chart of accounts operations, tagged by operation and group
+     */
+    public static final String OPERATION_TIMER = "accounting.chart.operations";
+
+    /**
+     * Timer of the mapping between AccountData and Account, tagged by direction and group
+     */
+    public static final String MAPPING_TIMER = "accounting.mapping";
+
+    /**
+     * Counter of the repository calls, tagged by repository, method and group
+     */
+    public static final String REPOSITORY_CALLS = "accounting.repository.calls";
+
+    /**
+     * Counter of the account cache lookups, tagged by result - hit or miss
+     */
+    public static final String CACHE_LOOKUPS = "accounting.account.cache.lookups";
+
+    /**
+     * Group tag of the meters which are not about one account group
+     */
+    public static final String NO_GROUP = "none";
+
+    private final MeterRegistry registry;
+    private final Map<String, GroupMeters<Timer>> operationTimers = new ConcurrentHashMap<>();
+    private final GroupMeters<Timer> toAccountTimers;
+    private final GroupMeters<Timer> toAccountDataTimers;
+    private final Map<String, Map<String, GroupMeters<Counter>>> repositoryCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor
+     * @param registry registry of the meters
+     */
+    public AccountingMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.toAccountTimers = new GroupMeters<>(group -> mappingTimer("toAccount", group));
+        this.toAccountDataTimers = new GroupMeters<>(group -> mappingTimer("toAccountData", group));
+    }
+
+    /**
+     * Creates the metrics with an in-memory registry, for when no registry is configured
+     * @return metrics
+     */
+    public static AccountingMetrics simple() {
+        return new AccountingMetrics(new SimpleMeterRegistry());
+    }
+
+    /**
+     * Gets the registry of the meters
+     * @return meter registry
+     */
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Starts timing an operation whose account group is only known once it completes
+     * @return sample to stop
+     */
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Stops timing an operation
+     * @param sample sample from start
+     * @param operation name of the operation, eg. getAccount
+     * @param accountGroup account group of the operation, or null if none
+     */
+    public void stop(Timer.Sample sample, String operation, AccountGroup accountGroup) {
+        GroupMeters<Timer> timers = operationTimers.get(operation);
+        if(timers == null) timers = operationTimers.computeIfAbsent(operation, name -> new GroupMeters<>(group -> operationTimer(name, group)));
+        sample.stop(timers.get(accountGroup));
+    }
+
+    /**
+     * Times an operation, including when it fails
+     * @param operation name of the operation, eg. lock
+     * @param accountGroup account group of the operation, or null if none
+     * @param call the operation
+     * @param <T> result type
+     * @return result of the operation
+     */
+    public <T> T time(String operation, AccountGroup accountGroup, Supplier<T> call) {
+        Timer.Sample sample = start();
+        try {
+            return call.get();
+        } finally {
+            stop(sample, operation, accountGroup);
+        }
+    }
+
+    /**
+     * Maps the persisted account to the model with ModelMapping, timing the mapping
+     * @param accountData persisted account
+     * @return account, or null if accountData is null
+     */
+    public Account toAccount(AccountData accountData) {
+        if(accountData == null) return null;
+        Timer.Sample sample = start();
+        Account account = ModelMapping.toAccount(accountData);
+        sample.stop(toAccountTimers.get(accountData.getAccountGroup()));
+        return account;
+    }
+
+    /**
+     * Maps the model to the persisted account with ModelMapping, timing the mapping
+     * @param account account
+     * @return persisted account
+     */
+    public AccountData toAccountData(Account account) {
+        Timer.Sample sample = start();
+        AccountData accountData = ModelMapping.toAccountData(account);
+        sample.stop(toAccountDataTimers.get(account.getAccountGroup()));
+        return accountData;
+    }
+
+    /**
+     * Counts a call to a repository
+     * @param repository simple name of the repository interface
+     * @param method name of the repository method
+     * @param accountGroup account group of the call, or null if none
+     */
+    public void countRepositoryCall(String repository, String method, AccountGroup accountGroup) {
+        Map<String, GroupMeters<Counter>> methods = repositoryCounters.get(repository);
+        if(methods == null) methods = repositoryCounters.computeIfAbsent(repository, name -> new ConcurrentHashMap<>());
+        GroupMeters<Counter> counters = methods.get(method);
+        if(counters == null) counters = methods.computeIfAbsent(method, name -> new GroupMeters<>(group -> repositoryCounter(repository, name, group)));
+        counters.get(accountGroup).increment();
+    }
+
+    /**
+     * Registers the hit and miss counts of the account cache as counters
+     * @param accountCache account cache
+     */
+    public void bind(AccountCache accountCache) {
+        FunctionCounter.builder(CACHE_LOOKUPS, accountCache, AccountCache::getHitCount)
+                .description("Lookups of the account cache")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder(CACHE_LOOKUPS, accountCache, AccountCache::getMissCount)
+                .description("Lookups of the account cache")
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    private Timer operationTimer(String operation, String group) {
+        return Timer.builder(OPERATION_TIMER)
+                .tag("operation", operation)
+                .tag("group", group)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Timer mappingTimer(String direction, String group) {
+        return Timer.builder(MAPPING_TIMER)
+                .tag("direction", direction)
+                .tag("group", group)
+                .register(registry);
+    }
+
+    private Counter repositoryCounter(String repository, String method, String group) {
+        return Counter.builder(REPOSITORY_CALLS)
+                .description("Calls to the repositories")
+                .tag("repository", repository)
+                .tag("method", method)
+                .tag("group", group)
+                .register(registry);
+    }
+
+    private static String groupTag(AccountGroup accountGroup) {
+        return accountGroup == null ? NO_GROUP : accountGroup.name();
+    }
+
+    /**
+     * Meters with the same name and tags except the group, one for each account group and one for no group, built the
+     * first time they are used. Two threads may both build a meter the first time, which the registry resolves to
+     * the same meter.
+     */
+    private static class GroupMeters<M> {
+
+        private final AtomicReferenceArray<M> meters = new AtomicReferenceArray<>(AccountGroup.values().length + 1);
+        private final Function<String, M> factory;
+
+        private GroupMeters(Function<String, M> factory) {
+            this.factory = factory;
+        }
+
+        private M get(AccountGroup accountGroup) {
+            int index = accountGroup == null ? 0 : accountGroup.ordinal() + 1;
+            M meter = meters.get(index);
+            if(meter == null){
+                meter = factory.apply(groupTag(accountGroup));
+                meters.set(index, meter);
+            }
+            return meter;
+        }
+    }
+}
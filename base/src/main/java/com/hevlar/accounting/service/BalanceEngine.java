@@ -0,0 +1,234 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Running balances of the accounts, maintained incrementally as journal entries are posted and unposted, so getting the
+ * current balance of an account is a single lookup.
+ * A balance is kept in the direction of the account group, ie it increases with debits to assets and expenses, and with
+ * credits to liabilities, revenue and equities. A balance sheet account starts from its opening balance, and entries
+ * before its opening date are ignored for it, as they are already included in the opening balance.
+ * Balances are kept as minor units of the currency of the account, see {@link Money}. An account without a currency
+ * takes the currency of its first entry. An entry in another currency than its account is converted at the exchange
+ * rate of its transaction date, and rejected if there are no exchange rates.
+ */
+public class BalanceEngine {
+
+    private final Map<String, AccountBalance> balances = new ConcurrentHashMap<>();
+    private final FxRateTable fxRateTable;
+
+    /**
+     * Default constructor, rejecting entries in another currency than their accounts
+     */
+    public BalanceEngine() {
+        this(null);
+    }
+
+    /**
+     * Constructor with the exchange rates to convert entries in another currency than their accounts
+     * @param fxRateTable exchange rates, or null to reject such entries
+     */
+    public BalanceEngine(FxRateTable fxRateTable) {
+        this.fxRateTable = fxRateTable;
+    }
+
+    /**
+     * Opens the account with its opening balance, if it is not open yet
+     * @param account account
+     */
+    public void open(Account account) {
+        balances.computeIfAbsent(account.getName(), name -> AccountBalance.of(account));
+    }
+
+    /**
+     * Opens the accounts with their opening balances, if they are not open yet
+     * @param accounts accounts
+     */
+    public void openAll(Iterable<? extends Account> accounts) {
+        accounts.forEach(this::open);
+    }
+
+    /**
+     * Reopens the account after it changed in the chart of accounts, or opens it if it is not open yet. A new opening
+     * balance replaces the old one, keeping the entries posted to the account. A new account group, opening date or
+     * currency changes how each of its entries counts, so the balance is then left as it is, for the account to be
+     * reopened with its entries.
+     * @param account account as changed
+     * @return true if the balance follows the account, false if it must be reopened with its entries
+     */
+    public boolean reopen(Account account) {
+        AccountBalance reopened = AccountBalance.of(account);
+        AccountBalance accountBalance = balances.compute(account.getName(), (name, current) -> {
+            if(current == null) return reopened;
+            if(!reopened.sameBasis(current)) return current;
+            return new AccountBalance(current.accountGroup, current.openDate, current.currency, reopened.openUnits,
+                    Money.add(Money.add(current.units, Money.negate(current.openUnits)), reopened.openUnits));
+        });
+        return reopened.sameBasis(accountBalance);
+    }
+
+    /**
+     * Reopens the account with its opening balance and its entries, replacing its balance at once. Only the debit or
+     * credit of each entry which is to the account is applied.
+     * @param account account as changed
+     * @param journalEntries entries of the account
+     * @return entries left out, as they cannot be converted to the currency of the account
+     */
+    public List<JournalEntry> reopen(Account account, Iterable<JournalEntry> journalEntries) {
+        AccountBalance accountBalance = AccountBalance.of(account);
+        List<JournalEntry> rejected = new ArrayList<>();
+        for(JournalEntry journalEntry : journalEntries){
+            try {
+                AccountBalance applied = accountBalance;
+                if(journalEntry.getDebit().getName().equals(account.getName())) applied = applied(applied, account, EntryType.DEBIT, journalEntry, 1);
+                if(journalEntry.getCredit().getName().equals(account.getName())) applied = applied(applied, account, EntryType.CREDIT, journalEntry, 1);
+                accountBalance = applied;
+            } catch (RuntimeException e) {
+                rejected.add(journalEntry);
+            }
+        }
+        balances.put(account.getName(), accountBalance);
+        return rejected;
+    }
+
+    /**
+     * Closes the account, removing its balance
+     * @param name name of the account
+     */
+    public void close(String name) {
+        balances.remove(name);
+    }
+
+    /**
+     * Applies the journal entry to the balances of its debit and credit accounts, opening them if they are not open yet
+     * @param journalEntry journal entry
+     * @throws IllegalArgumentException if the entry is in another currency than an account and there are no exchange rates
+     * @throws java.util.NoSuchElementException if there is no exchange rate for the entry
+     */
+    public void post(JournalEntry journalEntry) {
+        apply(journalEntry, 1);
+    }
+
+    /**
+     * Reverses the journal entry from the balances of its debit and credit accounts, eg. before it is edited or deleted
+     * @param journalEntry journal entry that was posted
+     */
+    public void unpost(JournalEntry journalEntry) {
+        apply(journalEntry, -1);
+    }
+
+    /**
+     * Gets the current balance of the account
+     * @param name name of the account
+     * @return balance, or null if the account is not open
+     */
+    public BigDecimal getBalance(String name) {
+        AccountBalance accountBalance = balances.get(name);
+        if(accountBalance == null) return null;
+        if(accountBalance.currency == null) return BigDecimal.ZERO;
+        return Money.toBigDecimal(accountBalance.units, accountBalance.currency);
+    }
+
+    /**
+     * Gets the current balance of the account in minor units of its currency
+     * @param name name of the account
+     * @return balance in minor units, 0 if the account is not open
+     */
+    public long getBalanceUnits(String name) {
+        AccountBalance accountBalance = balances.get(name);
+        return accountBalance == null ? 0 : accountBalance.units;
+    }
+
+    /**
+     * Check if the account is open
+     * @param name name of the account
+     * @return true if the account is open, false otherwise
+     */
+    public boolean isOpen(String name) {
+        return balances.containsKey(name);
+    }
+
+    private void apply(JournalEntry journalEntry, int direction) {
+        // converts the amount for both accounts first, so an entry which cannot be converted changes neither balance
+        check(journalEntry.getDebit(), journalEntry);
+        check(journalEntry.getCredit(), journalEntry);
+        apply(journalEntry.getDebit(), EntryType.DEBIT, journalEntry, direction);
+        apply(journalEntry.getCredit(), EntryType.CREDIT, journalEntry, direction);
+    }
+
+    private void check(Account account, JournalEntry journalEntry) {
+        AccountBalance accountBalance = balances.get(account.getName());
+        if(accountBalance == null) accountBalance = AccountBalance.of(account);
+        if(accountBalance.openDate != null && journalEntry.getTxDate().isBefore(accountBalance.openDate)) return;
+        unitsIn(accountBalance.currency, journalEntry);
+    }
+
+    private long unitsIn(Currency currency, JournalEntry journalEntry) {
+        if(currency == null || currency.equals(journalEntry.getCurrency())) return journalEntry.getAmountUnits();
+        if(fxRateTable == null){
+            throw new IllegalArgumentException("Journal entry " + journalEntry.getJournalId() + " is in " + journalEntry.getCurrency() +
+                    " but its account is in " + currency + ", and there are no exchange rates");
+        }
+        return fxRateTable.convert(journalEntry.getAmountUnits(), journalEntry.getCurrency(), currency, journalEntry.getTxDate());
+    }
+
+    private void apply(Account account, EntryType entryType, JournalEntry journalEntry, int direction) {
+        balances.compute(account.getName(), (name, accountBalance) ->
+                applied(accountBalance == null ? AccountBalance.of(account) : accountBalance, account, entryType, journalEntry, direction));
+    }
+
+    private AccountBalance applied(AccountBalance accountBalance, Account account, EntryType entryType, JournalEntry journalEntry, int direction) {
+        if(accountBalance.openDate != null && journalEntry.getTxDate().isBefore(accountBalance.openDate)) return accountBalance;
+        int sign = account.getAccountGroup().sign(entryType) * direction;
+        Currency currency = accountBalance.currency != null ? accountBalance.currency : journalEntry.getCurrency();
+        long units = unitsIn(currency, journalEntry);
+        long change = sign < 0 ? Money.negate(units) : units;
+        return new AccountBalance(accountBalance.accountGroup, accountBalance.openDate, currency, accountBalance.openUnits,
+                Money.add(accountBalance.units, change));
+    }
+
+    private static class AccountBalance {
+        private final AccountGroup accountGroup;
+        private final LocalDate openDate;
+        private final Currency currency;
+        private final long openUnits;
+        private final long units;
+
+        private AccountBalance(AccountGroup accountGroup, LocalDate openDate, Currency currency, long openUnits, long units) {
+            this.accountGroup = accountGroup;
+            this.openDate = openDate;
+            this.currency = currency;
+            this.openUnits = openUnits;
+            this.units = units;
+        }
+
+        private static AccountBalance of(Account account) {
+            if(account instanceof BalanceSheetAccount){
+                BalanceSheetAccount balanceSheetAccount = (BalanceSheetAccount) account;
+                Currency currency = balanceSheetAccount.getCurrency();
+                BigDecimal openBal = balanceSheetAccount.getOpenBal();
+                long openUnits = openBal == null ? 0 : Money.toMinorUnits(openBal, currency);
+                return new AccountBalance(account.getAccountGroup(), balanceSheetAccount.getOpenDate(), currency, openUnits, openUnits);
+            }
+            return new AccountBalance(account.getAccountGroup(), null, null, 0, 0);
+        }
+
+        /**
+         * Checks if the entries count the same for this balance as for the current one, ie they have the same account
+         * group and opening date, and this balance has the same currency or takes it from the entries
+         */
+        private boolean sameBasis(AccountBalance current) {
+            return accountGroup == current.accountGroup && Objects.equals(openDate, current.openDate)
+                    && (currency == null || currency.equals(current.currency));
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the balances of the accounts as of any date, without replaying the journal entries.
+ * The changes of each account are bucketed by month and by day, and kept in Fenwick trees (binary indexed trees) of
+ * prefix sums, ie one tree over the months and one tree over the days of each month. The balance as of a date is the
+ * opening balance plus the prefix sum of the months before it and the prefix sum of the days of its month, which takes
+ * O(log n) for n months. Posting a backdated entry only updates the buckets of its month and day.
+ * Like {@link BalanceEngine}, balances are in the direction of the account group, and entries before the opening date
+ * of a balance sheet account are ignored for it. The buckets are minor units of the currency of the account, and an
+ * entry in another currency is converted at the exchange rate of its transaction date, or rejected if there are no
+ * exchange rates.
+ */
+public class BalanceIndex {
+
+    /**
+     * The date of a journal entry which its amount is counted on
+     */
+    public enum BalanceDate {
+        /**
+         * Transaction date
+         */
+        TRANSACTION,
+
+        /**
+         * Posted date, or the transaction date if the entry is not posted yet
+         */
+        POSTING
+    }
+
+    private final BalanceDate balanceDate;
+    private final FxRateTable fxRateTable;
+    private final Map<String, AccountIndex> accounts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an index counting the entries on their transaction date
+     */
+    public BalanceIndex() {
+        this(BalanceDate.TRANSACTION);
+    }
+
+    /**
+     * Default constructor, rejecting entries in another currency than their accounts
+     * @param balanceDate date of the entries which their amounts are counted on
+     */
+    public BalanceIndex(BalanceDate balanceDate) {
+        this(balanceDate, null);
+    }
+
+    /**
+     * Constructor with the exchange rates to convert entries in another currency than their accounts
+     * @param balanceDate date of the entries which their amounts are counted on
+     * @param fxRateTable exchange rates, or null to reject such entries
+     */
+    public BalanceIndex(BalanceDate balanceDate, FxRateTable fxRateTable) {
+        this.balanceDate = balanceDate;
+        this.fxRateTable = fxRateTable;
+    }
+
+    /**
+     * Opens the account with its opening balance, if it is not open yet
+     * @param account account
+     */
+    public void open(Account account) {
+        accounts.computeIfAbsent(account.getName(), name -> AccountIndex.of(account));
+    }
+
+    /**
+     * Opens the accounts with their opening balances, if they are not open yet
+     * @param accounts accounts
+     */
+    public void openAll(Iterable<? extends Account> accounts) {
+        accounts.forEach(this::open);
+    }
+
+    /**
+     * Reopens the account after it changed in the chart of accounts, or opens it if it is not open yet. A new opening
+     * balance replaces the old one, keeping the buckets of the account. A new account group, opening date or currency
+     * changes how each of its entries counts, so the buckets are then left as they are, for the account to be reopened
+     * with its entries.
+     * @param account account as changed
+     * @return true if the buckets follow the account, false if it must be reopened with its entries
+     */
+    public boolean reopen(Account account) {
+        AccountIndex reopened = AccountIndex.of(account);
+        AccountIndex accountIndex = accounts.computeIfAbsent(account.getName(), name -> reopened);
+        if(accountIndex == reopened) return true;
+        if(!reopened.sameBasis(accountIndex)) return false;
+        accountIndex.setOpenBal(reopened.openBal);
+        return true;
+    }
+
+    /**
+     * Reopens the account with its opening balance and its entries, replacing its buckets at once. Only the debit or
+     * credit of each entry which is to the account is added.
+     * @param account account as changed
+     * @param journalEntries entries of the account
+     * @return entries left out, as they cannot be converted to the currency of the account
+     */
+    public List<JournalEntry> reopen(Account account, Iterable<JournalEntry> journalEntries) {
+        AccountIndex accountIndex = AccountIndex.of(account);
+        List<JournalEntry> rejected = new ArrayList<>();
+        for(JournalEntry journalEntry : journalEntries){
+            LocalDate date = dateOf(journalEntry);
+            // an entry from the account to itself adds nothing to it
+            int sign = 0;
+            if(journalEntry.getDebit().getName().equals(account.getName())) sign += account.getAccountGroup().sign(EntryType.DEBIT);
+            if(journalEntry.getCredit().getName().equals(account.getName())) sign += account.getAccountGroup().sign(EntryType.CREDIT);
+            if(sign == 0 || !accountIndex.counts(date)) continue;
+            try {
+                accountIndex.add(date, unitsIn(accountIndex.getCurrency(), journalEntry), journalEntry.getCurrency(), sign);
+            } catch (RuntimeException e) {
+                rejected.add(journalEntry);
+            }
+        }
+        accounts.put(account.getName(), accountIndex);
+        return rejected;
+    }
+
+    /**
+     * Closes the account, removing its buckets
+     * @param name name of the account
+     */
+    public void close(String name) {
+        accounts.remove(name);
+    }
+
+    /**
+     * Adds the journal entry to the buckets of its debit and credit accounts, opening them if they are not open yet
+     * @param journalEntry journal entry
+     * @throws IllegalArgumentException if the entry is in another currency than an account and there are no exchange rates
+     * @throws java.util.NoSuchElementException if there is no exchange rate for the entry
+     */
+    public void post(JournalEntry journalEntry) {
+        apply(journalEntry, 1);
+    }
+
+    /**
+     * Removes the journal entry from the buckets of its debit and credit accounts, eg. before it is edited or deleted
+     * @param journalEntry journal entry that was posted
+     */
+    public void unpost(JournalEntry journalEntry) {
+        apply(journalEntry, -1);
+    }
+
+    /**
+     * Gets the balance of the account at the end of the date
+     * @param name name of the account
+     * @param asOf date of the balance, inclusive
+     * @return balance, or null if the account is not open
+     */
+    public BigDecimal getBalance(String name, LocalDate asOf) {
+        AccountIndex accountIndex = accounts.get(name);
+        if(accountIndex == null) return null;
+        long units = accountIndex.balance(asOf);
+        Currency currency = accountIndex.getCurrency();
+        return currency == null ? BigDecimal.ZERO : Money.toBigDecimal(units, currency);
+    }
+
+    /**
+     * Gets the balance of the account at the end of the date in minor units of its currency
+     * @param name name of the account
+     * @param asOf date of the balance, inclusive
+     * @return balance in minor units, 0 if the account is not open
+     */
+    public long getBalanceUnits(String name, LocalDate asOf) {
+        AccountIndex accountIndex = accounts.get(name);
+        return accountIndex == null ? 0 : accountIndex.balance(asOf);
+    }
+
+    /**
+     * Gets the currency of the balance of the account, ie the currency of a balance sheet account, or of the first
+     * entry of other accounts
+     * @param name name of the account
+     * @return currency, or null if the account is not open or has no entries yet
+     */
+    public Currency getCurrency(String name) {
+        AccountIndex accountIndex = accounts.get(name);
+        return accountIndex == null ? null : accountIndex.getCurrency();
+    }
+
+    private LocalDate dateOf(JournalEntry journalEntry) {
+        return balanceDate == BalanceDate.POSTING && journalEntry.getPostDate() != null ? journalEntry.getPostDate() : journalEntry.getTxDate();
+    }
+
+    private void apply(JournalEntry journalEntry, int direction) {
+        LocalDate date = dateOf(journalEntry);
+        AccountIndex debit = accounts.computeIfAbsent(journalEntry.getDebit().getName(), name -> AccountIndex.of(journalEntry.getDebit()));
+        AccountIndex credit = accounts.computeIfAbsent(journalEntry.getCredit().getName(), name -> AccountIndex.of(journalEntry.getCredit()));
+        // converts the amount for both accounts first, so an entry which cannot be converted changes neither of them
+        long debitUnits = debit.counts(date) ? unitsIn(debit.getCurrency(), journalEntry) : 0;
+        long creditUnits = credit.counts(date) ? unitsIn(credit.getCurrency(), journalEntry) : 0;
+        debit.add(date, debitUnits, journalEntry.getCurrency(), journalEntry.getDebit().getAccountGroup().sign(EntryType.DEBIT) * direction);
+        credit.add(date, creditUnits, journalEntry.getCurrency(), journalEntry.getCredit().getAccountGroup().sign(EntryType.CREDIT) * direction);
+    }
+
+    private long unitsIn(Currency currency, JournalEntry journalEntry) {
+        if(currency == null || currency.equals(journalEntry.getCurrency())) return journalEntry.getAmountUnits();
+        if(fxRateTable == null){
+            throw new IllegalArgumentException("Journal entry " + journalEntry.getJournalId() + " is in " + journalEntry.getCurrency() +
+                    " but its account is in " + currency + ", and there are no exchange rates");
+        }
+        return fxRateTable.convert(journalEntry.getAmountUnits(), journalEntry.getCurrency(), currency, journalEntry.getTxDate());
+    }
+
+    private static int monthOf(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    /**
+     * Buckets of a single account. The months are counted from the base month, and the month and day trees grow when
+     * an entry falls outside of them.
+     */
+    private static class AccountIndex {
+
+        private static final int INITIAL_MONTHS = 12;
+        private static final int DAYS = 31;
+
+        private final AccountGroup accountGroup;
+        private final LocalDate openDate;
+        private long openBal;
+        private volatile Currency currency;
+        private int baseMonth;
+        private long[] monthTotals;
+        private long[] monthTree;
+        private long[][] dayTrees;
+
+        private AccountIndex(AccountGroup accountGroup, LocalDate openDate, Currency currency, long openBal) {
+            this.accountGroup = accountGroup;
+            this.openDate = openDate;
+            this.currency = currency;
+            this.openBal = openBal;
+        }
+
+        private static AccountIndex of(Account account) {
+            if(account instanceof BalanceSheetAccount){
+                BalanceSheetAccount balanceSheetAccount = (BalanceSheetAccount) account;
+                Currency currency = balanceSheetAccount.getCurrency();
+                BigDecimal openBal = balanceSheetAccount.getOpenBal();
+                return new AccountIndex(account.getAccountGroup(), balanceSheetAccount.getOpenDate(), currency,
+                        openBal == null ? 0 : Money.toMinorUnits(openBal, currency));
+            }
+            return new AccountIndex(account.getAccountGroup(), null, null, 0);
+        }
+
+        /**
+         * Checks if the entries count the same for this account as for the current one, ie they have the same account
+         * group and opening date, and this account has the same currency or takes it from the entries
+         */
+        boolean sameBasis(AccountIndex current) {
+            return accountGroup == current.accountGroup && Objects.equals(openDate, current.openDate)
+                    && (currency == null || currency.equals(current.currency));
+        }
+
+        synchronized void setOpenBal(long openBal) {
+            this.openBal = openBal;
+        }
+
+        Currency getCurrency() {
+            return currency;
+        }
+
+        boolean counts(LocalDate date) {
+            return openDate == null || !date.isBefore(openDate);
+        }
+
+        /**
+         * Adds the amount of an entry, in minor units of the currency of the account, or of the entry if the account
+         * has no currency yet, which the account then takes
+         */
+        synchronized void add(LocalDate date, long units, Currency entryCurrency, int sign) {
+            if(!counts(date)) return;
+            if(currency == null) currency = entryCurrency;
+            long change = sign < 0 ? Money.negate(units) : units;
+            int slot = slotOf(monthOf(date));
+            monthTotals[slot] = Money.add(monthTotals[slot], change);
+            addTo(monthTree, slot + 1, change);
+            if(dayTrees[slot] == null) dayTrees[slot] = new long[DAYS + 1];
+            addTo(dayTrees[slot], date.getDayOfMonth(), change);
+        }
+
+        synchronized long balance(LocalDate asOf) {
+            if(openDate != null && asOf.isBefore(openDate)) return 0;
+            if(monthTotals == null) return openBal;
+            int slot = monthOf(asOf) - baseMonth;
+            if(slot < 0) return openBal;
+            if(slot >= monthTotals.length) return Money.add(openBal, prefixSum(monthTree, monthTotals.length));
+            long balance = Money.add(openBal, prefixSum(monthTree, slot));
+            if(dayTrees[slot] != null) balance = Money.add(balance, prefixSum(dayTrees[slot], asOf.getDayOfMonth()));
+            return balance;
+        }
+
+        private int slotOf(int month) {
+            if(monthTotals == null){
+                baseMonth = month;
+                resize(month, INITIAL_MONTHS);
+            }else if(month < baseMonth){
+                resize(month, Math.max(monthTotals.length * 2, baseMonth + monthTotals.length - month));
+            }else if(month >= baseMonth + monthTotals.length){
+                resize(baseMonth, Math.max(monthTotals.length * 2, month - baseMonth + 1));
+            }
+            return month - baseMonth;
+        }
+
+        private void resize(int newBaseMonth, int months) {
+            long[] totals = new long[months];
+            long[][] days = new long[months][];
+            if(monthTotals != null){
+                int offset = baseMonth - newBaseMonth;
+                System.arraycopy(monthTotals, 0, totals, offset, monthTotals.length);
+                System.arraycopy(dayTrees, 0, days, offset, dayTrees.length);
+            }
+            // build the tree in O(n) by pushing each node to its parent
+            long[] tree = new long[months + 1];
+            System.arraycopy(totals, 0, tree, 1, months);
+            for(int i = 1; i <= months; i++){
+                int parent = i + (i & -i);
+                if(parent <= months) tree[parent] = Money.add(tree[parent], tree[i]);
+            }
+            baseMonth = newBaseMonth;
+            monthTotals = totals;
+            monthTree = tree;
+            dayTrees = days;
+        }
+
+        private static void addTo(long[] tree, int index, long change) {
+            for(int i = index; i < tree.length; i += i & -i) tree[i] = Money.add(tree[i], change);
+        }
+
+        private static long prefixSum(long[] tree, int count) {
+            long sum = 0;
+            for(int i = count; i > 0; i -= i & -i) sum = Money.add(sum, tree[i]);
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.util.ModelMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the {@link BalanceEngine} and the {@link BalanceIndex} of the application up to date. Both are loaded from the
+ * repository when the application is ready, and then posted to with {@link #post(JournalEntry)} as entries commit.
+ * Entries committed while the balances are loaded are held back until the load ends, and only the ones the load did
+ * not read are posted then, so no entry is counted twice.
+ * An account created, updated or deleted in the chart of accounts is reopened in the balances once the change commits.
+ * A new opening balance is applied in place, but a new account group, opening date or currency reloads the entries of
+ * the account, holding back the entries committed meanwhile in the same way.
+ */
+@Service
+public class BalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceService.class);
+
+    private final JournalEntryDataRepository journalEntryDataRepository;
+    private final ChartOfAccounts chartOfAccounts;
+    private final BalanceEngine balanceEngine;
+    private final BalanceIndex balanceIndex;
+    private final long initialLastId;
+    private final TransactionTemplate transactionTemplate;
+    private final Object lock = new Object();
+    private List<JournalEntry> pending = new ArrayList<>();
+    private Set<String> changedDuringLoad = new LinkedHashSet<>();
+
+    /**
+     * Constructor for entries with any journal ids, which reads the entries of a changed account in the transaction of
+     * the caller, if any
+     * @param journalEntryDataRepository repository of journal entries
+     * @param chartOfAccounts chart of accounts, to open the accounts and resolve the accounts of the entries
+     * @param balanceEngine running balances to keep up to date
+     * @param balanceIndex balances as of any date to keep up to date
+     */
+    public BalanceService(JournalEntryDataRepository journalEntryDataRepository, ChartOfAccounts chartOfAccounts,
+                          BalanceEngine balanceEngine, BalanceIndex balanceIndex) {
+        this(journalEntryDataRepository, chartOfAccounts, balanceEngine, balanceIndex, 0, null);
+    }
+
+    /**
+     * Default constructor
+     * @param journalEntryDataRepository repository of journal entries
+     * @param chartOfAccounts chart of accounts, to open the accounts and resolve the accounts of the entries
+     * @param balanceEngine running balances to keep up to date
+     * @param balanceIndex balances as of any date to keep up to date
+     * @param journalIdGenerator generator of the ids of the entries to post, so that only the entries loaded with
+     *                           larger ids than it started from can be posted again
+     * @param transactionManager transaction manager, to read the entries of a changed account in a transaction of its own
+     */
+    @Autowired
+    public BalanceService(JournalEntryDataRepository journalEntryDataRepository, ChartOfAccounts chartOfAccounts,
+                          BalanceEngine balanceEngine, BalanceIndex balanceIndex, JournalIdGenerator journalIdGenerator,
+                          PlatformTransactionManager transactionManager) {
+        this(journalEntryDataRepository, chartOfAccounts, balanceEngine, balanceIndex, journalIdGenerator.getInitialLastId(),
+                readOnlyTransaction(transactionManager));
+    }
+
+    private BalanceService(JournalEntryDataRepository journalEntryDataRepository, ChartOfAccounts chartOfAccounts,
+                           BalanceEngine balanceEngine, BalanceIndex balanceIndex, long initialLastId,
+                           TransactionTemplate transactionTemplate) {
+        this.journalEntryDataRepository = journalEntryDataRepository;
+        this.chartOfAccounts = chartOfAccounts;
+        this.balanceEngine = balanceEngine;
+        this.balanceIndex = balanceIndex;
+        this.initialLastId = initialLastId;
+        this.transactionTemplate = transactionTemplate;
+        chartOfAccounts.addListener(this::accountChanged);
+    }
+
+    private static TransactionTemplate readOnlyTransaction(PlatformTransactionManager transactionManager) {
+        // an account is reopened after the transaction which changed it commits, which must not be joined then
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate;
+    }
+
+    /**
+     * Opens all the accounts and posts all the entries, in one streaming query. An account which cannot be opened, eg.
+     * for an opening balance with more decimal places than its currency allows, is logged and left out.
+     * Only the ids of the loaded entries which are larger than the last id in use when the generator was created are
+     * kept, as the entries held back all have such ids.
+     * @return number of entries read
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public int rebuild() {
+        ChartSnapshot snapshot = chartOfAccounts.getSnapshot();
+        open(snapshot);
+        Set<Long> loaded = new HashSet<>();
+        int read = 0;
+        try (Stream<JournalEntryData> entries = journalEntryDataRepository.streamAll()) {
+            for(Iterator<JournalEntryData> iterator = entries.iterator(); iterator.hasNext(); read++){
+                JournalEntryData journalEntryData = iterator.next();
+                if(journalEntryData.getJournalId() > initialLastId) loaded.add(journalEntryData.getJournalId());
+                JournalEntry journalEntry;
+                try {
+                    journalEntry = ModelMapping.toJournalEntry(journalEntryData, snapshot::getAccount);
+                } catch (RuntimeException e) {
+                    logger.error("Failed to load journal entry {} into the balances", journalEntryData.getJournalId(), e);
+                    continue;
+                }
+                apply(journalEntry);
+            }
+        }
+        List<String> changed;
+        synchronized (lock) {
+            for(JournalEntry journalEntry : pending){
+                if(loaded.add(journalEntry.getJournalId())){
+                    apply(journalEntry);
+                    read++;
+                }
+            }
+            pending = null;
+            changed = new ArrayList<>(changedDuringLoad);
+            changedDuringLoad = null;
+        }
+        changed.forEach(this::accountChanged);
+        return read;
+    }
+
+    /**
+     * Posts the committed entry to the balances. An entry which the balances reject, eg. for a currency without
+     * exchange rates, is logged, as it is already committed.
+     * @param journalEntry journal entry
+     */
+    public void post(JournalEntry journalEntry) {
+        synchronized (lock) {
+            if(pending != null){
+                pending.add(journalEntry);
+                return;
+            }
+        }
+        apply(journalEntry);
+    }
+
+    /**
+     * Reopens the account in the balances after it was created, updated or deleted in the chart of accounts. A deleted
+     * account is closed. A failure is logged, as the change is already committed.
+     * @param name name of the account
+     */
+    public synchronized void accountChanged(String name) {
+        synchronized (lock) {
+            if(changedDuringLoad != null){
+                // reopened once the balances are loaded
+                changedDuringLoad.add(name);
+                return;
+            }
+        }
+        try {
+            Account account = chartOfAccounts.getSnapshot().getAccount(name);
+            if(account == null){
+                balanceEngine.close(name);
+                balanceIndex.close(name);
+                return;
+            }
+            boolean engineReopened = balanceEngine.reopen(account);
+            boolean indexReopened = balanceIndex.reopen(account);
+            if(!engineReopened || !indexReopened) reload(account);
+        } catch (RuntimeException e) {
+            logger.error("Failed to reopen account {} in the balances", name, e);
+        }
+    }
+
+    /**
+     * Gets the running balances
+     * @return balance engine
+     */
+    public BalanceEngine getBalanceEngine() {
+        return balanceEngine;
+    }
+
+    /**
+     * Gets the balances as of any date
+     * @return balance index
+     */
+    public BalanceIndex getBalanceIndex() {
+        return balanceIndex;
+    }
+
+    private void open(ChartSnapshot snapshot) {
+        for(String name : snapshot.getNames()){
+            try {
+                Account account = snapshot.getAccount(name);
+                balanceEngine.open(account);
+                balanceIndex.open(account);
+            } catch (RuntimeException e) {
+                logger.error("Failed to open account {} in the balances", name, e);
+            }
+        }
+    }
+
+    /**
+     * Reopens the account with its entries. The entries committed meanwhile are held back, and the account is reopened
+     * without them, as they are then posted in full.
+     */
+    private void reload(Account account) {
+        synchronized (lock) {
+            pending = new ArrayList<>();
+        }
+        List<JournalEntry> journalEntries = null;
+        List<JournalEntry> held;
+        try {
+            journalEntries = transactionTemplate == null ? read(account.getName()) : transactionTemplate.execute(status -> read(account.getName()));
+        } finally {
+            synchronized (lock) {
+                held = pending;
+                pending = null;
+                if(journalEntries != null){
+                    Set<Long> heldIds = held.stream().map(JournalEntry::getJournalId).collect(Collectors.toSet());
+                    List<JournalEntry> notHeld = journalEntries.stream()
+                            .filter(journalEntry -> !heldIds.contains(journalEntry.getJournalId()))
+                            .collect(Collectors.toList());
+                    balanceEngine.reopen(account, notHeld).forEach(this::rejected);
+                    balanceIndex.reopen(account, notHeld).forEach(this::rejected);
+                }
+            }
+            held.forEach(this::apply);
+        }
+    }
+
+    private List<JournalEntry> read(String name) {
+        ChartSnapshot snapshot = chartOfAccounts.getSnapshot();
+        List<JournalEntry> journalEntries = new ArrayList<>();
+        try (Stream<JournalEntryData> entries = journalEntryDataRepository.streamByAccountIn(List.of(name))) {
+            entries.forEach(journalEntryData -> {
+                try {
+                    journalEntries.add(ModelMapping.toJournalEntry(journalEntryData, snapshot::getAccount));
+                } catch (RuntimeException e) {
+                    logger.error("Failed to load journal entry {} into the balances", journalEntryData.getJournalId(), e);
+                }
+            });
+        }
+        return journalEntries;
+    }
+
+    private void rejected(JournalEntry journalEntry) {
+        logger.error("Failed to post journal entry {} to the balances", journalEntry.getJournalId());
+    }
+
+    private void apply(JournalEntry journalEntry) {
+        try {
+            balanceEngine.post(journalEntry);
+            balanceIndex.post(journalEntry);
+        } catch (RuntimeException e) {
+            logger.error("Failed to post journal entry {} to the balances", journalEntry.getJournalId(), e);
+        }
+    }
+}
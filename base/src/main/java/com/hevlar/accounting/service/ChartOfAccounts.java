@@ -3,12 +3,25 @@ package com.hevlar.accounting.service;
 import com.hevlar.accounting.model.*;
 import com.hevlar.accounting.repository.AccountData;
 import com.hevlar.accounting.repository.AccountDataRepository;
-import com.hevlar.accounting.util.ModelMapping;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.util.Streamable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 
 /**
@@ -18,14 +31,87 @@ import java.time.LocalDate;
 @Transactional
 public class ChartOfAccounts {
 
+    private static final Logger logger = LoggerFactory.getLogger(ChartOfAccounts.class);
+
+    /**
+     * Maximum number of names in one query, for queries by a list of names
+     */
+    private static final int MAX_NAMES_PER_QUERY = 1000;
+
     private final AccountDataRepository accountDataRepository;
+    private final AccountCache accountCache;
+    private final AccountingMetrics metrics;
+    private final AtomicReference<ChartSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong committedChanges = new AtomicLong();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
 
     /**
-     * Default constructor
+     * Default constructor, with a cache of the default size
      * @param accountDataRepository repository
      */
     public ChartOfAccounts(AccountDataRepository accountDataRepository){
+        this(accountDataRepository, new AccountCache(AccountCache.DEFAULT_MAXIMUM_SIZE));
+    }
+
+    /**
+     * Constructor with the cache of accounts to read through
+     * @param accountDataRepository repository
+     * @param accountCache cache of accounts
+     */
+    public ChartOfAccounts(AccountDataRepository accountDataRepository, AccountCache accountCache){
+        this(accountDataRepository, accountCache, AccountingMetrics.simple());
+    }
+
+    /**
+     * Constructor with the cache of accounts to read through and the metrics to time the operations with
+     * @param accountDataRepository repository
+     * @param accountCache cache of accounts
+     * @param metrics metrics of the operations
+     */
+    @Autowired
+    public ChartOfAccounts(AccountDataRepository accountDataRepository, AccountCache accountCache, AccountingMetrics metrics){
         this.accountDataRepository = accountDataRepository;
+        this.accountCache = accountCache;
+        this.metrics = metrics;
+        metrics.bind(accountCache);
+    }
+
+    /**
+     * Gets the cache of accounts, for its hit, miss and eviction counts
+     * @return account cache
+     */
+    public AccountCache getAccountCache() {
+        return accountCache;
+    }
+
+    /**
+     * Adds a listener of the accounts which are created, updated or deleted. It is called with the name of each account
+     * once its change is committed and in the snapshot, eg. to reopen the account in the balances.
+     * @param listener listener of the names of the changed accounts
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Gets the latest snapshot of the whole chart of accounts. The first call loads the chart, after which the snapshot
+     * is replaced after each committed change, so reading it never goes to the repository.
+     * @return snapshot of the chart of accounts
+     */
+    @Transactional(readOnly = true)
+    public ChartSnapshot getSnapshot() {
+        ChartSnapshot current = snapshot.get();
+        if(current != null) return current;
+        return metrics.time("loadSnapshot", null, () -> {
+            while(true){
+                ChartSnapshot latest = snapshot.get();
+                if(latest != null) return latest;
+                long changes = committedChanges.get();
+                ChartSnapshot loaded = ChartSnapshot.of(accountDataRepository.findAll());
+                // a change committed during the load may be missing from it, so load again
+                if(committedChanges.get() == changes && snapshot.compareAndSet(null, loaded)) return loaded;
+            }
+        });
     }
 
     /**
@@ -34,20 +120,36 @@ public class ChartOfAccounts {
      * @return Account
      */
     public Account getAccount(String name) {
-        AccountData data = accountDataRepository.findByName(name);
-        return ModelMapping.toAccount(data);
+        Timer.Sample sample = metrics.start();
+        AccountData data = null;
+        try {
+            data = accountCache.getAccount(name, accountDataRepository::findByName, this::whenCommitted);
+            return metrics.toAccount(data);
+        } finally {
+            metrics.stop(sample, "getAccount", data == null ? null : data.getAccountGroup());
+        }
     }
 
     /**
-     * Saves the account to repository if the account is present and not locked
+     * Saves the account to repository if the account is present and not locked, with one conditional update statement.
+     * If the account has a version, as when it was read with getAccount, it is only saved if it was not changed since.
      * @param account account to save
-     * @return account if save is successful, null otherwise
+     * @return account with its next version if save is successful, null otherwise
+     * @throws IllegalArgumentException if the opening balance has more decimal places than the currency allows
      */
     public Account updateAccount(Account account){
-        Account savedAccount = getAccount(account.getName());
-        if(savedAccount == null || savedAccount.isLocked()) return null;
-        AccountData accountData = accountDataRepository.save(ModelMapping.toAccountData(account));
-        return ModelMapping.toAccount(accountData);
+        checkOpenBal(account);
+        return metrics.time("updateAccount", account.getAccountGroup(), () -> {
+            AccountData accountData = metrics.toAccountData(account);
+            int updated = accountData.getVersion() == null
+                    ? accountDataRepository.updateIfUnlocked(accountData)
+                    : accountDataRepository.updateIfUnlockedAndVersion(accountData);
+            if(updated == 0) return null;
+            if(accountData.getVersion() != null) accountData.setVersion(accountData.getVersion() + 1);
+            afterCommit(() -> accountCache.invalidate(account.getName(), account.getAccountGroup()),
+                    current -> current.withAccount(accountData), List.of(account.getName()));
+            return metrics.toAccount(accountData);
+        });
     }
 
     /**
@@ -55,9 +157,9 @@ public class ChartOfAccounts {
      * @return hashmap of credit card accounts
      */
     public Streamable<Account> getCreditCardAccounts(){
-        return accountDataRepository
-                .findAllByBankNotNull()
-                .map(ModelMapping::toAccount);
+        return Streamable.of(metrics.time("getCreditCardAccounts", AccountGroup.CURRENT_LIABILITIES,
+                () -> accountCache.getCreditCardAccounts(accountDataRepository::findAllByBankNotNull, this::whenCommitted)))
+                .map(metrics::toAccount);
     }
 
     /**
@@ -66,18 +168,51 @@ public class ChartOfAccounts {
      * @return hashmap of accounts
      */
     public Streamable<Account> getAccounts(AccountGroup accountGroup){
-        return accountDataRepository
-                .findByAccountGroup(accountGroup.label)
-                .map(ModelMapping::toAccount);
+        return Streamable.of(metrics.time("getAccounts", accountGroup,
+                () -> accountCache.getAccounts(accountGroup, accountDataRepository::findByAccountGroup, this::whenCommitted)))
+                .map(metrics::toAccount);
     }
 
     /**
-     * lock all the accounts available
+     * lock all the accounts available, with one update statement
+     * @return number of accounts locked
      */
-    public void lock(){
-        Iterable<AccountData> allAccounts = accountDataRepository.findAll();
-        allAccounts.forEach(accountData -> accountData.setLock(true));
-        accountDataRepository.saveAll(allAccounts);
+    public int lock(){
+        return metrics.time("lock", null, () -> {
+            int locked = accountDataRepository.lockAll();
+            afterCommit(accountCache::invalidateAll, ChartSnapshot::locked);
+            return locked;
+        });
+    }
+
+    /**
+     * lock all the accounts of the account group, with one update statement
+     * @param accountGroup account group - eg. Current Assets, Revenue, etc
+     * @return number of accounts locked
+     */
+    public int lock(AccountGroup accountGroup){
+        return metrics.time("lockAccountGroup", accountGroup, () -> {
+            int locked = accountDataRepository.lockByAccountGroup(accountGroup);
+            afterCommit(accountCache::invalidateAll, current -> current.locked(accountGroup));
+            return locked;
+        });
+    }
+
+    /**
+     * lock the accounts with the names, with one update statement for every thousand names
+     * @param names names of the accounts
+     * @return number of accounts locked
+     */
+    public int lock(Collection<String> names){
+        return metrics.time("lockNames", null, () -> {
+            List<String> nameList = new ArrayList<>(names);
+            int locked = 0;
+            for(int from = 0; from < nameList.size(); from += MAX_NAMES_PER_QUERY){
+                locked += accountDataRepository.lockByNameIn(nameList.subList(from, Math.min(from + MAX_NAMES_PER_QUERY, nameList.size())));
+            }
+            afterCommit(accountCache::invalidateAll, current -> current.locked(nameList));
+            return locked;
+        });
     }
 
     /**
@@ -86,16 +221,135 @@ public class ChartOfAccounts {
      * @return true if successful, false if the operation failed (not found, locked)
      */
     public Boolean deleteAccount(String name){
+        Timer.Sample sample = metrics.start();
         AccountData accountData = accountDataRepository.findByName(name);
-        if(accountData == null || accountData.isLocked()) return false;
-        accountDataRepository.delete(accountData);
-        return true;
+        try {
+            if(accountData == null || accountData.isLocked()) return false;
+            accountDataRepository.delete(accountData);
+            afterCommit(() -> accountCache.invalidate(accountData.getName(), accountData.getAccountGroup()),
+                    current -> current.withoutAccount(name), List.of(name));
+            return true;
+        } finally {
+            metrics.stop(sample, "deleteAccount", accountData == null ? null : accountData.getAccountGroup());
+        }
     }
 
     private Account newAccount(Account account){
-        if(accountDataRepository.findByName(account.getName()) != null) return null;
-        AccountData accountData = accountDataRepository.save(ModelMapping.toAccountData(account));
-        return ModelMapping.toAccount(accountData);
+        checkOpenBal(account);
+        return metrics.time("newAccount", account.getAccountGroup(), () -> {
+            AccountData accountData = metrics.toAccountData(account);
+            try {
+                if(accountDataRepository.insertIfAbsent(accountData) == 0) return null;
+            } catch (DataIntegrityViolationException e) {
+                // lost the race to another creation of the name, which the primary key rejected
+                return null;
+            }
+            accountData.setVersion(0L);
+            afterCommit(() -> accountCache.invalidate(account.getName(), account.getAccountGroup()),
+                    current -> current.withAccount(accountData), List.of(account.getName()));
+            return metrics.toAccount(accountData);
+        });
+    }
+
+    /**
+     * Creates many new accounts at once. The names are checked for existing accounts with one query for every
+     * thousand names, and the new accounts are inserted in JDBC batches.
+     * @param accounts accounts to be created
+     * @return outcome for each account, in the same order as the given accounts
+     */
+    public List<AccountCreationResult> newAccounts(Collection<? extends Account> accounts){
+        return metrics.time("newAccounts", null, () -> createAccounts(accounts));
+    }
+
+    private List<AccountCreationResult> createAccounts(Collection<? extends Account> accounts){
+        List<String> names = accounts.stream().map(Account::getName).distinct().collect(Collectors.toList());
+        Set<String> existingNames = new HashSet<>();
+        for(int from = 0; from < names.size(); from += MAX_NAMES_PER_QUERY){
+            existingNames.addAll(accountDataRepository.findExistingNames(names.subList(from, Math.min(from + MAX_NAMES_PER_QUERY, names.size()))));
+        }
+
+        Set<String> requestedNames = new HashSet<>();
+        List<AccountData> newAccounts = new ArrayList<>();
+        List<AccountCreationResult> results = new ArrayList<>(accounts.size());
+        accounts.forEach(ChartOfAccounts::checkOpenBal);
+        for(Account account : accounts){
+            if(existingNames.contains(account.getName())){
+                results.add(new AccountCreationResult(account, AccountCreationResult.Status.ALREADY_EXISTS));
+            }else if(!requestedNames.add(account.getName())){
+                results.add(new AccountCreationResult(account, AccountCreationResult.Status.DUPLICATE_IN_REQUEST));
+            }else{
+                newAccounts.add(metrics.toAccountData(account));
+                results.add(new AccountCreationResult(account, AccountCreationResult.Status.CREATED));
+            }
+        }
+        if(newAccounts.isEmpty()) return results;
+
+        accountDataRepository.persistAll(newAccounts);
+        afterCommit(accountCache::invalidateAll, current -> current.withAccounts(newAccounts),
+                newAccounts.stream().map(AccountData::getName).collect(Collectors.toList()));
+        return results;
+    }
+
+    /**
+     * Checks that the opening balance fits the minor units of the currency, before the account is written, so that
+     * the balances can open it
+     * @param account account to check
+     * @throws IllegalArgumentException if the opening balance has more decimal places than the currency allows
+     */
+    private static void checkOpenBal(Account account){
+        if(!(account instanceof BalanceSheetAccount)) return;
+        BalanceSheetAccount balanceSheetAccount = (BalanceSheetAccount) account;
+        if(balanceSheetAccount.getOpenBal() != null) Money.toMinorUnits(balanceSheetAccount.getOpenBal(), balanceSheetAccount.getCurrency());
+    }
+
+    private void afterCommit(Runnable invalidation, UnaryOperator<ChartSnapshot> change){
+        afterCommit(invalidation, change, List.of());
+    }
+
+    /**
+     * Applies a change to the cache and publishes the next snapshot once the current transaction commits, or right away
+     * if there is no transaction, and then tells the listeners about the changed accounts. Nothing is applied if the
+     * transaction rolls back.
+     * @param invalidation invalidation of the cached accounts
+     * @param change change to apply to the current snapshot
+     * @param names names of the accounts created, updated or deleted
+     */
+    private void afterCommit(Runnable invalidation, UnaryOperator<ChartSnapshot> change, List<String> names){
+        Runnable publish = () -> {
+            invalidation.run();
+            snapshot.updateAndGet(current -> current == null ? null : change.apply(current));
+            committedChanges.incrementAndGet();
+            for(String name : names){
+                for(Consumer<String> listener : listeners){
+                    try {
+                        listener.accept(name);
+                    } catch (RuntimeException e) {
+                        // the change is committed, so a failing listener only misses it
+                        logger.error("Failed to tell a listener about the change of account {}", name, e);
+                    }
+                }
+            }
+        };
+        whenCommitted(publish);
+    }
+
+    /**
+     * Runs the task once the current transaction commits, or right away if there is no transaction, and never if the
+     * transaction rolls back. Accounts read in a transaction are cached this way, as the transaction may have changed
+     * them without committing.
+     * @param task task to run
+     */
+    private void whenCommitted(Runnable task){
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        }else{
+            task.run();
+        }
     }
 
     /**
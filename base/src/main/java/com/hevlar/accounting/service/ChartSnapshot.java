@@ -0,0 +1,186 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.util.ModelMapping;
+import org.springframework.data.util.Streamable;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Immutable, versioned view of the whole chart of accounts, indexed by name, account group and credit card status.
+ * Changes never modify a snapshot, they create a new one with the next version, so a reader holding a snapshot gets a
+ * consistent view of all the accounts no matter what is written in the meantime.
+ */
+public final class ChartSnapshot {
+
+    private final long version;
+    private final Map<String, AccountData> byName;
+    private final Map<AccountGroup, List<AccountData>> byGroup;
+    private final List<AccountData> creditCards;
+
+    private ChartSnapshot(long version, Map<String, AccountData> byName) {
+        this.version = version;
+        this.byName = Collections.unmodifiableMap(byName);
+
+        Map<AccountGroup, List<AccountData>> groups = new EnumMap<>(AccountGroup.class);
+        List<AccountData> cards = new ArrayList<>();
+        byName.values().forEach(accountData -> {
+            groups.computeIfAbsent(accountData.getAccountGroup(), accountGroup -> new ArrayList<>()).add(accountData);
+            if(accountData.getBank() != null) cards.add(accountData);
+        });
+        groups.replaceAll((accountGroup, accounts) -> Collections.unmodifiableList(accounts));
+        this.byGroup = Collections.unmodifiableMap(groups);
+        this.creditCards = Collections.unmodifiableList(cards);
+    }
+
+    /**
+     * Creates the first snapshot of the chart
+     * @param accounts all the accounts in the chart
+     * @return snapshot with version 1
+     */
+    public static ChartSnapshot of(Iterable<AccountData> accounts) {
+        Map<String, AccountData> byName = new LinkedHashMap<>();
+        accounts.forEach(accountData -> byName.put(accountData.getName(), accountData.copy()));
+        return new ChartSnapshot(1, byName);
+    }
+
+    /**
+     * Creates the next snapshot with the account added, or replaced if there is already an account with the same name
+     * @param accountData account to add
+     * @return next snapshot
+     */
+    public ChartSnapshot withAccount(AccountData accountData) {
+        return withAccounts(List.of(accountData));
+    }
+
+    /**
+     * Creates the next snapshot with the accounts added, or replaced if there are already accounts with the same names.
+     * An account older than the one held, by their versions, is ignored, as the changes of concurrent transactions may
+     * be applied in a different order than they were committed.
+     * @param accounts accounts to add
+     * @return next snapshot
+     */
+    public ChartSnapshot withAccounts(Collection<AccountData> accounts) {
+        Map<String, AccountData> next = new LinkedHashMap<>(byName);
+        accounts.forEach(accountData -> {
+            if(!isOlder(accountData, next.get(accountData.getName()))) next.put(accountData.getName(), accountData.copy());
+        });
+        return new ChartSnapshot(version + 1, next);
+    }
+
+    private static boolean isOlder(AccountData accountData, AccountData held) {
+        return held != null && held.getVersion() != null && accountData.getVersion() != null
+                && accountData.getVersion() < held.getVersion();
+    }
+
+    /**
+     * Creates the next snapshot without the account
+     * @param name name of the account to remove
+     * @return next snapshot
+     */
+    public ChartSnapshot withoutAccount(String name) {
+        Map<String, AccountData> next = new LinkedHashMap<>(byName);
+        next.remove(name);
+        return new ChartSnapshot(version + 1, next);
+    }
+
+    /**
+     * Creates the next snapshot with all the accounts locked
+     * @return next snapshot
+     */
+    public ChartSnapshot locked() {
+        return lockedWhere(accountData -> true);
+    }
+
+    /**
+     * Creates the next snapshot with all the accounts of the account group locked
+     * @param accountGroup account group
+     * @return next snapshot
+     */
+    public ChartSnapshot locked(AccountGroup accountGroup) {
+        return lockedWhere(accountData -> accountData.getAccountGroup() == accountGroup);
+    }
+
+    /**
+     * Creates the next snapshot with the accounts of the names locked
+     * @param names names of the accounts
+     * @return next snapshot
+     */
+    public ChartSnapshot locked(Collection<String> names) {
+        Set<String> nameSet = new HashSet<>(names);
+        return lockedWhere(accountData -> nameSet.contains(accountData.getName()));
+    }
+
+    private ChartSnapshot lockedWhere(Predicate<AccountData> condition) {
+        Map<String, AccountData> next = new LinkedHashMap<>(byName);
+        next.replaceAll((name, accountData) -> {
+            if(!condition.test(accountData) || Boolean.TRUE.equals(accountData.isLocked())) return accountData;
+            AccountData locked = accountData.copy();
+            locked.setLock(true);
+            if(locked.getVersion() != null) locked.setVersion(locked.getVersion() + 1);
+            return locked;
+        });
+        return new ChartSnapshot(version + 1, next);
+    }
+
+    /**
+     * Gets the version of this snapshot, which increases with every change to the chart
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of accounts in this snapshot
+     * @return number of accounts
+     */
+    public int size() {
+        return byName.size();
+    }
+
+    /**
+     * Gets the names of all the accounts
+     * @return names of the accounts
+     */
+    public Set<String> getNames() {
+        return byName.keySet();
+    }
+
+    /**
+     * Gets the account by name
+     * @param name name of account
+     * @return account, or null if not found
+     */
+    public Account getAccount(String name) {
+        return ModelMapping.toAccount(byName.get(name));
+    }
+
+    /**
+     * Gets all the accounts
+     * @return accounts
+     */
+    public Streamable<Account> getAccounts() {
+        return Streamable.of(byName.values()).map(ModelMapping::toAccount);
+    }
+
+    /**
+     * Gets the accounts of the account group
+     * @param accountGroup account group - eg. Current Assets, Revenue, etc
+     * @return accounts
+     */
+    public Streamable<Account> getAccounts(AccountGroup accountGroup) {
+        return Streamable.of(byGroup.getOrDefault(accountGroup, List.of())).map(ModelMapping::toAccount);
+    }
+
+    /**
+     * Gets the credit card accounts
+     * @return credit card accounts
+     */
+    public Streamable<Account> getCreditCardAccounts() {
+        return Streamable.of(creditCards).map(ModelMapping::toAccount);
+    }
+}
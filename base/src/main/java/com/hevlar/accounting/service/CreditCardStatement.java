@@ -0,0 +1,113 @@
+package com.hevlar.accounting.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Statement of one credit card for one statement cycle
+ */
+public class CreditCardStatement {
+
+    private final String account;
+    private final LocalDate periodStart;
+    private final LocalDate statementDate;
+    private final LocalDate dueDate;
+    private final BigDecimal openingBalance;
+    private final BigDecimal charges;
+    private final BigDecimal payments;
+    private final int entryCount;
+
+    /**
+     * Default constructor
+     * @param account name of the credit card account
+     * @param periodStart first date of the statement cycle
+     * @param statementDate last date of the statement cycle, when the statement is generated
+     * @param dueDate date when the statement is due for payment
+     * @param openingBalance amount owed at the start of the cycle
+     * @param charges total amount credited to the card in the cycle, eg. purchases
+     * @param payments total amount debited to the card in the cycle, eg. payments and refunds
+     * @param entryCount number of journal entries in the cycle
+     */
+    public CreditCardStatement(String account, LocalDate periodStart, LocalDate statementDate, LocalDate dueDate, BigDecimal openingBalance, BigDecimal charges, BigDecimal payments, int entryCount) {
+        this.account = account;
+        this.periodStart = periodStart;
+        this.statementDate = statementDate;
+        this.dueDate = dueDate;
+        this.openingBalance = openingBalance;
+        this.charges = charges;
+        this.payments = payments;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Gets the name of the credit card account
+     * @return account name
+     */
+    public String getAccount() {
+        return account;
+    }
+
+    /**
+     * Gets the first date of the statement cycle
+     * @return period start
+     */
+    public LocalDate getPeriodStart() {
+        return periodStart;
+    }
+
+    /**
+     * Gets the statement date, ie the last date of the statement cycle
+     * @return statement date
+     */
+    public LocalDate getStatementDate() {
+        return statementDate;
+    }
+
+    /**
+     * Gets the date when the statement is due for payment
+     * @return due date
+     */
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    /**
+     * Gets the amount owed at the start of the cycle
+     * @return opening balance
+     */
+    public BigDecimal getOpeningBalance() {
+        return openingBalance;
+    }
+
+    /**
+     * Gets the total amount charged to the card in the cycle
+     * @return charges
+     */
+    public BigDecimal getCharges() {
+        return charges;
+    }
+
+    /**
+     * Gets the total amount paid or refunded to the card in the cycle
+     * @return payments
+     */
+    public BigDecimal getPayments() {
+        return payments;
+    }
+
+    /**
+     * Gets the amount owed at the statement date
+     * @return closing balance
+     */
+    public BigDecimal getClosingBalance() {
+        return openingBalance.add(charges).subtract(payments);
+    }
+
+    /**
+     * Gets the number of journal entries in the cycle
+     * @return number of entries
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+}
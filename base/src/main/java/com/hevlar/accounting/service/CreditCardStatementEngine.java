@@ -0,0 +1,150 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.model.CreditCardAccount;
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.model.Money;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Generates the statements of all the credit cards together. The journal entries of every card are read in one
+ * streaming pass and added to the totals of their statement cycle, then the cycles of each card are walked in order to
+ * carry the balance from one statement to the next.
+ * An entry appears in the statement of its debit or credit statement date, or if that is not set, in the statement
+ * after its posted date, or its transaction date if it is not posted yet.
+ * The totals are kept in minor units of the currency of each card, see {@link Money}.
+ */
+@Service
+@Transactional(readOnly = true)
+public class CreditCardStatementEngine {
+
+    private final ChartOfAccounts chartOfAccounts;
+    private final JournalEntryDataRepository journalEntryDataRepository;
+
+    /**
+     * Default constructor
+     * @param chartOfAccounts chart of accounts
+     * @param journalEntryDataRepository repository of journal entries
+     */
+    public CreditCardStatementEngine(ChartOfAccounts chartOfAccounts, JournalEntryDataRepository journalEntryDataRepository) {
+        this.chartOfAccounts = chartOfAccounts;
+        this.journalEntryDataRepository = journalEntryDataRepository;
+    }
+
+    /**
+     * Generates the statements of all the credit cards with statement dates within the period
+     * @param from first statement date, inclusive
+     * @param to last statement date, inclusive
+     * @return statements, by card and statement date
+     */
+    public List<CreditCardStatement> generate(LocalDate from, LocalDate to) {
+        List<CreditCardAccount> cards = new ArrayList<>();
+        chartOfAccounts.getCreditCardAccounts().forEach(account -> cards.add((CreditCardAccount) account));
+        if(cards.isEmpty()) return List.of();
+        List<String> names = new ArrayList<>();
+        cards.forEach(card -> names.add(card.getName()));
+        try (Stream<JournalEntryData> entries = journalEntryDataRepository.streamByAccountIn(names)) {
+            return generate(cards, entries, from, to);
+        }
+    }
+
+    /**
+     * Generates the statements of the credit cards with statement dates within the period, from the journal entries
+     * @param cards credit card accounts
+     * @param entries journal entries, entries of other accounts are ignored
+     * @param from first statement date, inclusive
+     * @param to last statement date, inclusive
+     * @return statements, by card and statement date
+     */
+    public List<CreditCardStatement> generate(Collection<CreditCardAccount> cards, Stream<JournalEntryData> entries, LocalDate from, LocalDate to) {
+        if(from.isAfter(to)) throw new IllegalArgumentException("Start of the period cannot be after its end");
+        Map<String, CardCycles> byName = new HashMap<>();
+        cards.forEach(card -> byName.put(card.getName(), new CardCycles(card)));
+
+        entries.forEach(entry -> {
+            LocalDate date = entry.getPostDate() != null ? entry.getPostDate() : entry.getTxDate();
+            CardCycles debit = byName.get(entry.getDebitAccount());
+            if(debit != null) debit.add(entry.getDebitStatementDate(), date, Money.negate(Money.toMinorUnits(entry.getAmount(), debit.card.getCurrency())));
+            CardCycles credit = byName.get(entry.getCreditAccount());
+            if(credit != null) credit.add(entry.getCreditStatementDate(), date, Money.toMinorUnits(entry.getAmount(), credit.card.getCurrency()));
+        });
+
+        List<CreditCardStatement> statements = new ArrayList<>();
+        cards.forEach(card -> byName.get(card.getName()).statements(from, to, statements));
+        return statements;
+    }
+
+    /**
+     * Sets the statement dates of the credit card accounts of the entry which are not set yet
+     * @param journalEntry journal entry
+     * @return true if successful, false if the entry is locked
+     */
+    public Boolean assignStatementDates(JournalEntry journalEntry) {
+        LocalDate date = journalEntry.getPostDate() != null ? journalEntry.getPostDate() : journalEntry.getTxDate();
+        Boolean result = true;
+        Account debit = journalEntry.getDebit();
+        if(debit instanceof CreditCardAccount && journalEntry.getDebitStatementDate() == null){
+            result = journalEntry.setDebitStatementDate(((CreditCardAccount) debit).getStatementDate(date));
+        }
+        Account credit = journalEntry.getCredit();
+        if(credit instanceof CreditCardAccount && journalEntry.getCreditStatementDate() == null){
+            result = journalEntry.setCreditStatementDate(((CreditCardAccount) credit).getStatementDate(date)) && result;
+        }
+        return result;
+    }
+
+    /**
+     * Totals of each statement cycle of one card
+     */
+    private static class CardCycles {
+
+        private final CreditCardAccount card;
+        private final Map<LocalDate, Cycle> cycles = new HashMap<>();
+
+        private CardCycles(CreditCardAccount card) {
+            this.card = card;
+        }
+
+        private void add(LocalDate statementDate, LocalDate date, long change) {
+            if(card.getOpenDate() != null && date.isBefore(card.getOpenDate())) return;
+            // an explicit statement date is moved onto the current cycles, in case the statement day has changed
+            LocalDate cycleDate = card.getStatementDate(statementDate != null ? statementDate : date);
+            Cycle cycle = cycles.computeIfAbsent(cycleDate, key -> new Cycle());
+            if(change >= 0) cycle.charges = Money.add(cycle.charges, change);
+            else cycle.payments = Money.subtract(cycle.payments, change);
+            cycle.entryCount++;
+        }
+
+        private void statements(LocalDate from, LocalDate to, List<CreditCardStatement> statements) {
+            LocalDate periodStart = card.getOpenDate();
+            LocalDate statementDate = card.getStatementDate(periodStart);
+            long balance = card.getOpenBal() == null ? 0 : Money.toMinorUnits(card.getOpenBal(), card.getCurrency());
+            while(!statementDate.isAfter(to)){
+                Cycle cycle = cycles.getOrDefault(statementDate, Cycle.EMPTY);
+                if(!statementDate.isBefore(from)){
+                    statements.add(new CreditCardStatement(card.getName(), periodStart, statementDate, card.getDueDate(statementDate),
+                            Money.toBigDecimal(balance, card.getCurrency()), Money.toBigDecimal(cycle.charges, card.getCurrency()),
+                            Money.toBigDecimal(cycle.payments, card.getCurrency()), cycle.entryCount));
+                }
+                balance = Money.subtract(Money.add(balance, cycle.charges), cycle.payments);
+                periodStart = statementDate.plusDays(1);
+                statementDate = card.getStatementDate(periodStart);
+            }
+        }
+    }
+
+    private static class Cycle {
+        private static final Cycle EMPTY = new Cycle();
+
+        private long charges;
+        private long payments;
+        private int entryCount;
+    }
+}
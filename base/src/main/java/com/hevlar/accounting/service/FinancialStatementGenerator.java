@@ -0,0 +1,167 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.model.BalanceSheetAccount;
+import com.hevlar.accounting.model.Money;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds the trial balance, balance sheet and income statement together from one snapshot of the chart of accounts.
+ * The account groups are aggregated in parallel in a fork/join pool, and the balance of each account is an as-of-date
+ * lookup in the {@link BalanceIndex}, so the cost does not depend on the number of journal entries.
+ * The aggregation is done in minor units of the currency of the statements, see {@link Money}. The balances of accounts
+ * in other currencies are converted once per account with the rate of the end of the period from the
+ * {@link FxRateTable}, or without exchange if there is no rate table.
+ */
+public class FinancialStatementGenerator {
+
+    private final ChartOfAccounts chartOfAccounts;
+    private final BalanceIndex balanceIndex;
+    private final Currency currency;
+    private final FxRateTable fxRateTable;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a generator running in the common fork/join pool
+     * @param chartOfAccounts chart of accounts
+     * @param balanceIndex index of the balances of the accounts
+     * @param currency currency of the statements
+     */
+    public FinancialStatementGenerator(ChartOfAccounts chartOfAccounts, BalanceIndex balanceIndex, Currency currency) {
+        this(chartOfAccounts, balanceIndex, currency, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a generator converting the balances with the rate table, running in the common fork/join pool
+     * @param chartOfAccounts chart of accounts
+     * @param balanceIndex index of the balances of the accounts
+     * @param currency currency of the statements
+     * @param fxRateTable exchange rates to the currency of the statements
+     */
+    public FinancialStatementGenerator(ChartOfAccounts chartOfAccounts, BalanceIndex balanceIndex, Currency currency, FxRateTable fxRateTable) {
+        this(chartOfAccounts, balanceIndex, currency, fxRateTable, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Default constructor
+     * @param chartOfAccounts chart of accounts
+     * @param balanceIndex index of the balances of the accounts
+     * @param currency currency of the statements
+     * @param fxRateTable exchange rates to the currency of the statements, or null to not exchange
+     * @param pool fork/join pool to aggregate the account groups in
+     */
+    public FinancialStatementGenerator(ChartOfAccounts chartOfAccounts, BalanceIndex balanceIndex, Currency currency, FxRateTable fxRateTable, ForkJoinPool pool) {
+        this.chartOfAccounts = chartOfAccounts;
+        this.balanceIndex = balanceIndex;
+        this.currency = currency;
+        this.fxRateTable = fxRateTable;
+        this.pool = pool;
+    }
+
+    /**
+     * Generates the financial statements from the opening of the accounts up to the date
+     * @param asOf last date of the statements
+     * @return financial statements
+     */
+    public FinancialStatements generate(LocalDate asOf) {
+        return generate(null, asOf);
+    }
+
+    /**
+     * Generates the financial statements of the period
+     * @param from first date of the period, or null for a period from the opening of the accounts
+     * @param to last date of the period
+     * @return financial statements
+     */
+    public FinancialStatements generate(LocalDate from, LocalDate to) {
+        return generate(chartOfAccounts.getSnapshot(), from, to);
+    }
+
+    /**
+     * Generates the financial statements of the period for the accounts in the snapshot
+     * @param snapshot snapshot of the chart of accounts
+     * @param from first date of the period, or null for a period from the opening of the accounts
+     * @param to last date of the period
+     * @return financial statements
+     */
+    public FinancialStatements generate(ChartSnapshot snapshot, LocalDate from, LocalDate to) {
+        if(from != null && from.isAfter(to)) throw new IllegalArgumentException("Start of the period cannot be after its end");
+        AccountGroup[] accountGroups = AccountGroup.values();
+        Map<AccountGroup, GroupBalance> groups = pool.invoke(new GroupTask(snapshot, accountGroups, 0, accountGroups.length, from, to));
+        return new FinancialStatements(from, to, currency, groups);
+    }
+
+    private AccountBalance balanceOf(Account account, LocalDate from, LocalDate to) {
+        balanceIndex.open(account);
+        String name = account.getName();
+        Currency accountCurrency = balanceIndex.getCurrency(name);
+        if(accountCurrency == null) return new AccountBalance(name, account.getAccountGroup(), currency, 0, 0);
+        long balance = balanceIndex.getBalanceUnits(name, to);
+        long start;
+        if(from != null){
+            start = balanceIndex.getBalanceUnits(name, from.minusDays(1));
+        }else if(account instanceof BalanceSheetAccount && ((BalanceSheetAccount) account).getOpenBal() != null){
+            start = Money.toMinorUnits(((BalanceSheetAccount) account).getOpenBal(), accountCurrency);
+        }else{
+            start = 0;
+        }
+        return new AccountBalance(name, account.getAccountGroup(), currency,
+                convert(balance, accountCurrency, to),
+                convert(Money.subtract(balance, start), accountCurrency, to));
+    }
+
+    private long convert(long units, Currency from, LocalDate date) {
+        if(fxRateTable == null) return Money.rescale(units, from, currency);
+        return fxRateTable.convert(units, from, currency, date);
+    }
+
+    /**
+     * Aggregates a range of account groups, splitting it in halves until each task has a single group
+     */
+    private class GroupTask extends RecursiveTask<Map<AccountGroup, GroupBalance>> {
+
+        private final ChartSnapshot snapshot;
+        private final AccountGroup[] accountGroups;
+        private final int start;
+        private final int end;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        private GroupTask(ChartSnapshot snapshot, AccountGroup[] accountGroups, int start, int end, LocalDate from, LocalDate to) {
+            this.snapshot = snapshot;
+            this.accountGroups = accountGroups;
+            this.start = start;
+            this.end = end;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<AccountGroup, GroupBalance> compute() {
+            if(end - start == 1){
+                AccountGroup accountGroup = accountGroups[start];
+                List<AccountBalance> accounts = new ArrayList<>();
+                snapshot.getAccounts(accountGroup).forEach(account -> accounts.add(balanceOf(account, from, to)));
+                Map<AccountGroup, GroupBalance> groups = new EnumMap<>(AccountGroup.class);
+                groups.put(accountGroup, new GroupBalance(accountGroup, currency, accounts));
+                return groups;
+            }
+            int middle = (start + end) >>> 1;
+            GroupTask left = new GroupTask(snapshot, accountGroups, start, middle, from, to);
+            GroupTask right = new GroupTask(snapshot, accountGroups, middle, end, from, to);
+            left.fork();
+            Map<AccountGroup, GroupBalance> groups = right.compute();
+            groups.putAll(left.join());
+            return groups;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.model.AccountType;
+import com.hevlar.accounting.model.EntryType;
+import com.hevlar.accounting.model.Money;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Trial balance, balance sheet and income statement of a period, built from the balances of every account group.
+ * The balance sheet and the trial balance are the balances at the end of the period, and the income statement is the
+ * change of the balances within the period. All the amounts are in the currency of the statements.
+ */
+public class FinancialStatements {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Currency currency;
+    private final Map<AccountGroup, GroupBalance> groups;
+
+    /**
+     * Default constructor
+     * @param from first date of the period, or null for a period from the opening of the accounts
+     * @param to last date of the period
+     * @param currency currency of the statements
+     * @param groups balances of every account group
+     */
+    public FinancialStatements(LocalDate from, LocalDate to, Currency currency, Map<AccountGroup, GroupBalance> groups) {
+        this.from = from;
+        this.to = to;
+        this.currency = currency;
+        this.groups = Collections.unmodifiableMap(groups);
+    }
+
+    /**
+     * Gets the first date of the period
+     * @return first date, or null if the period is from the opening of the accounts
+     */
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    /**
+     * Gets the last date of the period
+     * @return last date
+     */
+    public LocalDate getTo() {
+        return to;
+    }
+
+    /**
+     * Gets the currency of the statements
+     * @return currency
+     */
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    /**
+     * Gets the balances of the account group
+     * @param accountGroup account group
+     * @return balances of the group
+     */
+    public GroupBalance getGroup(AccountGroup accountGroup) {
+        return groups.get(accountGroup);
+    }
+
+    /**
+     * Gets the trial balance, ie the balances of all the accounts at the end of the period
+     * @return account balances, by account group
+     */
+    public List<AccountBalance> getTrialBalance() {
+        return Arrays.stream(AccountGroup.values())
+                .flatMap(accountGroup -> groups.get(accountGroup).getAccounts().stream())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the total of the debit side of the trial balance
+     * @return total debits
+     */
+    public BigDecimal getTotalDebits() {
+        return total(EntryType.DEBIT);
+    }
+
+    /**
+     * Gets the total of the credit side of the trial balance
+     * @return total credits
+     */
+    public BigDecimal getTotalCredits() {
+        return total(EntryType.CREDIT);
+    }
+
+    /**
+     * Gets the balance sheet, ie the balances of the balance sheet account groups at the end of the period
+     * @return balances of the balance sheet groups
+     */
+    public List<GroupBalance> getBalanceSheet() {
+        return groupsOf(AccountType.BalanceSheet);
+    }
+
+    /**
+     * Gets the income statement, ie the changes of the income statement account groups within the period
+     * @return balances of the income statement groups
+     */
+    public List<GroupBalance> getIncomeStatement() {
+        return groupsOf(AccountType.IncomeStatement);
+    }
+
+    /**
+     * Gets the net income of the period, ie revenue and gains less expenses and losses
+     * @return net income, negative for a net loss
+     */
+    public BigDecimal getNetIncome() {
+        long netIncome = 0;
+        for(GroupBalance groupBalance : getIncomeStatement()){
+            long change = groupBalance.getChangeUnits();
+            netIncome = groupBalance.getAccountGroup().entryType == EntryType.CREDIT ? Money.add(netIncome, change) : Money.subtract(netIncome, change);
+        }
+        return Money.toBigDecimal(netIncome, currency);
+    }
+
+    private BigDecimal total(EntryType entryType) {
+        long total = 0;
+        for(GroupBalance groupBalance : groups.values()){
+            for(AccountBalance accountBalance : groupBalance.getAccounts()){
+                long balance = accountBalance.getBalanceUnits();
+                if(accountBalance.getEntryType() == entryType) total = Money.add(total, balance < 0 ? Money.negate(balance) : balance);
+            }
+        }
+        return Money.toBigDecimal(total, currency);
+    }
+
+    private List<GroupBalance> groupsOf(AccountType accountType) {
+        return Arrays.stream(AccountGroup.values())
+                .filter(accountGroup -> accountGroup.accountType == accountType)
+                .map(groups::get)
+                .collect(Collectors.toList());
+    }
+}
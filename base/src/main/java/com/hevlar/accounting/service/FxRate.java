@@ -0,0 +1,65 @@
+package com.hevlar.accounting.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Currency;
+
+/**
+ * Exchange rate of a currency pair, effective from a date until the next rate of the same pair
+ */
+public class FxRate {
+
+    private final Currency from;
+    private final Currency to;
+    private final LocalDate effectiveDate;
+    private final BigDecimal rate;
+
+    /**
+     * Default constructor
+     * @param from currency converted from
+     * @param to currency converted to
+     * @param effectiveDate date from which the rate is used
+     * @param rate amount of the to currency for one unit of the from currency
+     */
+    public FxRate(Currency from, Currency to, LocalDate effectiveDate, BigDecimal rate) {
+        if(from == null || to == null) throw new NullPointerException("Currency cannot be null");
+        if(effectiveDate == null) throw new NullPointerException("Effective date cannot be null");
+        if(rate == null || rate.signum() <= 0) throw new IllegalArgumentException("Rate must be positive");
+        this.from = from;
+        this.to = to;
+        this.effectiveDate = effectiveDate;
+        this.rate = rate;
+    }
+
+    /**
+     * Gets the currency converted from
+     * @return currency
+     */
+    public Currency getFrom() {
+        return from;
+    }
+
+    /**
+     * Gets the currency converted to
+     * @return currency
+     */
+    public Currency getTo() {
+        return to;
+    }
+
+    /**
+     * Gets the date from which the rate is used
+     * @return effective date
+     */
+    public LocalDate getEffectiveDate() {
+        return effectiveDate;
+    }
+
+    /**
+     * Gets the amount of the to currency for one unit of the from currency
+     * @return rate
+     */
+    public BigDecimal getRate() {
+        return rate;
+    }
+}
@@ -0,0 +1,179 @@
+package com.hevlar.accounting.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hevlar.accounting.model.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Immutable table of effective-dated exchange rates, loaded from local CSV or JSON files, so it works without any
+ * network access. The rates of each currency pair are kept in arrays sorted by effective date, and the rate of a date
+ * is found by binary search, ie O(log n) for n rates of the pair. The inverse of each rate is derived for the pairs
+ * which are not given in the other direction.
+ * <p>
+ * CSV files have a header line and the columns from, to, date and rate, eg. {@code USD,SGD,2021-01-01,1.3245}.
+ * JSON files are an array of objects with the same fields, eg. {@code [{"from":"USD","to":"SGD","date":"2021-01-01","rate":1.3245}]}.
+ */
+public class FxRateTable {
+
+    private static final MathContext INVERSE_PRECISION = MathContext.DECIMAL64;
+
+    private final Map<String, PairRates> pairs;
+
+    private FxRateTable(Map<String, PairRates> pairs) {
+        this.pairs = pairs;
+    }
+
+    /**
+     * Creates the table from the rates
+     * @param rates exchange rates
+     * @return rate table
+     */
+    public static FxRateTable of(Collection<FxRate> rates) {
+        Map<String, TreeMap<LocalDate, BigDecimal>> given = new HashMap<>();
+        rates.forEach(fxRate -> given.computeIfAbsent(key(fxRate.getFrom(), fxRate.getTo()), key -> new TreeMap<>())
+                .put(fxRate.getEffectiveDate(), fxRate.getRate()));
+
+        Map<String, TreeMap<LocalDate, BigDecimal>> all = new HashMap<>(given);
+        rates.forEach(fxRate -> {
+            String inverseKey = key(fxRate.getTo(), fxRate.getFrom());
+            if(given.containsKey(inverseKey)) return;
+            all.computeIfAbsent(inverseKey, key -> new TreeMap<>())
+                    .put(fxRate.getEffectiveDate(), BigDecimal.ONE.divide(fxRate.getRate(), INVERSE_PRECISION));
+        });
+
+        Map<String, PairRates> pairs = new HashMap<>();
+        all.forEach((key, byDate) -> pairs.put(key, new PairRates(byDate)));
+        return new FxRateTable(pairs);
+    }
+
+    /**
+     * Loads the table from a CSV or JSON file, by the extension of the file
+     * @param file .csv or .json file
+     * @return rate table
+     * @throws IOException if the file cannot be read
+     */
+    public static FxRateTable load(Path file) throws IOException {
+        String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if(fileName.endsWith(".json")){
+            try (InputStream in = Files.newInputStream(file)) {
+                return fromJson(in);
+            }
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return fromCsv(reader);
+        }
+    }
+
+    /**
+     * Reads the table from CSV
+     * @param reader CSV with a header line, and columns from, to, date and rate
+     * @return rate table
+     * @throws IOException if the CSV cannot be read
+     * @throws IllegalArgumentException if a line is not a valid rate
+     */
+    public static FxRateTable fromCsv(Reader reader) throws IOException {
+        List<FxRate> rates = new ArrayList<>();
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        // skip the header
+        lines.readLine();
+        int lineNumber = 1;
+        String line;
+        while((line = lines.readLine()) != null){
+            lineNumber++;
+            if(line.isBlank()) continue;
+            String[] columns = line.split(",");
+            if(columns.length != 4) throw new IllegalArgumentException("Invalid exchange rate at line " + lineNumber + ": " + line);
+            rates.add(rate(columns[0], columns[1], columns[2], columns[3]));
+        }
+        return of(rates);
+    }
+
+    /**
+     * Reads the table from JSON
+     * @param in JSON array of objects with fields from, to, date and rate
+     * @return rate table
+     * @throws IOException if the JSON cannot be read
+     */
+    public static FxRateTable fromJson(InputStream in) throws IOException {
+        List<FxRate> rates = new ArrayList<>();
+        for(JsonNode node : new ObjectMapper().readTree(in)){
+            rates.add(rate(node.path("from").asText(), node.path("to").asText(), node.path("date").asText(), node.path("rate").asText()));
+        }
+        return of(rates);
+    }
+
+    /**
+     * Gets the rate of the currency pair effective on the date
+     * @param from currency converted from
+     * @param to currency converted to
+     * @param date date of the conversion
+     * @return rate, ie amount of the to currency for one unit of the from currency
+     * @throws NoSuchElementException if there is no rate of the pair on or before the date
+     */
+    public BigDecimal getRate(Currency from, Currency to, LocalDate date) {
+        if(from.equals(to)) return BigDecimal.ONE;
+        PairRates pairRates = pairs.get(key(from, to));
+        BigDecimal rate = pairRates == null ? null : pairRates.rateOn(date.toEpochDay());
+        if(rate == null) throw new NoSuchElementException("No exchange rate from " + from + " to " + to + " on " + date);
+        return rate;
+    }
+
+    /**
+     * Converts an amount in minor units of one currency to minor units of another, rounding half even
+     * @param units amount in minor units of the from currency
+     * @param from currency converted from
+     * @param to currency converted to
+     * @param date date of the conversion
+     * @return amount in minor units of the to currency
+     * @throws NoSuchElementException if there is no rate of the pair on or before the date
+     */
+    public long convert(long units, Currency from, Currency to, LocalDate date) {
+        if(from.equals(to)) return units;
+        return Money.roundToMinorUnits(Money.toBigDecimal(units, from).multiply(getRate(from, to, date)), to);
+    }
+
+    private static FxRate rate(String from, String to, String date, String rate) {
+        return new FxRate(Currency.getInstance(from.trim()), Currency.getInstance(to.trim()), LocalDate.parse(date.trim()), new BigDecimal(rate.trim()));
+    }
+
+    private static String key(Currency from, Currency to) {
+        return from.getCurrencyCode() + "/" + to.getCurrencyCode();
+    }
+
+    /**
+     * Rates of one currency pair, in parallel arrays sorted by effective date
+     */
+    private static class PairRates {
+        private final long[] effectiveDays;
+        private final BigDecimal[] rates;
+
+        private PairRates(SortedMap<LocalDate, BigDecimal> byDate) {
+            effectiveDays = new long[byDate.size()];
+            rates = new BigDecimal[byDate.size()];
+            int i = 0;
+            for(Map.Entry<LocalDate, BigDecimal> entry : byDate.entrySet()){
+                effectiveDays[i] = entry.getKey().toEpochDay();
+                rates[i++] = entry.getValue();
+            }
+        }
+
+        private BigDecimal rateOn(long epochDay) {
+            int index = Arrays.binarySearch(effectiveDays, epochDay);
+            // when not found, the latest rate before the date is just before the insertion point
+            if(index < 0) index = -index - 2;
+            return index < 0 ? null : rates[index];
+        }
+    }
+}
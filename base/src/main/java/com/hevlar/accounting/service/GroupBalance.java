@@ -0,0 +1,89 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.model.Money;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Balances of the accounts of one account group in the financial statements, with their totals
+ */
+public class GroupBalance {
+
+    private final AccountGroup accountGroup;
+    private final List<AccountBalance> accounts;
+    private final Currency currency;
+    private final long balance;
+    private final long change;
+
+    /**
+     * Default constructor, totalling the balances of the accounts
+     * @param accountGroup account group
+     * @param currency currency of the statements
+     * @param accounts balances of the accounts of the group
+     */
+    public GroupBalance(AccountGroup accountGroup, Currency currency, List<AccountBalance> accounts) {
+        this.accountGroup = accountGroup;
+        this.currency = currency;
+        this.accounts = Collections.unmodifiableList(accounts);
+        long balanceTotal = 0;
+        long changeTotal = 0;
+        for(AccountBalance accountBalance : accounts){
+            balanceTotal = Money.add(balanceTotal, accountBalance.getBalanceUnits());
+            changeTotal = Money.add(changeTotal, accountBalance.getChangeUnits());
+        }
+        this.balance = balanceTotal;
+        this.change = changeTotal;
+    }
+
+    /**
+     * Gets the account group
+     * @return account group
+     */
+    public AccountGroup getAccountGroup() {
+        return accountGroup;
+    }
+
+    /**
+     * Gets the balances of the accounts of the group
+     * @return account balances
+     */
+    public List<AccountBalance> getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Gets the total balance of the group at the end of the period
+     * @return total balance
+     */
+    public BigDecimal getBalance() {
+        return Money.toBigDecimal(balance, currency);
+    }
+
+    /**
+     * Gets the total balance of the group at the end of the period in minor units
+     * @return total balance in minor units
+     */
+    public long getBalanceUnits() {
+        return balance;
+    }
+
+    /**
+     * Gets the total change of the balances of the group within the period
+     * @return total change
+     */
+    public BigDecimal getChange() {
+        return Money.toBigDecimal(change, currency);
+    }
+
+    /**
+     * Gets the total change of the balances of the group within the period in minor units
+     * @return total change in minor units
+     */
+    public long getChangeUnits() {
+        return change;
+    }
+}
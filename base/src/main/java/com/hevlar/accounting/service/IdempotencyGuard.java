@@ -0,0 +1,129 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.repository.IdempotencyKeyData;
+import com.hevlar.accounting.repository.IdempotencyKeyDataRepository;
+import com.hevlar.accounting.util.BloomFilter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Finds the journal entries already posted with an idempotency key. The keys are kept in a Bloom filter, so a new key,
+ * the common case, is answered from memory, and only a key which might have been used is looked up in the key table.
+ * The filter is rebuilt from the key table when the application is ready. The unique key of the table still rejects
+ * a duplicate which gets past the filter, eg. one posted by another instance.
+ * With the journal log, a key is written to the key table by the projector, with its entry, so the keys of the entries
+ * which are durable in the log but not projected yet are kept in memory until they are.
+ */
+public class IdempotencyGuard {
+
+    private final IdempotencyKeyDataRepository idempotencyKeyDataRepository;
+    private final long expectedKeys;
+    private final double falsePositiveProbability;
+    private volatile BloomFilter filter;
+    private volatile BloomFilter rebuilding;
+    private final Map<String, Long> unprojected = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor
+     * @param idempotencyKeyDataRepository repository of the keys
+     * @param expectedKeys number of keys the filter is sized for, grown to twice the existing keys on rebuild
+     * @param falsePositiveProbability probability that a new key is looked up in the key table, eg. 0.01
+     */
+    public IdempotencyGuard(IdempotencyKeyDataRepository idempotencyKeyDataRepository, long expectedKeys, double falsePositiveProbability) {
+        this.idempotencyKeyDataRepository = idempotencyKeyDataRepository;
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.filter = new BloomFilter(expectedKeys, falsePositiveProbability);
+    }
+
+    /**
+     * Rebuilds the filter from all the keys in the key table, in one streaming query
+     * @return number of keys
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public long rebuild() {
+        long existing = idempotencyKeyDataRepository.count();
+        BloomFilter next = new BloomFilter(Math.max(expectedKeys, existing * 2), falsePositiveProbability);
+        // keys recorded while the table is read go into both filters
+        rebuilding = next;
+        long count = 0;
+        try (Stream<String> keys = idempotencyKeyDataRepository.streamKeys()) {
+            for(String key : (Iterable<String>) keys::iterator){
+                next.add(key);
+                count++;
+            }
+            filter = next;
+        } finally {
+            rebuilding = null;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the journal id of the entry posted with the key
+     * @param key idempotency key
+     * @return journal id, or null if no entry was posted with the key
+     */
+    public Long findJournalId(String key) {
+        if(!filter.mightContain(key)) return null;
+        Long logged = unprojected.get(key);
+        if(logged != null) return logged;
+        return idempotencyKeyDataRepository.findById(key).map(IdempotencyKeyData::getJournalId).orElse(null);
+    }
+
+    /**
+     * Gets the journal id of the entry posted with the key from the key table, without asking the filter first, eg. for a
+     * key which was rejected as a duplicate because another instance posted it
+     * @param key idempotency key
+     * @return journal id, or null if no entry was posted with the key
+     */
+    public Long findPostedJournalId(String key) {
+        Long logged = unprojected.get(key);
+        if(logged != null) return logged;
+        return idempotencyKeyDataRepository.findById(key).map(IdempotencyKeyData::getJournalId).orElse(null);
+    }
+
+    /**
+     * Inserts the keys of the entries being posted, within the transaction of the entries
+     * @param keys idempotency keys with their journal ids
+     */
+    public void insert(List<IdempotencyKeyData> keys) {
+        idempotencyKeyDataRepository.persistAll(keys);
+    }
+
+    /**
+     * Remembers the key of an entry which is durable in the journal log, until the projector inserts it into the key table
+     * @param key idempotency key
+     * @param journalId journal id of the entry
+     */
+    public void logged(String key, Long journalId) {
+        unprojected.put(key, journalId);
+        record(key);
+    }
+
+    /**
+     * Forgets the keys which the projector committed to the key table
+     * @param keys idempotency keys
+     */
+    public void projected(Collection<String> keys) {
+        keys.forEach(unprojected::remove);
+    }
+
+    /**
+     * Adds the key of an entry being posted to the filter. The key row itself is inserted with the entry.
+     * @param key idempotency key
+     */
+    public void record(String key) {
+        BloomFilter building = rebuilding;
+        if(building != null) building.add(key);
+        filter.add(key);
+    }
+}
@@ -0,0 +1,60 @@
+package com.hevlar.accounting.service;
+
+/**
+ * Progress of a statement import. Every record before the offset is posted, so a failed import can be resumed from it.
+ */
+public class ImportProgress {
+
+    private final long offset;
+    private final long size;
+    private final long entries;
+
+    /**
+     * Default constructor
+     * @param offset byte offset up to which the file is posted
+     * @param size size of the file in bytes
+     * @param entries number of journal entries posted so far
+     */
+    public ImportProgress(long offset, long size, long entries) {
+        this.offset = offset;
+        this.size = size;
+        this.entries = entries;
+    }
+
+    /**
+     * Gets the byte offset up to which the file is posted, to resume the import from
+     * @return byte offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the size of the file
+     * @return size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of journal entries posted so far, in this run of the import
+     * @return number of entries
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * Check if the whole file is posted
+     * @return true if done
+     */
+    public boolean isDone() {
+        return offset >= size;
+    }
+
+    @Override
+    public String toString() {
+        return offset + "/" + size + " bytes, " + entries + " entries";
+    }
+}
@@ -0,0 +1,62 @@
+package com.hevlar.accounting.service;
+
+/**
+ * Journal entry which item matches a search, with the score it was ranked by
+ */
+public class ItemMatch {
+
+    /**
+     * The item is the searched text
+     */
+    public static final int EXACT = 3;
+
+    /**
+     * A word of the item starts with the searched text
+     */
+    public static final int PREFIX = 2;
+
+    /**
+     * The searched text is within a word of the item
+     */
+    public static final int SUBSTRING = 1;
+
+    private final Long journalId;
+    private final String item;
+    private final int score;
+
+    /**
+     * Default constructor
+     * @param journalId journal id
+     * @param item item of the entry
+     * @param score score of the match
+     */
+    public ItemMatch(Long journalId, String item, int score) {
+        this.journalId = journalId;
+        this.item = item;
+        this.score = score;
+    }
+
+    /**
+     * Gets the journal id
+     * @return journal id
+     */
+    public Long getJournalId() {
+        return journalId;
+    }
+
+    /**
+     * Gets the item of the entry
+     * @return item
+     */
+    public String getItem() {
+        return item;
+    }
+
+    /**
+     * Gets the score of the match, one of {@link #EXACT}, {@link #PREFIX} or {@link #SUBSTRING}
+     * @return score
+     */
+    public int getScore() {
+        return score;
+    }
+}
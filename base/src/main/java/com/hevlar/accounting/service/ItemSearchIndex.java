@@ -0,0 +1,163 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.util.MutablePostingList;
+import com.hevlar.accounting.util.PostingList;
+
+import java.util.*;
+
+/**
+ * In-memory index of the items of the journal entries, for prefix and substring search without scanning the journal.
+ * Items are normalized to lower case words, and indexed by their trigrams (every 3 characters) and by their words.
+ * A search of 3 or more characters intersects the posting lists of its trigrams and only checks the items of the
+ * candidates, and a shorter search takes the union of the words starting with it.
+ * Matches are ranked by {@link ItemMatch#getScore()}, then by the latest journal id.
+ * Entries are indexed with {@link #update(JournalEntry)}, which must be called again after {@link JournalEntry#setItem}.
+ */
+public class ItemSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final Comparator<ItemMatch> RANKING = Comparator.comparingInt(ItemMatch::getScore)
+            .thenComparing(ItemMatch::getJournalId).reversed();
+
+    private final Map<String, MutablePostingList> byGram = new HashMap<>();
+    private final NavigableMap<String, MutablePostingList> byWord = new TreeMap<>();
+    private final Map<Long, IndexedItem> items = new HashMap<>();
+
+    /**
+     * Indexes the item of the entry, or re-indexes it if it has changed
+     * @param journalEntry journal entry
+     */
+    public void update(JournalEntry journalEntry) {
+        update(journalEntry.getJournalId(), journalEntry.getItem());
+    }
+
+    /**
+     * Indexes the item of the entry, or re-indexes it if it has changed
+     * @param journalId journal id
+     * @param item item of the entry
+     */
+    public synchronized void update(Long journalId, String item) {
+        IndexedItem indexed = new IndexedItem(item);
+        IndexedItem previous = items.put(journalId, indexed);
+        Set<String> previousGrams = previous == null ? Set.of() : grams(previous.normalized);
+        Set<String> previousWords = previous == null ? Set.of() : words(previous.normalized);
+        Set<String> grams = grams(indexed.normalized);
+        Set<String> words = words(indexed.normalized);
+        update(byGram, journalId, previousGrams, grams);
+        update(byWord, journalId, previousWords, words);
+    }
+
+    /**
+     * Removes the entry from the index, eg. when it is deleted
+     * @param journalId journal id
+     */
+    public synchronized void remove(Long journalId) {
+        IndexedItem previous = items.remove(journalId);
+        if(previous == null) return;
+        update(byGram, journalId, grams(previous.normalized), Set.of());
+        update(byWord, journalId, words(previous.normalized), Set.of());
+    }
+
+    /**
+     * Gets the number of entries indexed
+     * @return number of entries
+     */
+    public synchronized int size() {
+        return items.size();
+    }
+
+    /**
+     * Searches the items containing the text, ignoring case and punctuation
+     * @param text text to search
+     * @param limit maximum number of matches
+     * @return best matches first
+     */
+    public synchronized List<ItemMatch> search(String text, int limit) {
+        String query = normalize(text);
+        if(query.isEmpty() || limit <= 0) return List.of();
+        PostingList candidates = query.length() < GRAM_LENGTH ? wordsStartingWith(query) : containingGrams(query);
+
+        // keep the best matches in a heap with the worst on top
+        PriorityQueue<ItemMatch> best = new PriorityQueue<>(RANKING.reversed());
+        PostingList.Cursor cursor = candidates.cursor();
+        while(cursor.hasNext()){
+            long journalId = cursor.next();
+            IndexedItem indexed = items.get(journalId);
+            int score = score(indexed.normalized, query);
+            if(score == 0) continue;
+            best.add(new ItemMatch(journalId, indexed.item, score));
+            if(best.size() > limit) best.poll();
+        }
+        List<ItemMatch> matches = new ArrayList<>(best);
+        matches.sort(RANKING);
+        return matches;
+    }
+
+    private PostingList wordsStartingWith(String prefix) {
+        PostingList candidates = PostingList.empty();
+        for(MutablePostingList postings : byWord.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()){
+            candidates = candidates.or(postings.postings());
+        }
+        return candidates;
+    }
+
+    private PostingList containingGrams(String query) {
+        List<PostingList> lists = new ArrayList<>();
+        for(String gram : grams(query)){
+            MutablePostingList postings = byGram.get(gram);
+            if(postings == null) return PostingList.empty();
+            lists.add(postings.postings());
+        }
+        // intersect the shortest lists first
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        PostingList candidates = lists.get(0);
+        for(int i = 1; i < lists.size() && !candidates.isEmpty(); i++) candidates = candidates.and(lists.get(i));
+        return candidates;
+    }
+
+    private static int score(String normalized, String query) {
+        if(normalized.equals(query)) return ItemMatch.EXACT;
+        if(normalized.startsWith(query) || normalized.contains(" " + query)) return ItemMatch.PREFIX;
+        return normalized.contains(query) ? ItemMatch.SUBSTRING : 0;
+    }
+
+    private static void update(Map<String, MutablePostingList> index, Long journalId, Set<String> previous, Set<String> keys) {
+        for(String key : previous){
+            if(!keys.contains(key)) index.get(key).remove(journalId);
+        }
+        for(String key : keys){
+            if(!previous.contains(key)) index.computeIfAbsent(key, k -> new MutablePostingList()).add(journalId);
+        }
+    }
+
+    static String normalize(String text) {
+        if(text == null) return "";
+        return text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    private static Set<String> grams(String normalized) {
+        Set<String> grams = new HashSet<>();
+        for(int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) grams.add(normalized.substring(i, i + GRAM_LENGTH));
+        return grams;
+    }
+
+    private static Set<String> words(String normalized) {
+        if(normalized.isEmpty()) return Set.of();
+        return new HashSet<>(Arrays.asList(normalized.split(" ")));
+    }
+
+    /**
+     * Item as entered, and normalized for matching
+     */
+    private static class IndexedItem {
+
+        private final String item;
+        private final String normalized;
+
+        private IndexedItem(String item) {
+            this.item = item;
+            this.normalized = normalize(item);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Money;
+import com.hevlar.accounting.repository.JournalEntryData;
+
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Checks journal entries against the chart of accounts right before they are posted. An entry appended to the journal
+ * log is reported as posted before the projector inserts it, so it is checked here rather than left for the projector
+ * to reject.
+ */
+public class JournalEntryValidator {
+
+    private final ChartOfAccounts chartOfAccounts;
+
+    /**
+     * Default constructor
+     * @param chartOfAccounts chart of accounts the accounts of the entries must be in
+     */
+    public JournalEntryValidator(ChartOfAccounts chartOfAccounts) {
+        this.chartOfAccounts = chartOfAccounts;
+    }
+
+    /**
+     * Checks that the accounts of the entries exist, and that their amounts fit the minor units of their currencies
+     * @param entries journal entries to post
+     * @throws IllegalArgumentException if an entry is not valid
+     */
+    public void validate(List<JournalEntryData> entries) {
+        ChartSnapshot snapshot = chartOfAccounts.getSnapshot();
+        for(JournalEntryData journalEntryData : entries){
+            checkAccount(snapshot, journalEntryData.getDebitAccount(), journalEntryData);
+            checkAccount(snapshot, journalEntryData.getCreditAccount(), journalEntryData);
+            if(journalEntryData.getAmount() == null || journalEntryData.getCurrency() == null){
+                throw new IllegalArgumentException("Journal entry " + journalEntryData.getJournalId() + " has no amount or currency");
+            }
+            Money.toMinorUnits(journalEntryData.getAmount(), Currency.getInstance(journalEntryData.getCurrency()));
+        }
+    }
+
+    private static void checkAccount(ChartSnapshot snapshot, String name, JournalEntryData journalEntryData) {
+        if(name == null || !snapshot.getNames().contains(name)){
+            throw new IllegalArgumentException("Account of journal entry " + journalEntryData.getJournalId() + " not found: " + name);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out journal ids in increasing order, continuing from the last id in the repository
+ */
+public class JournalIdGenerator {
+
+    private final long initialLastId;
+    private final AtomicLong lastId;
+
+    /**
+     * Default constructor
+     * @param lastId last journal id used
+     */
+    public JournalIdGenerator(long lastId) {
+        this.initialLastId = lastId;
+        this.lastId = new AtomicLong(lastId);
+    }
+
+    /**
+     * Creates a generator continuing from the largest journal id in the repository
+     * @param journalEntryDataRepository repository of journal entries
+     * @return generator
+     */
+    public static JournalIdGenerator from(JournalEntryDataRepository journalEntryDataRepository) {
+        Long maxJournalId = journalEntryDataRepository.findMaxJournalId();
+        return new JournalIdGenerator(maxJournalId == null ? 0 : maxJournalId);
+    }
+
+    /**
+     * Creates a generator continuing from the largest journal id in the repository or in the journal log, whichever is
+     * larger, as the log may have entries which are not in the repository yet
+     * @param journalEntryDataRepository repository of journal entries
+     * @param lastLoggedId largest journal id in the journal log which may not be in the repository, or 0
+     * @return generator
+     */
+    public static JournalIdGenerator from(JournalEntryDataRepository journalEntryDataRepository, long lastLoggedId) {
+        Long maxJournalId = journalEntryDataRepository.findMaxJournalId();
+        return new JournalIdGenerator(Math.max(maxJournalId == null ? 0 : maxJournalId, lastLoggedId));
+    }
+
+    /**
+     * Gets the last journal id used when the generator was created, which all the ids it hands out are larger than
+     * @return last journal id used at creation
+     */
+    public long getInitialLastId() {
+        return initialLastId;
+    }
+
+    /**
+     * Gets the next journal id
+     * @return journal id
+     */
+    public long next() {
+        return lastId.incrementAndGet();
+    }
+
+    /**
+     * Reserves consecutive journal ids
+     * @param count number of ids
+     * @return first of the reserved ids
+     */
+    public long reserve(int count) {
+        if(count < 1) throw new IllegalArgumentException("Count must be positive: " + count);
+        return lastId.getAndAdd(count) + 1;
+    }
+}
@@ -0,0 +1,338 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.repository.BatchRepository;
+import com.hevlar.accounting.repository.IdempotencyKeyData;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.repository.JournalLog;
+import com.hevlar.accounting.repository.JournalLogRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Fills the journal tables from the journal log in the background, so that posting only waits for the append to the
+ * log, and it is the only writer of the journal entries when the log is used. The idempotency key of a record is
+ * inserted with its entry, in the same transaction. On start, the records which are durable but not projected yet are
+ * projected before the background thread is started, so the tables are complete when the application is ready.
+ * The sequence of the next record to project is checkpointed to a file after each batch, and projection resumes
+ * from it after a restart. A record of an entry that is already in the table, because the checkpoint was not written
+ * before a crash, is skipped if it is the same entry, and so is a later record of the same entry in the batch. A record
+ * with the journal id of another entry is a collision, which is logged and written to the dead letter file.
+ * A batch which cannot be inserted because of a record the database rejects is inserted again one record at a time, and
+ * each record which is still rejected is logged and written to a dead letter file next to the checkpoint, with its
+ * sequence, so that the records after it are projected. The record itself stays in the journal log. Other failures,
+ * eg. the database being unavailable, are retried from the same batch.
+ */
+public class JournalLogProjector implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalLogProjector.class);
+    private static final long IDLE_WAIT_MILLIS = 200;
+
+    private final JournalLog journalLog;
+    private final JournalEntryDataRepository journalEntryDataRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyGuard idempotencyGuard;
+    private final Path checkpointFile;
+    private final Path deadLetterFile;
+    private final JournalLog.Reader reader;
+    private final AtomicLong deadLetters = new AtomicLong();
+    private Thread worker;
+    private volatile boolean running;
+
+    /**
+     * Constructor for a log without idempotency keys
+     * @param journalLog journal log to read from
+     * @param journalEntryDataRepository repository to fill
+     * @param transactionTemplate template for the transaction of each batch
+     * @param checkpointFile file with the sequence of the next record to project, and the dead letter file is next to
+     *                       it, named with the suffix .dead-letter
+     */
+    public JournalLogProjector(JournalLog journalLog, JournalEntryDataRepository journalEntryDataRepository, TransactionTemplate transactionTemplate, Path checkpointFile) {
+        this(journalLog, journalEntryDataRepository, transactionTemplate, null, checkpointFile);
+    }
+
+    /**
+     * Default constructor
+     * @param journalLog journal log to read from
+     * @param journalEntryDataRepository repository to fill
+     * @param transactionTemplate template for the transaction of each batch
+     * @param idempotencyGuard guard to insert the idempotency keys of the records with, or null if keys are not supported
+     * @param checkpointFile file with the sequence of the next record to project, and the dead letter file is next to
+     *                       it, named with the suffix .dead-letter
+     */
+    public JournalLogProjector(JournalLog journalLog, JournalEntryDataRepository journalEntryDataRepository, TransactionTemplate transactionTemplate,
+                               IdempotencyGuard idempotencyGuard, Path checkpointFile) {
+        this.journalLog = journalLog;
+        this.journalEntryDataRepository = journalEntryDataRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.idempotencyGuard = idempotencyGuard;
+        this.checkpointFile = checkpointFile;
+        this.deadLetterFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".dead-letter");
+        this.reader = journalLog.reader(readCheckpoint());
+    }
+
+    /**
+     * Projects the durable records which are not projected yet, then starts projecting in a background thread
+     */
+    public synchronized void start() {
+        if(running) return;
+        try {
+            int projected = projectAvailable();
+            if(projected > 0) logger.info("Projected {} journal log records on start", projected);
+        } catch (RuntimeException e) {
+            logger.error("Failed to project the journal log on start, retrying in the background", e);
+        }
+        running = true;
+        worker = new Thread(this::run, "journal-log-projector");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Gets the sequence of the next record to be projected
+     * @return projected sequence
+     */
+    public long getProjectedSequence() {
+        return reader.getSequence();
+    }
+
+    /**
+     * Gets the number of records written to the dead letter file since the projector was created
+     * @return number of dead letters
+     */
+    public long getDeadLetters() {
+        return deadLetters.get();
+    }
+
+    /**
+     * Gets the largest journal id of the entries in the journal log which may not be in the table: the records which are
+     * not projected yet and the dead letters. The records before the checkpoint are in the table by now, so a journal id
+     * generator continues from the larger of this and the largest journal id in the table, read after this.
+     * @return largest journal id, or 0 if there is none
+     */
+    public long findMaxJournalId() {
+        long maxJournalId = 0;
+        JournalLog.Reader unprojected = journalLog.reader(readCheckpoint());
+        List<JournalLogRecord> records;
+        while(!(records = unprojected.nextRecords(BatchRepository.BATCH_SIZE * 10)).isEmpty()){
+            for(JournalLogRecord record : records) maxJournalId = Math.max(maxJournalId, record.getJournalEntryData().getJournalId());
+        }
+        if(!Files.exists(deadLetterFile)) return maxJournalId;
+        try (Stream<String> lines = Files.lines(deadLetterFile, StandardCharsets.UTF_8)) {
+            return lines.map(line -> line.split("\t", 3))
+                    .filter(fields -> fields.length > 1)
+                    .mapToLong(fields -> Long.parseLong(fields[1]))
+                    .reduce(maxJournalId, Math::max);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Projects all the durable records that are not projected yet, in the calling thread.
+     * Must not be called while the background thread is running.
+     * @return number of records read from the log
+     */
+    public synchronized int projectAvailable() {
+        int total = 0;
+        int read;
+        while((read = projectBatch()) > 0) total += read;
+        return total;
+    }
+
+    @Override
+    public void close() {
+        Thread stopping;
+        synchronized (this) {
+            running = false;
+            stopping = worker;
+            worker = null;
+        }
+        if(stopping == null) return;
+        stopping.interrupt();
+        try {
+            stopping.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while(running){
+            try {
+                if(projectBatch() == 0) journalLog.awaitDurable(reader.getSequence(), IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Failed to project the journal log from sequence {}", reader.getSequence(), e);
+                try {
+                    Thread.sleep(IDLE_WAIT_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int projectBatch() {
+        long fromSequence = reader.getSequence();
+        List<JournalLogRecord> batch = reader.nextRecords(BatchRepository.BATCH_SIZE * 10);
+        if(batch.isEmpty()) return 0;
+        try {
+            try {
+                Map<Long, JournalLogRecord> collisions = transactionTemplate.execute(status -> persistNew(fromSequence, batch));
+                if(collisions != null) collisions.forEach(this::collided);
+                projected(batch);
+            } catch (NonTransientDataAccessException e) {
+                logger.warn("Journal log batch from sequence {} was rejected, projecting its records one at a time", fromSequence, e);
+                // each record is checked against the ones before it, which are committed by then
+                for(int i = 0; i < batch.size(); i++) projectRecord(fromSequence + i, batch.get(i));
+            }
+        } catch (RuntimeException e) {
+            // read the same records again on the next attempt
+            reader.rewind(fromSequence);
+            throw e;
+        }
+        writeCheckpoint(reader.getSequence());
+        return batch.size();
+    }
+
+    private void projectRecord(long sequence, JournalLogRecord record) {
+        JournalEntryData journalEntryData = record.getJournalEntryData();
+        try {
+            Map<Long, JournalLogRecord> collisions = transactionTemplate.execute(status -> persistNew(sequence, List.of(record)));
+            if(collisions != null) collisions.forEach(this::collided);
+        } catch (NonTransientDataAccessException e) {
+            logger.error("Journal log record {} of journal id {} was rejected, writing it to {}", sequence, journalEntryData.getJournalId(), deadLetterFile, e);
+            writeDeadLetter(sequence, journalEntryData, String.valueOf(e.getMessage()));
+        }
+        // a key of a rejected record is looked up in the key table from now on
+        projected(List.of(record));
+    }
+
+    /**
+     * Inserts the entries which are not in the table yet with their idempotency keys, keeping the first record of each
+     * journal id. A record of a journal id which is in the table or earlier in the records is skipped if it is the
+     * same entry, and is a collision otherwise.
+     * @param fromSequence sequence of the first record
+     * @param records records read from the log
+     * @return records which collided with another entry, by their sequence
+     */
+    private Map<Long, JournalLogRecord> persistNew(long fromSequence, List<JournalLogRecord> records) {
+        Map<Long, JournalLogRecord> byJournalId = new LinkedHashMap<>();
+        for(JournalLogRecord record : records) byJournalId.putIfAbsent(record.getJournalEntryData().getJournalId(), record);
+        Map<Long, JournalEntryData> existing = new HashMap<>();
+        for(JournalEntryData journalEntryData : journalEntryDataRepository.findAllById(byJournalId.keySet())){
+            existing.put(journalEntryData.getJournalId(), journalEntryData);
+        }
+        Map<Long, JournalLogRecord> collisions = new LinkedHashMap<>();
+        for(int i = 0; i < records.size(); i++){
+            JournalLogRecord record = records.get(i);
+            Long journalId = record.getJournalEntryData().getJournalId();
+            JournalEntryData first = existing.containsKey(journalId) ? existing.get(journalId) : byJournalId.get(journalId).getJournalEntryData();
+            if(first != record.getJournalEntryData() && !sameEntry(first, record.getJournalEntryData())) collisions.put(fromSequence + i, record);
+        }
+        byJournalId.keySet().removeAll(existing.keySet());
+        if(byJournalId.isEmpty()) return collisions;
+        List<JournalEntryData> entries = new ArrayList<>(byJournalId.size());
+        List<IdempotencyKeyData> keys = new ArrayList<>();
+        for(JournalLogRecord record : byJournalId.values()){
+            entries.add(record.getJournalEntryData());
+            if(record.getIdempotencyKey() != null) keys.add(new IdempotencyKeyData(record.getIdempotencyKey(), record.getJournalEntryData().getJournalId()));
+        }
+        journalEntryDataRepository.persistAll(entries);
+        if(!keys.isEmpty()){
+            if(idempotencyGuard == null) throw new IllegalStateException("Journal log has idempotency keys, but the projector has no idempotency guard");
+            idempotencyGuard.insert(keys);
+        }
+        return collisions;
+    }
+
+    /**
+     * Checks whether the entries are the same, ie a record replayed from the log, or written twice. The amounts are
+     * compared by value, as the table may keep another scale, and the lock is not compared, as entries are locked after
+     * they are posted.
+     */
+    private static boolean sameEntry(JournalEntryData a, JournalEntryData b) {
+        return Objects.equals(a.getTxDate(), b.getTxDate())
+                && Objects.equals(a.getItem(), b.getItem())
+                && a.getRecurrence() == b.getRecurrence()
+                && Arrays.equals(tagsOf(a), tagsOf(b))
+                && Objects.equals(a.getCurrency(), b.getCurrency())
+                && (a.getAmount() == null ? b.getAmount() == null : b.getAmount() != null && a.getAmount().compareTo(b.getAmount()) == 0)
+                && Objects.equals(a.getDebitAccount(), b.getDebitAccount())
+                && Objects.equals(a.getCreditAccount(), b.getCreditAccount())
+                && Objects.equals(a.getPostDate(), b.getPostDate())
+                && Objects.equals(a.getDebitStatementDate(), b.getDebitStatementDate())
+                && Objects.equals(a.getCreditStatementDate(), b.getCreditStatementDate());
+    }
+
+    private static String[] tagsOf(JournalEntryData journalEntryData) {
+        return journalEntryData.getTags() == null ? new String[0] : journalEntryData.getTags();
+    }
+
+    private void collided(long sequence, JournalLogRecord record) {
+        Long journalId = record.getJournalEntryData().getJournalId();
+        logger.error("Journal log record {} has the journal id {} of another entry, writing it to {}", sequence, journalId, deadLetterFile);
+        writeDeadLetter(sequence, record.getJournalEntryData(), "Journal id " + journalId + " is used by another entry");
+    }
+
+    private void projected(List<JournalLogRecord> records) {
+        if(idempotencyGuard == null) return;
+        List<String> keys = new ArrayList<>();
+        for(JournalLogRecord record : records){
+            if(record.getIdempotencyKey() != null) keys.add(record.getIdempotencyKey());
+        }
+        if(!keys.isEmpty()) idempotencyGuard.projected(keys);
+    }
+
+    private void writeDeadLetter(long sequence, JournalEntryData journalEntryData, String message) {
+        String line = sequence + "\t" + journalEntryData.getJournalId() + "\t" + message.replaceAll("\\s+", " ") + "\n";
+        try {
+            Files.writeString(deadLetterFile, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        deadLetters.incrementAndGet();
+    }
+
+    private long readCheckpoint() {
+        try {
+            if(!Files.exists(checkpointFile)) return 0;
+            return Long.parseLong(Files.readString(checkpointFile, StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeCheckpoint(long sequence) {
+        try {
+            Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            Files.writeString(temporary, Long.toString(sequence), StandardCharsets.UTF_8);
+            Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.repository.JournalEntryDataEvent;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Searches the journal entries by their items with an {@link ItemSearchIndex}, which is loaded from the repository when
+ * the application is ready and then kept up to date with the {@link JournalEntryDataEvent} of each row written, once its
+ * transaction commits, so entries written by any service, the statement importer or REST are indexed.
+ */
+@Service
+public class JournalSearchService {
+
+    /**
+     * Number of matches returned when no limit is given
+     */
+    public static final int DEFAULT_LIMIT = 20;
+
+    private final JournalEntryDataRepository journalEntryDataRepository;
+    private final ItemSearchIndex itemSearchIndex = new ItemSearchIndex();
+
+    /**
+     * Default constructor
+     * @param journalEntryDataRepository repository of journal entries
+     */
+    public JournalSearchService(JournalEntryDataRepository journalEntryDataRepository) {
+        this.journalEntryDataRepository = journalEntryDataRepository;
+    }
+
+    /**
+     * Loads the items of all the entries into the index, in one streaming query
+     * @return number of entries indexed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public int rebuild() {
+        try (Stream<JournalEntryDataRepository.JournalItem> journalItems = journalEntryDataRepository.streamItems()) {
+            journalItems.forEach(journalItem -> itemSearchIndex.update(journalItem.getJournalId(), journalItem.getItem()));
+        }
+        return itemSearchIndex.size();
+    }
+
+    /**
+     * Indexes or removes the entry of a row once it is committed
+     * @param event row written or removed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJournalEntryData(JournalEntryDataEvent event) {
+        if(event.isRemoved()) remove(event.getJournalId());
+        else itemSearchIndex.update(event.getJournalId(), event.getItem());
+    }
+
+    /**
+     * Searches the entries which items contain the text
+     * @param text text to search
+     * @param limit maximum number of matches
+     * @return best matches first
+     */
+    public List<ItemMatch> search(String text, int limit) {
+        return itemSearchIndex.search(text, limit);
+    }
+
+    /**
+     * Indexes the entry after it is posted or its item is changed
+     * @param journalEntry journal entry
+     */
+    public void update(JournalEntry journalEntry) {
+        itemSearchIndex.update(journalEntry);
+    }
+
+    /**
+     * Removes the entry from the index after it is deleted
+     * @param journalId journal id
+     */
+    public void remove(Long journalId) {
+        itemSearchIndex.remove(journalId);
+    }
+}
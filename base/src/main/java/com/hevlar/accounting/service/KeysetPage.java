@@ -0,0 +1,39 @@
+package com.hevlar.accounting.service;
+
+import java.util.List;
+
+/**
+ * Page of a keyset paginated listing, with the token to get the next page
+ * @param <T> type of the items
+ */
+public class KeysetPage<T> {
+
+    private final List<T> items;
+    private final String next;
+
+    /**
+     * Default constructor
+     * @param items items of the page
+     * @param next token of the next page, null if this is the last page
+     */
+    public KeysetPage(List<T> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    /**
+     * Gets the items of the page
+     * @return items
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the opaque token to pass to get the next page
+     * @return token, or null if this is the last page
+     */
+    public String getNext() {
+        return next;
+    }
+}
@@ -0,0 +1,184 @@
+package com.hevlar.accounting.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Exports the journal entries of a period as CSV or newline delimited JSON, streaming them from a database cursor to
+ * the output. Each entry is detached from the persistence context once written, so the memory used does not depend on
+ * the number of entries.
+ */
+@Service
+@Transactional(readOnly = true)
+public class LedgerExporter {
+
+    /**
+     * Format of an export
+     */
+    public enum Format {
+        /**
+         * Comma separated values with a header line
+         */
+        CSV("text/csv", "csv"),
+
+        /**
+         * One JSON object per line
+         */
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * Gets the media type of the format
+         * @return content type
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Gets the file extension of the format
+         * @return extension, without the dot
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String[] COLUMNS = {"journalId", "txDate", "item", "recurrence", "tags", "currency", "amount",
+            "debitAccount", "creditAccount", "postDate", "debitStatementDate", "creditStatementDate", "locked"};
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final JournalEntryDataRepository journalEntryDataRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Default constructor
+     * @param journalEntryDataRepository repository of journal entries
+     */
+    public LedgerExporter(JournalEntryDataRepository journalEntryDataRepository) {
+        this.journalEntryDataRepository = journalEntryDataRepository;
+    }
+
+    /**
+     * Writes the entries with transaction dates within the period to the output, in order of transaction date and
+     * journal id. The output is flushed but not closed.
+     * @param from first date, inclusive
+     * @param to last date, inclusive
+     * @param format format of the export
+     * @param output output to write to
+     * @return number of entries written
+     * @throws IOException if the output cannot be written
+     */
+    public long export(LocalDate from, LocalDate to, Format format, OutputStream output) throws IOException {
+        if(from.isAfter(to)) throw new IllegalArgumentException("From date is after to date");
+        try (Stream<JournalEntryData> entries = journalEntryDataRepository.streamByTxDateBetween(from, to)) {
+            return write(entries, format, output, entityManager::detach);
+        }
+    }
+
+    /**
+     * Writes the entries to the output
+     * @param entries journal entries
+     * @param format format of the export
+     * @param output output to write to
+     * @param written called with each entry after it is written
+     * @return number of entries written
+     * @throws IOException if the output cannot be written
+     */
+    long write(Stream<JournalEntryData> entries, Format format, OutputStream output, Consumer<JournalEntryData> written) throws IOException {
+        Iterator<JournalEntryData> iterator = entries.iterator();
+        long count = 0;
+        if(format == Format.CSV){
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+            while(iterator.hasNext()){
+                JournalEntryData entry = iterator.next();
+                writeCsv(writer, entry);
+                written.accept(entry);
+                count++;
+            }
+            writer.flush();
+        }else{
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8)) {
+                generator.setRootValueSeparator(null);
+                while(iterator.hasNext()){
+                    JournalEntryData entry = iterator.next();
+                    writeJson(generator, entry);
+                    written.accept(entry);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void writeCsv(Writer writer, JournalEntryData entry) throws IOException {
+        Object[] values = values(entry);
+        for(int i = 0; i < values.length; i++){
+            if(i > 0) writer.write(',');
+            Object value = values[i];
+            if(value instanceof String[]) value = String.join(",", (String[]) value);
+            if(value != null) writer.write(escape(value.toString()));
+        }
+        writer.write('\n');
+    }
+
+    private static void writeJson(JsonGenerator generator, JournalEntryData entry) throws IOException {
+        Object[] values = values(entry);
+        generator.writeStartObject();
+        for(int i = 0; i < values.length; i++){
+            Object value = values[i];
+            if(value == null) continue;
+            generator.writeFieldName(COLUMNS[i]);
+            if(value instanceof Long) generator.writeNumber((Long) value);
+            else if(value instanceof BigDecimal) generator.writeNumber((BigDecimal) value);
+            else if(value instanceof Boolean) generator.writeBoolean((Boolean) value);
+            else if(value instanceof String[]) writeArray(generator, (String[]) value);
+            else generator.writeString(value.toString());
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void writeArray(JsonGenerator generator, String[] values) throws IOException {
+        generator.writeStartArray();
+        for(String value : values) generator.writeString(value);
+        generator.writeEndArray();
+    }
+
+    private static Object[] values(JournalEntryData entry) {
+        return new Object[]{entry.getJournalId(), entry.getTxDate(), entry.getItem(), entry.getRecurrence(), entry.getTags(),
+                entry.getCurrency(), entry.getAmount(), entry.getDebitAccount(), entry.getCreditAccount(), entry.getPostDate(),
+                entry.getDebitStatementDate(), entry.getCreditStatementDate(), entry.isLocked()};
+    }
+
+    private static String escape(String value) {
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
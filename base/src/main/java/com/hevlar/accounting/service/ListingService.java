@@ -0,0 +1,94 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.repository.AccountDataRepository;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.util.ContinuationToken;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Lists the accounts and journal entries with keyset pagination. Each page continues after the key of the last item
+ * of the previous page, the name of an account or the transaction date and journal id of an entry, which is an index
+ * range scan, so a deep page costs the same as the first page, unlike offset pagination.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ListingService {
+
+    /**
+     * Maximum number of items in a page
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String ACCOUNTS = "account";
+    private static final String JOURNAL = "journal";
+
+    private final AccountDataRepository accountDataRepository;
+    private final JournalEntryDataRepository journalEntryDataRepository;
+
+    /**
+     * Default constructor
+     * @param accountDataRepository repository of accounts
+     * @param journalEntryDataRepository repository of journal entries
+     */
+    public ListingService(AccountDataRepository accountDataRepository, JournalEntryDataRepository journalEntryDataRepository) {
+        this.accountDataRepository = accountDataRepository;
+        this.journalEntryDataRepository = journalEntryDataRepository;
+    }
+
+    /**
+     * Gets a page of accounts in order of name
+     * @param token token of the page from the previous page, or null for the first page
+     * @param size maximum number of accounts
+     * @return page of accounts
+     */
+    public KeysetPage<AccountData> getAccounts(String token, int size) {
+        PageRequest limit = limit(size);
+        List<AccountData> accounts = token == null
+                ? accountDataRepository.findAllByOrderByNameAsc(limit)
+                : accountDataRepository.findByNameGreaterThanOrderByNameAsc(ContinuationToken.decode(token, ACCOUNTS, 1)[0], limit);
+        return page(accounts, size, account -> ContinuationToken.encode(ACCOUNTS, account.getName()));
+    }
+
+    /**
+     * Gets a page of journal entries in order of transaction date and journal id
+     * @param token token of the page from the previous page, or null for the first page
+     * @param size maximum number of entries
+     * @return page of journal entries
+     */
+    public KeysetPage<JournalEntryData> getJournalEntries(String token, int size) {
+        PageRequest limit = limit(size);
+        List<JournalEntryData> entries;
+        if(token == null){
+            entries = journalEntryDataRepository.findFirstPage(limit);
+        }else{
+            String[] key = ContinuationToken.decode(token, JOURNAL, 2);
+            try {
+                entries = journalEntryDataRepository.findPageAfter(LocalDate.parse(key[0]), Long.valueOf(key[1]), limit);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid continuation token", e);
+            }
+        }
+        return page(entries, size, entry -> ContinuationToken.encode(JOURNAL, entry.getTxDate().toString(), entry.getJournalId().toString()));
+    }
+
+    private static PageRequest limit(int size) {
+        if(size < 1 || size > MAX_PAGE_SIZE) throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        // one more than the page size, to know if there is a next page
+        return PageRequest.of(0, size + 1);
+    }
+
+    private static <T> KeysetPage<T> page(List<T> items, int size, Function<T, String> token) {
+        if(items.size() <= size) return new KeysetPage<>(items, null);
+        List<T> page = items.subList(0, size);
+        return new KeysetPage<>(page, token.apply(page.get(size - 1)));
+    }
+}
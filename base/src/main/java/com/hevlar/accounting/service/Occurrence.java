@@ -0,0 +1,65 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.model.Recurrence;
+
+import java.time.LocalDate;
+
+/**
+ * One occurrence of a recurring journal entry, which is only created when it is needed
+ */
+public class Occurrence {
+
+    private final JournalEntry journalEntry;
+    private final long index;
+    private final LocalDate date;
+
+    /**
+     * Default constructor
+     * @param journalEntry recurring journal entry
+     * @param index index of the occurrence, 0 for the recurring entry itself
+     * @param date date of the occurrence
+     */
+    public Occurrence(JournalEntry journalEntry, long index, LocalDate date) {
+        this.journalEntry = journalEntry;
+        this.index = index;
+        this.date = date;
+    }
+
+    /**
+     * Gets the recurring journal entry
+     * @return journal entry
+     */
+    public JournalEntry getJournalEntry() {
+        return journalEntry;
+    }
+
+    /**
+     * Gets the index of the occurrence, 0 for the recurring entry itself
+     * @return index
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the date of the occurrence
+     * @return date
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Creates the journal entry to post for this occurrence, which is a copy of the recurring entry on the date of the
+     * occurrence, and does not recur by itself
+     * @param journalId journal id of the new entry
+     * @return journal entry
+     */
+    public JournalEntry toJournalEntry(Long journalId) {
+        String[] tags = journalEntry.getTags() == null ? null : journalEntry.getTags().clone();
+        return new JournalEntry(journalId, date, journalEntry.getItem(), Recurrence.N, tags,
+                journalEntry.getCurrency().getCurrencyCode(), journalEntry.getAmount().toPlainString(),
+                journalEntry.getDebit(), journalEntry.getCredit(), null, null, null);
+    }
+}
@@ -0,0 +1,339 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.repository.IdempotencyKeyData;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.repository.JournalLog;
+import com.hevlar.accounting.repository.JournalLogRecord;
+import com.hevlar.accounting.util.ModelMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Posts journal entries asynchronously in micro-batches. Submitted entries go into a bounded queue, and a single
+ * writer thread drains it, posting everything queued, up to the batch size, in one transaction and one flush.
+ * When the queue is full, {@link #submit(JournalEntry)} fails at once with a {@link PostingQueueFullException}
+ * instead of waiting, so a burst of submissions cannot queue without bound or hold connections while waiting.
+ * If a batch fails, its entries are posted one at a time, so only the entries that cannot be posted fail.
+ * Entries submitted with an idempotency key are posted only once: a key already posted, or waiting to be posted,
+ * gets the journal id of the first entry with the key.
+ * With a journal log, each batch is appended to the log instead, and posted once it is forced to disk, which is one
+ * flush shared with the other appends made at the same time. The journal log projector then inserts the entries and
+ * their idempotency keys into the tables. A key is then only checked against the keys known to this instance and the
+ * key table, so a key posted by another instance at the same time is rejected by the projector. With a validator,
+ * each batch is checked before it is posted, so an entry the projector would reject, eg. for an account deleted since
+ * it was submitted, fails instead of being reported as posted.
+ */
+public class PostingPipeline implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostingPipeline.class);
+    private static final long IDLE_WAIT_MILLIS = 200;
+
+    private final JournalEntryDataRepository journalEntryDataRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Submission> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final Consumer<List<JournalEntry>> committed;
+    private final IdempotencyGuard idempotencyGuard;
+    private final JournalLog journalLog;
+    private final JournalEntryValidator validator;
+    private final Map<String, CompletableFuture<Long>> pendingKeys = new ConcurrentHashMap<>();
+    private Thread writer;
+    private volatile boolean accepting = true;
+    private volatile boolean running;
+
+    /**
+     * Default constructor
+     * @param journalEntryDataRepository repository to post to
+     * @param transactionTemplate template for the transaction of each batch
+     * @param capacity maximum number of entries waiting to be posted
+     * @param batchSize maximum number of entries posted in one transaction
+     * @param committed called by the writer with the entries of each committed transaction, eg. to update indexes
+     */
+    public PostingPipeline(JournalEntryDataRepository journalEntryDataRepository, TransactionTemplate transactionTemplate,
+                           int capacity, int batchSize, Consumer<List<JournalEntry>> committed) {
+        this(journalEntryDataRepository, transactionTemplate, capacity, batchSize, committed, null);
+    }
+
+    /**
+     * Constructor with idempotency keys
+     * @param journalEntryDataRepository repository to post to
+     * @param transactionTemplate template for the transaction of each batch
+     * @param capacity maximum number of entries waiting to be posted
+     * @param batchSize maximum number of entries posted in one transaction
+     * @param committed called by the writer with the entries of each committed transaction, eg. to update indexes
+     * @param idempotencyGuard guard of the idempotency keys, or null if keys are not supported
+     */
+    public PostingPipeline(JournalEntryDataRepository journalEntryDataRepository, TransactionTemplate transactionTemplate,
+                           int capacity, int batchSize, Consumer<List<JournalEntry>> committed, IdempotencyGuard idempotencyGuard) {
+        this(journalEntryDataRepository, transactionTemplate, capacity, batchSize, committed, idempotencyGuard, null);
+    }
+
+    /**
+     * Constructor with idempotency keys and a journal log
+     * @param journalEntryDataRepository repository to post to, if there is no journal log
+     * @param transactionTemplate template for the transaction of each batch, if there is no journal log
+     * @param capacity maximum number of entries waiting to be posted
+     * @param batchSize maximum number of entries posted in one transaction, or appended together to the journal log
+     * @param committed called by the writer with the entries of each committed transaction or durable append, eg. to
+     *                  update indexes
+     * @param idempotencyGuard guard of the idempotency keys, or null if keys are not supported
+     * @param journalLog journal log to append the entries to, or null to insert them into the tables directly
+     */
+    public PostingPipeline(JournalEntryDataRepository journalEntryDataRepository, TransactionTemplate transactionTemplate,
+                           int capacity, int batchSize, Consumer<List<JournalEntry>> committed, IdempotencyGuard idempotencyGuard,
+                           JournalLog journalLog) {
+        this(journalEntryDataRepository, transactionTemplate, capacity, batchSize, committed, idempotencyGuard, journalLog, null);
+    }
+
+    /**
+     * Constructor with idempotency keys, a journal log and a validator
+     * @param journalEntryDataRepository repository to post to, if there is no journal log
+     * @param transactionTemplate template for the transaction of each batch, if there is no journal log
+     * @param capacity maximum number of entries waiting to be posted
+     * @param batchSize maximum number of entries posted in one transaction, or appended together to the journal log
+     * @param committed called by the writer with the entries of each committed transaction or durable append, eg. to
+     *                  update indexes
+     * @param idempotencyGuard guard of the idempotency keys, or null if keys are not supported
+     * @param journalLog journal log to append the entries to, or null to insert them into the tables directly
+     * @param validator validator of the entries before they are posted, or null to post them unchecked
+     */
+    public PostingPipeline(JournalEntryDataRepository journalEntryDataRepository, TransactionTemplate transactionTemplate,
+                           int capacity, int batchSize, Consumer<List<JournalEntry>> committed, IdempotencyGuard idempotencyGuard,
+                           JournalLog journalLog, JournalEntryValidator validator) {
+        if(capacity < 1 || batchSize < 1) throw new IllegalArgumentException("Capacity and batch size must be positive");
+        this.journalEntryDataRepository = journalEntryDataRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.committed = committed;
+        this.idempotencyGuard = idempotencyGuard;
+        this.journalLog = journalLog;
+        this.validator = validator;
+    }
+
+    /**
+     * Starts the writer thread
+     */
+    public synchronized void start() {
+        if(running || !accepting) return;
+        running = true;
+        writer = new Thread(this::run, "posting-pipeline");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Submits the journal entry to be posted. The future is completed by the writer thread, so actions depending on it
+     * should be async or quick.
+     * @param journalEntry new journal entry
+     * @return future of the journal id, completed when the entry is committed, or forced to disk in the journal log
+     * @throws PostingQueueFullException if the queue is full
+     * @throws IllegalStateException if the pipeline is closed
+     */
+    public CompletableFuture<Long> submit(JournalEntry journalEntry) {
+        if(!accepting) throw new IllegalStateException("Posting pipeline is closed");
+        Submission submission = new Submission(journalEntry, null);
+        if(!queue.offer(submission)) throw new PostingQueueFullException(capacity);
+        return submission.future;
+    }
+
+    /**
+     * Submits the journal entry to be posted, unless an entry with the idempotency key was already submitted
+     * @param journalEntry new journal entry
+     * @param idempotencyKey key of the entry from the client, or null to always post it
+     * @return future of the journal id of the entry, or of the entry first submitted with the key
+     * @throws PostingQueueFullException if the queue is full
+     * @throws IllegalStateException if the pipeline is closed, or does not support idempotency keys
+     */
+    public CompletableFuture<Long> submit(JournalEntry journalEntry, String idempotencyKey) {
+        if(idempotencyKey == null) return submit(journalEntry);
+        if(idempotencyGuard == null) throw new IllegalStateException("Idempotency keys are not supported");
+        if(!accepting) throw new IllegalStateException("Posting pipeline is closed");
+        CompletableFuture<Long> pending = pendingKeys.get(idempotencyKey);
+        if(pending != null) return pending;
+        Long journalId = idempotencyGuard.findJournalId(idempotencyKey);
+        if(journalId != null) return CompletableFuture.completedFuture(journalId);
+
+        Submission submission = new Submission(journalEntry, idempotencyKey);
+        pending = pendingKeys.putIfAbsent(idempotencyKey, submission.future);
+        if(pending != null) return pending;
+        if(!queue.offer(submission)){
+            pendingKeys.remove(idempotencyKey, submission.future);
+            throw new PostingQueueFullException(capacity);
+        }
+        idempotencyGuard.record(idempotencyKey);
+        // the committed key is found by the guard from now on
+        submission.future.whenComplete((id, error) -> pendingKeys.remove(idempotencyKey, submission.future));
+        return submission.future;
+    }
+
+    /**
+     * Gets the number of entries waiting to be posted
+     * @return number of entries
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the maximum number of entries waiting to be posted
+     * @return capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Stops accepting entries, posts the entries already queued and stops the writer thread
+     */
+    @Override
+    public void close() {
+        accepting = false;
+        Thread stopping;
+        synchronized (this) {
+            running = false;
+            stopping = writer;
+            writer = null;
+        }
+        if(stopping != null){
+            try {
+                stopping.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Submission> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(submission -> submission.future.completeExceptionally(new IllegalStateException("Posting pipeline is closed")));
+    }
+
+    /**
+     * Posts the entries already queued in the calling thread, eg. in tests.
+     * Must not be called while the writer thread is running.
+     * @return number of entries taken from the queue
+     */
+    public synchronized int drain() {
+        int total = 0;
+        List<Submission> batch = new ArrayList<>(batchSize);
+        while(queue.drainTo(batch, batchSize) > 0){
+            total += batch.size();
+            write(batch);
+            batch.clear();
+        }
+        return total;
+    }
+
+    private void run() {
+        List<Submission> batch = new ArrayList<>(batchSize);
+        while(true){
+            Submission first;
+            try {
+                first = queue.poll(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if(first == null){
+                // posts everything queued before stopping
+                if(!running) return;
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Submission> batch) {
+        try {
+            post(batch);
+        } catch (RuntimeException e) {
+            if(batch.size() == 1){
+                fail(batch.get(0), e);
+                return;
+            }
+            logger.warn("Failed to post a batch of {} journal entries, posting them one at a time", batch.size(), e);
+            for(Submission submission : batch){
+                try {
+                    post(List.of(submission));
+                } catch (RuntimeException failed) {
+                    fail(submission, failed);
+                }
+            }
+        }
+    }
+
+    private void fail(Submission submission, RuntimeException e) {
+        // the key may have been posted by another instance since it was submitted, which the filter may not know about
+        Long journalId = null;
+        if(submission.idempotencyKey != null){
+            try {
+                journalId = idempotencyGuard.findPostedJournalId(submission.idempotencyKey);
+            } catch (RuntimeException lookup) {
+                e.addSuppressed(lookup);
+            }
+        }
+        if(journalId != null) submission.future.complete(journalId);
+        else submission.future.completeExceptionally(e);
+    }
+
+    private void post(List<Submission> batch) {
+        List<JournalEntryData> entries = new ArrayList<>(batch.size());
+        List<JournalEntry> journalEntries = new ArrayList<>(batch.size());
+        List<IdempotencyKeyData> keys = new ArrayList<>();
+        for(Submission submission : batch){
+            entries.add(ModelMapping.toJournalEntryData(submission.journalEntry));
+            journalEntries.add(submission.journalEntry);
+            if(submission.idempotencyKey != null) keys.add(new IdempotencyKeyData(submission.idempotencyKey, submission.journalEntry.getJournalId()));
+        }
+        if(validator != null) validator.validate(entries);
+        if(journalLog == null){
+            transactionTemplate.executeWithoutResult(status -> {
+                journalEntryDataRepository.persistAll(entries);
+                if(!keys.isEmpty()) idempotencyGuard.insert(keys);
+            });
+        }else{
+            List<JournalLogRecord> records = new ArrayList<>(batch.size());
+            for(int i = 0; i < batch.size(); i++) records.add(new JournalLogRecord(entries.get(i), batch.get(i).idempotencyKey));
+            journalLog.appendAllDurably(records);
+            keys.forEach(key -> idempotencyGuard.logged(key.getIdempotencyKey(), key.getJournalId()));
+        }
+        try {
+            committed.accept(journalEntries);
+        } catch (RuntimeException e) {
+            logger.error("Failed to process {} committed journal entries", journalEntries.size(), e);
+        }
+        batch.forEach(submission -> submission.future.complete(submission.journalEntry.getJournalId()));
+    }
+
+    /**
+     * Journal entry waiting to be posted
+     */
+    private static class Submission {
+
+        private final JournalEntry journalEntry;
+        private final String idempotencyKey;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        private Submission(JournalEntry journalEntry, String idempotencyKey) {
+            this.journalEntry = journalEntry;
+            this.idempotencyKey = idempotencyKey;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.hevlar.accounting.service;
+
+/**
+ * Thrown when a journal entry is submitted to the {@link PostingPipeline} while its queue is full, so the caller
+ * should retry later
+ */
+public class PostingQueueFullException extends RuntimeException {
+
+    private final int capacity;
+
+    /**
+     * Default constructor
+     * @param capacity capacity of the queue
+     */
+    public PostingQueueFullException(int capacity) {
+        super("Posting queue is full, capacity " + capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the capacity of the queue
+     * @return capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+}
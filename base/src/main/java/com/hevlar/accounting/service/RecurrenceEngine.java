@@ -0,0 +1,106 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.model.Recurrence;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Expands recurring journal entries into their occurrences lazily, so only the occurrences that are consumed are ever
+ * created. The first occurrence in a window is computed directly from the start date, without going through the
+ * earlier ones.
+ */
+public class RecurrenceEngine {
+
+    private static final Comparator<Occurrence> BY_DATE = Comparator.comparing(Occurrence::getDate)
+            .thenComparing(occurrence -> occurrence.getJournalEntry().getJournalId())
+            .thenComparingLong(Occurrence::getIndex);
+
+    /**
+     * Gets the occurrences of the journal entry within the window. An entry without recurrence has its own date as
+     * its only occurrence.
+     * @param journalEntry journal entry
+     * @param from first date of the window, inclusive
+     * @param to last date of the window, inclusive
+     * @return occurrences, by date
+     */
+    public Stream<Occurrence> occurrences(JournalEntry journalEntry, LocalDate from, LocalDate to) {
+        Recurrence recurrence = journalEntry.getRecurrence() == null ? Recurrence.N : journalEntry.getRecurrence();
+        LocalDate start = journalEntry.getTxDate();
+        long first = recurrence.indexOnOrAfter(start, from);
+        if(first < 0 || from.isAfter(to)) return Stream.empty();
+        return LongStream.iterate(first, index -> index + 1)
+                .mapToObj(index -> new Occurrence(journalEntry, index, recurrence.occurrence(start, index)))
+                .takeWhile(occurrence -> occurrence.getDate() != null && !occurrence.getDate().isAfter(to));
+    }
+
+    /**
+     * Gets the occurrences of all the journal entries within the window, merged by date. Only the next occurrence of
+     * each entry is held in memory at any time.
+     * @param journalEntries journal entries
+     * @param from first date of the window, inclusive
+     * @param to last date of the window, inclusive
+     * @return occurrences, by date and journal id
+     */
+    public Stream<Occurrence> occurrences(Collection<JournalEntry> journalEntries, LocalDate from, LocalDate to) {
+        return StreamSupport.stream(new MergedOccurrences(journalEntries, from, to), false);
+    }
+
+    /**
+     * Merges the occurrences of the entries with a priority queue of the next occurrence of each entry
+     */
+    private class MergedOccurrences extends Spliterators.AbstractSpliterator<Occurrence> {
+
+        private final Collection<JournalEntry> journalEntries;
+        private final LocalDate from;
+        private final LocalDate to;
+        private PriorityQueue<Cursor> queue;
+
+        private MergedOccurrences(Collection<JournalEntry> journalEntries, LocalDate from, LocalDate to) {
+            super(Long.MAX_VALUE, ORDERED | SORTED | NONNULL);
+            this.journalEntries = journalEntries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Occurrence> action) {
+            if(queue == null){
+                queue = new PriorityQueue<>(Math.max(1, journalEntries.size()), Comparator.comparing(cursor -> cursor.next, BY_DATE));
+                journalEntries.forEach(journalEntry -> {
+                    Cursor cursor = new Cursor(occurrences(journalEntry, from, to).iterator());
+                    if(cursor.advance()) queue.add(cursor);
+                });
+            }
+            Cursor cursor = queue.poll();
+            if(cursor == null) return false;
+            action.accept(cursor.next);
+            if(cursor.advance()) queue.add(cursor);
+            return true;
+        }
+
+        @Override
+        public Comparator<? super Occurrence> getComparator() {
+            return BY_DATE;
+        }
+    }
+
+    private static class Cursor {
+        private final Iterator<Occurrence> occurrences;
+        private Occurrence next;
+
+        private Cursor(Iterator<Occurrence> occurrences) {
+            this.occurrences = occurrences;
+        }
+
+        private boolean advance() {
+            next = occurrences.hasNext() ? occurrences.next() : null;
+            return next != null;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.model.Recurrence;
+import com.hevlar.accounting.repository.RecurrenceWatermarkData;
+import com.hevlar.accounting.repository.RecurrenceWatermarkDataRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Posts the occurrences of recurring journal entries as they fall due. For each recurring entry the scheduler only
+ * keeps a watermark, the index of the last occurrence posted, so occurrences are never posted twice and no future
+ * occurrence is stored. The recurring entry itself is occurrence 0, which is posted when the entry is created.
+ * With a watermark repository, each occurrence is posted in one transaction with the update of its watermark, and the
+ * watermarks are loaded from the repository when the application is ready, so a restart does not post them again.
+ */
+public class RecurrenceScheduler {
+
+    private final RecurrenceEngine recurrenceEngine;
+    private final RecurrenceWatermarkDataRepository recurrenceWatermarkDataRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, Long> watermarks = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor, keeping the watermarks in memory only
+     * @param recurrenceEngine engine to expand the recurring entries
+     */
+    public RecurrenceScheduler(RecurrenceEngine recurrenceEngine) {
+        this(recurrenceEngine, null, null);
+    }
+
+    /**
+     * Constructor with the repository of the watermarks
+     * @param recurrenceEngine engine to expand the recurring entries
+     * @param recurrenceWatermarkDataRepository repository of the watermarks
+     * @param transactionTemplate template for the transaction of each occurrence and its watermark
+     */
+    public RecurrenceScheduler(RecurrenceEngine recurrenceEngine, RecurrenceWatermarkDataRepository recurrenceWatermarkDataRepository,
+                               TransactionTemplate transactionTemplate) {
+        this.recurrenceEngine = recurrenceEngine;
+        this.recurrenceWatermarkDataRepository = recurrenceWatermarkDataRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Loads the watermarks from the repository
+     * @return number of watermarks
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized int load() {
+        if(recurrenceWatermarkDataRepository == null) return 0;
+        int count = 0;
+        for(RecurrenceWatermarkData watermark : recurrenceWatermarkDataRepository.findAll()){
+            watermarks.put(watermark.getJournalId(), watermark.getLastIndex());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Posts the occurrences of the recurring entries which fall due on or before the date and are not posted yet, in
+     * order of date. If posting an occurrence fails, the occurrences posted before it remain posted, and the failed
+     * occurrence is posted again on the next call.
+     * @param journalEntries recurring journal entries, entries without recurrence are ignored
+     * @param asOf date up to which the occurrences are due, inclusive
+     * @param poster posts an occurrence
+     * @return number of occurrences posted
+     * @throws IllegalArgumentException if a recurring entry has no journal id, which its watermark is kept by
+     */
+    public synchronized int postDue(Iterable<JournalEntry> journalEntries, LocalDate asOf, Consumer<Occurrence> poster) {
+        List<JournalEntry> recurring = new ArrayList<>();
+        LocalDate from = null;
+        for(JournalEntry journalEntry : journalEntries){
+            Recurrence recurrence = journalEntry.getRecurrence();
+            if(recurrence == null || recurrence == Recurrence.N) continue;
+            if(journalEntry.getJournalId() == null) throw new IllegalArgumentException("Recurring journal entry has no journal id: " + journalEntry.getItem());
+            recurring.add(journalEntry);
+            LocalDate next = recurrence.occurrence(journalEntry.getTxDate(), getWatermark(journalEntry.getJournalId()) + 1);
+            if(from == null || next.isBefore(from)) from = next;
+        }
+        if(from == null || from.isAfter(asOf)) return 0;
+
+        int posted = 0;
+        try (Stream<Occurrence> occurrences = recurrenceEngine.occurrences(recurring, from, asOf)) {
+            for(Occurrence occurrence : (Iterable<Occurrence>) occurrences::iterator){
+                Long journalId = occurrence.getJournalEntry().getJournalId();
+                if(occurrence.getIndex() <= getWatermark(journalId)) continue;
+                post(occurrence, poster);
+                watermarks.put(journalId, occurrence.getIndex());
+                posted++;
+            }
+        }
+        return posted;
+    }
+
+    private void post(Occurrence occurrence, Consumer<Occurrence> poster) {
+        if(recurrenceWatermarkDataRepository == null){
+            poster.accept(occurrence);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            poster.accept(occurrence);
+            recurrenceWatermarkDataRepository.save(new RecurrenceWatermarkData(occurrence.getJournalEntry().getJournalId(), occurrence.getIndex()));
+        });
+    }
+
+    /**
+     * Gets the index of the last occurrence posted for the recurring entry
+     * @param journalId journal id of the recurring entry
+     * @return index of the last occurrence posted, 0 if only the entry itself is posted
+     */
+    public long getWatermark(Long journalId) {
+        return watermarks.getOrDefault(journalId, 0L);
+    }
+
+    /**
+     * Sets the index of the last occurrence posted for the recurring entry in memory, eg. when restoring the scheduler
+     * @param journalId journal id of the recurring entry
+     * @param index index of the last occurrence posted
+     */
+    public void setWatermark(Long journalId, long index) {
+        watermarks.put(journalId, index);
+    }
+}
@@ -0,0 +1,54 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.repository.AccountData;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryFactoryCustomizer;
+
+/**
+ * Counts the calls to every Spring Data repository, by adding an interceptor to the repository proxies when their
+ * factories are created. The account group of a call is taken from its AccountGroup or AccountData argument.
+ */
+public class RepositoryMetrics implements BeanPostProcessor {
+
+    private final RepositoryFactoryCustomizer customizer;
+
+    /**
+     * Default constructor
+     * @param accountingMetrics metrics to count the calls with, resolved on the first call
+     */
+    public RepositoryMetrics(ObjectProvider<AccountingMetrics> accountingMetrics) {
+        this.customizer = repositoryFactory -> repositoryFactory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> {
+            String repository = repositoryInformation.getRepositoryInterface().getSimpleName();
+            proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+                accountingMetrics.getObject().countRepositoryCall(repository, invocation.getMethod().getName(), accountGroupOf(invocation));
+                return invocation.proceed();
+            });
+        });
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if(bean instanceof RepositoryFactoryBeanSupport){
+            ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(customizer);
+        }
+        return bean;
+    }
+
+    /**
+     * Gets the account group of the repository call from its arguments
+     * @param invocation repository call
+     * @return account group, or null if none of the arguments has one
+     */
+    static AccountGroup accountGroupOf(MethodInvocation invocation) {
+        for(Object argument : invocation.getArguments()){
+            if(argument instanceof AccountGroup) return (AccountGroup) argument;
+            if(argument instanceof AccountData) return ((AccountData) argument).getAccountGroup();
+        }
+        return null;
+    }
+}
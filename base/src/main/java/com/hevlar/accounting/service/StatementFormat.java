@@ -0,0 +1,117 @@
+package com.hevlar.accounting.service;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Format of a bank or credit card statement file. Each record is one transaction, with a signed amount which is
+ * negative for money going out of the account.
+ */
+public enum StatementFormat {
+
+    /**
+     * One transaction per line, with the columns of {@link StatementMapping}. Fields may be quoted with ".
+     */
+    CSV {
+        @Override
+        boolean startsRecord(String line) {
+            return !line.isBlank();
+        }
+
+        @Override
+        boolean endsRecord(String line) {
+            return true;
+        }
+
+        @Override
+        StatementLine parse(String record, StatementMapping mapping) {
+            List<String> fields = split(record);
+            int columns = Math.max(mapping.getDateColumn(), Math.max(mapping.getItemColumn(), mapping.getAmountColumn())) + 1;
+            if(fields.size() < columns) throw new IllegalArgumentException("Expected " + columns + " columns: " + record);
+            return new StatementLine(
+                    LocalDate.parse(fields.get(mapping.getDateColumn()).trim(), mapping.getDateFormat()),
+                    fields.get(mapping.getItemColumn()).trim(),
+                    new BigDecimal(fields.get(mapping.getAmountColumn()).trim().replace(",", "")));
+        }
+    },
+
+    /**
+     * OFX 1.x, where each &lt;STMTTRN&gt; starts and ends on its own line
+     */
+    OFX {
+        @Override
+        boolean startsRecord(String line) {
+            return line.contains("<STMTTRN>");
+        }
+
+        @Override
+        boolean endsRecord(String line) {
+            return line.contains("</STMTTRN>");
+        }
+
+        @Override
+        StatementLine parse(String record, StatementMapping mapping) {
+            String posted = tag(record, "DTPOSTED");
+            String amount = tag(record, "TRNAMT");
+            String item = tag(record, "NAME");
+            if(item == null || item.isBlank()) item = tag(record, "MEMO");
+            if(posted == null || posted.length() < 8 || amount == null) throw new IllegalArgumentException("Expected DTPOSTED and TRNAMT: " + record);
+            return new StatementLine(LocalDate.parse(posted.substring(0, 8), DateTimeFormatter.BASIC_ISO_DATE), item, new BigDecimal(amount));
+        }
+    };
+
+    /**
+     * Gets the format of the file from its extension, .csv, .ofx or .qfx
+     * @param file statement file
+     * @return format
+     */
+    public static StatementFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if(name.endsWith(".csv")) return CSV;
+        if(name.endsWith(".ofx") || name.endsWith(".qfx")) return OFX;
+        throw new IllegalArgumentException("Unknown statement format: " + file);
+    }
+
+    abstract boolean startsRecord(String line);
+
+    abstract boolean endsRecord(String line);
+
+    abstract StatementLine parse(String record, StatementMapping mapping);
+
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for(int i = 0; i < line.length(); i++){
+            char c = line.charAt(i);
+            if(quoted){
+                if(c != '"') field.append(c);
+                else if(i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = false;
+            }else if(c == '"'){
+                quoted = true;
+            }else if(c == ','){
+                fields.add(field.toString());
+                field.setLength(0);
+            }else{
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String tag(String record, String name) {
+        int start = record.indexOf("<" + name + ">");
+        if(start < 0) return null;
+        start += name.length() + 2;
+        int end = start;
+        while(end < record.length() && record.charAt(end) != '<' && record.charAt(end) != '\n') end++;
+        return record.substring(start, end).trim();
+    }
+}
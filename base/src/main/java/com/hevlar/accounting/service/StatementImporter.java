@@ -0,0 +1,363 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.model.BalanceSheetAccount;
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.model.Recurrence;
+import com.hevlar.accounting.repository.BatchRepository;
+import com.hevlar.accounting.repository.IdempotencyKeyData;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.repository.JournalLog;
+import com.hevlar.accounting.repository.JournalLogRecord;
+import com.hevlar.accounting.util.LineReader;
+import com.hevlar.accounting.util.ModelMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Imports bank and credit card statement files into the journal. The file is streamed in chunks of records, which are
+ * parsed into journal entries in parallel while the next chunks are read, and each chunk is posted in order in its own
+ * transaction. After each chunk is committed, the progress listener gets the byte offset of the end of the chunk, and
+ * an import that failed can be resumed from the last offset reported. The entries of each chunk are also passed to a
+ * callback once they are committed, eg. to post them to the balances.
+ * With an idempotency guard, each chunk is posted with an idempotency key derived from the file, the offset of the chunk
+ * and its records, so a chunk which was committed but not reported, eg. when the importer failed right after the
+ * commit, is skipped rather than posted again when the import is resumed or repeated.
+ * With a journal log, each chunk is appended to the log together instead of being inserted, and the journal log
+ * projector inserts it into the tables, with the idempotency key of the chunk on its first entry.
+ * The entries of each chunk are checked against the chart of accounts before they are posted.
+ * Only a few chunks are read ahead of the one being posted, so the memory used does not depend on the size of the file.
+ */
+public class StatementImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementImporter.class);
+
+    /**
+     * Number of records in a chunk, which is posted in one transaction
+     */
+    public static final int RECORDS_PER_CHUNK = BatchRepository.BATCH_SIZE * 10;
+
+    private final ChartOfAccounts chartOfAccounts;
+    private final JournalEntryDataRepository journalEntryDataRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JournalIdGenerator journalIdGenerator;
+    private final IdempotencyGuard idempotencyGuard;
+    private final JournalLog journalLog;
+    private final Consumer<List<JournalEntry>> committed;
+    private final JournalEntryValidator validator;
+    private final ExecutorService parsers;
+    private final int readAhead;
+
+    /**
+     * Constructor for an importer without idempotency keys
+     * @param chartOfAccounts chart of accounts to resolve the accounts from
+     * @param journalEntryDataRepository repository to post to
+     * @param transactionTemplate template for the transaction of each chunk
+     * @param journalIdGenerator generator of the journal ids of the new entries
+     * @param parsers executor to parse the chunks in
+     * @param parallelism number of chunks parsed at the same time
+     */
+    public StatementImporter(ChartOfAccounts chartOfAccounts, JournalEntryDataRepository journalEntryDataRepository, TransactionTemplate transactionTemplate,
+                             JournalIdGenerator journalIdGenerator, ExecutorService parsers, int parallelism) {
+        this(chartOfAccounts, journalEntryDataRepository, transactionTemplate, journalIdGenerator, null, parsers, parallelism);
+    }
+
+    /**
+     * Default constructor
+     * @param chartOfAccounts chart of accounts to resolve the accounts from
+     * @param journalEntryDataRepository repository to post to
+     * @param transactionTemplate template for the transaction of each chunk
+     * @param journalIdGenerator generator of the journal ids of the new entries
+     * @param idempotencyGuard guard of the idempotency keys of the chunks, or null to post every chunk
+     * @param parsers executor to parse the chunks in
+     * @param parallelism number of chunks parsed at the same time
+     */
+    public StatementImporter(ChartOfAccounts chartOfAccounts, JournalEntryDataRepository journalEntryDataRepository, TransactionTemplate transactionTemplate,
+                             JournalIdGenerator journalIdGenerator, IdempotencyGuard idempotencyGuard, ExecutorService parsers, int parallelism) {
+        this(chartOfAccounts, journalEntryDataRepository, transactionTemplate, journalIdGenerator, idempotencyGuard, null, parsers, parallelism);
+    }
+
+    /**
+     * Constructor with a journal log
+     * @param chartOfAccounts chart of accounts to resolve the accounts from
+     * @param journalEntryDataRepository repository to post to, if there is no journal log
+     * @param transactionTemplate template for the transaction of each chunk, if there is no journal log
+     * @param journalIdGenerator generator of the journal ids of the new entries
+     * @param idempotencyGuard guard of the idempotency keys of the chunks, or null to post every chunk
+     * @param journalLog journal log to append the chunks to, or null to insert them into the tables directly
+     * @param parsers executor to parse the chunks in
+     * @param parallelism number of chunks parsed at the same time
+     */
+    public StatementImporter(ChartOfAccounts chartOfAccounts, JournalEntryDataRepository journalEntryDataRepository, TransactionTemplate transactionTemplate,
+                             JournalIdGenerator journalIdGenerator, IdempotencyGuard idempotencyGuard, JournalLog journalLog,
+                             ExecutorService parsers, int parallelism) {
+        this(chartOfAccounts, journalEntryDataRepository, transactionTemplate, journalIdGenerator, idempotencyGuard, journalLog,
+                journalEntries -> {}, parsers, parallelism);
+    }
+
+    /**
+     * Constructor with a journal log and a callback for the committed entries
+     * @param chartOfAccounts chart of accounts to resolve the accounts from
+     * @param journalEntryDataRepository repository to post to, if there is no journal log
+     * @param transactionTemplate template for the transaction of each chunk, if there is no journal log
+     * @param journalIdGenerator generator of the journal ids of the new entries
+     * @param idempotencyGuard guard of the idempotency keys of the chunks, or null to post every chunk
+     * @param journalLog journal log to append the chunks to, or null to insert them into the tables directly
+     * @param committed called with the entries of each chunk once they are committed or durably appended, eg. to update
+     *                  the balances, and not for a chunk that was posted before
+     * @param parsers executor to parse the chunks in
+     * @param parallelism number of chunks parsed at the same time
+     */
+    public StatementImporter(ChartOfAccounts chartOfAccounts, JournalEntryDataRepository journalEntryDataRepository, TransactionTemplate transactionTemplate,
+                             JournalIdGenerator journalIdGenerator, IdempotencyGuard idempotencyGuard, JournalLog journalLog,
+                             Consumer<List<JournalEntry>> committed, ExecutorService parsers, int parallelism) {
+        this.chartOfAccounts = chartOfAccounts;
+        this.journalEntryDataRepository = journalEntryDataRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.journalIdGenerator = journalIdGenerator;
+        this.idempotencyGuard = idempotencyGuard;
+        this.journalLog = journalLog;
+        this.committed = committed;
+        this.validator = new JournalEntryValidator(chartOfAccounts);
+        this.parsers = parsers;
+        this.readAhead = Math.max(1, parallelism) * 2;
+    }
+
+    /**
+     * Imports the whole statement file, in the format given by its extension
+     * @param file statement file
+     * @param mapping accounts to post to and columns of the file
+     * @return final progress
+     * @throws IOException if the file cannot be read
+     */
+    public ImportProgress importFile(Path file, StatementMapping mapping) throws IOException {
+        return importFile(file, mapping, 0, progress -> {});
+    }
+
+    /**
+     * Imports the statement file from the offset, in the format given by its extension
+     * @param file statement file
+     * @param mapping accounts to post to and columns of the file
+     * @param fromOffset 0, or the offset of the last progress reported by an import that failed
+     * @param listener gets the progress after each chunk is committed
+     * @return final progress, counting only the entries posted by this import
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if an account is not found or a record cannot be parsed, after posting the chunks before it
+     */
+    public ImportProgress importFile(Path file, StatementMapping mapping, long fromOffset, Consumer<ImportProgress> listener) throws IOException {
+        StatementFormat format = StatementFormat.of(file);
+        Accounts accounts = new Accounts(chartOfAccounts.getSnapshot(), mapping);
+        Deque<Future<Chunk>> parsing = new ArrayDeque<>();
+        String fileName = file.toAbsolutePath().normalize().toString();
+        try (LineReader reader = LineReader.open(file, fromOffset)) {
+            long size = reader.getSize();
+            ImportProgress progress = new ImportProgress(fromOffset, size, 0);
+            if(fromOffset == 0 && format == StatementFormat.CSV && mapping.hasHeader()) reader.readLine();
+            try {
+                while(true){
+                    long startOffset = reader.getOffset();
+                    List<String> records = readChunk(reader, format);
+                    if(records.isEmpty()) break;
+                    long endOffset = reader.getOffset();
+                    long firstId = journalIdGenerator.reserve(records.size());
+                    List<String> chunk = records;
+                    parsing.add(parsers.submit(() -> parse(chunk, fileName, firstId, startOffset, endOffset, format, mapping, accounts)));
+                    if(parsing.size() >= readAhead) progress = post(parsing.poll(), progress, listener);
+                }
+                while(!parsing.isEmpty()) progress = post(parsing.poll(), progress, listener);
+            } catch (IOException | RuntimeException e) {
+                parsing.forEach(future -> future.cancel(true));
+                throw e;
+            }
+            if(!progress.isDone()){
+                progress = new ImportProgress(size, size, progress.getEntries());
+                listener.accept(progress);
+            }
+            return progress;
+        }
+    }
+
+    private static List<String> readChunk(LineReader reader, StatementFormat format) throws IOException {
+        List<String> records = new ArrayList<>();
+        StringBuilder record = null;
+        String line;
+        // a chunk always ends at the end of a record
+        while(records.size() < RECORDS_PER_CHUNK && (line = reader.readLine()) != null){
+            if(line.startsWith("\uFEFF")) line = line.substring(1);
+            if(record == null){
+                if(!format.startsRecord(line)) continue;
+                record = new StringBuilder(line);
+            }else{
+                record.append('\n').append(line);
+            }
+            if(format.endsRecord(line)){
+                records.add(record.toString());
+                record = null;
+            }
+        }
+        if(record != null) throw new IllegalArgumentException("Unterminated record at the end of the file: " + record);
+        return records;
+    }
+
+    private static Chunk parse(List<String> records, String fileName, long firstId, long startOffset, long endOffset, StatementFormat format, StatementMapping mapping, Accounts accounts) {
+        List<JournalEntry> journalEntries = new ArrayList<>(records.size());
+        List<JournalEntryData> entries = new ArrayList<>(records.size());
+        long journalId = firstId;
+        for(String record : records){
+            StatementLine statementLine;
+            try {
+                statementLine = format.parse(record, mapping);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid record after offset " + startOffset + ": " + record, e);
+            }
+            int signum = statementLine.getAmount().signum();
+            if(signum == 0) continue;
+            JournalEntry journalEntry = new JournalEntry(journalId++, statementLine.getTxDate(), statementLine.getItem(), Recurrence.N, null,
+                    accounts.currency, statementLine.getAmount().abs().toPlainString(),
+                    signum < 0 ? accounts.expense : accounts.statement,
+                    signum < 0 ? accounts.statement : accounts.income,
+                    null, null, null);
+            journalEntries.add(journalEntry);
+            entries.add(ModelMapping.toJournalEntryData(journalEntry));
+        }
+        return new Chunk(chunkKey(fileName, startOffset, records), journalEntries, entries, endOffset);
+    }
+
+    /**
+     * Gets the idempotency key of a chunk. The records are part of the key, so a different file imported from the same
+     * path is not mistaken for the one imported before.
+     */
+    private static String chunkKey(String fileName, long startOffset, List<String> records) {
+        StringBuilder name = new StringBuilder(fileName).append('\n').append(startOffset);
+        for(String record : records) name.append('\n').append(record);
+        return "statement:" + UUID.nameUUIDFromBytes(name.toString().getBytes(StandardCharsets.UTF_8)) + ":" + startOffset;
+    }
+
+    private ImportProgress post(Future<Chunk> future, ImportProgress progress, Consumer<ImportProgress> listener) {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing the statement", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        int posted = chunk.entries.isEmpty() ? 0 : persist(chunk);
+        if(posted > 0){
+            try {
+                committed.accept(chunk.journalEntries);
+            } catch (RuntimeException e) {
+                logger.error("Failed to process {} committed journal entries", posted, e);
+            }
+        }
+        ImportProgress next = new ImportProgress(chunk.endOffset, progress.getSize(), progress.getEntries() + posted);
+        listener.accept(next);
+        return next;
+    }
+
+    /**
+     * Posts the entries of the chunk in one transaction, with the idempotency key of the chunk if there is a guard
+     * @return number of entries posted, 0 if the chunk was posted before
+     */
+    private int persist(Chunk chunk) {
+        // the accounts may have been deleted since the import started
+        validator.validate(chunk.entries);
+        if(journalLog != null) return append(chunk);
+        if(idempotencyGuard == null){
+            transactionTemplate.executeWithoutResult(status -> journalEntryDataRepository.persistAll(chunk.entries));
+            return chunk.entries.size();
+        }
+        Boolean posted;
+        try {
+            posted = transactionTemplate.execute(status -> {
+                if(idempotencyGuard.findJournalId(chunk.key) != null) return false;
+                journalEntryDataRepository.persistAll(chunk.entries);
+                idempotencyGuard.insert(List.of(new IdempotencyKeyData(chunk.key, chunk.entries.get(0).getJournalId())));
+                return true;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // the key was committed by another import of the same file after it was looked up
+            if(idempotencyGuard.findPostedJournalId(chunk.key) == null) throw e;
+            posted = false;
+        }
+        idempotencyGuard.record(chunk.key);
+        return Boolean.TRUE.equals(posted) ? chunk.entries.size() : 0;
+    }
+
+    /**
+     * Appends the entries of the chunk to the journal log together, with the idempotency key of the chunk on the first
+     * one if there is a guard
+     * @return number of entries posted, 0 if the chunk was posted before
+     */
+    private int append(Chunk chunk) {
+        if(idempotencyGuard != null && idempotencyGuard.findJournalId(chunk.key) != null) return 0;
+        List<JournalLogRecord> records = new ArrayList<>(chunk.entries.size());
+        for(JournalEntryData journalEntryData : chunk.entries){
+            records.add(new JournalLogRecord(journalEntryData, records.isEmpty() && idempotencyGuard != null ? chunk.key : null));
+        }
+        journalLog.appendAllDurably(records);
+        if(idempotencyGuard != null) idempotencyGuard.logged(chunk.key, chunk.entries.get(0).getJournalId());
+        return chunk.entries.size();
+    }
+
+    /**
+     * Idempotency key and parsed entries of a chunk, and the offset of its end
+     */
+    private static class Chunk {
+
+        private final String key;
+        private final List<JournalEntry> journalEntries;
+        private final List<JournalEntryData> entries;
+        private final long endOffset;
+
+        private Chunk(String key, List<JournalEntry> journalEntries, List<JournalEntryData> entries, long endOffset) {
+            this.key = key;
+            this.journalEntries = journalEntries;
+            this.entries = entries;
+            this.endOffset = endOffset;
+        }
+    }
+
+    /**
+     * Accounts of a mapping, resolved once for the whole import
+     */
+    private static class Accounts {
+
+        private final Account statement;
+        private final Account expense;
+        private final Account income;
+        private final String currency;
+
+        private Accounts(ChartSnapshot snapshot, StatementMapping mapping) {
+            this.statement = resolve(snapshot, mapping.getAccount());
+            this.expense = resolve(snapshot, mapping.getExpenseAccount());
+            this.income = resolve(snapshot, mapping.getIncomeAccount());
+            if(!(statement instanceof BalanceSheetAccount)) throw new IllegalArgumentException("Not a bank or credit card account: " + statement.getName());
+            this.currency = ((BalanceSheetAccount) statement).getCurrency().getCurrencyCode();
+        }
+
+        private static Account resolve(ChartSnapshot snapshot, String name) {
+            Account account = snapshot.getAccount(name);
+            if(account == null) throw new IllegalArgumentException("Account not found: " + name);
+            return account;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.hevlar.accounting.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Transaction read from a statement file
+ */
+class StatementLine {
+
+    private final LocalDate txDate;
+    private final String item;
+    private final BigDecimal amount;
+
+    StatementLine(LocalDate txDate, String item, BigDecimal amount) {
+        this.txDate = txDate;
+        this.item = item;
+        this.amount = amount;
+    }
+
+    LocalDate getTxDate() {
+        return txDate;
+    }
+
+    String getItem() {
+        return item;
+    }
+
+    /**
+     * Gets the signed amount, negative for money going out of the account
+     * @return amount
+     */
+    BigDecimal getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,135 @@
+package com.hevlar.accounting.service;
+
+import java.time.format.DateTimeFormatter;
+
+/**
+ * How the transactions of a statement file are posted. Money going out of the statement account is debited to the
+ * expense account, and money coming in is credited to the income account.
+ * For CSV files, it also gives the columns of the date, item and amount, and the format of the date.
+ */
+public class StatementMapping {
+
+    private final String account;
+    private final String expenseAccount;
+    private final String incomeAccount;
+    private final int dateColumn;
+    private final int itemColumn;
+    private final int amountColumn;
+    private final DateTimeFormatter dateFormat;
+    private final boolean header;
+
+    /**
+     * Creates a mapping for CSV files with a header line and the columns date, item, amount, with ISO dates
+     * @param account name of the bank or credit card account of the statement
+     * @param expenseAccount name of the account debited for money going out
+     * @param incomeAccount name of the account credited for money coming in
+     */
+    public StatementMapping(String account, String expenseAccount, String incomeAccount) {
+        this(account, expenseAccount, incomeAccount, 0, 1, 2, DateTimeFormatter.ISO_LOCAL_DATE, true);
+    }
+
+    private StatementMapping(String account, String expenseAccount, String incomeAccount, int dateColumn, int itemColumn, int amountColumn, DateTimeFormatter dateFormat, boolean header) {
+        if(account == null || expenseAccount == null || incomeAccount == null) throw new NullPointerException("Accounts cannot be null");
+        if(dateColumn < 0 || itemColumn < 0 || amountColumn < 0) throw new IllegalArgumentException("Columns cannot be negative");
+        this.account = account;
+        this.expenseAccount = expenseAccount;
+        this.incomeAccount = incomeAccount;
+        this.dateColumn = dateColumn;
+        this.itemColumn = itemColumn;
+        this.amountColumn = amountColumn;
+        this.dateFormat = dateFormat;
+        this.header = header;
+    }
+
+    /**
+     * Creates a copy with the columns of the CSV file, counted from 0
+     * @param dateColumn column of the transaction date
+     * @param itemColumn column of the item
+     * @param amountColumn column of the signed amount
+     * @return mapping
+     */
+    public StatementMapping withColumns(int dateColumn, int itemColumn, int amountColumn) {
+        return new StatementMapping(account, expenseAccount, incomeAccount, dateColumn, itemColumn, amountColumn, dateFormat, header);
+    }
+
+    /**
+     * Creates a copy with the format of the dates in the CSV file
+     * @param pattern date pattern, eg. dd/MM/yyyy
+     * @return mapping
+     */
+    public StatementMapping withDateFormat(String pattern) {
+        return new StatementMapping(account, expenseAccount, incomeAccount, dateColumn, itemColumn, amountColumn, DateTimeFormatter.ofPattern(pattern), header);
+    }
+
+    /**
+     * Creates a copy for CSV files without a header line
+     * @return mapping
+     */
+    public StatementMapping withoutHeader() {
+        return new StatementMapping(account, expenseAccount, incomeAccount, dateColumn, itemColumn, amountColumn, dateFormat, false);
+    }
+
+    /**
+     * Gets the name of the bank or credit card account of the statement
+     * @return account name
+     */
+    public String getAccount() {
+        return account;
+    }
+
+    /**
+     * Gets the name of the account debited for money going out
+     * @return account name
+     */
+    public String getExpenseAccount() {
+        return expenseAccount;
+    }
+
+    /**
+     * Gets the name of the account credited for money coming in
+     * @return account name
+     */
+    public String getIncomeAccount() {
+        return incomeAccount;
+    }
+
+    /**
+     * Gets the column of the transaction date
+     * @return column, from 0
+     */
+    public int getDateColumn() {
+        return dateColumn;
+    }
+
+    /**
+     * Gets the column of the item
+     * @return column, from 0
+     */
+    public int getItemColumn() {
+        return itemColumn;
+    }
+
+    /**
+     * Gets the column of the signed amount
+     * @return column, from 0
+     */
+    public int getAmountColumn() {
+        return amountColumn;
+    }
+
+    /**
+     * Gets the format of the dates
+     * @return date format
+     */
+    public DateTimeFormatter getDateFormat() {
+        return dateFormat;
+    }
+
+    /**
+     * Check if the CSV file starts with a header line
+     * @return true if there is a header line
+     */
+    public boolean hasHeader() {
+        return header;
+    }
+}
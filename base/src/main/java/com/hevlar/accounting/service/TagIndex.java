@@ -0,0 +1,133 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.util.MutablePostingList;
+import com.hevlar.accounting.util.PostingList;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Inverted index from each tag to the compressed, sorted posting list of the journal ids of the entries with the tag.
+ * Tag queries are evaluated by merging the posting lists of their tags, so their cost depends on the number of entries
+ * with those tags, not on the size of the journal.
+ * Entries are indexed with {@link #update(JournalEntry)}, which must be called again after {@link JournalEntry#setTags}.
+ * Changes are buffered per tag, and merged into its posting list when it is queried or when the buffer grows.
+ */
+public class TagIndex {
+
+    private final Map<String, MutablePostingList> byTag = new HashMap<>();
+    private final Map<Long, Set<String>> tagsById = new HashMap<>();
+    private final Map<Long, LocalDate> txDateById = new HashMap<>();
+    private final MutablePostingList all = new MutablePostingList();
+
+    /**
+     * Indexes the entry, or re-indexes it if its tags or transaction date have changed
+     * @param journalEntry journal entry
+     */
+    public void update(JournalEntry journalEntry) {
+        update(journalEntry.getJournalId(), journalEntry.getTags(), journalEntry.getTxDate());
+    }
+
+    /**
+     * Indexes the entry by its journal id, tags and transaction date, eg. from its persisted row, or re-indexes it if
+     * its tags or transaction date have changed
+     * @param journalId journal id
+     * @param entryTags tags of the entry
+     * @param txDate transaction date
+     */
+    public synchronized void update(Long journalId, String[] entryTags, LocalDate txDate) {
+        Set<String> tags = normalize(entryTags);
+        Set<String> previous = tagsById.put(journalId, tags);
+        txDateById.put(journalId, txDate);
+        if(previous == null){
+            all.add(journalId);
+            previous = Set.of();
+        }
+        for(String tag : previous){
+            if(!tags.contains(tag)) byTag.get(tag).remove(journalId);
+        }
+        for(String tag : tags){
+            if(!previous.contains(tag)) byTag.computeIfAbsent(tag, key -> new MutablePostingList()).add(journalId);
+        }
+    }
+
+    /**
+     * Indexes the entries
+     * @param journalEntries journal entries
+     */
+    public synchronized void updateAll(Iterable<JournalEntry> journalEntries) {
+        journalEntries.forEach(this::update);
+    }
+
+    /**
+     * Removes the entry from the index, eg. when it is deleted
+     * @param journalId journal id
+     */
+    public synchronized void remove(Long journalId) {
+        Set<String> previous = tagsById.remove(journalId);
+        if(previous == null) return;
+        txDateById.remove(journalId);
+        all.remove(journalId);
+        previous.forEach(tag -> byTag.get(tag).remove(journalId));
+    }
+
+    /**
+     * Gets the journal ids of the entries with the tag
+     * @param tag tag
+     * @return journal ids
+     */
+    public synchronized PostingList getPostings(String tag) {
+        MutablePostingList postings = byTag.get(tag);
+        return postings == null ? PostingList.empty() : postings.postings();
+    }
+
+    /**
+     * Gets all the tags in use
+     * @return tags
+     */
+    public synchronized Set<String> getTags() {
+        Set<String> tags = new TreeSet<>();
+        byTag.forEach((tag, postings) -> {
+            if(!postings.postings().isEmpty()) tags.add(tag);
+        });
+        return tags;
+    }
+
+    /**
+     * Gets the journal ids of the entries matching the query
+     * @param query tag query
+     * @return journal ids
+     */
+    public synchronized PostingList find(TagQuery query) {
+        return query.evaluate(this::getPostings, all::postings);
+    }
+
+    /**
+     * Gets the journal ids of the entries matching the query with transaction dates within the period. Only the
+     * entries matching the query are checked for their dates.
+     * @param query tag query
+     * @param from first date, inclusive
+     * @param to last date, inclusive
+     * @return journal ids
+     */
+    public synchronized PostingList find(TagQuery query, LocalDate from, LocalDate to) {
+        PostingList.Builder builder = new PostingList.Builder();
+        PostingList.Cursor cursor = find(query).cursor();
+        while(cursor.hasNext()){
+            long journalId = cursor.next();
+            LocalDate txDate = txDateById.get(journalId);
+            if(!txDate.isBefore(from) && !txDate.isAfter(to)) builder.add(journalId);
+        }
+        return builder.build();
+    }
+
+    private static Set<String> normalize(String[] tags) {
+        if(tags == null || tags.length == 0) return Set.of();
+        Set<String> normalized = new HashSet<>();
+        for(String tag : tags){
+            if(tag != null && !tag.isBlank()) normalized.add(tag.trim());
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,94 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.util.PostingList;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Boolean query over the tags of the journal entries, eg. {@code TagQuery.tag("#food").and(TagQuery.tag("#lunch"))}
+ */
+public final class TagQuery {
+
+    private enum Operator { TAG, AND, OR, AND_NOT, NOT }
+
+    private final Operator operator;
+    private final String tag;
+    private final TagQuery left;
+    private final TagQuery right;
+
+    private TagQuery(Operator operator, String tag, TagQuery left, TagQuery right) {
+        this.operator = operator;
+        this.tag = tag;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Creates a query of the entries with the tag
+     * @param tag tag
+     * @return query
+     */
+    public static TagQuery tag(String tag) {
+        if(tag == null || tag.isBlank()) throw new IllegalArgumentException("Tag cannot be blank");
+        return new TagQuery(Operator.TAG, tag.trim(), null, null);
+    }
+
+    /**
+     * Creates a query of the entries which do not match the query. Prefer {@link #andNot(TagQuery)}, which does not
+     * go through all the entries.
+     * @param query query
+     * @return query
+     */
+    public static TagQuery not(TagQuery query) {
+        return new TagQuery(Operator.NOT, null, query, null);
+    }
+
+    /**
+     * Creates a query of the entries matching both queries
+     * @param other query
+     * @return query
+     */
+    public TagQuery and(TagQuery other) {
+        return new TagQuery(Operator.AND, null, this, other);
+    }
+
+    /**
+     * Creates a query of the entries matching either query
+     * @param other query
+     * @return query
+     */
+    public TagQuery or(TagQuery other) {
+        return new TagQuery(Operator.OR, null, this, other);
+    }
+
+    /**
+     * Creates a query of the entries matching this query but not the other
+     * @param other query
+     * @return query
+     */
+    public TagQuery andNot(TagQuery other) {
+        return new TagQuery(Operator.AND_NOT, null, this, other);
+    }
+
+    PostingList evaluate(Function<String, PostingList> postings, Supplier<PostingList> all) {
+        switch (operator){
+            case TAG: return postings.apply(tag);
+            case AND: return left.evaluate(postings, all).and(right.evaluate(postings, all));
+            case OR: return left.evaluate(postings, all).or(right.evaluate(postings, all));
+            case AND_NOT: return left.evaluate(postings, all).andNot(right.evaluate(postings, all));
+            default: return all.get().andNot(left.evaluate(postings, all));
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (operator){
+            case TAG: return tag;
+            case AND: return "(" + left + " AND " + right + ")";
+            case OR: return "(" + left + " OR " + right + ")";
+            case AND_NOT: return "(" + left + " AND NOT " + right + ")";
+            default: return "NOT " + left;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.repository.JournalEntryDataEvent;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.util.PostingList;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Finds the journal entries by their tags with a {@link TagIndex}, which is loaded from the repository when the
+ * application is ready and then kept up to date with the {@link JournalEntryDataEvent} of each row written, once its
+ * transaction commits, so entries written by any service, the statement importer or REST are indexed.
+ */
+@Service
+public class TagSearchService {
+
+    private final JournalEntryDataRepository journalEntryDataRepository;
+    private final TagIndex tagIndex = new TagIndex();
+
+    /**
+     * Default constructor
+     * @param journalEntryDataRepository repository of journal entries
+     */
+    public TagSearchService(JournalEntryDataRepository journalEntryDataRepository) {
+        this.journalEntryDataRepository = journalEntryDataRepository;
+    }
+
+    /**
+     * Loads the tags of all the entries into the index, in one streaming query
+     * @return number of entries indexed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public int rebuild() {
+        int count = 0;
+        try (Stream<JournalEntryDataRepository.JournalTags> journalTags = journalEntryDataRepository.streamTags()) {
+            for(JournalEntryDataRepository.JournalTags entry : (Iterable<JournalEntryDataRepository.JournalTags>) journalTags::iterator){
+                tagIndex.update(entry.getJournalId(), entry.getTags(), entry.getTxDate());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Indexes or removes the entry of a row once it is committed
+     * @param event row written or removed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJournalEntryData(JournalEntryDataEvent event) {
+        if(event.isRemoved()) remove(event.getJournalId());
+        else update(event.getJournalId(), event.getTags(), event.getTxDate());
+    }
+
+    /**
+     * Gets the journal ids of the entries matching the query
+     * @param query tag query
+     * @return journal ids
+     */
+    public PostingList find(TagQuery query) {
+        return tagIndex.find(query);
+    }
+
+    /**
+     * Gets the journal ids of the entries matching the query with transaction dates within the period
+     * @param query tag query
+     * @param from first date, inclusive
+     * @param to last date, inclusive
+     * @return journal ids
+     */
+    public PostingList find(TagQuery query, LocalDate from, LocalDate to) {
+        return tagIndex.find(query, from, to);
+    }
+
+    /**
+     * Gets all the tags in use
+     * @return tags
+     */
+    public Set<String> getTags() {
+        return tagIndex.getTags();
+    }
+
+    /**
+     * Indexes the entry after it is posted or its tags are changed
+     * @param journalEntry journal entry
+     */
+    public void update(JournalEntry journalEntry) {
+        tagIndex.update(journalEntry);
+    }
+
+    /**
+     * Indexes the entry after its row is written
+     * @param journalId journal id
+     * @param tags tags of the entry
+     * @param txDate transaction date
+     */
+    public void update(Long journalId, String[] tags, LocalDate txDate) {
+        tagIndex.update(journalId, tags, txDate);
+    }
+
+    /**
+     * Removes the entry from the index after it is deleted
+     * @param journalId journal id
+     */
+    public void remove(Long journalId) {
+        tagIndex.remove(journalId);
+    }
+}
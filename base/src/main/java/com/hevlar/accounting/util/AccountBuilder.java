@@ -5,11 +5,12 @@ import com.hevlar.accounting.model.*;
 import java.math.BigDecimal;
 import java.security.InvalidParameterException;
 import java.time.LocalDate;
+import java.util.NoSuchElementException;
 
 public class AccountBuilder {
 
     private String name;
-    private String accountGroup;
+    private AccountGroup accountGroup;
     private LocalDate openDate;
     private String currency;
     private BigDecimal openBal;
@@ -22,8 +23,8 @@ public class AccountBuilder {
     }
 
     public Account build() throws InvalidParameterException {
-        AccountType accountType = AccountGroup.getAccountTypeFromLabel(accountGroup);
-        if(accountType == AccountType.BalanceSheet){
+        if(accountGroup == null) throw new NoSuchElementException("Account group cannot be null");
+        if(accountGroup.accountType == AccountType.BalanceSheet){
             return buildBalanceSheetAccount();
         }else{
             return buildIncomeStatementAccount();
@@ -31,7 +32,7 @@ public class AccountBuilder {
     }
 
     private IncomeStatementAccount buildIncomeStatementAccount(){
-        return new IncomeStatementAccount(name, AccountGroup.fromLabel(accountGroup), lock);
+        return new IncomeStatementAccount(name, accountGroup, lock);
     }
 
     private CreditCardAccount buildCreditCardAccount(){
@@ -51,7 +52,7 @@ public class AccountBuilder {
         return bank != null ? buildCreditCardAccount() :
                 new BalanceSheetAccount(
                     name,
-                    AccountGroup.fromLabel(accountGroup),
+                    accountGroup,
                     openDate,
                     currency,
                     openBal,
@@ -63,7 +64,7 @@ public class AccountBuilder {
         this.name = name;
     }
 
-    public void setAccountGroup(String accountGroup) {
+    public void setAccountGroup(AccountGroup accountGroup) {
         this.accountGroup = accountGroup;
     }
 
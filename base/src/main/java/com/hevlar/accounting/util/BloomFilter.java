@@ -0,0 +1,100 @@
+package com.hevlar.accounting.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter of strings. {@link #mightContain(String)} is never false for a string that was added, and
+ * is true for a string that was not added with about the false positive probability the filter was sized for, as long
+ * as no more than the expected number of strings are added.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+
+    /**
+     * Default constructor
+     * @param expectedInsertions number of strings expected to be added
+     * @param falsePositiveProbability probability of a false positive at the expected number of strings, eg. 0.01
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if(expectedInsertions < 1) throw new IllegalArgumentException("Expected insertions must be positive");
+        if(falsePositiveProbability <= 0 || falsePositiveProbability >= 1) throw new IllegalArgumentException("False positive probability must be between 0 and 1");
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (optimalBits + 63) / 64));
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Adds the string
+     * @param value string to add
+     */
+    public void add(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for(int i = 1; i <= hashCount; i++){
+            long bit = index(h1, h2, i);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if((bits.get(word) & mask) == 0) bits.getAndAccumulate(word, mask, (current, set) -> current | set);
+        }
+    }
+
+    /**
+     * Check if the string might have been added
+     * @param value string to check
+     * @return false if the string was definitely not added, true if it probably was
+     */
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for(int i = 1; i <= hashCount; i++){
+            long bit = index(h1, h2, i);
+            if((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of bits of the filter
+     * @return number of bits
+     */
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    /**
+     * Gets the number of hash functions of the filter
+     * @return number of hash functions
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private long index(int h1, int h2, int i) {
+        // double hashing, h1 + i * h2 for the i-th hash function
+        long combined = h1 + (long) i * h2;
+        if(combined < 0) combined = ~combined;
+        return combined % bitSize;
+    }
+
+    private static long hash(String value) {
+        // FNV-1a over the chars, then the MurmurHash3 finalizer to spread the bits
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < value.length(); i++){
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,50 @@
+package com.hevlar.accounting.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token of keyset pagination, holding the key of the last item of a page. The key is encoded with
+ * the kind of listing it belongs to, so a token of one listing is rejected by another.
+ */
+public final class ContinuationToken {
+
+    private static final char SEPARATOR = '\u001f';
+
+    private ContinuationToken() {
+    }
+
+    /**
+     * Encodes the key into a token
+     * @param kind kind of listing, eg. account
+     * @param key parts of the key, which must not contain the unit separator character
+     * @return url safe token
+     */
+    public static String encode(String kind, String... key) {
+        StringBuilder builder = new StringBuilder(kind);
+        for(String part : key) builder.append(SEPARATOR).append(part);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the key from a token
+     * @param token token from {@link #encode(String, String...)}
+     * @param kind kind of listing expected
+     * @param parts number of parts of the key expected
+     * @return parts of the key
+     * @throws IllegalArgumentException if the token is invalid or of another kind of listing
+     */
+    public static String[] decode(String token, String kind, int parts) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+        String[] split = decoded.split(String.valueOf(SEPARATOR), -1);
+        if(split.length != parts + 1 || !split[0].equals(kind)) throw new IllegalArgumentException("Invalid continuation token");
+        String[] key = new String[parts];
+        System.arraycopy(split, 1, key, 0, parts);
+        return key;
+    }
+}
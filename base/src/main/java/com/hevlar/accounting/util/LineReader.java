@@ -0,0 +1,98 @@
+package com.hevlar.accounting.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a UTF-8 file one at a time, keeping track of the byte offset after the last line read, so that
+ * reading can later resume from that offset. Lines end with \n or \r\n.
+ */
+public class LineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] line = new byte[256];
+    private long offset;
+
+    private LineReader(FileChannel channel, long offset) {
+        this.channel = channel;
+        this.offset = offset;
+        buffer.flip();
+    }
+
+    /**
+     * Opens the file for reading from the offset
+     * @param file file to read
+     * @param offset byte offset to start from, which must be at the start of a line
+     * @return line reader
+     * @throws IOException if the file cannot be opened
+     */
+    public static LineReader open(Path file, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if(offset < 0 || offset > channel.size()) throw new IllegalArgumentException("Offset is outside of the file: " + offset);
+            channel.position(offset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return new LineReader(channel, offset);
+    }
+
+    /**
+     * Reads the next line
+     * @return line without its line terminator, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public String readLine() throws IOException {
+        int length = 0;
+        boolean read = false;
+        while(true){
+            if(!buffer.hasRemaining()){
+                buffer.clear();
+                int count = channel.read(buffer);
+                buffer.flip();
+                if(count <= 0) break;
+            }
+            byte b = buffer.get();
+            offset++;
+            read = true;
+            if(b == '\n') break;
+            if(length == line.length) line = Arrays.copyOf(line, length * 2);
+            line[length++] = b;
+        }
+        if(!read) return null;
+        if(length > 0 && line[length - 1] == '\r') length--;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the byte offset after the last line read, ie. the start of the next line
+     * @return byte offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the size of the file
+     * @return size in bytes
+     * @throws IOException if the size cannot be read
+     */
+    public long getSize() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
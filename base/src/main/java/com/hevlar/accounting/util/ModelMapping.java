@@ -2,6 +2,9 @@ package com.hevlar.accounting.util;
 
 import com.hevlar.accounting.model.*;
 import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.repository.JournalEntryData;
+
+import java.util.function.Function;
 
 public class ModelMapping {
 
@@ -17,24 +20,29 @@ public class ModelMapping {
         accountBuilder.setStatementDay(accountData.getStatementDay());
         accountBuilder.setDueDay(accountData.getDueDay());
         accountBuilder.setLock(accountData.isLocked());
-        return accountBuilder.build();
+        Account account = accountBuilder.build();
+        account.setVersion(accountData.getVersion());
+        return account;
     }
 
     public static AccountData toAccountData(Account account){
+        AccountData accountData;
         if(account.getClass() == CreditCardAccount.class){
-            return toAccountData((CreditCardAccount)account);
+            accountData = toAccountData((CreditCardAccount)account);
         }else if(account.getClass() == BalanceSheetAccount.class){
-            return toAccountData((BalanceSheetAccount) account);
+            accountData = toAccountData((BalanceSheetAccount) account);
         }else{
-            return toAccountData((IncomeStatementAccount) account);
+            accountData = toAccountData((IncomeStatementAccount) account);
         }
+        accountData.setVersion(account.getVersion());
+        return accountData;
     }
 
     private static AccountData toAccountData(CreditCardAccount creditCardAccount){
         if(creditCardAccount == null) return null;
         return new AccountData(
             creditCardAccount.getName(),
-            creditCardAccount.getAccountGroup().label,
+            creditCardAccount.getAccountGroup(),
             creditCardAccount.getOpenDate(),
             creditCardAccount.getCurrency().getCurrencyCode(),
             creditCardAccount.getOpenBal(),
@@ -49,7 +57,7 @@ public class ModelMapping {
         if(balanceSheetAccount == null) return null;
         return new AccountData(
             balanceSheetAccount.getName(),
-            balanceSheetAccount.getAccountGroup().label,
+            balanceSheetAccount.getAccountGroup(),
             balanceSheetAccount.getOpenDate(),
             balanceSheetAccount.getCurrency().getCurrencyCode(),
             balanceSheetAccount.getOpenBal(),
@@ -61,9 +69,54 @@ public class ModelMapping {
         if(incomeStatementAccount == null) return null;
         return new AccountData(
             incomeStatementAccount.getName(),
-            incomeStatementAccount.getAccountGroup().label,
+            incomeStatementAccount.getAccountGroup(),
             incomeStatementAccount.isLocked()
         );
     }
 
+    public static JournalEntryData toJournalEntryData(JournalEntry journalEntry){
+        if(journalEntry == null) return null;
+        return new JournalEntryData(
+            journalEntry.getJournalId(),
+            journalEntry.getTxDate(),
+            journalEntry.getItem(),
+            journalEntry.getRecurrence(),
+            journalEntry.getTags(),
+            journalEntry.getCurrency().getCurrencyCode(),
+            journalEntry.getAmount(),
+            journalEntry.getDebit().getName(),
+            journalEntry.getCredit().getName(),
+            journalEntry.getPostDate(),
+            journalEntry.getDebitStatementDate(),
+            journalEntry.getCreditStatementDate(),
+            journalEntry.isLocked()
+        );
+    }
+
+    /**
+     * Maps the persisted journal entry to the model, resolving its debit and credit accounts by name
+     * @param journalEntryData persisted journal entry
+     * @param accounts resolves an account by its name, eg. ChartOfAccounts::getAccount
+     * @return journal entry
+     */
+    public static JournalEntry toJournalEntry(JournalEntryData journalEntryData, Function<String, Account> accounts){
+        if(journalEntryData == null) return null;
+        JournalEntry journalEntry = new JournalEntry(
+            journalEntryData.getJournalId(),
+            journalEntryData.getTxDate(),
+            journalEntryData.getItem(),
+            journalEntryData.getRecurrence(),
+            journalEntryData.getTags(),
+            journalEntryData.getCurrency(),
+            journalEntryData.getAmount().toPlainString(),
+            accounts.apply(journalEntryData.getDebitAccount()),
+            accounts.apply(journalEntryData.getCreditAccount()),
+            journalEntryData.getPostDate(),
+            journalEntryData.getDebitStatementDate(),
+            journalEntryData.getCreditStatementDate()
+        );
+        if(Boolean.TRUE.equals(journalEntryData.isLocked())) journalEntry.lock();
+        return journalEntry;
+    }
+
 }
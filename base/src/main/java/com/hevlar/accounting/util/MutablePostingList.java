@@ -0,0 +1,58 @@
+package com.hevlar.accounting.util;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Posting list which ids can be added to and removed from. The changes are buffered, and merged into the compressed
+ * {@link PostingList} when it is read or when the buffer grows too large compared to it. Not thread safe.
+ */
+public final class MutablePostingList {
+
+    private static final int MIN_PENDING = 64;
+
+    private PostingList postings = PostingList.empty();
+    private final TreeSet<Long> added = new TreeSet<>();
+    private final TreeSet<Long> removed = new TreeSet<>();
+
+    /**
+     * Adds the id, which must not be in the list
+     * @param id id
+     */
+    public void add(long id) {
+        if(!removed.remove(id)) added.add(id);
+        mergeIfLarge();
+    }
+
+    /**
+     * Removes the id, which must be in the list
+     * @param id id
+     */
+    public void remove(long id) {
+        if(!added.remove(id)) removed.add(id);
+        mergeIfLarge();
+    }
+
+    /**
+     * Gets the ids, merging the buffered changes first
+     * @return posting list
+     */
+    public PostingList postings() {
+        if(!added.isEmpty() || !removed.isEmpty()){
+            postings = postings.andNot(toPostingList(removed)).or(toPostingList(added));
+            added.clear();
+            removed.clear();
+        }
+        return postings;
+    }
+
+    private void mergeIfLarge() {
+        if(added.size() + removed.size() > Math.max(MIN_PENDING, postings.size() / 8)) postings();
+    }
+
+    private static PostingList toPostingList(SortedSet<Long> ids) {
+        PostingList.Builder builder = new PostingList.Builder();
+        ids.forEach(builder::add);
+        return builder.build();
+    }
+}
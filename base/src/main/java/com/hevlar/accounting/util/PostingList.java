@@ -0,0 +1,270 @@
+package com.hevlar.accounting.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable, compressed, sorted list of distinct ids, used by the inverted indexes of the journal.
+ * The ids are stored as the varint encoded gaps between consecutive ids, so dense lists of journal ids take about
+ * one byte per id. The set operations merge the lists in a single pass without decoding them first.
+ */
+public final class PostingList {
+
+    private static final PostingList EMPTY = new PostingList(new byte[0], 0, 0);
+
+    private final byte[] bytes;
+    private final int length;
+    private final int size;
+
+    private PostingList(byte[] bytes, int length, int size) {
+        this.bytes = bytes;
+        this.length = length;
+        this.size = size;
+    }
+
+    /**
+     * Gets the empty posting list
+     * @return empty posting list
+     */
+    public static PostingList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a posting list of the ids
+     * @param ids ids, in any order and with duplicates
+     * @return posting list
+     */
+    public static PostingList of(long... ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        Builder builder = new Builder();
+        for(int i = 0; i < sorted.length; i++){
+            if(i == 0 || sorted[i] != sorted[i - 1]) builder.add(sorted[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the number of ids
+     * @return number of ids
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if there are no ids
+     * @return true if empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the size of the compressed ids in bytes
+     * @return size in bytes
+     */
+    public int sizeInBytes() {
+        return length;
+    }
+
+    /**
+     * Check if the id is in the list
+     * @param id id
+     * @return true if found, false otherwise
+     */
+    public boolean contains(long id) {
+        Cursor cursor = cursor();
+        while(cursor.hasNext()){
+            long next = cursor.next();
+            if(next >= id) return next == id;
+        }
+        return false;
+    }
+
+    /**
+     * Creates a cursor over the ids in ascending order
+     * @return cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Gets the ids
+     * @return ids in ascending order
+     */
+    public long[] toArray() {
+        long[] ids = new long[size];
+        Cursor cursor = cursor();
+        for(int i = 0; i < size; i++) ids[i] = cursor.next();
+        return ids;
+    }
+
+    /**
+     * Gets the ids in both lists
+     * @param other posting list
+     * @return intersection
+     */
+    public PostingList and(PostingList other) {
+        if(isEmpty() || other.isEmpty()) return EMPTY;
+        Builder builder = new Builder();
+        Cursor left = cursor();
+        Cursor right = other.cursor();
+        long a = left.next();
+        long b = right.next();
+        while(true){
+            if(a == b){
+                builder.add(a);
+                if(!left.hasNext() || !right.hasNext()) break;
+                a = left.next();
+                b = right.next();
+            }else if(a < b){
+                if(!left.hasNext()) break;
+                a = left.next();
+            }else{
+                if(!right.hasNext()) break;
+                b = right.next();
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the ids in either list
+     * @param other posting list
+     * @return union
+     */
+    public PostingList or(PostingList other) {
+        if(isEmpty()) return other;
+        if(other.isEmpty()) return this;
+        Builder builder = new Builder();
+        Cursor left = cursor();
+        Cursor right = other.cursor();
+        long a = left.next();
+        long b = right.next();
+        boolean hasA = true;
+        boolean hasB = true;
+        while(hasA || hasB){
+            if(hasA && (!hasB || a <= b)){
+                builder.add(a);
+                if(hasB && a == b){
+                    hasB = right.hasNext();
+                    if(hasB) b = right.next();
+                }
+                hasA = left.hasNext();
+                if(hasA) a = left.next();
+            }else{
+                builder.add(b);
+                hasB = right.hasNext();
+                if(hasB) b = right.next();
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the ids in this list which are not in the other list
+     * @param other posting list
+     * @return difference
+     */
+    public PostingList andNot(PostingList other) {
+        if(isEmpty() || other.isEmpty()) return this;
+        Builder builder = new Builder();
+        Cursor left = cursor();
+        Cursor right = other.cursor();
+        boolean hasB = true;
+        long b = right.next();
+        while(left.hasNext()){
+            long a = left.next();
+            while(hasB && b < a){
+                hasB = right.hasNext();
+                if(hasB) b = right.next();
+            }
+            if(!hasB || b != a) builder.add(a);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Cursor over the ids of a posting list, in ascending order
+     */
+    public final class Cursor {
+
+        private int position;
+        private int remaining = size;
+        private long previous;
+
+        private Cursor() {
+        }
+
+        /**
+         * Check if there are more ids
+         * @return true if there are more ids
+         */
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        /**
+         * Gets the next id
+         * @return id
+         * @throws NoSuchElementException if there are no more ids
+         */
+        public long next() {
+            if(remaining == 0) throw new NoSuchElementException();
+            long gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                gap |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while(b < 0);
+            remaining--;
+            previous += gap;
+            return previous;
+        }
+    }
+
+    /**
+     * Builds a posting list from ids added in strictly ascending order
+     */
+    public static final class Builder {
+
+        private byte[] bytes = new byte[16];
+        private int length;
+        private int size;
+        private long previous;
+
+        /**
+         * Adds the id, which must be greater than the ids added before
+         * @param id id, not negative
+         * @return this builder
+         * @throws IllegalArgumentException if the id is not in ascending order
+         */
+        public Builder add(long id) {
+            if(id < 0 || (size > 0 && id <= previous)) throw new IllegalArgumentException("Ids must be added in ascending order: " + id);
+            long gap = id - previous;
+            if(length + 10 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            while((gap & ~0x7FL) != 0){
+                bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            bytes[length++] = (byte) gap;
+            previous = id;
+            size++;
+            return this;
+        }
+
+        /**
+         * Builds the posting list
+         * @return posting list
+         */
+        public PostingList build() {
+            if(size == 0) return EMPTY;
+            return new PostingList(Arrays.copyOf(bytes, length), length, size);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.hevlar.accounting.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountGroupTest {
+
+    @Test
+    void fromLabel_resolves_every_group() {
+        for(AccountGroup accountGroup : AccountGroup.values()){
+            assertEquals(AccountGroup.fromLabel(accountGroup.label), accountGroup);
+            assertEquals(AccountGroup.getAccountTypeFromLabel(accountGroup.label), accountGroup.accountType);
+        }
+    }
+
+    @Test
+    void fromLabel_unknown_label() {
+        assertThrows(NoSuchElementException.class, () -> AccountGroup.fromLabel("Unknown"));
+        assertThrows(NoSuchElementException.class, () -> AccountGroup.fromLabel(null));
+    }
+
+    @Test
+    void fromCode_resolves_every_group() {
+        for(AccountGroup accountGroup : AccountGroup.values()){
+            assertEquals(AccountGroup.fromCode(accountGroup.code), accountGroup);
+        }
+    }
+
+    @Test
+    void fromCode_unknown_code() {
+        assertThrows(NoSuchElementException.class, () -> AccountGroup.fromCode(0));
+        assertThrows(NoSuchElementException.class, () -> AccountGroup.fromCode(-1));
+        assertThrows(NoSuchElementException.class, () -> AccountGroup.fromCode(100));
+    }
+
+    @Test
+    void sign_follows_entry_type() {
+        assertEquals(AccountGroup.CURRENT_ASSETS.sign(EntryType.DEBIT), 1);
+        assertEquals(AccountGroup.CURRENT_ASSETS.sign(EntryType.CREDIT), -1);
+        assertEquals(AccountGroup.REVENUE.sign(EntryType.CREDIT), 1);
+        assertEquals(AccountGroup.REVENUE.sign(EntryType.DEBIT), -1);
+    }
+}
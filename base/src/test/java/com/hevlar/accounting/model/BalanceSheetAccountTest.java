@@ -59,4 +59,24 @@ class BalanceSheetAccountTest {
         bank.lock();
         assertFalse(bank.setOpenBal(1.0));
     }
-}
\ No newline at end of file
+
+    @Test
+    void openBal_with_more_decimal_places_than_the_currency_is_rejected() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.now(), "SGD", "100.005", Boolean.FALSE));
+        assertThrows(IllegalArgumentException.class, () ->
+                new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.now(), "JPY", new BigDecimal("100.5"), Boolean.FALSE));
+        BalanceSheetAccount bank = new BalanceSheetAccount("bank", AccountGroup.CURRENT_ASSETS, LocalDate.now(), "SGD", "100.50", false);
+        assertThrows(IllegalArgumentException.class, () -> bank.setOpenBal(0.125));
+        assertThrows(IllegalArgumentException.class, () -> bank.setCurrency("JPY"));
+        assertEquals(bank.getOpenBal(), new BigDecimal("100.50"));
+        assertEquals(bank.getCurrency().getCurrencyCode(), "SGD");
+    }
+
+    @Test
+    void setOpenBal_keeps_the_decimal_value_of_the_double() {
+        BalanceSheetAccount bank = new BalanceSheetAccount("bank", AccountGroup.CURRENT_ASSETS, LocalDate.now(), "SGD", "100.0", false);
+        assertTrue(bank.setOpenBal(100.1));
+        assertEquals(bank.getOpenBal(), new BigDecimal("100.1"));
+    }
+}
@@ -87,4 +87,24 @@ class CreditCardAccountTest {
         assertThrows(IllegalArgumentException.class, () ->
                 new CreditCardAccount("Credit Card 1", LocalDate.now(), "SGD", new BigDecimal("100.0"), "Bank", 12, 32, false));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getStatementDate_clamps_to_short_months() {
+        creditCard.setStatementDay(31);
+        assertEquals(creditCard.getStatementDate(LocalDate.of(2021, 2, 10)), LocalDate.of(2021, 2, 28));
+        assertEquals(creditCard.getStatementDate(LocalDate.of(2021, 2, 28)), LocalDate.of(2021, 2, 28));
+        assertEquals(creditCard.getStatementDate(LocalDate.of(2021, 3, 1)), LocalDate.of(2021, 3, 31));
+        assertEquals(creditCard.getStatementDate(LocalDate.of(2024, 2, 29)), LocalDate.of(2024, 2, 29));
+        assertEquals(creditCard.getPreviousStatementDate(LocalDate.of(2021, 3, 31)), LocalDate.of(2021, 2, 28));
+    }
+
+    @Test
+    void getDueDate_is_after_statement_date() {
+        assertEquals(creditCard.getDueDate(LocalDate.of(2021, 6, 1)), LocalDate.of(2021, 6, 13));
+        creditCard.setStatementDay(20);
+        creditCard.setDueDay(30);
+        assertEquals(creditCard.getDueDate(LocalDate.of(2021, 2, 20)), LocalDate.of(2021, 2, 28));
+        creditCard.setDueDay(5);
+        assertEquals(creditCard.getDueDate(LocalDate.of(2021, 12, 20)), LocalDate.of(2022, 1, 5));
+    }
+}
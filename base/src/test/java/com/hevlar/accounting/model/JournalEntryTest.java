@@ -109,6 +109,17 @@ class JournalEntryTest {
         assertEquals(je.getAmount(), new BigDecimal("4.1"));
     }
 
+    @Test
+    void amount_with_more_decimals_than_currency_is_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new JournalEntry(2L, LocalDate.now(), "Lunch", Recurrence.N, null, "SGD", "10.005", expense, cash, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> je.setAmount("3.211"));
+        assertEquals(je.getAmount(), new BigDecimal("10.0"));
+        assertTrue(je.setAmount("3.200"));
+        assertEquals(je.getAmountUnits(), 320);
+        assertThrows(IllegalArgumentException.class, () -> je.setCurrency("JPY"));
+        assertEquals(je.getCurrency().getCurrencyCode(), "SGD");
+    }
+
     @Test
     void setDebit() {
         IncomeStatementAccount food = Mockito.mock(IncomeStatementAccount.class);
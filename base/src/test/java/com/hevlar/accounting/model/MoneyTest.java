@@ -0,0 +1,45 @@
+package com.hevlar.accounting.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private static final Currency SGD = Currency.getInstance("SGD");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    @Test
+    void toMinorUnits_follows_fraction_digits_of_currency() {
+        assertEquals(Money.toMinorUnits(new BigDecimal("12.34"), SGD), 1234);
+        assertEquals(Money.toMinorUnits(new BigDecimal("12.340"), SGD), 1234);
+        assertEquals(Money.toMinorUnits(new BigDecimal("1234"), JPY), 1234);
+        assertEquals(Money.toBigDecimal(1234, SGD), new BigDecimal("12.34"));
+        assertEquals(Money.toBigDecimal(1234, JPY), new BigDecimal("1234"));
+        assertEquals(Money.rescale(1234, SGD, JPY), 12);
+        assertEquals(Money.rescale(12, JPY, SGD), 1200);
+    }
+
+    @Test
+    void toMinorUnits_rejects_more_decimals_than_currency() {
+        assertThrows(IllegalArgumentException.class, () -> Money.toMinorUnits(new BigDecimal("12.345"), SGD));
+        assertThrows(IllegalArgumentException.class, () -> Money.toMinorUnits(new BigDecimal("0.5"), JPY));
+    }
+
+    @Test
+    void roundToMinorUnits_rounds_half_even() {
+        assertEquals(Money.roundToMinorUnits(new BigDecimal("12.345"), SGD), 1234);
+        assertEquals(Money.roundToMinorUnits(new BigDecimal("12.355"), SGD), 1236);
+    }
+
+    @Test
+    void arithmetic_detects_overflow() {
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.subtract(Long.MIN_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.negate(Long.MIN_VALUE));
+        assertThrows(ArithmeticException.class, () -> Money.toMinorUnits(new BigDecimal("1e30"), SGD));
+    }
+}
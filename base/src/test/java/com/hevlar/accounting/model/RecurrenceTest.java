@@ -0,0 +1,34 @@
+package com.hevlar.accounting.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecurrenceTest {
+
+    @Test
+    void occurrence_is_computed_from_start() {
+        LocalDate start = LocalDate.of(2021, 1, 31);
+        assertEquals(Recurrence.M.occurrence(start, 1), LocalDate.of(2021, 2, 28));
+        assertEquals(Recurrence.M.occurrence(start, 2), LocalDate.of(2021, 3, 31));
+        assertEquals(Recurrence.Y.occurrence(start, 3), LocalDate.of(2024, 1, 31));
+        assertEquals(Recurrence.F.occurrence(start, 1), LocalDate.of(2021, 2, 14));
+        assertEquals(Recurrence.W.occurrence(start, 1), LocalDate.of(2021, 2, 7));
+        assertEquals(Recurrence.D.occurrence(start, 1), LocalDate.of(2021, 2, 1));
+        assertEquals(Recurrence.N.occurrence(start, 0), start);
+        assertNull(Recurrence.N.occurrence(start, 1));
+    }
+
+    @Test
+    void indexOnOrAfter_finds_first_occurrence() {
+        LocalDate start = LocalDate.of(2021, 1, 31);
+        assertEquals(Recurrence.M.indexOnOrAfter(start, LocalDate.of(2020, 1, 1)), 0);
+        assertEquals(Recurrence.M.indexOnOrAfter(start, LocalDate.of(2021, 2, 28)), 1);
+        assertEquals(Recurrence.M.indexOnOrAfter(start, LocalDate.of(2021, 3, 1)), 2);
+        assertEquals(Recurrence.W.indexOnOrAfter(start, LocalDate.of(2021, 2, 8)), 2);
+        assertEquals(Recurrence.D.indexOnOrAfter(start, LocalDate.of(2022, 1, 31)), 365);
+        assertEquals(Recurrence.N.indexOnOrAfter(start, LocalDate.of(2021, 2, 1)), -1);
+    }
+}
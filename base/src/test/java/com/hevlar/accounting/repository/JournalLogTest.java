@@ -0,0 +1,182 @@
+package com.hevlar.accounting.repository;
+
+import com.hevlar.accounting.model.Recurrence;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalLogTest {
+
+    @TempDir
+    Path directory;
+
+    private static JournalEntryData entry(long journalId) {
+        return new JournalEntryData(journalId, LocalDate.of(2021, 6, 1), "Lunch " + journalId, Recurrence.N,
+                new String[]{"#food"}, "SGD", new BigDecimal("12.50"), "Food", "Cash", null, null, null, false);
+    }
+
+    @Test
+    void append_is_durable_and_read_back() throws Exception {
+        try (JournalLog journalLog = new JournalLog(directory, 4096)) {
+            List<CompletableFuture<Long>> futures = new ArrayList<>();
+            for(long i = 1; i <= 3; i++) futures.add(journalLog.append(entry(i)));
+            for(int i = 0; i < futures.size(); i++) assertEquals(futures.get(i).get(5, TimeUnit.SECONDS), i);
+            assertEquals(journalLog.getDurableSequence(), 3);
+
+            List<JournalEntryData> records = journalLog.reader(1).next(10);
+            assertEquals(records.size(), 2);
+            assertEquals(records.get(0).getJournalId(), 2L);
+            assertEquals(records.get(0).getItem(), "Lunch 2");
+            assertArrayEquals(records.get(0).getTags(), new String[]{"#food"});
+            assertEquals(records.get(0).getAmount(), new BigDecimal("12.50"));
+            assertNull(records.get(0).getPostDate());
+        }
+    }
+
+    @Test
+    void records_appended_together_keep_their_idempotency_keys() throws Exception {
+        try (JournalLog journalLog = new JournalLog(directory, 4096)) {
+            assertEquals(journalLog.appendAllDurably(List.of(new JournalLogRecord(entry(1), "feed-1"), new JournalLogRecord(entry(2), null))), 1);
+            List<JournalLogRecord> records = journalLog.reader(0).nextRecords(10);
+            assertEquals(records.size(), 2);
+            assertEquals(records.get(0).getJournalEntryData().getItem(), "Lunch 1");
+            assertEquals(records.get(0).getIdempotencyKey(), "feed-1");
+            assertNull(records.get(1).getIdempotencyKey());
+            assertEquals(journalLog.reader(0).next(10).get(1).getJournalId(), 2L);
+        }
+    }
+
+    @Test
+    void segments_roll_and_are_recovered_on_reopen() throws Exception {
+        try (JournalLog journalLog = new JournalLog(directory, 256)) {
+            for(long i = 1; i <= 10; i++) journalLog.append(entry(i)).get(5, TimeUnit.SECONDS);
+        }
+        try (JournalLog journalLog = new JournalLog(directory, 256)) {
+            assertEquals(journalLog.getNextSequence(), 10);
+            journalLog.append(entry(11)).get(5, TimeUnit.SECONDS);
+            JournalLog.Reader reader = journalLog.reader(0);
+            List<JournalEntryData> records = reader.next(100);
+            assertEquals(records.size(), 11);
+            for(int i = 0; i < records.size(); i++) assertEquals(records.get(i).getJournalId(), i + 1L);
+            assertTrue(reader.next(100).isEmpty());
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 1);
+        }
+    }
+
+    @Test
+    void torn_write_ends_the_log() throws Exception {
+        try (JournalLog journalLog = new JournalLog(directory, 4096)) {
+            journalLog.append(entry(1)).get(5, TimeUnit.SECONDS);
+            journalLog.append(entry(2)).get(5, TimeUnit.SECONDS);
+        }
+        corruptLastRecord();
+        try (JournalLog journalLog = new JournalLog(directory, 4096)) {
+            assertEquals(journalLog.getNextSequence(), 1);
+            journalLog.append(entry(3)).get(5, TimeUnit.SECONDS);
+            List<JournalEntryData> records = journalLog.reader(0).next(10);
+            assertEquals(records.size(), 2);
+            assertEquals(records.get(1).getJournalId(), 3L);
+        }
+    }
+
+    @Test
+    void concurrent_appends_are_all_durable() throws Exception {
+        try (JournalLog journalLog = new JournalLog(directory, 64 * 1024)) {
+            List<Thread> threads = new ArrayList<>();
+            List<CompletableFuture<Long>> futures = new ArrayList<>();
+            for(int t = 0; t < 4; t++){
+                long first = t * 100L;
+                Thread thread = new Thread(() -> {
+                    for(long i = 1; i <= 100; i++){
+                        CompletableFuture<Long> future = journalLog.append(entry(first + i));
+                        synchronized (futures) {
+                            futures.add(future);
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for(Thread thread : threads) thread.join();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+            assertEquals(journalLog.getDurableSequence(), 400);
+            assertEquals(journalLog.reader(0).next(1000).size(), 400);
+        }
+    }
+
+    @Test
+    void failed_force_fails_the_log_until_reopened() throws Exception {
+        FailingJournalLog journalLog = new FailingJournalLog(directory);
+        try {
+            journalLog.append(entry(1)).get(5, TimeUnit.SECONDS);
+            journalLog.failing = true;
+            CompletableFuture<Long> failed = journalLog.append(entry(2));
+            assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertEquals(journalLog.getDurableSequence(), 1);
+            assertFalse(journalLog.awaitDurable(1, 1, TimeUnit.SECONDS));
+            assertThrows(IllegalStateException.class, () -> journalLog.append(entry(3)));
+            assertEquals(journalLog.reader(0).next(10).size(), 1);
+        } finally {
+            journalLog.close();
+        }
+        try (JournalLog reopened = new JournalLog(directory, 4096)) {
+            assertEquals(reopened.getNextSequence(), 1);
+            assertEquals(reopened.append(entry(4)).get(5, TimeUnit.SECONDS), 1L);
+            assertEquals(reopened.reader(1).next(10).get(0).getJournalId(), 4L);
+        }
+    }
+
+    /**
+     * Journal log whose flusher fails to force the segment when told to
+     */
+    private static class FailingJournalLog extends JournalLog {
+
+        private volatile boolean failing;
+
+        private FailingJournalLog(Path directory) throws IOException {
+            super(directory, 4096);
+        }
+
+        @Override
+        void force(MappedByteBuffer toForce) {
+            if(failing) throw new UncheckedIOException(new IOException("Disk failure"));
+            super.force(toForce);
+        }
+    }
+
+    private void corruptLastRecord() throws IOException {
+        Path segment = directory.resolve(String.format("journal-%020d.log", 0));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, 0);
+            int firstLength = header.flip().getInt();
+            // flip a byte in the payload of the second record, so its checksum no longer matches
+            long position = 8 + firstLength + 8 + 10;
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            value.flip();
+            byte corrupted = (byte) (value.get() ^ 0xFF);
+            channel.write(ByteBuffer.wrap(new byte[]{corrupted}), position);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.hevlar.accounting.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test harness for SQL statement budgets. A call is run with the Hibernate statistics cleared before it, and the test
+ * fails if the call prepared more JDBC statements than its budget, which is how hidden N+1 queries show up. A JDBC batch
+ * of inserts counts as one statement.
+ * The statistics are global to the session factory, so the calls must not run concurrently with other database work.
+ */
+public class QueryBudget {
+
+    private final Statistics statistics;
+
+    /**
+     * Default constructor, enabling the statistics of the session factory
+     * @param entityManagerFactory entity manager factory of the application
+     */
+    public QueryBudget(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.statistics.setStatisticsEnabled(true);
+    }
+
+    /**
+     * Runs the call and counts its statements
+     * @param call call to count
+     * @return statements of the call
+     */
+    public Usage measure(Runnable call) {
+        statistics.clear();
+        call.run();
+        return new Usage(statistics);
+    }
+
+    /**
+     * Runs the call and fails if it used more statements than the budget
+     * @param description description of the call, for the failure message
+     * @param maxStatements budget of statements
+     * @param call call to run
+     * @return statements of the call
+     */
+    public Usage atMost(String description, long maxStatements, Runnable call) {
+        Usage usage = measure(call);
+        if(usage.getStatements() > maxStatements) fail(description + " is over its budget of " + maxStatements + " statements: " + usage);
+        return usage;
+    }
+
+    /**
+     * Runs the call and fails if it did not use exactly the number of statements
+     * @param description description of the call, for the failure message
+     * @param statements expected number of statements
+     * @param call call to run
+     * @return statements of the call
+     */
+    public Usage exactly(String description, long statements, Runnable call) {
+        Usage usage = measure(call);
+        if(usage.getStatements() != statements) fail(description + " should use exactly " + statements + " statements: " + usage);
+        return usage;
+    }
+
+    /**
+     * Runs the call and fails if it did not use exactly the number of statements, or if it wrote any entity, for calls
+     * which should only select
+     * @param description description of the call, for the failure message
+     * @param selects expected number of selects
+     * @param call call to run
+     * @return statements of the call
+     */
+    public Usage selects(String description, long selects, Runnable call) {
+        Usage usage = measure(call);
+        if(usage.getStatements() != selects || usage.getWrites() != 0) fail(description + " should use exactly " + selects + " selects: " + usage);
+        return usage;
+    }
+
+    /**
+     * Statements of a call, from the Hibernate statistics
+     */
+    public static class Usage {
+
+        private final long statements;
+        private final long queries;
+        private final long entityLoads;
+        private final long collectionLoads;
+        private final long inserts;
+        private final long updates;
+        private final long deletes;
+
+        private Usage(Statistics statistics) {
+            this.statements = statistics.getPrepareStatementCount();
+            this.queries = statistics.getQueryExecutionCount();
+            this.entityLoads = statistics.getEntityLoadCount();
+            this.collectionLoads = statistics.getCollectionLoadCount();
+            this.inserts = statistics.getEntityInsertCount();
+            this.updates = statistics.getEntityUpdateCount();
+            this.deletes = statistics.getEntityDeleteCount();
+        }
+
+        /**
+         * Gets the number of JDBC statements prepared, the unit of the budgets
+         * @return number of statements
+         */
+        public long getStatements() {
+            return statements;
+        }
+
+        /**
+         * Gets the number of entities inserted, updated and deleted through the persistence context
+         * @return number of entity writes
+         */
+        public long getWrites() {
+            return inserts + updates + deletes;
+        }
+
+        /**
+         * Gets the number of entities loaded
+         * @return number of entities loaded
+         */
+        public long getEntityLoads() {
+            return entityLoads;
+        }
+
+        @Override
+        public String toString() {
+            return statements + " statements (" + queries + " queries, " + entityLoads + " entity loads, " + collectionLoads +
+                    " collection loads, " + inserts + " inserts, " + updates + " updates, " + deletes + " deletes)";
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.hevlar.accounting.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagsConverterTest {
+
+    private final TagsConverter converter = new TagsConverter();
+
+    @Test
+    void tags_with_commas_round_trip() {
+        String[] tags = new String[]{"#food", "lunch, with team", "back\\slash \"quoted\""};
+        assertArrayEquals(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(tags)), tags);
+    }
+
+    @Test
+    void empty_and_null_tags_round_trip() {
+        assertArrayEquals(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(new String[0])), new String[0]);
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+
+    @Test
+    void comma_separated_column_is_still_read() {
+        assertArrayEquals(converter.convertToEntityAttribute("#food,#lunch"), new String[]{"#food", "#lunch"});
+    }
+}
@@ -0,0 +1,128 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.repository.AccountData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountCacheTest {
+
+    private AccountCache accountCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        accountCache = new AccountCache(2);
+        loads = new AtomicInteger();
+    }
+
+    private AccountData load(String name) {
+        loads.incrementAndGet();
+        return new AccountData(name, AccountGroup.EXPENSES, false);
+    }
+
+    @Test
+    void getAccount_reads_through_once() {
+        assertEquals(accountCache.getAccount("Food", this::load).getName(), "Food");
+        assertEquals(accountCache.getAccount("Food", this::load).getName(), "Food");
+        assertEquals(loads.get(), 1);
+        assertEquals(accountCache.getMissCount(), 1);
+        assertEquals(accountCache.getHitCount(), 1);
+    }
+
+    @Test
+    void getAccount_does_not_cache_missing_accounts() {
+        assertNull(accountCache.getAccount("Food", name -> null));
+        assertNull(accountCache.getAccount("Food", name -> null));
+        assertEquals(accountCache.getMissCount(), 2);
+        assertEquals(accountCache.size(), 0);
+    }
+
+    @Test
+    void getAccount_caches_only_when_the_store_runs() {
+        List<Runnable> stores = new ArrayList<>();
+        accountCache.getAccount("Food", this::load, stores::add);
+        assertEquals(accountCache.size(), 0);
+        stores.remove(0).run();
+        assertEquals(accountCache.size(), 1);
+
+        // a load invalidated before its store runs is not cached
+        accountCache.getAccount("Grocery", this::load, stores::add);
+        accountCache.invalidate("Grocery", AccountGroup.EXPENSES);
+        stores.remove(0).run();
+        assertEquals(accountCache.size(), 1);
+        accountCache.getAccount("Grocery", this::load);
+        assertEquals(loads.get(), 3);
+    }
+
+    @Test
+    void getAccount_evicts_least_recently_used() {
+        accountCache.getAccount("Food", this::load);
+        accountCache.getAccount("Grocery", this::load);
+        accountCache.getAccount("Food", this::load);
+        accountCache.getAccount("Transport", this::load);
+        assertEquals(accountCache.size(), 2);
+        assertEquals(accountCache.getEvictionCount(), 1);
+        accountCache.getAccount("Food", this::load);
+        assertEquals(loads.get(), 3);
+        accountCache.getAccount("Grocery", this::load);
+        assertEquals(loads.get(), 4);
+    }
+
+    @Test
+    void cached_account_is_a_copy() {
+        AccountData accountData = new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100"), false);
+        accountCache.getAccount("Bank", name -> accountData);
+        accountData.setLock(true);
+        assertFalse(accountCache.getAccount("Bank", name -> accountData).isLocked());
+    }
+
+    @Test
+    void invalidate_removes_account_group_and_credit_cards() {
+        accountCache.getAccount("Food", this::load);
+        accountCache.getAccounts(AccountGroup.EXPENSES, accountGroup -> List.of(load("Food")));
+        accountCache.getCreditCardAccounts(List::of);
+        accountCache.invalidate("Food", AccountGroup.EXPENSES);
+        long misses = accountCache.getMissCount();
+        accountCache.getAccount("Food", this::load);
+        accountCache.getAccounts(AccountGroup.EXPENSES, accountGroup -> List.of(load("Food")));
+        accountCache.getCreditCardAccounts(List::of);
+        assertEquals(accountCache.getMissCount(), misses + 3);
+    }
+
+    @Test
+    void invalidate_removes_previous_account_group_of_moved_account() {
+        accountCache.getAccounts(AccountGroup.EXPENSES, accountGroup -> List.of(load("Food")));
+        accountCache.getAccounts(AccountGroup.REVENUE, accountGroup -> List.of());
+        accountCache.invalidate("Food", AccountGroup.LOSSES);
+        long misses = accountCache.getMissCount();
+        accountCache.getAccounts(AccountGroup.EXPENSES, accountGroup -> List.of());
+        accountCache.getAccounts(AccountGroup.REVENUE, accountGroup -> List.of());
+        assertEquals(accountCache.getMissCount(), misses + 1);
+    }
+
+    @Test
+    void invalidateAll_clears_cache() {
+        accountCache.getAccount("Food", this::load);
+        accountCache.getAccounts(AccountGroup.REVENUE, accountGroup -> List.of());
+        accountCache.invalidateAll();
+        assertEquals(accountCache.size(), 0);
+        accountCache.getAccounts(AccountGroup.REVENUE, accountGroup -> List.of());
+        assertEquals(accountCache.getHitCount(), 0);
+    }
+
+    @Test
+    void group_larger_than_maximum_size_is_not_cached() {
+        accountCache.getAccounts(AccountGroup.EXPENSES, accountGroup -> List.of(load("A"), load("B"), load("C")));
+        accountCache.getAccounts(AccountGroup.EXPENSES, accountGroup -> List.of(load("A"), load("B"), load("C")));
+        assertEquals(accountCache.getMissCount(), 2);
+    }
+}
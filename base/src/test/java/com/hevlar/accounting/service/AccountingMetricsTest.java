@@ -0,0 +1,75 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.repository.AccountData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountingMetricsTest {
+
+    private MeterRegistry registry;
+    private AccountingMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new AccountingMetrics(registry);
+    }
+
+    @Test
+    void time_records_operation_by_group() {
+        assertEquals(metrics.time("lockAccountGroup", AccountGroup.EXPENSES, () -> 3), 3);
+        metrics.time("lock", null, () -> 1);
+        metrics.time("lock", null, () -> 1);
+        Timer byGroup = registry.get(AccountingMetrics.OPERATION_TIMER).tags("operation", "lockAccountGroup", "group", "EXPENSES").timer();
+        Timer withoutGroup = registry.get(AccountingMetrics.OPERATION_TIMER).tags("operation", "lock", "group", AccountingMetrics.NO_GROUP).timer();
+        assertEquals(byGroup.count(), 1);
+        assertEquals(withoutGroup.count(), 2);
+    }
+
+    @Test
+    void time_records_failed_operation() {
+        assertThrows(IllegalStateException.class, () -> metrics.time("getAccounts", AccountGroup.REVENUE, () -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals(registry.get(AccountingMetrics.OPERATION_TIMER).tags("operation", "getAccounts", "group", "REVENUE").timer().count(), 1);
+    }
+
+    @Test
+    void mapping_is_timed_in_both_directions() {
+        Account food = metrics.toAccount(new AccountData("Food", AccountGroup.EXPENSES, false));
+        metrics.toAccountData(food);
+        assertNull(metrics.toAccount(null));
+        assertEquals(registry.get(AccountingMetrics.MAPPING_TIMER).tags("direction", "toAccount", "group", "EXPENSES").timer().count(), 1);
+        assertEquals(registry.get(AccountingMetrics.MAPPING_TIMER).tags("direction", "toAccountData", "group", "EXPENSES").timer().count(), 1);
+    }
+
+    @Test
+    void meters_are_built_once_and_reused() {
+        metrics.time("getAccount", AccountGroup.EXPENSES, () -> 1);
+        metrics.time("getAccount", AccountGroup.EXPENSES, () -> 1);
+        metrics.countRepositoryCall("AccountDataRepository", "findByName", null);
+        metrics.countRepositoryCall("AccountDataRepository", "findByName", null);
+        assertEquals(registry.find(AccountingMetrics.OPERATION_TIMER).timers().size(), 1);
+        assertEquals(registry.find(AccountingMetrics.REPOSITORY_CALLS).counters().size(), 1);
+        registry.clear();
+        // the meters are kept by the metrics, not looked up in the registry again
+        metrics.time("getAccount", AccountGroup.EXPENSES, () -> 1);
+        assertTrue(registry.find(AccountingMetrics.OPERATION_TIMER).timers().isEmpty());
+    }
+
+    @Test
+    void repository_calls_are_counted() {
+        metrics.countRepositoryCall("AccountDataRepository", "findByAccountGroup", AccountGroup.EXPENSES);
+        metrics.countRepositoryCall("AccountDataRepository", "findByAccountGroup", AccountGroup.EXPENSES);
+        metrics.countRepositoryCall("AccountDataRepository", "lockAll", null);
+        assertEquals(registry.get(AccountingMetrics.REPOSITORY_CALLS).tags("method", "findByAccountGroup", "group", "EXPENSES").counter().count(), 2.0);
+        assertEquals(registry.get(AccountingMetrics.REPOSITORY_CALLS).tags("method", "lockAll", "group", AccountingMetrics.NO_GROUP).counter().count(), 1.0);
+    }
+}
@@ -0,0 +1,132 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalanceEngineTest {
+
+    private BalanceEngine balanceEngine;
+    private BalanceSheetAccount bank;
+    private IncomeStatementAccount food;
+    private IncomeStatementAccount salary;
+    private CreditCardAccount creditCard;
+
+    @BeforeEach
+    void setUp() {
+        balanceEngine = new BalanceEngine();
+        bank = new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "100", false);
+        food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
+        salary = new IncomeStatementAccount("Salary", AccountGroup.REVENUE, false);
+        creditCard = new CreditCardAccount("Credit Card", LocalDate.of(2021, 1, 1), "SGD", "0", "Bank A", 1, 12, false);
+        balanceEngine.openAll(List.of(bank, food, salary, creditCard));
+    }
+
+    @Test
+    void open_starts_from_opening_balance() {
+        assertEquals(balanceEngine.getBalance("Bank"), new BigDecimal("100.00"));
+        assertEquals(balanceEngine.getBalance("Food"), BigDecimal.ZERO);
+        assertNull(balanceEngine.getBalance("Unknown"));
+        assertFalse(balanceEngine.isOpen("Unknown"));
+    }
+
+    @Test
+    void post_follows_entry_type_of_account_group() {
+        balanceEngine.post(entry(1L, LocalDate.of(2021, 2, 1), "1000", bank, salary));
+        balanceEngine.post(entry(2L, LocalDate.of(2021, 2, 2), "10.50", food, bank));
+        balanceEngine.post(entry(3L, LocalDate.of(2021, 2, 3), "20", food, creditCard));
+
+        assertEquals(balanceEngine.getBalance("Bank"), new BigDecimal("1089.50"));
+        assertEquals(balanceEngine.getBalance("Salary"), new BigDecimal("1000.00"));
+        assertEquals(balanceEngine.getBalance("Food"), new BigDecimal("30.50"));
+        assertEquals(balanceEngine.getBalance("Credit Card"), new BigDecimal("20.00"));
+    }
+
+    @Test
+    void unpost_reverses_post() {
+        JournalEntry lunch = entry(1L, LocalDate.of(2021, 2, 2), "10.50", food, bank);
+        balanceEngine.post(lunch);
+        balanceEngine.unpost(lunch);
+        assertEquals(balanceEngine.getBalance("Bank").compareTo(new BigDecimal("100")), 0);
+        assertEquals(balanceEngine.getBalance("Food").signum(), 0);
+    }
+
+    @Test
+    void post_before_open_date_is_ignored_for_balance_sheet_account() {
+        balanceEngine.post(entry(1L, LocalDate.of(2020, 12, 31), "10", food, bank));
+        assertEquals(balanceEngine.getBalance("Bank"), new BigDecimal("100.00"));
+        assertEquals(balanceEngine.getBalance("Food"), new BigDecimal("10.00"));
+    }
+
+    @Test
+    void post_opens_account_not_open_yet() {
+        IncomeStatementAccount transport = new IncomeStatementAccount("Transport", AccountGroup.EXPENSES, false);
+        balanceEngine.post(entry(1L, LocalDate.of(2021, 2, 1), "5", transport, bank));
+        assertTrue(balanceEngine.isOpen("Transport"));
+        assertEquals(balanceEngine.getBalance("Transport"), new BigDecimal("5.00"));
+        assertEquals(balanceEngine.getBalanceUnits("Transport"), 500);
+    }
+
+    @Test
+    void entry_in_another_currency_is_rejected_without_exchange_rates() {
+        BalanceSheetAccount yen = new BalanceSheetAccount("Yen", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "JPY", "0", false);
+        assertThrows(IllegalArgumentException.class, () -> balanceEngine.post(entry(1L, LocalDate.of(2021, 2, 1), "10.51", yen, salary)));
+        assertFalse(balanceEngine.isOpen("Yen"));
+        assertEquals(balanceEngine.getBalance("Salary"), BigDecimal.ZERO);
+    }
+
+    @Test
+    void entry_in_another_currency_is_converted_at_exchange_rate() {
+        balanceEngine = new BalanceEngine(FxRateTable.of(List.of(new FxRate(Currency.getInstance("SGD"), Currency.getInstance("JPY"), LocalDate.of(2021, 1, 1), new BigDecimal("80")))));
+        BalanceSheetAccount yen = new BalanceSheetAccount("Yen", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "JPY", "0", false);
+        balanceEngine.post(entry(1L, LocalDate.of(2021, 2, 1), "10.51", yen, salary));
+        assertEquals(balanceEngine.getBalance("Yen"), new BigDecimal("841"));
+        assertEquals(balanceEngine.getBalance("Salary"), new BigDecimal("10.51"));
+    }
+
+    @Test
+    void post_overflow_is_detected() {
+        balanceEngine.post(entry(1L, LocalDate.of(2021, 2, 1), "92233720368547758.07", food, bank));
+        assertThrows(ArithmeticException.class, () -> balanceEngine.post(entry(2L, LocalDate.of(2021, 2, 1), "1", food, bank)));
+    }
+
+    @Test
+    void reopen_replaces_opening_balance_or_reopens_with_the_entries() {
+        JournalEntry lunch = entry(1L, LocalDate.of(2021, 2, 2), "10.50", food, bank);
+        balanceEngine.post(lunch);
+        assertTrue(balanceEngine.reopen(new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "200", false)));
+        assertEquals(balanceEngine.getBalance("Bank"), new BigDecimal("189.50"));
+
+        BalanceSheetAccount yen = new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "JPY", "200", false);
+        assertFalse(balanceEngine.reopen(yen));
+        assertEquals(balanceEngine.getBalance("Bank"), new BigDecimal("189.50"));
+        // the entry in SGD cannot be converted to the new currency without exchange rates
+        assertEquals(balanceEngine.reopen(yen, List.of(lunch)), List.of(lunch));
+        assertEquals(balanceEngine.getBalance("Bank"), new BigDecimal("200"));
+        assertEquals(balanceEngine.getBalance("Food"), new BigDecimal("10.50"));
+
+        BalanceSheetAccount loan = new BalanceSheetAccount("Bank", AccountGroup.CURRENT_LIABILITIES, LocalDate.of(2021, 1, 1), "SGD", "200", false);
+        assertFalse(balanceEngine.reopen(loan));
+        assertTrue(balanceEngine.reopen(loan, List.of(lunch)).isEmpty());
+        assertEquals(balanceEngine.getBalance("Bank"), new BigDecimal("210.50"));
+    }
+
+    @Test
+    void close_removes_the_balance() {
+        balanceEngine.close("Food");
+        assertFalse(balanceEngine.isOpen("Food"));
+        assertTrue(balanceEngine.reopen(food));
+        assertEquals(balanceEngine.getBalance("Food"), BigDecimal.ZERO);
+    }
+
+    private JournalEntry entry(Long journalId, LocalDate txDate, String amount, Account debit, Account credit) {
+        return new JournalEntry(journalId, txDate, "Item", Recurrence.N, null, "SGD", amount, debit, credit, null, null, null);
+    }
+}
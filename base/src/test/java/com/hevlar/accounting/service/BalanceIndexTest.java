@@ -0,0 +1,114 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalanceIndexTest {
+
+    private BalanceSheetAccount bank;
+    private IncomeStatementAccount food;
+    private BalanceIndex balanceIndex;
+
+    @BeforeEach
+    void setUp() {
+        bank = new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "100", false);
+        food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
+        balanceIndex = new BalanceIndex();
+        balanceIndex.openAll(List.of(bank, food));
+    }
+
+    @Test
+    void getBalance_as_of_date() {
+        balanceIndex.post(entry(1L, LocalDate.of(2021, 1, 10), null, "10"));
+        balanceIndex.post(entry(2L, LocalDate.of(2021, 1, 20), null, "20"));
+        balanceIndex.post(entry(3L, LocalDate.of(2021, 3, 5), null, "30"));
+
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2020, 12, 31)), new BigDecimal("0.00"));
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 1, 9)), new BigDecimal("100.00"));
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 1, 10)), new BigDecimal("90.00"));
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 2, 28)), new BigDecimal("70.00"));
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 3, 5)), new BigDecimal("40.00"));
+        assertEquals(balanceIndex.getBalance("Food", LocalDate.of(2030, 1, 1)), new BigDecimal("60.00"));
+        assertNull(balanceIndex.getBalance("Unknown", LocalDate.of(2021, 1, 1)));
+    }
+
+    @Test
+    void backdated_and_unposted_entries() {
+        JournalEntry later = entry(1L, LocalDate.of(2021, 6, 1), null, "10");
+        balanceIndex.post(later);
+        balanceIndex.post(entry(2L, LocalDate.of(2021, 2, 15), null, "5"));
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 2, 14)), new BigDecimal("100.00"));
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 6, 1)), new BigDecimal("85.00"));
+
+        balanceIndex.unpost(later);
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 6, 1)), new BigDecimal("95.00"));
+    }
+
+    @Test
+    void buckets_grow_in_both_directions() {
+        balanceIndex.post(entry(1L, LocalDate.of(2023, 5, 1), null, "1"));
+        balanceIndex.post(entry(2L, LocalDate.of(2027, 8, 31), null, "2"));
+        balanceIndex.post(entry(3L, LocalDate.of(2021, 1, 1), null, "4"));
+        assertEquals(balanceIndex.getBalance("Food", LocalDate.of(2021, 1, 1)), new BigDecimal("4.00"));
+        assertEquals(balanceIndex.getBalance("Food", LocalDate.of(2023, 5, 1)), new BigDecimal("5.00"));
+        assertEquals(balanceIndex.getBalance("Food", LocalDate.of(2027, 8, 30)), new BigDecimal("5.00"));
+        assertEquals(balanceIndex.getBalance("Food", LocalDate.of(2027, 8, 31)), new BigDecimal("7.00"));
+    }
+
+    @Test
+    void posting_date_falls_back_to_transaction_date() {
+        BalanceIndex byPosting = new BalanceIndex(BalanceIndex.BalanceDate.POSTING);
+        byPosting.openAll(List.of(bank, food));
+        byPosting.post(entry(1L, LocalDate.of(2021, 1, 30), LocalDate.of(2021, 2, 2), "10"));
+        byPosting.post(entry(2L, LocalDate.of(2021, 1, 30), null, "20"));
+        assertEquals(byPosting.getBalance("Food", LocalDate.of(2021, 1, 31)), new BigDecimal("20.00"));
+        assertEquals(byPosting.getBalance("Food", LocalDate.of(2021, 2, 2)), new BigDecimal("30.00"));
+    }
+
+    @Test
+    void entry_in_another_currency_is_converted_or_rejected() {
+        BalanceSheetAccount yen = new BalanceSheetAccount("Yen", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "JPY", "0", false);
+        JournalEntry lunch = new JournalEntry(1L, LocalDate.of(2021, 2, 1), "Lunch", Recurrence.N, null, "SGD", "10.51", food, yen, null, null, null);
+        assertThrows(IllegalArgumentException.class, () -> balanceIndex.post(lunch));
+        assertEquals(balanceIndex.getBalance("Food", LocalDate.of(2021, 2, 1)), BigDecimal.ZERO);
+
+        BalanceIndex converting = new BalanceIndex(BalanceIndex.BalanceDate.TRANSACTION,
+                FxRateTable.of(List.of(new FxRate(Currency.getInstance("SGD"), Currency.getInstance("JPY"), LocalDate.of(2021, 1, 1), new BigDecimal("80")))));
+        converting.post(lunch);
+        assertEquals(converting.getBalance("Yen", LocalDate.of(2021, 2, 1)), new BigDecimal("-841"));
+        assertEquals(converting.getBalance("Food", LocalDate.of(2021, 2, 1)), new BigDecimal("10.51"));
+    }
+
+    @Test
+    void reopen_replaces_opening_balance_or_reopens_with_the_entries() {
+        JournalEntry lunch = entry(1L, LocalDate.of(2021, 1, 10), null, "10");
+        JournalEntry dinner = entry(2L, LocalDate.of(2021, 3, 5), null, "30");
+        balanceIndex.post(lunch);
+        balanceIndex.post(dinner);
+        assertTrue(balanceIndex.reopen(new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "200", false)));
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 1, 31)), new BigDecimal("190.00"));
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 3, 31)), new BigDecimal("160.00"));
+
+        BalanceSheetAccount reopened = new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 2, 1), "SGD", "200", false);
+        assertFalse(balanceIndex.reopen(reopened));
+        assertTrue(balanceIndex.reopen(reopened, List.of(lunch, dinner)).isEmpty());
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 1, 31)), new BigDecimal("0.00"));
+        assertEquals(balanceIndex.getBalance("Bank", LocalDate.of(2021, 3, 31)), new BigDecimal("170.00"));
+        assertEquals(balanceIndex.getBalance("Food", LocalDate.of(2021, 3, 31)), new BigDecimal("40.00"));
+
+        balanceIndex.close("Bank");
+        assertNull(balanceIndex.getBalance("Bank", LocalDate.of(2021, 3, 31)));
+    }
+
+    private JournalEntry entry(Long journalId, LocalDate txDate, LocalDate postDate, String amount) {
+        return new JournalEntry(journalId, txDate, "Lunch", Recurrence.N, null, "SGD", amount, food, bank, postDate, null, null);
+    }
+}
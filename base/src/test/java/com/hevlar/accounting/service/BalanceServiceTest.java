@@ -0,0 +1,149 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.util.ModelMapping;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceServiceTest {
+
+    @Mock
+    JournalEntryDataRepository journalEntryDataRepository;
+
+    @Mock
+    ChartOfAccounts chartOfAccounts;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    private ChartSnapshot snapshot;
+    private BalanceService balanceService;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = ChartSnapshot.of(List.of(
+                new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100"), false),
+                new AccountData("Food", AccountGroup.EXPENSES, false)
+        ));
+        Mockito.when(chartOfAccounts.getSnapshot()).thenReturn(snapshot);
+        balanceService = new BalanceService(journalEntryDataRepository, chartOfAccounts, new BalanceEngine(), new BalanceIndex());
+    }
+
+    @Test
+    void rebuild_loads_entries_and_posts_held_back_entries_once() {
+        JournalEntry loaded = entry(1L, "10");
+        JournalEntry committedDuringLoad = entry(2L, "20");
+        Mockito.when(journalEntryDataRepository.streamAll()).thenAnswer(invocation -> {
+            // committed while the load runs, and read by it
+            balanceService.post(loaded);
+            balanceService.post(committedDuringLoad);
+            return Stream.of(ModelMapping.toJournalEntryData(loaded));
+        });
+        assertEquals(balanceService.rebuild(), 2);
+        assertEquals(balanceService.getBalanceEngine().getBalance("Food"), new BigDecimal("30.00"));
+        assertEquals(balanceService.getBalanceIndex().getBalance("Bank", LocalDate.of(2021, 2, 1)), new BigDecimal("70.00"));
+
+        balanceService.post(entry(3L, "5"));
+        assertEquals(balanceService.getBalanceEngine().getBalance("Food"), new BigDecimal("35.00"));
+    }
+
+    @Test
+    void rebuild_leaves_out_account_with_opening_balance_its_currency_does_not_allow() {
+        // eg. written before opening balances were checked
+        Mockito.when(chartOfAccounts.getSnapshot()).thenReturn(ChartSnapshot.of(List.of(
+                new AccountData("Yen", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "JPY", new BigDecimal("100.50"), false),
+                new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100"), false)
+        )));
+        Mockito.when(journalEntryDataRepository.streamAll()).thenReturn(Stream.empty());
+        assertEquals(balanceService.rebuild(), 0);
+        assertFalse(balanceService.getBalanceEngine().isOpen("Yen"));
+        assertNull(balanceService.getBalanceIndex().getBalance("Yen", LocalDate.of(2021, 2, 1)));
+        assertEquals(balanceService.getBalanceEngine().getBalance("Bank"), new BigDecimal("100.00"));
+        assertEquals(balanceService.getBalanceIndex().getBalance("Bank", LocalDate.of(2021, 2, 1)), new BigDecimal("100.00"));
+    }
+
+    @Test
+    void new_opening_balance_replaces_the_old_one_and_keeps_the_entries() {
+        Mockito.when(journalEntryDataRepository.streamAll()).thenReturn(Stream.of(ModelMapping.toJournalEntryData(entry(1L, "10"))));
+        balanceService.rebuild();
+        Mockito.when(chartOfAccounts.getSnapshot()).thenReturn(snapshot.withAccount(
+                new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("200"), false)));
+
+        balanceService.accountChanged("Bank");
+        assertEquals(balanceService.getBalanceEngine().getBalance("Bank"), new BigDecimal("190.00"));
+        assertEquals(balanceService.getBalanceIndex().getBalance("Bank", LocalDate.of(2021, 2, 1)), new BigDecimal("190.00"));
+        Mockito.verify(journalEntryDataRepository, Mockito.never()).streamByAccountIn(any());
+    }
+
+    @Test
+    void new_opening_date_reloads_the_entries_of_the_account_and_posts_held_back_entries_once() {
+        balanceService = new BalanceService(journalEntryDataRepository, chartOfAccounts, new BalanceEngine(), new BalanceIndex(),
+                new JournalIdGenerator(1), transactionManager);
+        JournalEntry loaded = entry(1L, "10");
+        Mockito.when(journalEntryDataRepository.streamAll()).thenReturn(Stream.of(ModelMapping.toJournalEntryData(loaded)));
+        balanceService.rebuild();
+        // counted from the old opening date, and in the opening balance from the new one
+        JournalEntry beforeOpenDate = new JournalEntry(4L, LocalDate.of(2021, 1, 3), "Lunch", Recurrence.N, null, "SGD", "1",
+                snapshot.getAccount("Food"), snapshot.getAccount("Bank"), null, null, null);
+        balanceService.post(beforeOpenDate);
+        Mockito.when(chartOfAccounts.getSnapshot()).thenReturn(snapshot.withAccount(
+                new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 5), "SGD", new BigDecimal("100"), false)));
+        JournalEntry committedDuringReload = entry(2L, "20");
+        JournalEntry committedAfterRead = entry(3L, "5");
+        Mockito.when(journalEntryDataRepository.streamByAccountIn(List.of("Bank"))).thenAnswer(invocation -> {
+            balanceService.post(committedDuringReload);
+            balanceService.post(committedAfterRead);
+            return Stream.of(loaded, committedDuringReload, beforeOpenDate).map(ModelMapping::toJournalEntryData);
+        });
+
+        balanceService.accountChanged("Bank");
+        assertEquals(balanceService.getBalanceEngine().getBalance("Bank"), new BigDecimal("65.00"));
+        assertEquals(balanceService.getBalanceIndex().getBalance("Bank", LocalDate.of(2021, 2, 1)), new BigDecimal("65.00"));
+        assertEquals(balanceService.getBalanceEngine().getBalance("Food"), new BigDecimal("36.00"));
+        assertEquals(balanceService.getBalanceIndex().getBalance("Food", LocalDate.of(2021, 2, 1)), new BigDecimal("36.00"));
+    }
+
+    @Test
+    void deleted_account_is_closed() {
+        Mockito.when(journalEntryDataRepository.streamAll()).thenReturn(Stream.empty());
+        balanceService.rebuild();
+        Mockito.when(chartOfAccounts.getSnapshot()).thenReturn(snapshot.withoutAccount("Food"));
+
+        balanceService.accountChanged("Food");
+        assertFalse(balanceService.getBalanceEngine().isOpen("Food"));
+        assertNull(balanceService.getBalanceIndex().getBalance("Food", LocalDate.of(2021, 2, 1)));
+        assertTrue(balanceService.getBalanceEngine().isOpen("Bank"));
+    }
+
+    @Test
+    void account_changed_during_rebuild_is_reopened_after_it() {
+        Mockito.when(chartOfAccounts.getSnapshot()).thenReturn(snapshot, snapshot.withoutAccount("Food"));
+        Mockito.when(journalEntryDataRepository.streamAll()).thenAnswer(invocation -> {
+            balanceService.accountChanged("Food");
+            return Stream.empty();
+        });
+        balanceService.rebuild();
+        assertFalse(balanceService.getBalanceEngine().isOpen("Food"));
+    }
+
+    private JournalEntry entry(Long journalId, String amount) {
+        return new JournalEntry(journalId, LocalDate.of(2021, 1, 10), "Lunch", Recurrence.N, null, "SGD", amount,
+                snapshot.getAccount("Food"), snapshot.getAccount("Bank"), null, null, null);
+    }
+}
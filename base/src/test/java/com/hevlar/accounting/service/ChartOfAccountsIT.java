@@ -1,5 +1,6 @@
 package com.hevlar.accounting.service;
 
+import com.hevlar.accounting.model.Account;
 import com.hevlar.accounting.model.AccountGroup;
 import com.hevlar.accounting.model.BalanceSheetAccount;
 import com.hevlar.accounting.model.IncomeStatementAccount;
@@ -10,6 +11,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,6 +26,8 @@ import static org.junit.jupiter.api.Assertions.*;
 @SpringBootTest
 public class ChartOfAccountsIT {
 
+    private static final int THREADS = 8;
+
     @Autowired
     private ChartOfAccounts chartOfAccounts;
 
@@ -60,4 +71,62 @@ public class ChartOfAccountsIT {
         assertFalse(chartOfAccounts.deleteAccount(bank2.getName()));
     }
 
+    @Test
+    void only_one_of_concurrent_updates_of_the_same_version_is_saved() throws Exception {
+        chartOfAccounts.newExpense("Rent");
+        List<Callable<Account>> updates = new ArrayList<>();
+        for(int i = 0; i < THREADS; i++){
+            Account rent = chartOfAccounts.getAccount("Rent");
+            assertEquals(rent.getVersion(), Long.valueOf(0));
+            updates.add(() -> chartOfAccounts.updateAccount(rent));
+        }
+        List<Account> results = runConcurrently(updates);
+        assertEquals(results.stream().filter(account -> account != null).count(), 1);
+        assertEquals(chartOfAccounts.getAccount("Rent").getVersion(), Long.valueOf(1));
+    }
+
+    @Test
+    void concurrent_updates_never_unlock_a_locked_account() throws Exception {
+        chartOfAccounts.newExpense("Utilities");
+        List<Callable<Account>> updates = new ArrayList<>();
+        updates.add(() -> chartOfAccounts.lock(List.of("Utilities")) == 1 ? chartOfAccounts.getAccount("Utilities") : null);
+        for(int i = 1; i < THREADS; i++){
+            updates.add(() -> chartOfAccounts.updateAccount(new IncomeStatementAccount("Utilities", AccountGroup.EXPENSES, false)));
+        }
+        runConcurrently(updates);
+        assertTrue(chartOfAccounts.getAccount("Utilities").isLocked());
+        assertNull(chartOfAccounts.updateAccount(new IncomeStatementAccount("Utilities", AccountGroup.EXPENSES, false)));
+    }
+
+    @Test
+    void only_one_of_concurrent_creations_of_the_same_name_is_saved() throws Exception {
+        List<Callable<Account>> creations = new ArrayList<>();
+        for(int i = 0; i < THREADS; i++){
+            creations.add(() -> chartOfAccounts.newExpense("Transport"));
+        }
+        List<Account> results = runConcurrently(creations);
+        assertEquals(results.stream().filter(account -> account != null).count(), 1);
+        assertEquals(chartOfAccounts.getAccount("Transport").getVersion(), Long.valueOf(0));
+    }
+
+    private List<Account> runConcurrently(List<Callable<Account>> tasks) throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Account>> futures = new ArrayList<>();
+            for(Callable<Account> task : tasks){
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<Account> results = new ArrayList<>();
+            for(Future<Account> future : futures) results.add(future.get());
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
 }
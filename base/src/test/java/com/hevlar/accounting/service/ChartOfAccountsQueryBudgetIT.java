@@ -0,0 +1,119 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.model.BalanceSheetAccount;
+import com.hevlar.accounting.model.IncomeStatementAccount;
+import com.hevlar.accounting.repository.BatchRepository;
+import com.hevlar.accounting.repository.QueryBudget;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Statement budgets of the chart of accounts operations, for the scenarios of ChartOfAccountsIT and the bulk operations
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ChartOfAccountsQueryBudgetIT {
+
+    @Autowired
+    private ChartOfAccounts chartOfAccounts;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private QueryBudget budget;
+
+    @BeforeEach
+    void setUp() {
+        budget = new QueryBudget(entityManagerFactory);
+        chartOfAccounts.getAccountCache().invalidateAll();
+    }
+
+    @Test
+    void getAccount_is_one_select_then_cached(){
+        budget.exactly("newExpense", 1, () -> chartOfAccounts.newExpense("Budget Food"));
+        budget.selects("getAccount", 1, () -> assertNotNull(chartOfAccounts.getAccount("Budget Food")));
+        budget.exactly("cached getAccount", 0, () -> assertNotNull(chartOfAccounts.getAccount("Budget Food")));
+    }
+
+    @Test
+    void getAccount_not_found_is_one_select(){
+        budget.selects("getAccount", 1, () -> assertNull(chartOfAccounts.getAccount("Budget NonExistent")));
+    }
+
+    @Test
+    void deleteAccount_is_one_select_and_one_delete(){
+        chartOfAccounts.newExpense("Budget Grocery");
+        budget.atMost("deleteAccount", 2, () -> assertTrue(chartOfAccounts.deleteAccount("Budget Grocery")));
+    }
+
+    @Test
+    void locked_accounts_are_rejected_by_one_statement(){
+        chartOfAccounts.newCurrentAsset("Budget Bank", LocalDate.of(2021, 1, 1), "SGD", "100.0");
+        budget.exactly("lock", 1, () -> chartOfAccounts.lock());
+        BalanceSheetAccount bank = new BalanceSheetAccount("Budget Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 2), "SGD", "200.0", false);
+        budget.exactly("updateAccount", 1, () -> assertNull(chartOfAccounts.updateAccount(bank)));
+        budget.selects("deleteAccount", 1, () -> assertFalse(chartOfAccounts.deleteAccount("Budget Bank")));
+    }
+
+    @Test
+    void updateAccount_is_one_statement(){
+        chartOfAccounts.newCurrentAsset("Budget Bank 2", LocalDate.of(2021, 1, 1), "SGD", "100.0");
+        Account bank2 = chartOfAccounts.getAccount("Budget Bank 2");
+        bank2.lock();
+        budget.exactly("updateAccount", 1, () -> assertNotNull(chartOfAccounts.updateAccount(bank2)));
+    }
+
+    @Test
+    void newAccounts_is_one_select_and_one_statement_per_batch(){
+        List<Account> accounts = new ArrayList<>();
+        for(int i = 0; i < 120; i++) accounts.add(new IncomeStatementAccount("Budget Expense " + i, AccountGroup.EXPENSES, false));
+        long batches = (accounts.size() + BatchRepository.BATCH_SIZE - 1) / BatchRepository.BATCH_SIZE;
+        budget.atMost("newAccounts", 1 + batches, () -> assertEquals(chartOfAccounts.newAccounts(accounts).size(), 120));
+    }
+
+    @Test
+    void lock_is_one_statement_regardless_of_number_of_accounts(){
+        List<Account> accounts = new ArrayList<>();
+        for(int i = 0; i < 200; i++) accounts.add(new IncomeStatementAccount("Budget Revenue " + i, AccountGroup.REVENUE, false));
+        chartOfAccounts.newAccounts(accounts);
+        budget.exactly("lock by account group", 1, () -> chartOfAccounts.lock(AccountGroup.REVENUE));
+        budget.exactly("lock", 1, () -> chartOfAccounts.lock());
+    }
+
+    @Test
+    void lock_by_names_is_one_statement_per_thousand_names(){
+        List<String> names = new ArrayList<>();
+        for(int i = 0; i < 2500; i++) names.add("Budget Name " + i);
+        budget.exactly("lock by names", 3, () -> chartOfAccounts.lock(names));
+    }
+
+    @Test
+    void getAccounts_is_one_select_then_cached(){
+        chartOfAccounts.newAccounts(List.of(
+                new IncomeStatementAccount("Budget Gain 1", AccountGroup.GAINS, false),
+                new IncomeStatementAccount("Budget Gain 2", AccountGroup.GAINS, false)));
+        chartOfAccounts.getAccountCache().invalidateAll();
+        budget.selects("getAccounts", 1, () -> assertTrue(chartOfAccounts.getAccounts(AccountGroup.GAINS).toList().size() >= 2));
+        budget.exactly("cached getAccounts", 0, () -> chartOfAccounts.getAccounts(AccountGroup.GAINS).toList());
+    }
+
+    @Test
+    void getCreditCardAccounts_is_one_select(){
+        chartOfAccounts.newCreditCard("Budget Card", LocalDate.of(2021, 1, 1), "SGD", "0", "Bank A", 1, 20);
+        chartOfAccounts.getAccountCache().invalidateAll();
+        budget.selects("getCreditCardAccounts", 1, () -> chartOfAccounts.getCreditCardAccounts().toList());
+    }
+}
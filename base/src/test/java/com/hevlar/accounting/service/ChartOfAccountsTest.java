@@ -4,6 +4,7 @@ import com.hevlar.accounting.model.*;
 import com.hevlar.accounting.repository.AccountData;
 import com.hevlar.accounting.repository.AccountDataRepository;
 import com.hevlar.accounting.util.ModelMapping;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,8 +13,11 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.util.Streamable;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -42,7 +46,7 @@ class ChartOfAccountsTest {
     void ensure_AccountData_map_to_Account_correctly(){
         AccountData accountData = new AccountData(
                 "Bank",
-                AccountGroup.CURRENT_ASSETS.label,
+                AccountGroup.CURRENT_ASSETS,
                 LocalDate.of(2021, 1, 1),
                 "SGD", new BigDecimal("10000"),
                 null, null, null, false
@@ -58,7 +62,14 @@ class ChartOfAccountsTest {
 
     @Test
     void ensure_no_duplicate_account_name(){
-        Mockito.when(accountDataRepository.findByName("Food")).thenReturn(new AccountData("Food", AccountGroup.EXPENSES.label, false));
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(0);
+
+        assertNull(chartOfAccounts.newRevenue("Food"));
+    }
+
+    @Test
+    void concurrently_created_account_name_returns_null(){
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenThrow(new DataIntegrityViolationException("Duplicate name"));
 
         assertNull(chartOfAccounts.newRevenue("Food"));
     }
@@ -66,10 +77,10 @@ class ChartOfAccountsTest {
     @Test
     void getAccounts_return_correctly(){
 
-        Mockito.when(accountDataRepository.findByAccountGroup(AccountGroup.CURRENT_ASSETS.label)).thenReturn(
+        Mockito.when(accountDataRepository.findByAccountGroup(AccountGroup.CURRENT_ASSETS)).thenReturn(
                 Streamable.of(List.of(
-                        new AccountData("Bank A", AccountGroup.CURRENT_ASSETS.label, LocalDate.now(), "SGD", new BigDecimal("100.0"), false),
-                        new AccountData("Bank B", AccountGroup.CURRENT_ASSETS.label, LocalDate.now(), "SGD", new BigDecimal("100.0"), false)
+                        new AccountData("Bank A", AccountGroup.CURRENT_ASSETS, LocalDate.now(), "SGD", new BigDecimal("100.0"), false),
+                        new AccountData("Bank B", AccountGroup.CURRENT_ASSETS, LocalDate.now(), "SGD", new BigDecimal("100.0"), false)
                 ))
         );
 
@@ -81,22 +92,20 @@ class ChartOfAccountsTest {
 
     @Test
     void updateAccount_successful(){
-        AccountData accountData = new AccountData("Food", AccountGroup.EXPENSES.label, false);
-        Mockito.when(accountDataRepository.findByName("Food")).thenReturn(accountData);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.updateIfUnlocked(any(AccountData.class))).thenReturn(1);
         IncomeStatementAccount food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
         IncomeStatementAccount account = (IncomeStatementAccount) chartOfAccounts.updateAccount(food);
         assertNotNull(account);
         assertFalse(account.isLocked());
         assertEquals(account.getName(), "Food");
         assertEquals(account.getAccountGroup(), AccountGroup.EXPENSES);
+        Mockito.verify(accountDataRepository, Mockito.never()).findByName("Food");
+        Mockito.verify(accountDataRepository, Mockito.never()).save(any(AccountData.class));
     }
 
     @Test
     void updateAccount_not_allowed_for_locked_account(){
-        AccountData accountData = new AccountData("Food", AccountGroup.EXPENSES.label, true);
-        Mockito.when(accountDataRepository.findByName("Food")).thenReturn(accountData);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.updateIfUnlocked(any(AccountData.class))).thenReturn(0);
         IncomeStatementAccount food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
         IncomeStatementAccount account = (IncomeStatementAccount) chartOfAccounts.updateAccount(food);
         assertNull(account);
@@ -104,31 +113,58 @@ class ChartOfAccountsTest {
 
     @Test
     void updateAccount_not_allowed_non_existent_accounts(){
-        Mockito.when(accountDataRepository.findByName("Food")).thenReturn(null);
         IncomeStatementAccount food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
         IncomeStatementAccount account = (IncomeStatementAccount) chartOfAccounts.updateAccount(food);
         assertNull(account);
     }
 
+    @Test
+    void updateAccount_with_version_checks_version(){
+        Mockito.when(accountDataRepository.updateIfUnlockedAndVersion(argThat(accountData -> Long.valueOf(3).equals(accountData.getVersion())))).thenReturn(1);
+        IncomeStatementAccount food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
+        food.setVersion(3L);
+        assertEquals(chartOfAccounts.updateAccount(food).getVersion(), Long.valueOf(4));
+        food.setVersion(2L);
+        assertNull(chartOfAccounts.updateAccount(food));
+        Mockito.verify(accountDataRepository, Mockito.never()).updateIfUnlocked(any(AccountData.class));
+    }
+
     @Test
     void lock_success() {
+        Mockito.when(accountDataRepository.lockAll()).thenReturn(2);
+        assertEquals(chartOfAccounts.lock(), 2);
+        Mockito.verify(accountDataRepository).lockAll();
+        Mockito.verify(accountDataRepository, Mockito.never()).findAll();
+        Mockito.verify(accountDataRepository, Mockito.never()).saveAll(any());
+    }
+
+    @Test
+    void lock_by_account_group() {
         Mockito.when(accountDataRepository.findAll()).thenReturn(
                 List.of(
-                        new AccountData("Food", AccountGroup.EXPENSES.label, false),
-                        new AccountData("Bank", AccountGroup.CURRENT_ASSETS.label, LocalDate.now(), "SGD", new BigDecimal("100.00"), false)
+                        new AccountData("Food", AccountGroup.EXPENSES, false),
+                        new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.now(), "SGD", new BigDecimal("100.00"), false)
                 )
         );
-        chartOfAccounts.lock();
-        accountDataRepository.findAll().forEach(
-                accountData -> assertTrue(accountData.isLocked())
-        );
+        chartOfAccounts.getSnapshot();
+        Mockito.when(accountDataRepository.lockByAccountGroup(AccountGroup.EXPENSES)).thenReturn(1);
+        assertEquals(chartOfAccounts.lock(AccountGroup.EXPENSES), 1);
+        assertTrue(chartOfAccounts.getSnapshot().getAccount("Food").isLocked());
+        assertFalse(chartOfAccounts.getSnapshot().getAccount("Bank").isLocked());
+    }
+
+    @Test
+    void lock_by_names() {
+        Mockito.when(accountDataRepository.lockByNameIn(anyCollection())).thenReturn(2);
+        assertEquals(chartOfAccounts.lock(List.of("Food", "Bank")), 2);
+        Mockito.verify(accountDataRepository, Mockito.times(1)).lockByNameIn(anyCollection());
     }
 
     @Test
     void getCreditCardAccounts_correctly(){
         Mockito.when(accountDataRepository.findAllByBankNotNull()).thenReturn(
                 Streamable.of(
-                        new AccountData("Credit Card", AccountGroup.CURRENT_LIABILITIES.label, LocalDate.of(2021,1,1), "SGD", new BigDecimal("100"), "Bank A", 1, 12, false)
+                        new AccountData("Credit Card", AccountGroup.CURRENT_LIABILITIES, LocalDate.of(2021,1,1), "SGD", new BigDecimal("100"), "Bank A", 1, 12, false)
                 )
         );
         List<Account> accountList = chartOfAccounts.getCreditCardAccounts().toList();
@@ -148,7 +184,7 @@ class ChartOfAccountsTest {
     @Test
     void deleteAccount_not_allowed_for_locked_account() {
         Mockito.when(accountDataRepository.findByName("Food")).thenReturn(
-                new AccountData("Food", AccountGroup.EXPENSES.label, true));
+                new AccountData("Food", AccountGroup.EXPENSES, true));
         assertFalse(chartOfAccounts.deleteAccount("Food"));
     }
 
@@ -161,103 +197,197 @@ class ChartOfAccountsTest {
     @Test
     void deleteAccount_successful() {
         Mockito.when(accountDataRepository.findByName("Food")).thenReturn(
-                new AccountData("Food", AccountGroup.EXPENSES.label, false));
+                new AccountData("Food", AccountGroup.EXPENSES, false));
         assertTrue(chartOfAccounts.deleteAccount("Food"));
     }
 
     @Test
     void newFixedAsset_successful(){
-        Mockito.when(accountDataRepository.findByName("Investment")).thenReturn(null);
-        AccountData accountData = new AccountData("Investment", AccountGroup.FIXED_ASSETS.label, LocalDate.of(2021,1, 1), "SGD", new BigDecimal("100"), false);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
         Account account = chartOfAccounts.newFixedAsset("Investment", LocalDate.of(2021,1, 1), "SGD", "100");
         assertNotNull(account);
     }
 
     @Test
     void newCurrentAsset_successful(){
-        Mockito.when(accountDataRepository.findByName("Cash")).thenReturn(null);
-        AccountData accountData = new AccountData("Cash", AccountGroup.CURRENT_ASSETS.label, LocalDate.of(2021, 1,1), "SGD", new BigDecimal("100"), false);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
         Account account = chartOfAccounts.newCurrentAsset("Cash", LocalDate.of(2021, 1, 1), "SGD", "100");
         assertNotNull(account);
     }
 
+    @Test
+    void newCurrentAsset_with_opening_balance_its_currency_does_not_allow_is_not_written(){
+        assertThrows(IllegalArgumentException.class, () -> chartOfAccounts.newCurrentAsset("Yen", LocalDate.of(2021, 1, 1), "JPY", "100.5"));
+        Mockito.verifyNoInteractions(accountDataRepository);
+    }
+
     @Test
     void newCurrentLiability_successful(){
-        Mockito.when(accountDataRepository.findByName("Loan")).thenReturn(null);
-        AccountData accountData = new AccountData("Loan", AccountGroup.CURRENT_LIABILITIES.label, LocalDate.of(2021,1, 1), "SGD", new BigDecimal("100"), false);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
         Account account = chartOfAccounts.newCurrentLiability("Loan", LocalDate.of(2021, 1, 1), "SGD", "100");
         assertNotNull(account);
     }
 
     @Test
     void newCreditCard_successful(){
-        Mockito.when(accountDataRepository.findByName("Credit Card")).thenReturn(null);
-        AccountData accountData = new AccountData("Credit Card", AccountGroup.CURRENT_LIABILITIES.label, LocalDate.of(2021, 1,1), "SGD", new BigDecimal("100"), "Bank A", 1, 12, false);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
         Account account = chartOfAccounts.newCreditCard("Credit Card", LocalDate.now(), "SGD", "100", "Bank A", 1, 12);
         assertNotNull(account);
     }
 
     @Test
     void newLongTermLiability_successful(){
-        Mockito.when(accountDataRepository.findByName("Loan")).thenReturn(null);
-        AccountData accountData = new AccountData("Loan", AccountGroup.LONG_TERM_LIABILITIES.label, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100"), false);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
         assertNotNull(chartOfAccounts.newLongTermLiability("Loan", LocalDate.of(2021, 1, 1), "SGD", "100"));
     }
 
     @Test
     void newEquity_successful(){
-        Mockito.when(accountDataRepository.findByName("Shareholder investment")).thenReturn(null);
-        AccountData accountData = new AccountData("Shareholder investment", AccountGroup.EQUITIES.label, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100"), false);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
         assertNotNull(chartOfAccounts.newEquity("Shareholder investment", LocalDate.of(2021, 1,1), "SGD", "100"));
     }
 
     @Test
     void newGain_successful(){
-        Mockito.when(accountDataRepository.findByName("Profit from exchange rates")).thenReturn(null);
-        AccountData accountData = new AccountData("Profit from exchange rates", AccountGroup.GAINS.label,false);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
         assertNotNull(chartOfAccounts.newGain("Profit from exchange rates"));
     }
 
     @Test
     void newLoss_successful(){
-        Mockito.when(accountDataRepository.findByName("Loss from exchange rates")).thenReturn(null);
-        AccountData accountData = new AccountData("Loss from exchange rates", AccountGroup.LOSSES.label, false);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
         assertNotNull(chartOfAccounts.newLoss("Loss from exchange rates"));
     }
 
     @Test
     void newExpense_successful(){
-        Mockito.when(accountDataRepository.findByName("Food")).thenReturn(null);
-        AccountData accountData = new AccountData("Food", AccountGroup.EXPENSES.label, false);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
         assertNotNull(chartOfAccounts.newExpense("Food"));
     }
 
     @Test
     void newRevenue_successful(){
-        Mockito.when(accountDataRepository.findByName("Salary")).thenReturn(null);
-        AccountData accountData = new AccountData("Salary", AccountGroup.REVENUE.label, false);
-        Mockito.when(accountDataRepository.save(any(AccountData.class))).thenReturn(accountData);
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
         assertNotNull(chartOfAccounts.newRevenue("Salary"));
     }
 
     @Test
     void getAccount() {
         Mockito.when(accountDataRepository.findByName("Bank A")).thenReturn(
-                new AccountData("Bank A", AccountGroup.CURRENT_ASSETS.label, LocalDate.now(), "SGD", new BigDecimal("100.0"), false)
+                new AccountData("Bank A", AccountGroup.CURRENT_ASSETS, LocalDate.now(), "SGD", new BigDecimal("100.0"), false)
         );
         BalanceSheetAccount bank = (BalanceSheetAccount) chartOfAccounts.getAccount("Bank A");
         assertEquals(bank.getOpenBal(), new BigDecimal("100.0"));
     }
 
+    @Test
+    void getAccount_served_from_cache() {
+        Mockito.when(accountDataRepository.findByName("Food")).thenReturn(
+                new AccountData("Food", AccountGroup.EXPENSES, false));
+        assertNotNull(chartOfAccounts.getAccount("Food"));
+        assertNotNull(chartOfAccounts.getAccount("Food"));
+        Mockito.verify(accountDataRepository, Mockito.times(1)).findByName("Food");
+        assertEquals(chartOfAccounts.getAccountCache().getHitCount(), 1);
+    }
+
+    @Test
+    void getAccount_in_a_transaction_is_cached_once_it_commits() {
+        Mockito.when(accountDataRepository.findByName("Food")).thenReturn(
+                new AccountData("Food", AccountGroup.EXPENSES, false));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertNotNull(chartOfAccounts.getAccount("Food"));
+            assertEquals(chartOfAccounts.getAccountCache().size(), 0);
+        } finally {
+            // rolled back
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertNotNull(chartOfAccounts.getAccount("Food"));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(chartOfAccounts.getAccountCache().size(), 1);
+        assertNotNull(chartOfAccounts.getAccount("Food"));
+        Mockito.verify(accountDataRepository, Mockito.times(2)).findByName("Food");
+        assertEquals(chartOfAccounts.getAccountCache().getHitCount(), 1);
+    }
+
+    @Test
+    void updateAccount_invalidates_cache() {
+        AccountData accountData = new AccountData("Food", AccountGroup.EXPENSES, false);
+        Mockito.when(accountDataRepository.updateIfUnlocked(any(AccountData.class))).thenReturn(1);
+        Mockito.when(accountDataRepository.findByAccountGroup(AccountGroup.EXPENSES)).thenReturn(Streamable.of(accountData));
+        chartOfAccounts.getAccounts(AccountGroup.EXPENSES).toList();
+        chartOfAccounts.updateAccount(new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false));
+        chartOfAccounts.getAccounts(AccountGroup.EXPENSES).toList();
+        Mockito.verify(accountDataRepository, Mockito.times(2)).findByAccountGroup(AccountGroup.EXPENSES);
+    }
+
+    @Test
+    void updateAccount_to_another_group_invalidates_previous_group() {
+        Mockito.when(accountDataRepository.updateIfUnlocked(any(AccountData.class))).thenReturn(1);
+        Mockito.when(accountDataRepository.findByAccountGroup(AccountGroup.EXPENSES)).thenReturn(
+                Streamable.of(new AccountData("Food", AccountGroup.EXPENSES, false)), Streamable.empty());
+        assertEquals(chartOfAccounts.getAccounts(AccountGroup.EXPENSES).toList().size(), 1);
+        chartOfAccounts.updateAccount(new IncomeStatementAccount("Food", AccountGroup.LOSSES, false));
+        assertEquals(chartOfAccounts.getAccounts(AccountGroup.EXPENSES).toList().size(), 0);
+        Mockito.verify(accountDataRepository, Mockito.times(2)).findByAccountGroup(AccountGroup.EXPENSES);
+    }
+
+    @Test
+    void getSnapshot_loads_once_and_applies_changes() {
+        Mockito.when(accountDataRepository.findAll()).thenReturn(
+                List.of(new AccountData("Food", AccountGroup.EXPENSES, false)));
+        ChartSnapshot snapshot = chartOfAccounts.getSnapshot();
+        assertSame(chartOfAccounts.getSnapshot(), snapshot);
+        Mockito.verify(accountDataRepository, Mockito.times(1)).findAll();
+
+        Mockito.when(accountDataRepository.insertIfAbsent(any(AccountData.class))).thenReturn(1);
+        chartOfAccounts.newRevenue("Salary");
+        ChartSnapshot next = chartOfAccounts.getSnapshot();
+        assertEquals(next.getVersion(), snapshot.getVersion() + 1);
+        assertNotNull(next.getAccount("Salary"));
+        assertNull(snapshot.getAccount("Salary"));
+        Mockito.verify(accountDataRepository, Mockito.times(1)).findAll();
+    }
+
+    @Test
+    void newAccounts_reports_outcome_of_each_account() {
+        Mockito.when(accountDataRepository.findExistingNames(anyCollection())).thenReturn(List.of("Food"));
+        List<AccountCreationResult> results = chartOfAccounts.newAccounts(List.of(
+                new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false),
+                new IncomeStatementAccount("Salary", AccountGroup.REVENUE, false),
+                new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "100", false),
+                new IncomeStatementAccount("Salary", AccountGroup.REVENUE, false)
+        ));
+        assertEquals(results.size(), 4);
+        assertEquals(results.get(0).getStatus(), AccountCreationResult.Status.ALREADY_EXISTS);
+        assertEquals(results.get(1).getStatus(), AccountCreationResult.Status.CREATED);
+        assertEquals(results.get(2).getStatus(), AccountCreationResult.Status.CREATED);
+        assertEquals(results.get(3).getStatus(), AccountCreationResult.Status.DUPLICATE_IN_REQUEST);
+        Mockito.verify(accountDataRepository, Mockito.times(1)).findExistingNames(anyCollection());
+        Mockito.verify(accountDataRepository).persistAll(argThat(accounts -> Streamable.of(accounts).toList().size() == 2));
+        Mockito.verify(accountDataRepository, Mockito.never()).save(any(AccountData.class));
+    }
+
+    @Test
+    void operations_are_timed_by_account_group() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChartOfAccounts timedChartOfAccounts = new ChartOfAccounts(accountDataRepository, new AccountCache(10), new AccountingMetrics(registry));
+        Mockito.when(accountDataRepository.findByAccountGroup(AccountGroup.EXPENSES)).thenReturn(
+                Streamable.of(new AccountData("Food", AccountGroup.EXPENSES, false)));
+        assertEquals(timedChartOfAccounts.getAccounts(AccountGroup.EXPENSES).toList().size(), 1);
+        assertEquals(timedChartOfAccounts.getAccounts(AccountGroup.EXPENSES).toList().size(), 1);
+        timedChartOfAccounts.lock();
+        assertEquals(registry.get(AccountingMetrics.OPERATION_TIMER).tags("operation", "getAccounts", "group", "EXPENSES").timer().count(), 2);
+        assertEquals(registry.get(AccountingMetrics.OPERATION_TIMER).tags("operation", "lock", "group", AccountingMetrics.NO_GROUP).timer().count(), 1);
+        assertEquals(registry.get(AccountingMetrics.MAPPING_TIMER).tags("direction", "toAccount", "group", "EXPENSES").timer().count(), 2);
+        assertEquals(registry.get(AccountingMetrics.CACHE_LOOKUPS).tags("result", "hit").functionCounter().count(), 1.0);
+    }
+
     @AfterEach
     void tearDown() throws Exception {
         closeable.close();
@@ -0,0 +1,86 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.model.CreditCardAccount;
+import com.hevlar.accounting.repository.AccountData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChartSnapshotTest {
+
+    private ChartSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = ChartSnapshot.of(List.of(
+                new AccountData("Food", AccountGroup.EXPENSES, false),
+                new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100"), false),
+                new AccountData("Credit Card", AccountGroup.CURRENT_LIABILITIES, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("0"), "Bank A", 1, 12, false)
+        ));
+    }
+
+    @Test
+    void indexes_by_name_group_and_credit_card() {
+        assertEquals(snapshot.getVersion(), 1);
+        assertEquals(snapshot.size(), 3);
+        assertEquals(snapshot.getAccount("Food").getAccountGroup(), AccountGroup.EXPENSES);
+        assertNull(snapshot.getAccount("Salary"));
+        assertEquals(snapshot.getAccounts(AccountGroup.CURRENT_ASSETS).toList().size(), 1);
+        assertTrue(snapshot.getAccounts(AccountGroup.REVENUE).isEmpty());
+        assertEquals(snapshot.getCreditCardAccounts().toList().get(0).getClass(), CreditCardAccount.class);
+        assertEquals(snapshot.getAccounts().toList().size(), 3);
+    }
+
+    @Test
+    void changes_create_next_version_without_modifying_snapshot() {
+        ChartSnapshot next = snapshot.withAccount(new AccountData("Salary", AccountGroup.REVENUE, false));
+        assertEquals(next.getVersion(), 2);
+        assertNotNull(next.getAccount("Salary"));
+        assertNull(snapshot.getAccount("Salary"));
+
+        ChartSnapshot removed = next.withoutAccount("Food");
+        assertEquals(removed.getVersion(), 3);
+        assertNull(removed.getAccount("Food"));
+        assertNotNull(next.getAccount("Food"));
+    }
+
+    @Test
+    void withAccount_replaces_account_with_same_name() {
+        ChartSnapshot next = snapshot.withAccount(new AccountData("Food", AccountGroup.EXPENSES, true));
+        assertEquals(next.size(), 3);
+        assertTrue(next.getAccount("Food").isLocked());
+        assertEquals(next.getAccounts(AccountGroup.EXPENSES).toList().size(), 1);
+    }
+
+    @Test
+    void withAccount_ignores_older_version_of_account() {
+        AccountData newer = new AccountData("Food", AccountGroup.EXPENSES, true);
+        newer.setVersion(2L);
+        AccountData older = new AccountData("Food", AccountGroup.LOSSES, false);
+        older.setVersion(1L);
+        ChartSnapshot next = snapshot.withAccount(newer).withAccount(older);
+        assertTrue(next.getAccount("Food").isLocked());
+        assertEquals(next.getAccount("Food").getAccountGroup(), AccountGroup.EXPENSES);
+    }
+
+    @Test
+    void locked_locks_every_account() {
+        ChartSnapshot locked = snapshot.locked();
+        locked.getAccounts().forEach(account -> assertTrue(account.isLocked()));
+        snapshot.getAccounts().forEach(account -> assertFalse(account.isLocked()));
+    }
+
+    @Test
+    void snapshot_is_not_affected_by_changes_to_the_entity() {
+        AccountData salary = new AccountData("Salary", AccountGroup.REVENUE, false);
+        ChartSnapshot next = snapshot.withAccount(salary);
+        salary.setLock(true);
+        assertFalse(next.getAccount("Salary").isLocked());
+    }
+}
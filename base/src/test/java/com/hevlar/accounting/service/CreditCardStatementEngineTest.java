@@ -0,0 +1,108 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.util.Streamable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+
+@ExtendWith(MockitoExtension.class)
+class CreditCardStatementEngineTest {
+
+    @Mock
+    ChartOfAccounts chartOfAccounts;
+
+    @Mock
+    JournalEntryDataRepository journalEntryDataRepository;
+
+    private CreditCardStatementEngine engine;
+    private CreditCardAccount cardA;
+    private CreditCardAccount cardB;
+
+    @BeforeEach
+    void setUp() {
+        engine = new CreditCardStatementEngine(chartOfAccounts, journalEntryDataRepository);
+        cardA = new CreditCardAccount("Card A", LocalDate.of(2021, 1, 1), "SGD", "0", "Bank A", 31, 15, false);
+        cardB = new CreditCardAccount("Card B", LocalDate.of(2021, 1, 1), "SGD", "100", "Bank B", 10, 25, false);
+    }
+
+    @Test
+    void generate_statements_of_all_cards_in_one_pass() {
+        Mockito.when(chartOfAccounts.getCreditCardAccounts()).thenReturn(Streamable.of(List.of(cardA, cardB)));
+        Mockito.when(journalEntryDataRepository.streamByAccountIn(anyCollection())).thenReturn(Stream.of(
+                entry(1L, LocalDate.of(2021, 2, 3), null, "Food", "Card A", "30"),
+                entry(2L, LocalDate.of(2021, 2, 28), null, "Food", "Card A", "20"),
+                entry(3L, LocalDate.of(2021, 2, 28), LocalDate.of(2021, 3, 1), "Food", "Card A", "5"),
+                entry(4L, LocalDate.of(2021, 3, 15), null, "Card A", "Bank", "50"),
+                entry(5L, LocalDate.of(2021, 2, 9), null, "Food", "Card B", "10")
+        ));
+
+        List<CreditCardStatement> statements = engine.generate(LocalDate.of(2021, 2, 1), LocalDate.of(2021, 3, 31));
+        Mockito.verify(journalEntryDataRepository, Mockito.times(1)).streamByAccountIn(anyCollection());
+        assertEquals(statements.size(), 4);
+
+        CreditCardStatement february = statements.get(0);
+        assertEquals(february.getAccount(), "Card A");
+        assertEquals(february.getPeriodStart(), LocalDate.of(2021, 2, 1));
+        assertEquals(february.getStatementDate(), LocalDate.of(2021, 2, 28));
+        assertEquals(february.getDueDate(), LocalDate.of(2021, 3, 15));
+        assertEquals(february.getCharges(), new BigDecimal("50.00"));
+        assertEquals(february.getEntryCount(), 2);
+
+        CreditCardStatement march = statements.get(1);
+        assertEquals(march.getStatementDate(), LocalDate.of(2021, 3, 31));
+        assertEquals(march.getOpeningBalance(), new BigDecimal("50.00"));
+        assertEquals(march.getCharges(), new BigDecimal("5.00"));
+        assertEquals(march.getPayments(), new BigDecimal("50.00"));
+        assertEquals(march.getClosingBalance(), new BigDecimal("5.00"));
+
+        CreditCardStatement cardBFebruary = statements.get(2);
+        assertEquals(cardBFebruary.getAccount(), "Card B");
+        assertEquals(cardBFebruary.getPeriodStart(), LocalDate.of(2021, 1, 11));
+        assertEquals(cardBFebruary.getOpeningBalance(), new BigDecimal("100.00"));
+        assertEquals(cardBFebruary.getClosingBalance(), new BigDecimal("110.00"));
+        assertEquals(statements.get(3).getEntryCount(), 0);
+    }
+
+    @Test
+    void generate_uses_statement_date_of_entry() {
+        JournalEntryData moved = entry(1L, LocalDate.of(2021, 2, 3), null, "Food", "Card A", "30");
+        moved.setCreditStatementDate(LocalDate.of(2021, 3, 31));
+        List<CreditCardStatement> statements = engine.generate(List.of(cardA), Stream.of(moved), LocalDate.of(2021, 2, 28), LocalDate.of(2021, 3, 31));
+        assertEquals(statements.get(0).getCharges(), new BigDecimal("0.00"));
+        assertEquals(statements.get(1).getCharges(), new BigDecimal("30.00"));
+    }
+
+    @Test
+    void generate_without_credit_cards() {
+        Mockito.when(chartOfAccounts.getCreditCardAccounts()).thenReturn(Streamable.empty());
+        assertTrue(engine.generate(LocalDate.of(2021, 1, 1), LocalDate.of(2021, 12, 31)).isEmpty());
+        Mockito.verifyNoInteractions(journalEntryDataRepository);
+    }
+
+    @Test
+    void assignStatementDates_only_for_missing_dates() {
+        IncomeStatementAccount food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
+        JournalEntry journalEntry = new JournalEntry(1L, LocalDate.of(2021, 2, 10), "Lunch", Recurrence.N, null, "SGD", "10", food, cardB, null, null, null);
+        assertTrue(engine.assignStatementDates(journalEntry));
+        assertNull(journalEntry.getDebitStatementDate());
+        assertEquals(journalEntry.getCreditStatementDate(), LocalDate.of(2021, 2, 10));
+    }
+
+    private JournalEntryData entry(Long journalId, LocalDate txDate, LocalDate postDate, String debit, String credit, String amount) {
+        return new JournalEntryData(journalId, txDate, "Item", Recurrence.N, null, "SGD", new BigDecimal(amount), debit, credit, postDate, null, null, false);
+    }
+}
@@ -0,0 +1,88 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+import com.hevlar.accounting.repository.AccountData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FinancialStatementGeneratorTest {
+
+    private ChartSnapshot snapshot;
+    private BalanceIndex balanceIndex;
+    private FinancialStatementGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = ChartSnapshot.of(List.of(
+                new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100"), false),
+                new AccountData("Capital", AccountGroup.EQUITIES, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100"), false),
+                new AccountData("Salary", AccountGroup.REVENUE, false),
+                new AccountData("Food", AccountGroup.EXPENSES, false)
+        ));
+        balanceIndex = new BalanceIndex();
+        generator = new FinancialStatementGenerator(null, balanceIndex, Currency.getInstance("SGD"), null, new ForkJoinPool(2));
+
+        post(1L, LocalDate.of(2021, 1, 15), "1000", "Bank", "Salary");
+        post(2L, LocalDate.of(2021, 1, 20), "30", "Food", "Bank");
+        post(3L, LocalDate.of(2021, 2, 10), "50", "Food", "Bank");
+    }
+
+    @Test
+    void trial_balance_is_balanced() {
+        FinancialStatements statements = generator.generate(snapshot, null, LocalDate.of(2021, 2, 28));
+        assertEquals(statements.getTrialBalance().size(), 4);
+        assertEquals(statements.getTotalDebits(), new BigDecimal("1100.00"));
+        assertEquals(statements.getTotalCredits(), new BigDecimal("1100.00"));
+    }
+
+    @Test
+    void balance_sheet_and_income_statement() {
+        FinancialStatements statements = generator.generate(snapshot, null, LocalDate.of(2021, 2, 28));
+        assertEquals(statements.getBalanceSheet().size(), 5);
+        assertEquals(statements.getGroup(AccountGroup.CURRENT_ASSETS).getBalance(), new BigDecimal("1020.00"));
+        assertEquals(statements.getGroup(AccountGroup.EQUITIES).getBalance(), new BigDecimal("100.00"));
+        assertTrue(statements.getGroup(AccountGroup.FIXED_ASSETS).getAccounts().isEmpty());
+        assertEquals(statements.getIncomeStatement().size(), 4);
+        assertEquals(statements.getNetIncome(), new BigDecimal("920.00"));
+    }
+
+    @Test
+    void income_statement_of_period() {
+        FinancialStatements statements = generator.generate(snapshot, LocalDate.of(2021, 2, 1), LocalDate.of(2021, 2, 28));
+        assertEquals(statements.getGroup(AccountGroup.EXPENSES).getChange(), new BigDecimal("50.00"));
+        assertEquals(statements.getGroup(AccountGroup.EXPENSES).getBalance(), new BigDecimal("80.00"));
+        assertEquals(statements.getNetIncome(), new BigDecimal("-50.00"));
+        assertEquals(statements.getCurrency(), Currency.getInstance("SGD"));
+    }
+
+    @Test
+    void balances_are_converted_to_currency_of_statements() {
+        ChartSnapshot withUsd = snapshot.withAccount(new AccountData("Brokerage", AccountGroup.FIXED_ASSETS, LocalDate.of(2021, 1, 1), "USD", new BigDecimal("100"), false));
+        FxRateTable fxRateTable = FxRateTable.of(List.of(
+                new FxRate(Currency.getInstance("USD"), Currency.getInstance("SGD"), LocalDate.of(2021, 1, 1), new BigDecimal("1.30")),
+                new FxRate(Currency.getInstance("USD"), Currency.getInstance("SGD"), LocalDate.of(2021, 2, 1), new BigDecimal("1.35"))
+        ));
+        FinancialStatementGenerator consolidating = new FinancialStatementGenerator(null, balanceIndex, Currency.getInstance("SGD"), fxRateTable, new ForkJoinPool(2));
+        assertEquals(consolidating.generate(withUsd, null, LocalDate.of(2021, 1, 31)).getGroup(AccountGroup.FIXED_ASSETS).getBalance(), new BigDecimal("130.00"));
+        assertEquals(consolidating.generate(withUsd, null, LocalDate.of(2021, 2, 28)).getGroup(AccountGroup.FIXED_ASSETS).getBalance(), new BigDecimal("135.00"));
+        assertEquals(consolidating.generate(withUsd, null, LocalDate.of(2021, 2, 28)).getGroup(AccountGroup.CURRENT_ASSETS).getBalance(), new BigDecimal("1020.00"));
+    }
+
+    @Test
+    void generate_rejects_reversed_period() {
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(snapshot, LocalDate.of(2021, 3, 1), LocalDate.of(2021, 2, 1)));
+    }
+
+    private void post(Long journalId, LocalDate txDate, String amount, String debit, String credit) {
+        balanceIndex.post(new JournalEntry(journalId, txDate, "Item", Recurrence.N, null, "SGD", amount,
+                snapshot.getAccount(debit), snapshot.getAccount(credit), null, null, null));
+    }
+}
@@ -0,0 +1,49 @@
+package com.hevlar.accounting.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FxRateTableTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency SGD = Currency.getInstance("SGD");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    @Test
+    void getRate_is_effective_until_next_rate() throws IOException {
+        FxRateTable fxRateTable = FxRateTable.fromCsv(new StringReader(
+                "from,to,date,rate\n" +
+                "USD,SGD,2021-02-01,1.35\n" +
+                "USD,SGD,2021-01-01,1.30\n"));
+        assertEquals(fxRateTable.getRate(USD, SGD, LocalDate.of(2021, 1, 1)), new BigDecimal("1.30"));
+        assertEquals(fxRateTable.getRate(USD, SGD, LocalDate.of(2021, 1, 31)), new BigDecimal("1.30"));
+        assertEquals(fxRateTable.getRate(USD, SGD, LocalDate.of(2021, 6, 1)), new BigDecimal("1.35"));
+        assertEquals(fxRateTable.getRate(SGD, SGD, LocalDate.of(2000, 1, 1)), BigDecimal.ONE);
+        assertThrows(NoSuchElementException.class, () -> fxRateTable.getRate(USD, SGD, LocalDate.of(2020, 12, 31)));
+        assertThrows(NoSuchElementException.class, () -> fxRateTable.getRate(USD, JPY, LocalDate.of(2021, 1, 1)));
+    }
+
+    @Test
+    void inverse_rates_are_derived() throws IOException {
+        FxRateTable fxRateTable = FxRateTable.fromJson(new ByteArrayInputStream(
+                "[{\"from\":\"USD\",\"to\":\"JPY\",\"date\":\"2021-01-01\",\"rate\":\"125\"}]".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(fxRateTable.getRate(JPY, USD, LocalDate.of(2021, 1, 1)), new BigDecimal("0.008"));
+        assertEquals(fxRateTable.convert(10000, JPY, USD, LocalDate.of(2021, 1, 1)), 8000);
+        assertEquals(fxRateTable.convert(1234, USD, JPY, LocalDate.of(2021, 1, 1)), 1542);
+    }
+
+    @Test
+    void fromCsv_rejects_invalid_line() {
+        assertThrows(IllegalArgumentException.class, () -> FxRateTable.fromCsv(new StringReader("from,to,date,rate\nUSD,SGD,2021-01-01\n")));
+    }
+}
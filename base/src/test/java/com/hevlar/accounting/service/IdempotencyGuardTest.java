@@ -0,0 +1,58 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.repository.IdempotencyKeyData;
+import com.hevlar.accounting.repository.IdempotencyKeyDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyGuardTest {
+
+    @Mock
+    IdempotencyKeyDataRepository idempotencyKeyDataRepository;
+
+    private IdempotencyGuard idempotencyGuard;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyGuard = new IdempotencyGuard(idempotencyKeyDataRepository, 1000, 0.01);
+    }
+
+    @Test
+    void new_key_is_not_looked_up() {
+        assertNull(idempotencyGuard.findJournalId("feed-1"));
+        Mockito.verifyNoInteractions(idempotencyKeyDataRepository);
+    }
+
+    @Test
+    void rebuild_from_existing_keys() {
+        Mockito.when(idempotencyKeyDataRepository.count()).thenReturn(2L);
+        Mockito.when(idempotencyKeyDataRepository.streamKeys()).thenReturn(Stream.of("feed-1", "feed-2"));
+        Mockito.when(idempotencyKeyDataRepository.findById("feed-2")).thenReturn(Optional.of(new IdempotencyKeyData("feed-2", 42L)));
+        assertEquals(idempotencyGuard.rebuild(), 2);
+        assertEquals(idempotencyGuard.findJournalId("feed-2"), 42L);
+    }
+
+    @Test
+    void recorded_key_is_looked_up() {
+        idempotencyGuard.record("feed-3");
+        Mockito.when(idempotencyKeyDataRepository.findById("feed-3")).thenReturn(Optional.empty());
+        assertNull(idempotencyGuard.findJournalId("feed-3"));
+        Mockito.verify(idempotencyKeyDataRepository).findById("feed-3");
+    }
+
+    @Test
+    void posted_key_is_looked_up_without_filter() {
+        Mockito.when(idempotencyKeyDataRepository.findById("feed-4")).thenReturn(Optional.of(new IdempotencyKeyData("feed-4", 9L)));
+        assertEquals(idempotencyGuard.findPostedJournalId("feed-4"), 9L);
+    }
+}
@@ -0,0 +1,64 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemSearchIndexTest {
+
+    private ItemSearchIndex itemSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        itemSearchIndex = new ItemSearchIndex();
+        itemSearchIndex.update(1L, "Starbucks Coffee");
+        itemSearchIndex.update(2L, "Coffee Bean & Tea Leaf");
+        itemSearchIndex.update(3L, "Toast Box (coffee)");
+        itemSearchIndex.update(4L, "McDonald's");
+        itemSearchIndex.update(5L, "coffee");
+    }
+
+    @Test
+    void substring_search_is_ranked() {
+        List<ItemMatch> matches = itemSearchIndex.search("COFFEE", 10);
+        assertEquals(journalIds(matches), List.of(5L, 3L, 2L, 1L));
+        assertEquals(matches.get(0).getScore(), ItemMatch.EXACT);
+        assertEquals(matches.get(1).getScore(), ItemMatch.PREFIX);
+        assertEquals(journalIds(itemSearchIndex.search("bucks", 10)), List.of(1L));
+        assertEquals(itemSearchIndex.search("bucks", 10).get(0).getScore(), ItemMatch.SUBSTRING);
+        assertEquals(journalIds(itemSearchIndex.search("mcdonald s", 10)), List.of(4L));
+        assertTrue(itemSearchIndex.search("tea coffee", 10).isEmpty());
+    }
+
+    @Test
+    void short_search_matches_word_prefixes() {
+        assertEquals(journalIds(itemSearchIndex.search("t", 10)), List.of(3L, 2L));
+        assertEquals(journalIds(itemSearchIndex.search("co", 2)), List.of(5L, 3L));
+        assertTrue(itemSearchIndex.search(" ", 10).isEmpty());
+    }
+
+    @Test
+    void update_after_setItem() {
+        IncomeStatementAccount food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
+        BalanceSheetAccount bank = new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "100", false);
+        JournalEntry journalEntry = new JournalEntry(1L, LocalDate.of(2021, 1, 1), "Starbucks Coffee", Recurrence.N, null, "SGD", "5", food, bank, null, null, null);
+        journalEntry.setItem("Starbucks Reserve");
+        itemSearchIndex.update(journalEntry);
+        assertEquals(journalIds(itemSearchIndex.search("coffee", 10)), List.of(5L, 3L, 2L));
+        assertEquals(journalIds(itemSearchIndex.search("reserve", 10)), List.of(1L));
+
+        itemSearchIndex.remove(1L);
+        assertTrue(itemSearchIndex.search("starbucks", 10).isEmpty());
+        assertEquals(itemSearchIndex.size(), 4);
+    }
+
+    private static List<Long> journalIds(List<ItemMatch> matches) {
+        return matches.stream().map(ItemMatch::getJournalId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,194 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Recurrence;
+import com.hevlar.accounting.repository.IdempotencyKeyData;
+import com.hevlar.accounting.repository.IdempotencyKeyDataRepository;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.repository.JournalLog;
+import com.hevlar.accounting.repository.JournalLogRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+@ExtendWith(MockitoExtension.class)
+class JournalLogProjectorTest {
+
+    @Mock
+    JournalEntryDataRepository journalEntryDataRepository;
+
+    @Mock
+    IdempotencyKeyDataRepository idempotencyKeyDataRepository;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path directory;
+
+    private final List<JournalEntryData> projected = new ArrayList<>();
+    private JournalLog journalLog;
+    private IdempotencyGuard idempotencyGuard;
+    private JournalLogProjector projector;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journalLog = new JournalLog(directory, 64 * 1024);
+        idempotencyGuard = new IdempotencyGuard(idempotencyKeyDataRepository, 1000, 0.01);
+        projector = new JournalLogProjector(journalLog, journalEntryDataRepository, new TransactionTemplate(transactionManager),
+                idempotencyGuard, directory.resolve("projected.checkpoint"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        projector.close();
+        journalLog.close();
+    }
+
+    private static JournalEntryData entry(long journalId) {
+        return new JournalEntryData(journalId, LocalDate.of(2021, 6, 1), "Lunch " + journalId, Recurrence.N,
+                null, "SGD", new BigDecimal("12.50"), "Food", "Cash", null, null, null, false);
+    }
+
+    private void append(long... journalIds) throws Exception {
+        for(long journalId : journalIds) journalLog.append(entry(journalId)).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void entry_appended_twice_is_projected_once() throws Exception {
+        append(1, 2, 1);
+        recordProjections();
+        assertEquals(projector.projectAvailable(), 3);
+        assertEquals(projected.size(), 2);
+        assertEquals(projected.get(0).getJournalId(), 1L);
+        assertEquals(projected.get(1).getJournalId(), 2L);
+        assertEquals(projector.getProjectedSequence(), 3);
+    }
+
+    @Test
+    void idempotency_key_is_inserted_with_its_entry() throws Exception {
+        journalLog.appendAllDurably(List.of(new JournalLogRecord(entry(1), "feed-1"), new JournalLogRecord(entry(2), null)));
+        idempotencyGuard.logged("feed-1", 1L);
+        recordProjections();
+        List<IdempotencyKeyData> keys = new ArrayList<>();
+        Mockito.doAnswer(invocation -> {
+            Iterable<IdempotencyKeyData> inserted = invocation.getArgument(0);
+            inserted.forEach(keys::add);
+            return null;
+        }).when(idempotencyKeyDataRepository).persistAll(any());
+
+        assertEquals(idempotencyGuard.findPostedJournalId("feed-1"), 1L);
+        assertEquals(projector.projectAvailable(), 2);
+        assertEquals(projected.size(), 2);
+        assertEquals(keys.size(), 1);
+        assertEquals(keys.get(0).getIdempotencyKey(), "feed-1");
+        assertEquals(keys.get(0).getJournalId(), 1L);
+        // the key is looked up in the key table once it is projected
+        Mockito.when(idempotencyKeyDataRepository.findById("feed-1")).thenReturn(Optional.empty());
+        assertNull(idempotencyGuard.findPostedJournalId("feed-1"));
+    }
+
+    @Test
+    void rejected_record_is_dead_lettered_and_later_records_are_projected() throws Exception {
+        append(1, 2, 3);
+        Mockito.doAnswer(invocation -> {
+            Iterable<JournalEntryData> entries = invocation.getArgument(0);
+            List<JournalEntryData> inserting = new ArrayList<>();
+            entries.forEach(inserting::add);
+            if(inserting.stream().anyMatch(journalEntryData -> journalEntryData.getJournalId() == 2L)) throw new DataIntegrityViolationException("Value too long");
+            projected.addAll(inserting);
+            return null;
+        }).when(journalEntryDataRepository).persistAll(any());
+
+        assertEquals(projector.projectAvailable(), 3);
+        assertEquals(projected.size(), 2);
+        assertEquals(projected.get(0).getJournalId(), 1L);
+        assertEquals(projected.get(1).getJournalId(), 3L);
+        assertEquals(projector.getProjectedSequence(), 3);
+        assertEquals(projector.getDeadLetters(), 1);
+        List<String> deadLetters = Files.readAllLines(directory.resolve("projected.checkpoint.dead-letter"), StandardCharsets.UTF_8);
+        assertEquals(deadLetters.size(), 1);
+        assertTrue(deadLetters.get(0).startsWith("1\t2\t"));
+    }
+
+    @Test
+    void replayed_entry_is_skipped_and_other_entry_with_its_journal_id_is_dead_lettered() throws Exception {
+        append(1, 2);
+        JournalEntryData other = entry(3);
+        other.setJournalId(2L);
+        journalLog.append(other).get(5, TimeUnit.SECONDS);
+        recordProjections();
+        // entry 1 was projected before the checkpoint was written, with the scale of the amount column
+        JournalEntryData inTable = entry(1);
+        inTable.setAmount(new BigDecimal("12.500"));
+        Mockito.when(journalEntryDataRepository.findAllById(any())).thenReturn(List.of(inTable));
+
+        assertEquals(projector.projectAvailable(), 3);
+        assertEquals(projected.size(), 1);
+        assertEquals(projected.get(0).getJournalId(), 2L);
+        assertEquals(projected.get(0).getItem(), "Lunch 2");
+        assertEquals(projector.getDeadLetters(), 1);
+        List<String> deadLetters = Files.readAllLines(directory.resolve("projected.checkpoint.dead-letter"), StandardCharsets.UTF_8);
+        assertEquals(deadLetters.size(), 1);
+        assertTrue(deadLetters.get(0).startsWith("2\t2\t"));
+    }
+
+    @Test
+    void max_journal_id_is_read_from_the_records_not_projected_and_the_dead_letters() throws Exception {
+        append(2, 9, 4);
+        assertEquals(projector.findMaxJournalId(), 9L);
+        Mockito.doAnswer(invocation -> {
+            Iterable<JournalEntryData> entries = invocation.getArgument(0);
+            for(JournalEntryData journalEntryData : entries){
+                if(journalEntryData.getJournalId() == 9L) throw new DataIntegrityViolationException("Value too long");
+            }
+            return null;
+        }).when(journalEntryDataRepository).persistAll(any());
+        projector.projectAvailable();
+        // entries 2 and 4 are in the table, and entry 9 is only in the dead letters
+        assertEquals(projector.findMaxJournalId(), 9L);
+    }
+
+    @Test
+    void other_failure_is_retried_from_the_same_batch() throws Exception {
+        append(1, 2);
+        Mockito.doThrow(new IllegalStateException("Database unavailable")).when(journalEntryDataRepository).persistAll(any());
+        assertThrows(IllegalStateException.class, () -> projector.projectAvailable());
+        assertEquals(projector.getProjectedSequence(), 0);
+        assertEquals(projector.getDeadLetters(), 0);
+
+        recordProjections();
+        assertEquals(projector.projectAvailable(), 2);
+        assertEquals(projected.size(), 2);
+    }
+
+    private void recordProjections() {
+        Mockito.doAnswer(invocation -> {
+            Iterable<JournalEntryData> entries = invocation.getArgument(0);
+            entries.forEach(projected::add);
+            return null;
+        }).when(journalEntryDataRepository).persistAll(any());
+    }
+}
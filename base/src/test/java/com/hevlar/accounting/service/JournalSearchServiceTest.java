@@ -0,0 +1,33 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Recurrence;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataEvent;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class JournalSearchServiceTest {
+
+    @Mock
+    JournalEntryDataRepository journalEntryDataRepository;
+
+    @Test
+    void written_and_removed_rows_are_indexed() {
+        JournalSearchService journalSearchService = new JournalSearchService(journalEntryDataRepository);
+        JournalEntryData coffee = new JournalEntryData(1L, LocalDate.of(2021, 1, 10), "Starbucks coffee", Recurrence.N, null,
+                "SGD", new BigDecimal("6"), "Food", "Bank", null, null, null, false);
+        journalSearchService.onJournalEntryData(JournalEntryDataEvent.written(coffee));
+        assertEquals(journalSearchService.search("starb", 10).size(), 1);
+        journalSearchService.onJournalEntryData(JournalEntryDataEvent.removed(coffee));
+        assertTrue(journalSearchService.search("starb", 10).isEmpty());
+    }
+}
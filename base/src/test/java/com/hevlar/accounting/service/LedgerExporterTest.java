@@ -0,0 +1,54 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Recurrence;
+import com.hevlar.accounting.repository.JournalEntryData;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerExporterTest {
+
+    private final LedgerExporter ledgerExporter = new LedgerExporter(null);
+
+    @Test
+    void write_csv() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<JournalEntryData> written = new ArrayList<>();
+        long count = ledgerExporter.write(entries(), LedgerExporter.Format.CSV, output, written::add);
+        assertEquals(count, 2);
+        assertEquals(written.size(), 2);
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(lines.length, 3);
+        assertEquals(lines[0], "journalId,txDate,item,recurrence,tags,currency,amount,debitAccount,creditAccount,postDate,debitStatementDate,creditStatementDate,locked");
+        assertEquals(lines[1], "1,2021-01-10,\"Lunch, \"\"Toast Box\"\"\",N,\"#food,#lunch\",SGD,10.50,Food,Bank,2021-01-11,,,false");
+        assertEquals(lines[2], "2,2021-01-12,Dinner,N,,SGD,20,Food,Bank,,,,false");
+    }
+
+    @Test
+    void write_ndjson() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(ledgerExporter.write(entries(), LedgerExporter.Format.NDJSON, output, entry -> {}), 2);
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(lines.length, 2);
+        assertEquals(lines[0], "{\"journalId\":1,\"txDate\":\"2021-01-10\",\"item\":\"Lunch, \\\"Toast Box\\\"\",\"recurrence\":\"N\",\"tags\":[\"#food\",\"#lunch\"]," +
+                "\"currency\":\"SGD\",\"amount\":10.50,\"debitAccount\":\"Food\",\"creditAccount\":\"Bank\",\"postDate\":\"2021-01-11\",\"locked\":false}");
+        assertTrue(output.toString(StandardCharsets.UTF_8).endsWith("\"locked\":false}\n"));
+    }
+
+    private static Stream<JournalEntryData> entries() {
+        return Stream.of(
+                new JournalEntryData(1L, LocalDate.of(2021, 1, 10), "Lunch, \"Toast Box\"", Recurrence.N, new String[]{"#food", "#lunch"}, "SGD",
+                        new BigDecimal("10.50"), "Food", "Bank", LocalDate.of(2021, 1, 11), null, null, false),
+                new JournalEntryData(2L, LocalDate.of(2021, 1, 12), "Dinner", Recurrence.N, null, "SGD",
+                        new BigDecimal("20"), "Food", "Bank", null, null, null, false));
+    }
+}
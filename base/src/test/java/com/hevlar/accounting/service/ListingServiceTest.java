@@ -0,0 +1,80 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.model.Recurrence;
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.repository.AccountDataRepository;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class ListingServiceTest {
+
+    @Mock
+    AccountDataRepository accountDataRepository;
+
+    @Mock
+    JournalEntryDataRepository journalEntryDataRepository;
+
+    private ListingService listingService;
+
+    @BeforeEach
+    void setUp() {
+        listingService = new ListingService(accountDataRepository, journalEntryDataRepository);
+    }
+
+    @Test
+    void accounts_continue_after_last_name() {
+        Mockito.when(accountDataRepository.findAllByOrderByNameAsc(PageRequest.of(0, 3))).thenReturn(List.of(account("Bank"), account("Cash"), account("Food")));
+        KeysetPage<AccountData> first = listingService.getAccounts(null, 2);
+        assertEquals(first.getItems().size(), 2);
+        assertNotNull(first.getNext());
+
+        Mockito.when(accountDataRepository.findByNameGreaterThanOrderByNameAsc("Cash", PageRequest.of(0, 3))).thenReturn(List.of(account("Food")));
+        KeysetPage<AccountData> second = listingService.getAccounts(first.getNext(), 2);
+        assertEquals(second.getItems().get(0).getName(), "Food");
+        assertNull(second.getNext());
+    }
+
+    @Test
+    void journal_entries_continue_after_last_key() {
+        Mockito.when(journalEntryDataRepository.findFirstPage(PageRequest.of(0, 2))).thenReturn(List.of(entry(7L, LocalDate.of(2021, 1, 5)), entry(3L, LocalDate.of(2021, 1, 6))));
+        KeysetPage<JournalEntryData> first = listingService.getJournalEntries(null, 1);
+        assertEquals(first.getItems().size(), 1);
+
+        Mockito.when(journalEntryDataRepository.findPageAfter(LocalDate.of(2021, 1, 5), 7L, PageRequest.of(0, 2))).thenReturn(List.of(entry(3L, LocalDate.of(2021, 1, 6))));
+        KeysetPage<JournalEntryData> second = listingService.getJournalEntries(first.getNext(), 1);
+        assertEquals(second.getItems().get(0).getJournalId(), 3L);
+        assertNull(second.getNext());
+    }
+
+    @Test
+    void invalid_tokens_and_sizes() {
+        String accountToken = listingService.getAccounts(null, 1).getNext();
+        assertNull(accountToken);
+        assertThrows(IllegalArgumentException.class, () -> listingService.getAccounts(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> listingService.getAccounts(null, ListingService.MAX_PAGE_SIZE + 1));
+        assertThrows(IllegalArgumentException.class, () -> listingService.getJournalEntries("bm90LWEtdG9rZW4", 10));
+    }
+
+    private static AccountData account(String name) {
+        return new AccountData(name, AccountGroup.EXPENSES, false);
+    }
+
+    private static JournalEntryData entry(Long journalId, LocalDate txDate) {
+        return new JournalEntryData(journalId, txDate, "Lunch", Recurrence.N, null, "SGD", new BigDecimal("10"), "Food", "Bank", null, null, null, false);
+    }
+}
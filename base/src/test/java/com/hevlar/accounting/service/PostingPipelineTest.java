@@ -0,0 +1,209 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.IdempotencyKeyData;
+import com.hevlar.accounting.repository.IdempotencyKeyDataRepository;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.repository.JournalLog;
+import com.hevlar.accounting.repository.JournalLogRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+@ExtendWith(MockitoExtension.class)
+class PostingPipelineTest {
+
+    @Mock
+    JournalEntryDataRepository journalEntryDataRepository;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Mock
+    IdempotencyKeyDataRepository idempotencyKeyDataRepository;
+
+    @Mock
+    ChartOfAccounts chartOfAccounts;
+
+    private final List<List<Long>> batches = new ArrayList<>();
+    private final List<JournalEntry> committed = new ArrayList<>();
+    private BalanceSheetAccount bank;
+    private IncomeStatementAccount food;
+
+    @BeforeEach
+    void setUp() {
+        bank = new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "100", false);
+        food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
+    }
+
+    @Test
+    void queued_entries_are_posted_in_one_batch() throws Exception {
+        recordBatches(null);
+        PostingPipeline pipeline = pipeline(10, 10);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for(long journalId = 1; journalId <= 3; journalId++) futures.add(pipeline.submit(entry(journalId)));
+        assertEquals(pipeline.getQueued(), 3);
+
+        assertEquals(pipeline.drain(), 3);
+        assertEquals(batches, List.of(List.of(1L, 2L, 3L)));
+        assertEquals(futures.get(2).get(), 3L);
+        assertEquals(committed.size(), 3);
+    }
+
+    @Test
+    void full_queue_is_rejected() {
+        PostingPipeline pipeline = pipeline(2, 10);
+        pipeline.submit(entry(1L));
+        pipeline.submit(entry(2L));
+        PostingQueueFullException exception = assertThrows(PostingQueueFullException.class, () -> pipeline.submit(entry(3L)));
+        assertEquals(exception.getCapacity(), 2);
+    }
+
+    @Test
+    void failed_batch_is_posted_one_at_a_time() {
+        recordBatches(2L);
+        PostingPipeline pipeline = pipeline(10, 10);
+        CompletableFuture<Long> first = pipeline.submit(entry(1L));
+        CompletableFuture<Long> failing = pipeline.submit(entry(2L));
+        CompletableFuture<Long> third = pipeline.submit(entry(3L));
+        pipeline.drain();
+        assertEquals(first.join(), 1L);
+        assertEquals(third.join(), 3L);
+        assertThrows(ExecutionException.class, failing::get);
+        assertEquals(batches, List.of(List.of(1L), List.of(3L)));
+    }
+
+    @Test
+    void writer_thread_posts_until_closed() throws Exception {
+        recordBatches(null);
+        PostingPipeline pipeline = pipeline(100, 5);
+        pipeline.start();
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for(long journalId = 1; journalId <= 12; journalId++) futures.add(pipeline.submit(entry(journalId)));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        pipeline.close();
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 5));
+        assertEquals(batches.stream().mapToInt(List::size).sum(), 12);
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(entry(13L)));
+    }
+
+    @Test
+    void idempotency_key_is_posted_once() {
+        recordBatches(null);
+        PostingPipeline pipeline = new PostingPipeline(journalEntryDataRepository, new TransactionTemplate(transactionManager), 10, 10,
+                committed::addAll, new IdempotencyGuard(idempotencyKeyDataRepository, 1000, 0.01));
+        CompletableFuture<Long> first = pipeline.submit(entry(1L), "feed-1");
+        assertSame(pipeline.submit(entry(2L), "feed-1"), first);
+        pipeline.drain();
+        assertEquals(first.join(), 1L);
+        assertEquals(batches, List.of(List.of(1L)));
+        Mockito.verify(idempotencyKeyDataRepository).persistAll(any());
+
+        Mockito.when(idempotencyKeyDataRepository.findById("feed-1")).thenReturn(Optional.of(new IdempotencyKeyData("feed-1", 1L)));
+        assertEquals(pipeline.submit(entry(3L), "feed-1").join(), 1L);
+        assertEquals(pipeline.getQueued(), 0);
+    }
+
+    @Test
+    void idempotency_key_posted_by_another_instance_gets_its_journal_id() {
+        recordBatches(null);
+        Mockito.doThrow(new IllegalStateException("Duplicate idempotency key")).when(idempotencyKeyDataRepository).persistAll(any());
+        Mockito.when(idempotencyKeyDataRepository.findById("feed-2")).thenReturn(Optional.of(new IdempotencyKeyData("feed-2", 7L)));
+        PostingPipeline pipeline = new PostingPipeline(journalEntryDataRepository, new TransactionTemplate(transactionManager), 10, 10,
+                committed::addAll, new IdempotencyGuard(idempotencyKeyDataRepository, 1000, 0.01));
+        CompletableFuture<Long> future = pipeline.submit(entry(1L), "feed-2");
+        pipeline.drain();
+        assertEquals(future.join(), 7L);
+    }
+
+    @Test
+    void journal_log_is_appended_instead_of_the_table(@TempDir Path directory) throws Exception {
+        try (JournalLog journalLog = new JournalLog(directory, 64 * 1024)) {
+            PostingPipeline pipeline = new PostingPipeline(journalEntryDataRepository, new TransactionTemplate(transactionManager), 10, 10,
+                    committed::addAll, new IdempotencyGuard(idempotencyKeyDataRepository, 1000, 0.01), journalLog);
+            CompletableFuture<Long> first = pipeline.submit(entry(1L), "feed-3");
+            CompletableFuture<Long> second = pipeline.submit(entry(2L));
+            pipeline.drain();
+            assertEquals(first.join(), 1L);
+            assertEquals(second.join(), 2L);
+            assertEquals(committed.size(), 2);
+            assertEquals(journalLog.getDurableSequence(), 2);
+
+            List<JournalLogRecord> records = journalLog.reader(0).nextRecords(10);
+            assertEquals(records.get(0).getJournalEntryData().getJournalId(), 1L);
+            assertEquals(records.get(0).getIdempotencyKey(), "feed-3");
+            assertNull(records.get(1).getIdempotencyKey());
+            // the key is found before the projector inserts it into the key table
+            assertEquals(pipeline.submit(entry(3L), "feed-3").join(), 1L);
+            Mockito.verifyNoInteractions(journalEntryDataRepository, idempotencyKeyDataRepository);
+        }
+    }
+
+    @Test
+    void entry_of_an_account_not_in_the_chart_is_not_appended(@TempDir Path directory) throws Exception {
+        Mockito.when(chartOfAccounts.getSnapshot()).thenReturn(ChartSnapshot.of(List.of(
+                new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100"), false),
+                new AccountData("Food", AccountGroup.EXPENSES, false))));
+        try (JournalLog journalLog = new JournalLog(directory, 64 * 1024)) {
+            PostingPipeline pipeline = new PostingPipeline(journalEntryDataRepository, new TransactionTemplate(transactionManager), 10, 10,
+                    committed::addAll, null, journalLog, new JournalEntryValidator(chartOfAccounts));
+            // deleted after the entry was submitted
+            IncomeStatementAccount travel = new IncomeStatementAccount("Travel", AccountGroup.EXPENSES, false);
+            CompletableFuture<Long> deleted = pipeline.submit(new JournalEntry(1L, LocalDate.of(2021, 1, 10), "Taxi", Recurrence.N, null, "SGD", "10", travel, bank, null, null, null));
+            CompletableFuture<Long> valid = pipeline.submit(entry(2L));
+            pipeline.drain();
+            ExecutionException exception = assertThrows(ExecutionException.class, deleted::get);
+            assertTrue(exception.getCause() instanceof IllegalArgumentException);
+            assertEquals(valid.join(), 2L);
+            assertEquals(committed.size(), 1);
+            List<JournalLogRecord> records = journalLog.reader(0).nextRecords(10);
+            assertEquals(records.size(), 1);
+            assertEquals(records.get(0).getJournalEntryData().getJournalId(), 2L);
+        }
+    }
+
+    private PostingPipeline pipeline(int capacity, int batchSize) {
+        return new PostingPipeline(journalEntryDataRepository, new TransactionTemplate(transactionManager), capacity, batchSize, committed::addAll);
+    }
+
+    /**
+     * Records the journal ids of each batch posted, failing the batches with the journal id
+     */
+    private void recordBatches(Long failingJournalId) {
+        Mockito.doAnswer(invocation -> {
+            List<Long> journalIds = new ArrayList<>();
+            Iterable<JournalEntryData> entries = invocation.getArgument(0);
+            entries.forEach(entry -> journalIds.add(entry.getJournalId()));
+            if(journalIds.contains(failingJournalId)) throw new IllegalStateException("Duplicate journal id");
+            synchronized (batches) {
+                batches.add(journalIds);
+            }
+            return null;
+        }).when(journalEntryDataRepository).persistAll(any());
+    }
+
+    private JournalEntry entry(Long journalId) {
+        return new JournalEntry(journalId, LocalDate.of(2021, 1, 10), "Lunch", Recurrence.N, null, "SGD", "10", food, bank, null, null, null);
+    }
+}
@@ -0,0 +1,106 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+import com.hevlar.accounting.repository.RecurrenceWatermarkData;
+import com.hevlar.accounting.repository.RecurrenceWatermarkDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+class RecurrenceEngineTest {
+
+    private RecurrenceEngine recurrenceEngine;
+    private JournalEntry rent;
+    private JournalEntry coffee;
+
+    @BeforeEach
+    void setUp() {
+        recurrenceEngine = new RecurrenceEngine();
+        rent = entry(1L, LocalDate.of(2021, 1, 31), Recurrence.M);
+        coffee = entry(2L, LocalDate.of(2021, 1, 1), Recurrence.D);
+    }
+
+    @Test
+    void occurrences_within_window() {
+        List<LocalDate> dates = recurrenceEngine.occurrences(rent, LocalDate.of(2021, 2, 1), LocalDate.of(2021, 5, 31))
+                .map(Occurrence::getDate)
+                .collect(Collectors.toList());
+        assertEquals(dates, List.of(LocalDate.of(2021, 2, 28), LocalDate.of(2021, 3, 31), LocalDate.of(2021, 4, 30), LocalDate.of(2021, 5, 31)));
+        assertEquals(recurrenceEngine.occurrences(entry(3L, LocalDate.of(2021, 1, 1), Recurrence.N), LocalDate.of(2021, 1, 2), LocalDate.of(2021, 12, 31)).count(), 0);
+    }
+
+    @Test
+    void occurrences_are_lazy() {
+        JournalEntry forever = entry(3L, LocalDate.of(2021, 1, 1), Recurrence.D);
+        assertEquals(recurrenceEngine.occurrences(forever, LocalDate.of(2021, 1, 1), LocalDate.MAX).limit(3).count(), 3);
+        assertEquals(recurrenceEngine.occurrences(List.of(rent, forever), LocalDate.of(2021, 1, 1), LocalDate.MAX).limit(3).count(), 3);
+    }
+
+    @Test
+    void occurrences_of_entries_are_merged_by_date() {
+        List<Occurrence> occurrences = recurrenceEngine.occurrences(List.of(rent, coffee), LocalDate.of(2021, 2, 27), LocalDate.of(2021, 3, 1))
+                .collect(Collectors.toList());
+        assertEquals(occurrences.size(), 4);
+        assertEquals(occurrences.get(0).getDate(), LocalDate.of(2021, 2, 27));
+        assertEquals(occurrences.get(1).getJournalEntry(), rent);
+        assertEquals(occurrences.get(2).getJournalEntry(), coffee);
+        assertEquals(occurrences.get(3).getDate(), LocalDate.of(2021, 3, 1));
+    }
+
+    @Test
+    void scheduler_posts_each_occurrence_once() {
+        RecurrenceScheduler scheduler = new RecurrenceScheduler(recurrenceEngine);
+        List<JournalEntry> posted = new ArrayList<>();
+        assertEquals(scheduler.postDue(List.of(rent, coffee), LocalDate.of(2021, 1, 3), occurrence -> posted.add(occurrence.toJournalEntry(100L + posted.size()))), 2);
+        assertEquals(scheduler.postDue(List.of(rent, coffee), LocalDate.of(2021, 1, 3), occurrence -> posted.add(occurrence.toJournalEntry(100L + posted.size()))), 0);
+        assertEquals(scheduler.postDue(List.of(rent, coffee), LocalDate.of(2021, 2, 28), occurrence -> posted.add(occurrence.toJournalEntry(100L + posted.size()))), 57);
+        assertEquals(scheduler.getWatermark(1L), 1);
+        assertEquals(scheduler.getWatermark(2L), 58);
+        assertEquals(posted.get(0).getTxDate(), LocalDate.of(2021, 1, 2));
+        assertEquals(posted.get(0).getRecurrence(), Recurrence.N);
+    }
+
+    @Test
+    void scheduler_watermarks_survive_restart() {
+        RecurrenceWatermarkDataRepository repository = Mockito.mock(RecurrenceWatermarkDataRepository.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+        List<RecurrenceWatermarkData> saved = new ArrayList<>();
+        Mockito.when(repository.save(any())).thenAnswer(invocation -> {
+            saved.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        RecurrenceScheduler scheduler = new RecurrenceScheduler(recurrenceEngine, repository, transactionTemplate);
+        assertEquals(scheduler.postDue(List.of(rent, coffee), LocalDate.of(2021, 1, 3), occurrence -> {}), 2);
+        assertEquals(saved.size(), 2);
+        assertEquals(saved.get(1).getLastIndex(), 2);
+
+        Mockito.when(repository.findAll()).thenReturn(List.of(saved.get(1)));
+        RecurrenceScheduler restarted = new RecurrenceScheduler(recurrenceEngine, repository, transactionTemplate);
+        assertEquals(restarted.load(), 1);
+        assertEquals(restarted.postDue(List.of(rent, coffee), LocalDate.of(2021, 1, 3), occurrence -> {}), 0);
+    }
+
+    @Test
+    void scheduler_rejects_recurring_entry_without_journal_id() {
+        JournalEntry withoutId = Mockito.mock(JournalEntry.class);
+        Mockito.when(withoutId.getRecurrence()).thenReturn(Recurrence.D);
+        RecurrenceScheduler scheduler = new RecurrenceScheduler(recurrenceEngine);
+        assertThrows(IllegalArgumentException.class, () -> scheduler.postDue(List.of(withoutId), LocalDate.of(2021, 1, 3), occurrence -> {}));
+    }
+
+    private JournalEntry entry(Long journalId, LocalDate txDate, Recurrence recurrence) {
+        IncomeStatementAccount expense = new IncomeStatementAccount("Expense", AccountGroup.EXPENSES, false);
+        BalanceSheetAccount bank = new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "0", false);
+        return new JournalEntry(journalId, txDate, "Item", recurrence, null, "SGD", "10", expense, bank, null, null, null);
+    }
+}
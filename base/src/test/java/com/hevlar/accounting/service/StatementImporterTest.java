@@ -0,0 +1,225 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.repository.IdempotencyKeyData;
+import com.hevlar.accounting.repository.IdempotencyKeyDataRepository;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import com.hevlar.accounting.repository.JournalLog;
+import com.hevlar.accounting.repository.JournalLogRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+@ExtendWith(MockitoExtension.class)
+class StatementImporterTest {
+
+    @Mock
+    ChartOfAccounts chartOfAccounts;
+
+    @Mock
+    JournalEntryDataRepository journalEntryDataRepository;
+
+    @Mock
+    IdempotencyKeyDataRepository idempotencyKeyDataRepository;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path directory;
+
+    private final List<JournalEntryData> posted = new ArrayList<>();
+    private ExecutorService parsers;
+    private StatementImporter importer;
+    private StatementMapping mapping;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(chartOfAccounts.getSnapshot()).thenReturn(ChartSnapshot.of(List.of(
+                new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100"), false),
+                new AccountData("Food", AccountGroup.EXPENSES, false),
+                new AccountData("Salary", AccountGroup.REVENUE, false)
+        )));
+        parsers = Executors.newFixedThreadPool(2);
+        importer = new StatementImporter(chartOfAccounts, journalEntryDataRepository, new TransactionTemplate(transactionManager),
+                new JournalIdGenerator(100), parsers, 2);
+        mapping = new StatementMapping("Bank", "Food", "Salary");
+    }
+
+    @AfterEach
+    void tearDown() {
+        parsers.shutdownNow();
+    }
+
+    @Test
+    void import_csv() throws IOException {
+        Path file = write("statement.csv",
+                "Date,Description,Amount\r\n" +
+                "2021-02-01,\"Starbucks, Orchard\",-5.50\r\n" +
+                "2021-02-02,Refund,0\r\n" +
+                "2021-02-25,Salary,\"3,000.00\"\r\n");
+        recordPosts();
+        List<ImportProgress> progress = new ArrayList<>();
+
+        ImportProgress result = importer.importFile(file, mapping, 0, progress::add);
+        assertTrue(result.isDone());
+        assertEquals(result.getEntries(), 2);
+        assertEquals(progress.get(progress.size() - 1).getOffset(), Files.size(file));
+        assertEquals(posted.size(), 2);
+
+        JournalEntryData starbucks = posted.get(0);
+        assertEquals(starbucks.getJournalId(), 101L);
+        assertEquals(starbucks.getItem(), "Starbucks, Orchard");
+        assertEquals(starbucks.getAmount(), new BigDecimal("5.50"));
+        assertEquals(starbucks.getDebitAccount(), "Food");
+        assertEquals(starbucks.getCreditAccount(), "Bank");
+
+        JournalEntryData salary = posted.get(1);
+        assertEquals(salary.getJournalId(), 102L);
+        assertEquals(salary.getAmount(), new BigDecimal("3000.00"));
+        assertEquals(salary.getDebitAccount(), "Bank");
+        assertEquals(salary.getCreditAccount(), "Salary");
+    }
+
+    @Test
+    void import_ofx() throws IOException {
+        Path file = write("statement.ofx",
+                "OFXHEADER:100\n<OFX>\n<BANKTRANLIST>\n" +
+                "<STMTTRN>\n<TRNTYPE>DEBIT\n<DTPOSTED>20210203120000\n<TRNAMT>-12.30\n<NAME>Toast Box\n</STMTTRN>\n" +
+                "<STMTTRN>\n<TRNTYPE>CREDIT\n<DTPOSTED>20210225\n<TRNAMT>100\n<MEMO>Interest\n</STMTTRN>\n" +
+                "</BANKTRANLIST>\n</OFX>\n");
+        recordPosts();
+        assertEquals(importer.importFile(file, mapping).getEntries(), 2);
+        assertEquals(posted.get(0).getTxDate(), LocalDate.of(2021, 2, 3));
+        assertEquals(posted.get(0).getItem(), "Toast Box");
+        assertEquals(posted.get(1).getItem(), "Interest");
+        assertEquals(posted.get(1).getCreditAccount(), "Salary");
+    }
+
+    @Test
+    void resume_from_offset() throws IOException {
+        String header = "Date,Description,Amount\n";
+        String first = "2021-02-01,Lunch,-5\n";
+        Path file = write("statement.csv", header + first + "2021-02-02,Dinner,-8\n");
+        recordPosts();
+        long offset = (header + first).getBytes(StandardCharsets.UTF_8).length;
+        ImportProgress result = importer.importFile(file, mapping, offset, progress -> {});
+        assertEquals(result.getEntries(), 1);
+        assertEquals(posted.get(0).getItem(), "Dinner");
+    }
+
+    @Test
+    void reimport_skips_chunks_already_posted() throws IOException {
+        Path file = write("statement.csv", "Date,Description,Amount\n2021-02-01,Lunch,-5\n2021-02-02,Dinner,-8\n");
+        recordPosts();
+        Map<String, IdempotencyKeyData> keys = new HashMap<>();
+        Mockito.doAnswer(invocation -> {
+            Iterable<IdempotencyKeyData> inserted = invocation.getArgument(0);
+            inserted.forEach(key -> keys.put(key.getIdempotencyKey(), key));
+            return null;
+        }).when(idempotencyKeyDataRepository).persistAll(any());
+        Mockito.when(idempotencyKeyDataRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(keys.get(invocation.<String>getArgument(0))));
+        StatementImporter guarded = new StatementImporter(chartOfAccounts, journalEntryDataRepository, new TransactionTemplate(transactionManager),
+                new JournalIdGenerator(100), new IdempotencyGuard(idempotencyKeyDataRepository, 1000, 0.01), parsers, 2);
+
+        assertEquals(guarded.importFile(file, mapping).getEntries(), 2);
+        assertEquals(keys.size(), 1);
+        assertEquals(keys.values().iterator().next().getJournalId(), 101L);
+
+        ImportProgress repeated = guarded.importFile(file, mapping);
+        assertTrue(repeated.isDone());
+        assertEquals(repeated.getEntries(), 0);
+        assertEquals(posted.size(), 2);
+    }
+
+    @Test
+    void chunks_are_appended_to_the_journal_log() throws IOException {
+        Path file = write("statement.csv", "Date,Description,Amount\n2021-02-01,Lunch,-5\n2021-02-02,Dinner,-8\n");
+        try (JournalLog journalLog = new JournalLog(directory.resolve("journal"), 64 * 1024)) {
+            IdempotencyGuard idempotencyGuard = new IdempotencyGuard(idempotencyKeyDataRepository, 1000, 0.01);
+            StatementImporter logged = new StatementImporter(chartOfAccounts, journalEntryDataRepository, new TransactionTemplate(transactionManager),
+                    new JournalIdGenerator(100), idempotencyGuard, journalLog, parsers, 2);
+
+            assertEquals(logged.importFile(file, mapping).getEntries(), 2);
+            List<JournalLogRecord> records = journalLog.reader(0).nextRecords(10);
+            assertEquals(records.size(), 2);
+            assertEquals(records.get(0).getJournalEntryData().getItem(), "Lunch");
+            assertNotNull(records.get(0).getIdempotencyKey());
+            assertNull(records.get(1).getIdempotencyKey());
+
+            assertEquals(logged.importFile(file, mapping).getEntries(), 0);
+            assertEquals(journalLog.getNextSequence(), 2);
+            Mockito.verifyNoInteractions(journalEntryDataRepository, idempotencyKeyDataRepository);
+        }
+    }
+
+    @Test
+    void imported_entries_are_posted_to_the_balances() throws IOException {
+        Path file = write("statement.csv", "Date,Description,Amount\n2021-02-01,Lunch,-5.50\n2021-02-25,Salary,3000\n");
+        recordPosts();
+        Mockito.when(journalEntryDataRepository.streamAll()).thenReturn(Stream.empty());
+        BalanceService balanceService = new BalanceService(journalEntryDataRepository, chartOfAccounts, new BalanceEngine(), new BalanceIndex());
+        balanceService.rebuild();
+        StatementImporter posting = new StatementImporter(chartOfAccounts, journalEntryDataRepository, new TransactionTemplate(transactionManager),
+                new JournalIdGenerator(100), null, null, journalEntries -> journalEntries.forEach(balanceService::post), parsers, 2);
+
+        assertEquals(posting.importFile(file, mapping).getEntries(), 2);
+        assertEquals(balanceService.getBalanceEngine().getBalance("Bank"), new BigDecimal("3094.50"));
+        assertEquals(balanceService.getBalanceEngine().getBalance("Food"), new BigDecimal("5.50"));
+        assertEquals(balanceService.getBalanceIndex().getBalance("Bank", LocalDate.of(2021, 2, 10)), new BigDecimal("94.50"));
+    }
+
+    @Test
+    void invalid_record_is_not_posted() throws IOException {
+        Path file = write("statement.csv", "Date,Description,Amount\n2021-02-01,Lunch,abc\n");
+        assertThrows(IllegalArgumentException.class, () -> importer.importFile(file, mapping));
+        Mockito.verifyNoInteractions(journalEntryDataRepository);
+    }
+
+    @Test
+    void unknown_account() throws IOException {
+        Path file = write("statement.csv", "Date,Description,Amount\n");
+        assertThrows(IllegalArgumentException.class, () -> importer.importFile(file, new StatementMapping("Card", "Food", "Salary")));
+    }
+
+    private void recordPosts() {
+        Mockito.doAnswer(invocation -> {
+            Iterable<JournalEntryData> entries = invocation.getArgument(0);
+            entries.forEach(posted::add);
+            return null;
+        }).when(journalEntryDataRepository).persistAll(any());
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagIndexTest {
+
+    private BalanceSheetAccount bank;
+    private IncomeStatementAccount food;
+    private TagIndex tagIndex;
+
+    @BeforeEach
+    void setUp() {
+        bank = new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "100", false);
+        food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
+        tagIndex = new TagIndex();
+        tagIndex.update(entry(1L, LocalDate.of(2021, 1, 10), "#food", "#lunch"));
+        tagIndex.update(entry(2L, LocalDate.of(2021, 2, 10), "#food", "#dinner"));
+        tagIndex.update(entry(3L, LocalDate.of(2021, 4, 10), "#food", "#lunch", "#work"));
+        tagIndex.update(entry(4L, LocalDate.of(2021, 4, 11)));
+    }
+
+    @Test
+    void find_and_or_not() {
+        assertArrayEquals(tagIndex.find(TagQuery.tag("#food").and(TagQuery.tag("#lunch"))).toArray(), new long[]{1, 3});
+        assertArrayEquals(tagIndex.find(TagQuery.tag("#dinner").or(TagQuery.tag("#work"))).toArray(), new long[]{2, 3});
+        assertArrayEquals(tagIndex.find(TagQuery.tag("#food").andNot(TagQuery.tag("#work"))).toArray(), new long[]{1, 2});
+        assertArrayEquals(tagIndex.find(TagQuery.not(TagQuery.tag("#lunch"))).toArray(), new long[]{2, 4});
+        assertTrue(tagIndex.find(TagQuery.tag("#unknown")).isEmpty());
+    }
+
+    @Test
+    void find_within_period() {
+        TagQuery query = TagQuery.tag("#food").and(TagQuery.tag("#lunch"));
+        assertArrayEquals(tagIndex.find(query, LocalDate.of(2021, 4, 1), LocalDate.of(2021, 6, 30)).toArray(), new long[]{3});
+    }
+
+    @Test
+    void update_after_setTags() {
+        JournalEntry journalEntry = entry(1L, LocalDate.of(2021, 1, 10), "#food", "#lunch");
+        journalEntry.setTags(new String[]{"#food", "#work"});
+        tagIndex.update(journalEntry);
+        assertArrayEquals(tagIndex.getPostings("#lunch").toArray(), new long[]{3});
+        assertArrayEquals(tagIndex.getPostings("#work").toArray(), new long[]{1, 3});
+        assertEquals(tagIndex.getTags(), Set.of("#food", "#dinner", "#lunch", "#work"));
+    }
+
+    @Test
+    void remove() {
+        tagIndex.remove(2L);
+        assertArrayEquals(tagIndex.getPostings("#food").toArray(), new long[]{1, 3});
+        assertFalse(tagIndex.getTags().contains("#dinner"));
+        assertArrayEquals(tagIndex.find(TagQuery.not(TagQuery.tag("#food"))).toArray(), new long[]{4});
+    }
+
+    @Test
+    void pending_changes_are_merged() {
+        for(long journalId = 100; journalId < 400; journalId++) tagIndex.update(entry(journalId, LocalDate.of(2021, 5, 1), "#bulk"));
+        for(long journalId = 100; journalId < 400; journalId += 2) tagIndex.remove(journalId);
+        assertEquals(tagIndex.getPostings("#bulk").size(), 150);
+        assertTrue(tagIndex.getPostings("#bulk").contains(399));
+    }
+
+    private JournalEntry entry(Long journalId, LocalDate txDate, String... tags) {
+        return new JournalEntry(journalId, txDate, "Lunch", Recurrence.N, tags.length == 0 ? null : tags, "SGD", "10", food, bank, null, null, null);
+    }
+}
@@ -0,0 +1,55 @@
+package com.hevlar.accounting.service;
+
+import com.hevlar.accounting.model.Recurrence;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.repository.JournalEntryDataEvent;
+import com.hevlar.accounting.repository.JournalEntryDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class TagSearchServiceTest {
+
+    @Mock
+    JournalEntryDataRepository journalEntryDataRepository;
+
+    @Mock
+    JournalEntryDataRepository.JournalTags lunch;
+
+    private TagSearchService tagSearchService;
+
+    @BeforeEach
+    void setUp() {
+        tagSearchService = new TagSearchService(journalEntryDataRepository);
+    }
+
+    @Test
+    void rebuild_indexes_the_tags_of_all_entries() {
+        Mockito.when(lunch.getJournalId()).thenReturn(1L);
+        Mockito.when(lunch.getTags()).thenReturn(new String[]{"#food", "#lunch"});
+        Mockito.when(lunch.getTxDate()).thenReturn(LocalDate.of(2021, 1, 10));
+        Mockito.when(journalEntryDataRepository.streamTags()).thenReturn(Stream.of(lunch));
+        assertEquals(tagSearchService.rebuild(), 1);
+        assertArrayEquals(tagSearchService.find(TagQuery.tag("#lunch")).toArray(), new long[]{1});
+    }
+
+    @Test
+    void written_and_removed_rows_are_indexed() {
+        JournalEntryData dinner = new JournalEntryData(2L, LocalDate.of(2021, 2, 10), "Dinner", Recurrence.N, new String[]{"#food", "#dinner"},
+                "SGD", new BigDecimal("20"), "Food", "Bank", null, null, null, false);
+        tagSearchService.onJournalEntryData(JournalEntryDataEvent.written(dinner));
+        assertArrayEquals(tagSearchService.find(TagQuery.tag("#dinner"), LocalDate.of(2021, 2, 1), LocalDate.of(2021, 2, 28)).toArray(), new long[]{2});
+        tagSearchService.onJournalEntryData(JournalEntryDataEvent.removed(dinner));
+        assertTrue(tagSearchService.find(TagQuery.tag("#food")).isEmpty());
+    }
+}
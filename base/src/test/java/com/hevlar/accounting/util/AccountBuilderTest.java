@@ -16,7 +16,7 @@ class AccountBuilderTest {
     void build_IncomeStatementAccount() {
         AccountBuilder builder = new AccountBuilder();
         builder.setName("Food");
-        builder.setAccountGroup(AccountGroup.EXPENSES.label);
+        builder.setAccountGroup(AccountGroup.EXPENSES);
         builder.setLock(false);
         Account account = builder.build();
         assertEquals(account.getClass(), IncomeStatementAccount.class);
@@ -26,7 +26,7 @@ class AccountBuilderTest {
     void build_BalanceSheetAccount(){
         AccountBuilder builder = new AccountBuilder();
         builder.setName("Bank");
-        builder.setAccountGroup(AccountGroup.CURRENT_ASSETS.label);
+        builder.setAccountGroup(AccountGroup.CURRENT_ASSETS);
         builder.setOpenDate(LocalDate.now());
         builder.setCurrency("SGD");
         builder.setOpenBal(new BigDecimal("100"));
@@ -39,7 +39,7 @@ class AccountBuilderTest {
     void build_CreditCardAccount(){
         AccountBuilder builder = new AccountBuilder();
         builder.setName("Credit Card");
-        builder.setAccountGroup(AccountGroup.CURRENT_LIABILITIES.label);
+        builder.setAccountGroup(AccountGroup.CURRENT_LIABILITIES);
         builder.setOpenDate(LocalDate.now());
         builder.setCurrency("SGD");
         builder.setOpenBal(new BigDecimal("0"));
@@ -0,0 +1,33 @@
+package com.hevlar.accounting.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void added_values_are_always_found() {
+        BloomFilter bloomFilter = new BloomFilter(1000, 0.01);
+        for(int i = 0; i < 1000; i++) bloomFilter.add("key-" + i);
+        for(int i = 0; i < 1000; i++) assertTrue(bloomFilter.mightContain("key-" + i));
+    }
+
+    @Test
+    void false_positives_are_near_the_probability() {
+        BloomFilter bloomFilter = new BloomFilter(10000, 0.01);
+        for(int i = 0; i < 10000; i++) bloomFilter.add("key-" + i);
+        int falsePositives = 0;
+        for(int i = 0; i < 10000; i++){
+            if(bloomFilter.mightContain("other-" + i)) falsePositives++;
+        }
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+        assertEquals(bloomFilter.getHashCount(), 7);
+    }
+
+    @Test
+    void rejects_invalid_sizes() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+    }
+}
@@ -0,0 +1,24 @@
+package com.hevlar.accounting.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContinuationTokenTest {
+
+    @Test
+    void encode_and_decode() {
+        String token = ContinuationToken.encode("journal", "2021-01-31", "42");
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+        assertArrayEquals(ContinuationToken.decode(token, "journal", 2), new String[]{"2021-01-31", "42"});
+        assertArrayEquals(ContinuationToken.decode(ContinuationToken.encode("account", "Bank / Savings"), "account", 1), new String[]{"Bank / Savings"});
+    }
+
+    @Test
+    void decode_rejects_invalid_tokens() {
+        String token = ContinuationToken.encode("account", "Bank");
+        assertThrows(IllegalArgumentException.class, () -> ContinuationToken.decode(token, "journal", 1));
+        assertThrows(IllegalArgumentException.class, () -> ContinuationToken.decode(token, "account", 2));
+        assertThrows(IllegalArgumentException.class, () -> ContinuationToken.decode("not base64!", "account", 1));
+    }
+}
@@ -2,11 +2,13 @@ package com.hevlar.accounting.util;
 
 import com.hevlar.accounting.model.*;
 import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.repository.JournalEntryData;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Currency;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,7 +19,7 @@ class ModelMappingTest {
         IncomeStatementAccount income = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, true);
         AccountData accountData = ModelMapping.toAccountData(income);
         assertEquals(accountData.getName(), "Food");
-        assertEquals(accountData.getAccountGroup(), AccountGroup.EXPENSES.label);
+        assertEquals(accountData.getAccountGroup(), AccountGroup.EXPENSES);
         assertTrue(accountData.isLocked());
     }
 
@@ -26,7 +28,7 @@ class ModelMappingTest {
         BalanceSheetAccount account = new BalanceSheetAccount("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "100.0", true);
         AccountData accountData = ModelMapping.toAccountData(account);
         assertEquals(accountData.getName(), "Bank");
-        assertEquals(accountData.getAccountGroup(), AccountGroup.CURRENT_ASSETS.label);
+        assertEquals(accountData.getAccountGroup(), AccountGroup.CURRENT_ASSETS);
         assertEquals(accountData.getOpenDate(), LocalDate.of(2021, 1, 1));
         assertEquals(accountData.getCurrency(), "SGD");
         assertEquals(accountData.getOpenBal(), new BigDecimal("100.0"));
@@ -37,7 +39,7 @@ class ModelMappingTest {
         CreditCardAccount account = new CreditCardAccount("Bank", LocalDate.of(2021, 1, 1), "SGD", "100.0", "Bank A", 1, 12, true);
         AccountData accountData = ModelMapping.toAccountData(account);
         assertEquals(accountData.getName(), "Bank");
-        assertEquals(accountData.getAccountGroup(), AccountGroup.CURRENT_LIABILITIES.label);
+        assertEquals(accountData.getAccountGroup(), AccountGroup.CURRENT_LIABILITIES);
         assertEquals(accountData.getOpenDate(), LocalDate.of(2021, 1, 1));
         assertEquals(accountData.getCurrency(), "SGD");
         assertEquals(accountData.getOpenBal(), new BigDecimal("100.0"));
@@ -48,7 +50,7 @@ class ModelMappingTest {
 
     @Test
     void toAccount_IncomeStatementAccount() {
-        AccountData accountData = new AccountData("Expense", AccountGroup.EXPENSES.label, false);
+        AccountData accountData = new AccountData("Expense", AccountGroup.EXPENSES, false);
         Account account = ModelMapping.toAccount(accountData);
         assertEquals(account.getClass(), IncomeStatementAccount.class);
         assertEquals(account.getName(), "Expense");
@@ -57,7 +59,7 @@ class ModelMappingTest {
 
     @Test
     void toAccount_BalanceSheetAccount() {
-        AccountData accountData = new AccountData("Bank", AccountGroup.CURRENT_ASSETS.label, LocalDate.of(2021,1,1), "SGD", new BigDecimal("100.0"), false);
+        AccountData accountData = new AccountData("Bank", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021,1,1), "SGD", new BigDecimal("100.0"), false);
         Account account = ModelMapping.toAccount(accountData);
         assertEquals(account.getClass(), BalanceSheetAccount.class);
         BalanceSheetAccount balanceSheetAccount = (BalanceSheetAccount) account;
@@ -70,7 +72,7 @@ class ModelMappingTest {
 
     @Test
     void toAccount_CreditCardAccount() {
-        AccountData accountData = new AccountData("Credit Card", AccountGroup.CURRENT_LIABILITIES.label, LocalDate.of(2021,1,1), "SGD", new BigDecimal("100.0"), "Bank A", 1, 12, false);
+        AccountData accountData = new AccountData("Credit Card", AccountGroup.CURRENT_LIABILITIES, LocalDate.of(2021,1,1), "SGD", new BigDecimal("100.0"), "Bank A", 1, 12, false);
         Account account = ModelMapping.toAccount(accountData);
         assertEquals(account.getClass(), CreditCardAccount.class);
         CreditCardAccount creditCardAccount = (CreditCardAccount) account;
@@ -83,4 +85,39 @@ class ModelMappingTest {
         assertEquals(creditCardAccount.getStatementDay(), 1);
         assertEquals(creditCardAccount.getDueDay(), 12);
     }
-}
\ No newline at end of file
+
+    @Test
+    void toJournalEntryData() {
+        IncomeStatementAccount food = new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false);
+        BalanceSheetAccount cash = new BalanceSheetAccount("Cash", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "100.0", false);
+        JournalEntry journalEntry = new JournalEntry(1L, LocalDate.of(2021, 6, 1), "Lunch", Recurrence.N, new String[]{"#food"}, "SGD", "12.50", food, cash, LocalDate.of(2021, 6, 2), null, null);
+        journalEntry.lock();
+        JournalEntryData journalEntryData = ModelMapping.toJournalEntryData(journalEntry);
+        assertEquals(journalEntryData.getJournalId(), 1L);
+        assertEquals(journalEntryData.getTxDate(), LocalDate.of(2021, 6, 1));
+        assertEquals(journalEntryData.getItem(), "Lunch");
+        assertArrayEquals(journalEntryData.getTags(), new String[]{"#food"});
+        assertEquals(journalEntryData.getCurrency(), "SGD");
+        assertEquals(journalEntryData.getAmount(), new BigDecimal("12.50"));
+        assertEquals(journalEntryData.getDebitAccount(), "Food");
+        assertEquals(journalEntryData.getCreditAccount(), "Cash");
+        assertEquals(journalEntryData.getPostDate(), LocalDate.of(2021, 6, 2));
+        assertTrue(journalEntryData.isLocked());
+    }
+
+    @Test
+    void toJournalEntry() {
+        Map<String, Account> accounts = Map.of(
+                "Food", new IncomeStatementAccount("Food", AccountGroup.EXPENSES, false),
+                "Cash", new BalanceSheetAccount("Cash", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", "100.0", false));
+        JournalEntryData journalEntryData = new JournalEntryData(2L, LocalDate.of(2021, 6, 1), "Dinner", Recurrence.W, null, "SGD", new BigDecimal("20.00"), "Food", "Cash", null, null, null, false);
+        JournalEntry journalEntry = ModelMapping.toJournalEntry(journalEntryData, accounts::get);
+        assertEquals(journalEntry.getJournalId(), 2L);
+        assertEquals(journalEntry.getItem(), "Dinner");
+        assertEquals(journalEntry.getRecurrence(), Recurrence.W);
+        assertEquals(journalEntry.getAmount(), new BigDecimal("20.00"));
+        assertEquals(journalEntry.getDebit().getName(), "Food");
+        assertEquals(journalEntry.getCredit().getName(), "Cash");
+        assertFalse(journalEntry.isLocked());
+    }
+}
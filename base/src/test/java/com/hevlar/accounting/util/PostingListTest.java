@@ -0,0 +1,47 @@
+package com.hevlar.accounting.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingListTest {
+
+    @Test
+    void of_sorts_and_removes_duplicates() {
+        PostingList postingList = PostingList.of(300, 1, 70000, 1, 5);
+        assertArrayEquals(postingList.toArray(), new long[]{1, 5, 300, 70000});
+        assertEquals(postingList.size(), 4);
+        assertTrue(postingList.contains(300));
+        assertFalse(postingList.contains(6));
+        assertFalse(postingList.contains(70001));
+        assertTrue(PostingList.of().isEmpty());
+    }
+
+    @Test
+    void dense_ids_take_one_byte_each() {
+        PostingList.Builder builder = new PostingList.Builder();
+        for(long id = 1000; id < 2000; id++) builder.add(id);
+        PostingList postingList = builder.build();
+        assertEquals(postingList.size(), 1000);
+        assertEquals(postingList.sizeInBytes(), 1001);
+    }
+
+    @Test
+    void builder_rejects_ids_out_of_order() {
+        PostingList.Builder builder = new PostingList.Builder().add(5);
+        assertThrows(IllegalArgumentException.class, () -> builder.add(5));
+        assertThrows(IllegalArgumentException.class, () -> builder.add(4));
+    }
+
+    @Test
+    void and_or_andNot() {
+        PostingList left = PostingList.of(1, 3, 5, 7, 9);
+        PostingList right = PostingList.of(3, 4, 5, 10);
+        assertArrayEquals(left.and(right).toArray(), new long[]{3, 5});
+        assertArrayEquals(left.or(right).toArray(), new long[]{1, 3, 4, 5, 7, 9, 10});
+        assertArrayEquals(left.andNot(right).toArray(), new long[]{1, 7, 9});
+        assertArrayEquals(right.andNot(left).toArray(), new long[]{4, 10});
+        assertTrue(left.and(PostingList.empty()).isEmpty());
+        assertSame(left.or(PostingList.empty()), left);
+    }
+}
@@ -0,0 +1,32 @@
+package com.hevlar.accounting.benchmark;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.util.AccountBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the Account models from a populated AccountBuilder
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class AccountBuilderBenchmark {
+
+    @Param
+    public AccountKind kind;
+
+    private AccountBuilder builder;
+
+    @Setup
+    public void setUp() {
+        builder = new AccountBuilder();
+        kind.configure(builder);
+    }
+
+    @Benchmark
+    public Account build() {
+        return builder.build();
+    }
+}
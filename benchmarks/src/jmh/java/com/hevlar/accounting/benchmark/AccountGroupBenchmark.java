@@ -0,0 +1,44 @@
+package com.hevlar.accounting.benchmark;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.model.AccountType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the resolution of an AccountGroup from its display label and from its persisted code
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class AccountGroupBenchmark {
+
+    /**
+     * First, middle and last declared group, as fromLabel cost may depend on the position
+     */
+    @Param({"Fixed Assets", "Revenue", "Equities"})
+    public String label;
+
+    private int code;
+
+    @Setup
+    public void setUp() {
+        code = AccountGroup.fromLabel(label).code;
+    }
+
+    @Benchmark
+    public AccountGroup fromLabel() {
+        return AccountGroup.fromLabel(label);
+    }
+
+    @Benchmark
+    public AccountGroup fromCode() {
+        return AccountGroup.fromCode(code);
+    }
+
+    @Benchmark
+    public AccountType getAccountTypeFromLabel() {
+        return AccountGroup.getAccountTypeFromLabel(label);
+    }
+}
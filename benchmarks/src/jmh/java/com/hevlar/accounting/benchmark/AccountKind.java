@@ -0,0 +1,87 @@
+package com.hevlar.accounting.benchmark;
+
+import com.hevlar.accounting.model.*;
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.util.AccountBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The three kinds of accounts that go through the mapping chain, with sample data for each
+ */
+public enum AccountKind {
+    INCOME_STATEMENT {
+        @Override
+        AccountData accountData() {
+            return new AccountData("Food", AccountGroup.EXPENSES, false);
+        }
+
+        @Override
+        void configure(AccountBuilder builder) {
+            builder.setName("Food");
+            builder.setAccountGroup(AccountGroup.EXPENSES);
+            builder.setLock(false);
+        }
+    },
+    BALANCE_SHEET {
+        @Override
+        AccountData accountData() {
+            return new AccountData("Bank", AccountGroup.CURRENT_ASSETS, OPEN_DATE, "SGD", OPEN_BAL, false);
+        }
+
+        @Override
+        void configure(AccountBuilder builder) {
+            builder.setName("Bank");
+            builder.setAccountGroup(AccountGroup.CURRENT_ASSETS);
+            builder.setOpenDate(OPEN_DATE);
+            builder.setCurrency("SGD");
+            builder.setOpenBal(OPEN_BAL);
+            builder.setLock(false);
+        }
+    },
+    CREDIT_CARD {
+        @Override
+        AccountData accountData() {
+            return new AccountData("Credit Card", AccountGroup.CURRENT_LIABILITIES, OPEN_DATE, "SGD", OPEN_BAL, "Bank A", 1, 12, false);
+        }
+
+        @Override
+        void configure(AccountBuilder builder) {
+            builder.setName("Credit Card");
+            builder.setAccountGroup(AccountGroup.CURRENT_LIABILITIES);
+            builder.setOpenDate(OPEN_DATE);
+            builder.setCurrency("SGD");
+            builder.setOpenBal(OPEN_BAL);
+            builder.setBank("Bank A");
+            builder.setStatementDay(1);
+            builder.setDueDay(12);
+            builder.setLock(false);
+        }
+    };
+
+    private static final LocalDate OPEN_DATE = LocalDate.of(2021, 1, 1);
+    private static final BigDecimal OPEN_BAL = new BigDecimal("100.00");
+
+    /**
+     * Creates the entity as it would be loaded from the repository
+     * @return account data
+     */
+    abstract AccountData accountData();
+
+    /**
+     * Sets all the attributes of this kind of account on the builder
+     * @param builder account builder
+     */
+    abstract void configure(AccountBuilder builder);
+
+    /**
+     * Creates the model of this kind of account
+     * @return account
+     */
+    Account account() {
+        AccountBuilder builder = new AccountBuilder();
+        configure(builder);
+        return builder.build();
+    }
+}
@@ -0,0 +1,34 @@
+package com.hevlar.accounting.benchmark;
+
+import com.hevlar.accounting.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of a JournalEntry, which validates and parses its currency and amount
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class JournalEntryBenchmark {
+
+    private static final String[] TAGS = {"#food", "#lunch"};
+
+    private final LocalDate txDate = LocalDate.of(2021, 6, 1);
+    private Account expense;
+    private Account cash;
+    private long journalId;
+
+    @Setup
+    public void setUp() {
+        expense = AccountKind.INCOME_STATEMENT.account();
+        cash = AccountKind.BALANCE_SHEET.account();
+    }
+
+    @Benchmark
+    public JournalEntry newJournalEntry() {
+        return new JournalEntry(++journalId, txDate, "Lunch", Recurrence.N, TAGS, "SGD", "12.50", expense, cash, txDate, null, null);
+    }
+}
@@ -0,0 +1,39 @@
+package com.hevlar.accounting.benchmark;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.util.ModelMapping;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the mapping between the persisted AccountData and the Account models
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ModelMappingBenchmark {
+
+    @Param
+    public AccountKind kind;
+
+    private AccountData accountData;
+    private Account account;
+
+    @Setup
+    public void setUp() {
+        accountData = kind.accountData();
+        account = kind.account();
+    }
+
+    @Benchmark
+    public Account toAccount() {
+        return ModelMapping.toAccount(accountData);
+    }
+
+    @Benchmark
+    public AccountData toAccountData() {
+        return ModelMapping.toAccountData(account);
+    }
+}
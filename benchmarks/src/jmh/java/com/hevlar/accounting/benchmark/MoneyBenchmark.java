@@ -0,0 +1,51 @@
+package com.hevlar.accounting.benchmark;
+
+import com.hevlar.accounting.model.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares summing amounts as BigDecimal with summing them as minor units in longs, as done by the balance engines
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+    private static final Currency SGD = Currency.getInstance("SGD");
+
+    @Param({"100000"})
+    private int count;
+
+    private BigDecimal[] amounts;
+    private long[] units;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        amounts = new BigDecimal[count];
+        units = new long[count];
+        for(int i = 0; i < count; i++){
+            amounts[i] = BigDecimal.valueOf(random.nextInt(1_000_000), 2);
+            units[i] = Money.toMinorUnits(amounts[i], SGD);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal sumBigDecimal() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for(BigDecimal amount : amounts) sum = sum.add(amount);
+        return sum;
+    }
+
+    @Benchmark
+    public long sumMinorUnits() {
+        long sum = 0;
+        for(long amount : units) sum = Money.add(sum, amount);
+        return sum;
+    }
+}
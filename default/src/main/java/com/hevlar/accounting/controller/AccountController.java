@@ -0,0 +1,45 @@
+package com.hevlar.accounting.controller;
+
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.service.KeysetPage;
+import com.hevlar.accounting.service.ListingService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Endpoints of the chart of accounts
+ */
+@RestController
+@RequestMapping("/accounts")
+public class AccountController {
+
+    private final ListingService listingService;
+
+    /**
+     * Default constructor
+     * @param listingService keyset paginated listings
+     */
+    public AccountController(ListingService listingService) {
+        this.listingService = listingService;
+    }
+
+    /**
+     * Lists the accounts in order of name, eg. GET /accounts?size=100, then GET /accounts?page={next}&amp;size=100
+     * @param page token of the page, from next of the previous page, or none for the first page
+     * @param size maximum number of accounts
+     * @return accounts and the token of the next page
+     */
+    @GetMapping
+    public KeysetPage<AccountData> list(@RequestParam(value = "page", required = false) String page,
+                                        @RequestParam(value = "size", defaultValue = "100") int size) {
+        try {
+            return listingService.getAccounts(page, size);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+}
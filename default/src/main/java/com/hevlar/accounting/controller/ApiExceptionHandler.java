@@ -0,0 +1,32 @@
+package com.hevlar.accounting.controller;
+
+import com.hevlar.accounting.service.PostingQueueFullException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Maps the exceptions of the services to HTTP responses
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    /**
+     * Seconds a client should wait before retrying when the posting queue is full
+     */
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    /**
+     * The posting queue is full, so the client should slow down and retry
+     * @param e exception
+     * @return 429 Too Many Requests with a Retry-After header
+     */
+    @ExceptionHandler(PostingQueueFullException.class)
+    public ResponseEntity<String> postingQueueFull(PostingQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(e.getMessage());
+    }
+}
@@ -0,0 +1,166 @@
+package com.hevlar.accounting.controller;
+
+import com.hevlar.accounting.model.Account;
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.model.Recurrence;
+import com.hevlar.accounting.repository.JournalEntryData;
+import com.hevlar.accounting.service.ChartOfAccounts;
+import com.hevlar.accounting.service.ChartSnapshot;
+import com.hevlar.accounting.service.ItemMatch;
+import com.hevlar.accounting.service.JournalSearchService;
+import com.hevlar.accounting.service.KeysetPage;
+import com.hevlar.accounting.service.LedgerExporter;
+import com.hevlar.accounting.service.JournalIdGenerator;
+import com.hevlar.accounting.service.ListingService;
+import com.hevlar.accounting.service.PostingPipeline;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Endpoints of the journal
+ */
+@RestController
+@RequestMapping("/journal")
+public class JournalController {
+
+    /**
+     * Maximum number of matches of a search
+     */
+    private static final int MAX_LIMIT = 500;
+
+    /**
+     * Maximum length of an idempotency key, the length of its column
+     */
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    private final JournalSearchService journalSearchService;
+    private final LedgerExporter ledgerExporter;
+    private final ListingService listingService;
+    private final PostingPipeline postingPipeline;
+    private final ChartOfAccounts chartOfAccounts;
+    private final JournalIdGenerator journalIdGenerator;
+
+    /**
+     * Default constructor
+     * @param journalSearchService search of the journal entries
+     * @param ledgerExporter export of the journal entries
+     * @param listingService keyset paginated listings
+     * @param postingPipeline asynchronous posting of journal entries
+     * @param chartOfAccounts chart of accounts to resolve the accounts from
+     * @param journalIdGenerator generator of the journal ids of new entries
+     */
+    public JournalController(JournalSearchService journalSearchService, LedgerExporter ledgerExporter, ListingService listingService,
+                             PostingPipeline postingPipeline, ChartOfAccounts chartOfAccounts, JournalIdGenerator journalIdGenerator) {
+        this.journalSearchService = journalSearchService;
+        this.ledgerExporter = ledgerExporter;
+        this.listingService = listingService;
+        this.postingPipeline = postingPipeline;
+        this.chartOfAccounts = chartOfAccounts;
+        this.journalIdGenerator = journalIdGenerator;
+    }
+
+    /**
+     * Posts a journal entry through the posting pipeline. The response is sent when the entry is committed to the
+     * tables, or with a journal log, when it is forced to disk in the log, before the projector inserts it into the
+     * tables. It is 429 Too Many Requests if the pipeline is full. A retry with the same Idempotency-Key header gets the journal id
+     * of the entry first posted with the key, without posting it again.
+     * @param request journal entry with the names of its accounts
+     * @param idempotencyKey optional key of the entry from the client
+     * @return 201 Created with the journal id
+     */
+    @PostMapping
+    public CompletableFuture<ResponseEntity<Long>> post(@RequestBody PostingRequest request,
+                                                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if(idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        if(request.getDebitAccount() == null || request.getCreditAccount() == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Debit and credit accounts are required");
+        ChartSnapshot snapshot = chartOfAccounts.getSnapshot();
+        Account debit = snapshot.getAccount(request.getDebitAccount());
+        Account credit = snapshot.getAccount(request.getCreditAccount());
+        if(debit == null || credit == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Account not found");
+        JournalEntry journalEntry;
+        try {
+            journalEntry = new JournalEntry(journalIdGenerator.next(), request.getTxDate(), request.getItem(),
+                    request.getRecurrence() == null ? Recurrence.N : request.getRecurrence(), request.getTags(), request.getCurrency(),
+                    request.getAmount(), debit, credit, request.getPostDate(), null, null);
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return postingPipeline.submit(journalEntry, idempotencyKey)
+                .thenApply(journalId -> ResponseEntity.status(HttpStatus.CREATED).body(journalId));
+    }
+
+    /**
+     * Lists the journal entries in order of transaction date and journal id, eg. GET /journal?size=100, then
+     * GET /journal?page={next}&amp;size=100
+     * @param page token of the page, from next of the previous page, or none for the first page
+     * @param size maximum number of entries
+     * @return journal entries and the token of the next page
+     */
+    @GetMapping
+    public KeysetPage<JournalEntryData> list(@RequestParam(value = "page", required = false) String page,
+                                             @RequestParam(value = "size", defaultValue = "100") int size) {
+        try {
+            return listingService.getJournalEntries(page, size);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Searches the journal entries by their items, eg. GET /journal/search?q=starb&amp;limit=10
+     * @param query text to search, at least 1 character
+     * @param limit maximum number of matches, up to 500
+     * @return best matches first
+     */
+    @GetMapping("/search")
+    public List<ItemMatch> search(@RequestParam("q") String query,
+                                  @RequestParam(value = "limit", defaultValue = "" + JournalSearchService.DEFAULT_LIMIT) int limit) {
+        if(query.isBlank()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search text cannot be blank");
+        if(limit < 1 || limit > MAX_LIMIT) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_LIMIT);
+        return journalSearchService.search(query, limit);
+    }
+
+    /**
+     * Exports the journal entries with transaction dates within the period, eg. GET /journal/export?from=2021-01-01&amp;to=2021-12-31&amp;format=ndjson.
+     * The entries are written to the response while they are read from the database, on an async request thread.
+     * @param from first date, inclusive
+     * @param to last date, inclusive
+     * @param format csv or ndjson
+     * @return streaming response
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                        @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                        @RequestParam(value = "format", defaultValue = "csv") String format) {
+        if(from.isAfter(to)) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "From date is after to date");
+        LedgerExporter.Format exportFormat;
+        try {
+            exportFormat = LedgerExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown format: " + format);
+        }
+        String fileName = "journal-" + from + "-" + to + "." + exportFormat.getExtension();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(output -> ledgerExporter.export(from, to, exportFormat, output));
+    }
+}
@@ -0,0 +1,93 @@
+package com.hevlar.accounting.controller;
+
+import com.hevlar.accounting.model.Recurrence;
+
+import java.time.LocalDate;
+
+/**
+ * Body of a request to post a journal entry. The accounts are given by name, and the journal id is assigned.
+ */
+public class PostingRequest {
+
+    private LocalDate txDate;
+    private String item;
+    private Recurrence recurrence;
+    private String[] tags;
+    private String currency;
+    private String amount;
+    private String debitAccount;
+    private String creditAccount;
+    private LocalDate postDate;
+
+    public LocalDate getTxDate() {
+        return txDate;
+    }
+
+    public void setTxDate(LocalDate txDate) {
+        this.txDate = txDate;
+    }
+
+    public String getItem() {
+        return item;
+    }
+
+    public void setItem(String item) {
+        this.item = item;
+    }
+
+    public Recurrence getRecurrence() {
+        return recurrence;
+    }
+
+    public void setRecurrence(Recurrence recurrence) {
+        this.recurrence = recurrence;
+    }
+
+    public String[] getTags() {
+        return tags;
+    }
+
+    public void setTags(String[] tags) {
+        this.tags = tags;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public String getAmount() {
+        return amount;
+    }
+
+    public void setAmount(String amount) {
+        this.amount = amount;
+    }
+
+    public String getDebitAccount() {
+        return debitAccount;
+    }
+
+    public void setDebitAccount(String debitAccount) {
+        this.debitAccount = debitAccount;
+    }
+
+    public String getCreditAccount() {
+        return creditAccount;
+    }
+
+    public void setCreditAccount(String creditAccount) {
+        this.creditAccount = creditAccount;
+    }
+
+    public LocalDate getPostDate() {
+        return postDate;
+    }
+
+    public void setPostDate(LocalDate postDate) {
+        this.postDate = postDate;
+    }
+}
@@ -0,0 +1,150 @@
+package com.hevlar.accounting.controller;
+
+import com.hevlar.accounting.model.AccountGroup;
+import com.hevlar.accounting.model.JournalEntry;
+import com.hevlar.accounting.repository.AccountData;
+import com.hevlar.accounting.service.ChartOfAccounts;
+import com.hevlar.accounting.service.ChartSnapshot;
+import com.hevlar.accounting.service.JournalIdGenerator;
+import com.hevlar.accounting.service.JournalSearchService;
+import com.hevlar.accounting.service.LedgerExporter;
+import com.hevlar.accounting.service.ListingService;
+import com.hevlar.accounting.service.PostingPipeline;
+import com.hevlar.accounting.service.PostingQueueFullException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest({JournalController.class, AccountController.class})
+class JournalControllerTest {
+
+    private static final String LUNCH = "{\"txDate\":\"2021-06-01\",\"item\":\"Lunch\",\"currency\":\"SGD\",\"amount\":\"12.50\","
+            + "\"debitAccount\":\"Food\",\"creditAccount\":\"Cash\"}";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    JournalSearchService journalSearchService;
+
+    @MockBean
+    LedgerExporter ledgerExporter;
+
+    @MockBean
+    ListingService listingService;
+
+    @MockBean
+    PostingPipeline postingPipeline;
+
+    @MockBean
+    ChartOfAccounts chartOfAccounts;
+
+    @MockBean
+    JournalIdGenerator journalIdGenerator;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(chartOfAccounts.getSnapshot()).thenReturn(ChartSnapshot.of(List.of(
+                new AccountData("Food", AccountGroup.EXPENSES, false),
+                new AccountData("Cash", AccountGroup.CURRENT_ASSETS, LocalDate.of(2021, 1, 1), "SGD", new BigDecimal("100.00"), false))));
+        Mockito.when(journalIdGenerator.next()).thenReturn(7L);
+    }
+
+    private static MockHttpServletRequestBuilder posting(String body) {
+        return post("/journal").contentType(MediaType.APPLICATION_JSON).content(body);
+    }
+
+    @Test
+    void entry_is_posted_with_its_idempotency_key() throws Exception {
+        Mockito.when(postingPipeline.submit(any(JournalEntry.class), eq("feed-1"))).thenReturn(CompletableFuture.completedFuture(7L));
+        MvcResult result = mockMvc.perform(posting(LUNCH).header("Idempotency-Key", "feed-1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated())
+                .andExpect(content().string("7"));
+    }
+
+    @Test
+    void full_queue_is_too_many_requests_with_retry_after() throws Exception {
+        Mockito.when(postingPipeline.submit(any(JournalEntry.class), isNull())).thenThrow(new PostingQueueFullException(10));
+        mockMvc.perform(posting(LUNCH))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    @Test
+    void invalid_idempotency_key_is_bad_request() throws Exception {
+        mockMvc.perform(posting(LUNCH).header("Idempotency-Key", " "))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(posting(LUNCH).header("Idempotency-Key", "k".repeat(256)))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(postingPipeline);
+    }
+
+    @Test
+    void unknown_account_or_invalid_amount_is_bad_request() throws Exception {
+        mockMvc.perform(posting(LUNCH.replace("\"Cash\"", "\"Wallet\"")))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(posting(LUNCH.replace("12.50", "12.505")))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(postingPipeline);
+    }
+
+    @Test
+    void invalid_search_is_bad_request() throws Exception {
+        mockMvc.perform(get("/journal/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/journal/search").param("q", "lunch").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/journal/search").param("q", "lunch").param("limit", "501"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(journalSearchService);
+    }
+
+    @Test
+    void invalid_export_is_bad_request() throws Exception {
+        mockMvc.perform(get("/journal/export").param("from", "2021-12-31").param("to", "2021-01-01"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/journal/export").param("from", "2021-01-01").param("to", "2021-12-31").param("format", "xlsx"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/journal/export").param("from", "2021-01-01").param("to", "June"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(ledgerExporter);
+    }
+
+    @Test
+    void invalid_page_token_is_bad_request() throws Exception {
+        Mockito.when(listingService.getJournalEntries(eq("garbage"), anyInt())).thenThrow(new IllegalArgumentException("Invalid continuation token"));
+        Mockito.when(listingService.getAccounts(eq("garbage"), anyInt())).thenThrow(new IllegalArgumentException("Invalid continuation token"));
+        mockMvc.perform(get("/journal").param("page", "garbage"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/accounts").param("page", "garbage"))
+                .andExpect(status().isBadRequest());
+    }
+}